@@ -0,0 +1,165 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the order in which items were read so that output can be written in input order from a multi-threaded step.
+ *
+ * A single ItemSequence is shared between a C24ItemReader and a C24ItemWriter. The reader allocates a sequence number
+ * to each item as it extracts it from its source and records it against the reading thread; the writer then collects
+ * the sequence numbers read by its thread since its last write and uses them to order the chunk's output.
+ *
+ * To keep each chunk's items contiguous in the input, the reader hands threads blocks of consecutive items. The block
+ * size must be set to the step's commit interval; the reader fails the step if it finds a chunk that doesn't line up
+ * with a block.
+ *
+ * Some items can be written ahead of items read before them:
+ * <ul>
+ * <li>Once the input is exhausted, threads pick up elements other threads extracted but hadn't got round to, so the
+ * final chunks may contain parts of several blocks</li>
+ * <li>Items read after a failed read has been skipped, as the chunk it was skipped from takes an extra element from
+ * the next block and from then on chunks no longer line up with blocks</li>
+ * <li>Items written again by a fault tolerant step, for example when a chunk is retried or scanned for items to
+ * skip; their place in the sequence was given up when the original chunk failed, so they bypass it and are written
+ * as soon as they are ready</li>
+ * </ul>
+ * Output is therefore only guaranteed to be in input order up to the final chunks of a step in which nothing is skipped
+ * or retried.
+ *
+ * @author Andrew Elmore
+ */
+public class ItemSequence {
+
+	/**
+	 * The next sequence number to allocate
+	 */
+	private final AtomicLong next = new AtomicLong();
+
+	/**
+	 * How many consecutive items the reader should hand to a thread at once; 0 if not set
+	 */
+	private int blockSize = 0;
+
+	/**
+	 * Sequence numbers read by each thread and not yet collected
+	 */
+	private ThreadLocal<List<Range>> read = new ThreadLocal<List<Range>>();
+
+	/**
+	 * A contiguous run of sequence numbers
+	 */
+	public static class Range {
+		private final long start;
+		private long end;
+
+		public Range(long start, long end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 * The first sequence number in the range
+		 */
+		public long getStart() {
+			return start;
+		}
+
+		/**
+		 * One past the last sequence number in the range
+		 */
+		public long getEnd() {
+			return end;
+		}
+	}
+
+	/**
+	 * Allocates the next sequence number.
+	 * Callers must allocate under the same lock that they use to extract items from their source so that sequence
+	 * numbers follow input order.
+	 *
+	 * @return The allocated sequence number
+	 */
+	public long allocate() {
+		return next.getAndIncrement();
+	}
+
+	/**
+	 * Records that the calling thread has read the item with the supplied sequence number
+	 *
+	 * @param sequence The item's sequence number
+	 */
+	public void record(long sequence) {
+		List<Range> ranges = read.get();
+		if(ranges == null) {
+			ranges = new ArrayList<Range>();
+			read.set(ranges);
+		}
+
+		Range last = ranges.isEmpty()? null : ranges.get(ranges.size() - 1);
+		if(last != null && last.end == sequence) {
+			last.end++;
+		} else {
+			ranges.add(new Range(sequence, sequence + 1));
+		}
+	}
+
+	/**
+	 * Returns the sequence numbers read by the calling thread since it last called collect
+	 *
+	 * @return The sequence numbers as ranges in the order they were read; empty if there are none
+	 */
+	public List<Range> collect() {
+		List<Range> ranges = read.get();
+		if(ranges == null || ranges.isEmpty()) {
+			return new ArrayList<Range>(0);
+		}
+		read.set(null);
+		return ranges;
+	}
+
+	/**
+	 * Resets the sequence ready for reuse by another step execution
+	 */
+	public void reset() {
+		next.set(0);
+		read = new ThreadLocal<List<Range>>();
+	}
+
+	/**
+	 * How many consecutive items the reader hands to a thread at once
+	 */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Sets how many consecutive items the reader hands to a thread at once.
+	 * Must be set to the step's commit interval.
+	 *
+	 * @param blockSize The number of items in a block
+	 */
+	public void setBlockSize(int blockSize) {
+		if(blockSize < 1) {
+			throw new IllegalArgumentException("blockSize must be at least 1");
+		}
+		this.blockSize = blockSize;
+	}
+
+}
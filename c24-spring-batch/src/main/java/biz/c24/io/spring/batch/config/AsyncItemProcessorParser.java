@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012 C24 Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.config;
+
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.xml.AbstractSingleBeanDefinitionParser;
+import org.springframework.beans.factory.xml.ParserContext;
+import org.springframework.util.StringUtils;
+import org.w3c.dom.Element;
+
+import biz.c24.io.spring.batch.processor.C24AsyncItemProcessor;
+import biz.c24.io.spring.batch.processor.VirtualThreadTaskExecutor;
+
+/**
+ * Parser for the C24AsyncItemProcessor element
+ * 
+ * @author Andrew Elmore
+ */
+public class AsyncItemProcessorParser extends AbstractSingleBeanDefinitionParser {
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.beans.factory.xml.AbstractSingleBeanDefinitionParser#getBeanClass(org.w3c.dom.Element)
+	 */
+	@Override
+	protected Class<?> getBeanClass(Element element) {
+		return C24AsyncItemProcessor.class;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.beans.factory.xml.AbstractSingleBeanDefinitionParser#doParse(org.w3c.dom.Element, org.springframework.beans.factory.xml.ParserContext, org.springframework.beans.factory.support.BeanDefinitionBuilder)
+	 */
+	@Override
+	protected void doParse(Element element, ParserContext parserContext, BeanDefinitionBuilder builder) {
+		// Mandatory
+		String delegateId = element.getAttribute("delegate-ref");
+		builder.addPropertyReference("delegate", delegateId);
+		
+		// Optional
+		String permits = element.getAttribute("permits");
+		if(StringUtils.hasText(permits)) {
+			builder.addPropertyValue("permits", permits);
+		}
+		
+		// Optional
+		String taskExecutorId = element.getAttribute("task-executor-ref");
+		if(StringUtils.hasText(taskExecutorId)) {
+			builder.addPropertyReference("taskExecutor", taskExecutorId);
+		}
+		
+		// Optional
+		String virtualThreads = element.getAttribute("virtual-threads");
+		if(Boolean.parseBoolean(virtualThreads)) {
+			if(StringUtils.hasText(taskExecutorId)) {
+				parserContext.getReaderContext().error("Only one of task-executor-ref and virtual-threads can be used", element);
+			}
+			builder.addPropertyValue("taskExecutor", 
+					BeanDefinitionBuilder.genericBeanDefinition(VirtualThreadTaskExecutor.class).getBeanDefinition());
+		}
+	}
+
+}
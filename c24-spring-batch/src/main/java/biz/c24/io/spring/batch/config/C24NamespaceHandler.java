@@ -37,10 +37,20 @@ class C24NamespaceHandler extends NamespaceHandlerSupport {
         registerBeanDefinitionParser("zip-file-source", new ZipFileSourceParser());
         registerBeanDefinitionParser("file-writer", new FileWriterSourceParser());
         registerBeanDefinitionParser("zip-file-writer", new ZipFileWriterSourceParser());
+        registerBeanDefinitionParser("file-channel-writer", new FileChannelWriterSourceParser());
+        registerBeanDefinitionParser("rolling-file-writer", new RollingFileWriterSourceParser());
+        registerBeanDefinitionParser("partitioned-file-writer", new KeyPartitionedFileWriterSourceParser());
+        registerBeanDefinitionParser("parallel-zip-file-writer", new ParallelZipFileWriterSourceParser());
+        registerBeanDefinitionParser("compressed-file-writer", new CompressedFileWriterSourceParser());
+        registerBeanDefinitionParser("positional-file-writer", new PositionalFileWriterSourceParser());
         registerBeanDefinitionParser("item-reader", new ItemReaderParser());
         registerBeanDefinitionParser("xml-item-reader", new XmlItemReaderParser());
 		registerBeanDefinitionParser("batch-item-reader", new BatchItemReaderParser());
 		registerBeanDefinitionParser("transform-item-processor", new TransformItemProcessorParser());
+		registerBeanDefinitionParser("transform-item-writer", new TransformItemWriterParser());
+		registerBeanDefinitionParser("async-item-processor", new AsyncItemProcessorParser());
+		registerBeanDefinitionParser("async-item-writer", new AsyncItemWriterParser());
+		registerBeanDefinitionParser("pipeline-item-writer", new PipelineItemWriterParser());
 		registerBeanDefinitionParser("item-writer", new ItemWriterParser());		
 	}
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.config;
+
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.xml.AbstractSingleBeanDefinitionParser;
+import org.springframework.beans.factory.xml.ParserContext;
+import org.springframework.util.StringUtils;
+import org.w3c.dom.Element;
+
+import biz.c24.io.spring.batch.writer.source.CompressedFileWriterSource;
+import biz.c24.io.spring.batch.writer.source.StandardCodec;
+
+/**
+ * Parser for the C24ItemWriter's CompressedFileWriterSource child element
+ * 
+ * @author Andrew Elmore
+ *
+ */
+public class CompressedFileWriterSourceParser extends AbstractSingleBeanDefinitionParser {
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.beans.factory.xml.AbstractSingleBeanDefinitionParser#getBeanClass(org.w3c.dom.Element)
+     */
+    @Override
+    protected Class<?> getBeanClass(Element element) {
+        return CompressedFileWriterSource.class;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.beans.factory.xml.AbstractSingleBeanDefinitionParser#doParse(org.w3c.dom.Element, org.springframework.beans.factory.xml.ParserContext, org.springframework.beans.factory.support.BeanDefinitionBuilder)
+     */
+    @Override
+    protected void doParse(Element element, ParserContext parserContext, BeanDefinitionBuilder bean) {
+    
+        // Optional
+        String resource = element.getAttribute("resource");
+        if(StringUtils.hasText(resource)) {
+            bean.addPropertyValue("resource", resource);            
+        }       
+        
+        // Optional
+        String encoding = element.getAttribute("encoding");
+        if(StringUtils.hasText(encoding)) {
+            bean.addPropertyValue("encoding", encoding);  
+        }
+        
+        // Optional
+        String codec = element.getAttribute("codec");
+        String codecRef = element.getAttribute("codec-ref");
+        if(StringUtils.hasText(codec) && StringUtils.hasText(codecRef)) {
+            parserContext.getReaderContext().error("Only one of codec and codec-ref can be used", element);
+        } else if(StringUtils.hasText(codec)) {
+            bean.addPropertyValue("codec", StandardCodec.valueOf(codec.toUpperCase()));
+        } else if(StringUtils.hasText(codecRef)) {
+            bean.addPropertyReference("codec", codecRef);
+        }
+        
+        // Optional
+        String compressionLevel = element.getAttribute("compression-level");
+        if(StringUtils.hasText(compressionLevel)) {
+            bean.addPropertyValue("compressionLevel", compressionLevel);
+        }
+    }
+}
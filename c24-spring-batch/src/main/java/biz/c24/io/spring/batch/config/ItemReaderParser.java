@@ -111,6 +111,12 @@ public class ItemReaderParser extends AbstractSingleBeanDefinitionParser {
     		bean.addPropertyReference("parseListener", parseListenerRef);
     	}
     	
+    	// Optional
+    	String itemSequenceRef = element.getAttribute("item-sequence-ref");
+    	if(StringUtils.hasText(itemSequenceRef)) {
+    		bean.addPropertyReference("itemSequence", itemSequenceRef);
+    	}
+    	
     	   	
     	Element fileSourceElement = DomUtils.getChildElementByTagName(element, "file-source");
     	if(fileSourceElement != null) {
@@ -24,7 +24,14 @@ import org.springframework.util.xml.DomUtils;
 import org.w3c.dom.Element;
 
 import biz.c24.io.spring.batch.writer.C24ItemWriter;
+import biz.c24.io.spring.batch.writer.source.AsyncWriterSource;
+import biz.c24.io.spring.batch.writer.source.CompressedFileWriterSource;
+import biz.c24.io.spring.batch.writer.source.FileChannelWriterSource;
 import biz.c24.io.spring.batch.writer.source.FileWriterSource;
+import biz.c24.io.spring.batch.writer.source.KeyPartitionedFileWriterSource;
+import biz.c24.io.spring.batch.writer.source.ParallelZipFileWriterSource;
+import biz.c24.io.spring.batch.writer.source.PositionalFileWriterSource;
+import biz.c24.io.spring.batch.writer.source.RollingFileWriterSource;
 import biz.c24.io.spring.batch.writer.source.ZipFileWriterSource;
 
 /**
@@ -63,6 +70,31 @@ public class ItemWriterParser extends AbstractSingleBeanDefinitionParser {
     	String sinkRef = element.getAttribute("sink-ref");
     	bean.addPropertyReference("sink", sinkRef);
     	
+    	// Optional
+    	String itemSequenceRef = element.getAttribute("item-sequence-ref");
+    	if(StringUtils.hasText(itemSequenceRef)) {
+    		bean.addPropertyReference("itemSequence", itemSequenceRef);
+    	}
+    	
+    	// Optional
+    	String reorderCapacity = element.getAttribute("reorder-capacity");
+    	if(StringUtils.hasText(reorderCapacity)) {
+    		bean.addPropertyValue("reorderCapacity", reorderCapacity);
+    	}
+    	
+    	// Optional
+    	String reorderTimeout = element.getAttribute("reorder-timeout");
+    	if(StringUtils.hasText(reorderTimeout)) {
+    		bean.addPropertyValue("reorderTimeout", reorderTimeout);
+    	}
+    	
+    	// Optional
+    	String saveState = element.getAttribute("save-state");
+    	if(StringUtils.hasText(saveState)) {
+    		boolean val = Boolean.parseBoolean(saveState);
+    		bean.addPropertyValue("saveState", val);
+    	}
+    	
     	int numSourceDefns = 0;
     	
     	// Optional
@@ -71,6 +103,13 @@ public class ItemWriterParser extends AbstractSingleBeanDefinitionParser {
     	    bean.addPropertyReference("writerSource", writerSourceRef);
     	    numSourceDefns++;
     	}
+    	
+    	// Optional
+    	String partitionedWriterSourceRef = element.getAttribute("partitioned-writer-source-ref");
+    	if(StringUtils.hasText(partitionedWriterSourceRef)) {
+    	    bean.addPropertyReference("partitionedWriterSource", partitionedWriterSourceRef);
+    	    numSourceDefns++;
+    	}
 
         Element fileSourceElement = DomUtils.getChildElementByTagName(element, "file-writer");
         if(fileSourceElement != null) {
@@ -89,11 +128,71 @@ public class ItemWriterParser extends AbstractSingleBeanDefinitionParser {
             bean.addPropertyValue("writerSource", beanDefinition);
             numSourceDefns++;
         }
+        
+        Element fileChannelSourceElement = DomUtils.getChildElementByTagName(element, "file-channel-writer");
+        if(fileChannelSourceElement != null) {
+            BeanDefinition beanDefinition = parserContext.getDelegate().parseCustomElement(fileChannelSourceElement,
+                    bean.getBeanDefinition());
+            beanDefinition.setBeanClassName(FileChannelWriterSource.class.getName());
+            bean.addPropertyValue("writerSource", beanDefinition);
+            numSourceDefns++;
+        }
+        
+        Element rollingSourceElement = DomUtils.getChildElementByTagName(element, "rolling-file-writer");
+        if(rollingSourceElement != null) {
+            BeanDefinition beanDefinition = parserContext.getDelegate().parseCustomElement(rollingSourceElement,
+                    bean.getBeanDefinition());
+            beanDefinition.setBeanClassName(RollingFileWriterSource.class.getName());
+            bean.addPropertyValue("partitionedWriterSource", beanDefinition);
+            numSourceDefns++;
+        }
+        
+        Element partitionedSourceElement = DomUtils.getChildElementByTagName(element, "partitioned-file-writer");
+        if(partitionedSourceElement != null) {
+            BeanDefinition beanDefinition = parserContext.getDelegate().parseCustomElement(partitionedSourceElement,
+                    bean.getBeanDefinition());
+            beanDefinition.setBeanClassName(KeyPartitionedFileWriterSource.class.getName());
+            bean.addPropertyValue("partitionedWriterSource", beanDefinition);
+            numSourceDefns++;
+        }
+        
+        Element parallelZipSourceElement = DomUtils.getChildElementByTagName(element, "parallel-zip-file-writer");
+        if(parallelZipSourceElement != null) {
+            BeanDefinition beanDefinition = parserContext.getDelegate().parseCustomElement(parallelZipSourceElement,
+                    bean.getBeanDefinition());
+            beanDefinition.setBeanClassName(ParallelZipFileWriterSource.class.getName());
+            bean.addPropertyValue("writerSource", beanDefinition);
+            numSourceDefns++;
+        }
+        
+        Element compressedSourceElement = DomUtils.getChildElementByTagName(element, "compressed-file-writer");
+        if(compressedSourceElement != null) {
+            BeanDefinition beanDefinition = parserContext.getDelegate().parseCustomElement(compressedSourceElement,
+                    bean.getBeanDefinition());
+            beanDefinition.setBeanClassName(CompressedFileWriterSource.class.getName());
+            if("true".equals(compressedSourceElement.getAttribute("background"))) {
+                // Compress on a dedicated thread
+                BeanDefinitionBuilder async = BeanDefinitionBuilder.genericBeanDefinition(AsyncWriterSource.class);
+                async.addPropertyValue("delegate", beanDefinition);
+                beanDefinition = async.getBeanDefinition();
+            }
+            bean.addPropertyValue("writerSource", beanDefinition);
+            numSourceDefns++;
+        }
+        
+        Element positionalSourceElement = DomUtils.getChildElementByTagName(element, "positional-file-writer");
+        if(positionalSourceElement != null) {
+            BeanDefinition beanDefinition = parserContext.getDelegate().parseCustomElement(positionalSourceElement,
+                    bean.getBeanDefinition());
+            beanDefinition.setBeanClassName(PositionalFileWriterSource.class.getName());
+            bean.addPropertyValue("writerSource", beanDefinition);
+            numSourceDefns++;
+        }
        
         if(numSourceDefns > 1) {
-            parserContext.getReaderContext().error("Only one of writer-source-ref, file-writer and zip-file-writer can be used", element);
+            parserContext.getReaderContext().error("Only one of writer-source-ref, partitioned-writer-source-ref, file-writer, zip-file-writer, file-channel-writer, rolling-file-writer, partitioned-file-writer, parallel-zip-file-writer, compressed-file-writer and positional-file-writer can be used", element);
         } else if(numSourceDefns == 0) {
-            parserContext.getReaderContext().error("One of writer-source-ref, file-writer and zip-file-writer must be specified", element);            
+            parserContext.getReaderContext().error("One of writer-source-ref, partitioned-writer-source-ref, file-writer, zip-file-writer, file-channel-writer, rolling-file-writer, partitioned-file-writer, parallel-zip-file-writer, compressed-file-writer and positional-file-writer must be specified", element);            
         }
     }    
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.config;
+
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.xml.AbstractSingleBeanDefinitionParser;
+import org.springframework.util.StringUtils;
+import org.w3c.dom.Element;
+
+import biz.c24.io.spring.batch.writer.C24PipelineItemWriter;
+
+/**
+ * Parser for the C24PipelineItemWriter element
+ * 
+ * @author Andrew Elmore
+ */
+public class PipelineItemWriterParser extends AbstractSingleBeanDefinitionParser {
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.beans.factory.xml.AbstractSingleBeanDefinitionParser#getBeanClass(org.w3c.dom.Element)
+	 */
+	@Override
+	protected Class<?> getBeanClass(Element element) {
+		return C24PipelineItemWriter.class;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.beans.factory.xml.AbstractSingleBeanDefinitionParser#doParse(org.w3c.dom.Element, org.springframework.beans.factory.support.BeanDefinitionBuilder)
+	 */
+	@Override
+	protected void doParse(Element element, BeanDefinitionBuilder bean) {
+		
+		// Optional
+		String scope = element.getAttribute("scope");
+		if(StringUtils.hasText(scope)) {
+			bean.setScope(scope);
+		} else {
+			// Default to step scope
+			bean.setScope("step");
+		}
+		
+		// Mandatory
+		String sinkRef = element.getAttribute("sink-ref");
+		bean.addPropertyReference("sink", sinkRef);
+		
+		// Mandatory
+		String writerSourceRef = element.getAttribute("writer-source-ref");
+		bean.addPropertyReference("writerSource", writerSourceRef);
+		
+		// Optional
+		String modelRef = element.getAttribute("model-ref");
+		if(StringUtils.hasText(modelRef)) {
+			bean.addPropertyReference("model", modelRef);
+		}
+		
+		// Optional
+		String sourceFactoryRef = element.getAttribute("source-factory-ref");
+		if(StringUtils.hasText(sourceFactoryRef)) {
+			bean.addPropertyReference("sourceFactory", sourceFactoryRef);
+		}
+		
+		// Optional
+		String transformId = element.getAttribute("transform-ref");
+		if(StringUtils.hasText(transformId)) {
+			bean.addPropertyReference("transformer", transformId);
+		}
+		
+		// Optional
+		String validate = element.getAttribute("validate");
+		if(StringUtils.hasText(validate)) {
+			bean.addPropertyValue("validate", validate);
+		}
+		
+		// Optional
+		String validateOutput = element.getAttribute("validate-output");
+		if(StringUtils.hasText(validateOutput)) {
+			bean.addPropertyValue("validateOutput", validateOutput);
+		}
+		
+		// Optional
+		String failfast = element.getAttribute("failfast");
+		if(StringUtils.hasText(failfast)) {
+			boolean val = Boolean.parseBoolean(failfast);
+			bean.addPropertyValue("failfast", val);
+		}
+		
+		// Optional
+		String saveState = element.getAttribute("save-state");
+		if(StringUtils.hasText(saveState)) {
+			boolean val = Boolean.parseBoolean(saveState);
+			bean.addPropertyValue("saveState", val);
+		}
+	}
+
+}
@@ -66,6 +66,12 @@ public class TransformItemProcessorParser extends AbstractSingleBeanDefinitionPa
 		if(StringUtils.hasText(targetClass)) {
 			builder.addPropertyValue("targetClass", targetClass);
 		}
+		
+		// Optional
+		String cacheRef = element.getAttribute("cache-ref");
+		if(StringUtils.hasText(cacheRef)) {
+			builder.addPropertyReference("cache", cacheRef);
+		}
 	}
 
 }
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.processor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.util.Assert;
+
+import biz.c24.io.api.data.ComplexDataObject;
+
+/**
+ * An ItemProcessor which hands each item to a delegate, typically a C24TransformItemProcessor or a
+ * C24ValidatingItemProcessor, to be processed asynchronously by a TaskExecutor. Returns a Future for the result;
+ * use with a C24AsyncItemWriter, which waits for the results before writing them.
+ * 
+ * This allows the processing of the items in a chunk to overlap without making the step multi-threaded, which
+ * would prevent it from being restarted.
+ * 
+ * The number of items being processed at once is bounded by a permit count rather than by the number of threads,
+ * so an executor which creates a thread per task, such as the VirtualThreadTaskExecutor, can be used safely. Once
+ * all of the permits are in use, process blocks until an item completes. The permit count defaults to the number of
+ * processors.
+ * 
+ * If the delegate is an ItemStream the calls are passed on to it.
+ * 
+ * @author Andrew Elmore
+ */
+public class C24AsyncItemProcessor<O> implements ItemProcessor<ComplexDataObject, Future<O>>, ItemStream {
+	
+	private ItemProcessor<ComplexDataObject, O> delegate = null;
+	
+	private TaskExecutor taskExecutor = new SyncTaskExecutor();
+	
+	private volatile int permits = Runtime.getRuntime().availableProcessors();
+	
+	/**
+	 * Resized in place so that items already being processed still count against a new permit count
+	 */
+	private final ResizableSemaphore semaphore = new ResizableSemaphore(permits);
+	
+	/**
+	 * A Semaphore whose permits can be reduced while they're in use
+	 */
+	@SuppressWarnings("serial")
+	private static class ResizableSemaphore extends Semaphore {
+		
+		ResizableSemaphore(int permits) {
+			super(permits);
+		}
+		
+		@Override
+		protected void reducePermits(int reduction) {
+			super.reducePermits(reduction);
+		}
+	}
+	
+	/**
+	 * Asserts that the object has been properly configured
+	 */
+	@PostConstruct
+	public void validateConfiguration() {
+		Assert.notNull(delegate, "Delegate must be set");
+		Assert.notNull(taskExecutor, "TaskExecutor must be set");
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.batch.item.ItemProcessor#process(java.lang.Object)
+	 */
+	@Override
+	public Future<O> process(final ComplexDataObject item) throws Exception {
+		
+		semaphore.acquire();
+		
+		FutureTask<O> task = new FutureTask<O>(new Callable<O>() {
+			public O call() throws Exception {
+				try {
+					return delegate.process(item);
+				} finally {
+					semaphore.release();
+				}
+			}
+		});
+		
+		try {
+			taskExecutor.execute(task);
+		} catch(RuntimeException ex) {
+			// It'll never run
+			semaphore.release();
+			throw ex;
+		}
+		
+		return task;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.batch.item.ItemStream#open(org.springframework.batch.item.ExecutionContext)
+	 */
+	@Override
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		if(delegate instanceof ItemStream) {
+			((ItemStream)delegate).open(executionContext);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.batch.item.ItemStream#update(org.springframework.batch.item.ExecutionContext)
+	 */
+	@Override
+	public void update(ExecutionContext executionContext) throws ItemStreamException {
+		if(delegate instanceof ItemStream) {
+			((ItemStream)delegate).update(executionContext);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.batch.item.ItemStream#close()
+	 */
+	@Override
+	public void close() throws ItemStreamException {
+		if(delegate instanceof ItemStream) {
+			((ItemStream)delegate).close();
+		}
+	}
+
+	/**
+	 * Get the ItemProcessor that items are handed to
+	 * 
+	 * @return The delegate ItemProcessor
+	 */
+	public ItemProcessor<ComplexDataObject, O> getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * Set the ItemProcessor that items are handed to
+	 * 
+	 * @param delegate The ItemProcessor to process items asynchronously
+	 */
+	@Required
+	public void setDelegate(ItemProcessor<ComplexDataObject, O> delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Get the TaskExecutor that items are processed by
+	 */
+	public TaskExecutor getTaskExecutor() {
+		return taskExecutor;
+	}
+
+	/**
+	 * Set the TaskExecutor that items are processed by. Defaults to a SyncTaskExecutor, which processes each item
+	 * on the calling thread.
+	 * 
+	 * @param taskExecutor The TaskExecutor to use
+	 */
+	public void setTaskExecutor(TaskExecutor taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * The maximum number of items that can be being processed at once
+	 */
+	public int getPermits() {
+		return permits;
+	}
+
+	/**
+	 * Set the maximum number of items that can be being processed at once. Defaults to the number of processors.
+	 * Can be changed while items are being processed; if reduced, new items wait until enough of those in progress
+	 * have completed.
+	 * 
+	 * @param permits The number of permits
+	 */
+	public synchronized void setPermits(int permits) {
+		if(permits < 1) {
+			throw new IllegalArgumentException("permits must be positive");
+		}
+		if(permits > this.permits) {
+			semaphore.release(permits - this.permits);
+		} else if(permits < this.permits) {
+			semaphore.reducePermits(this.permits - permits);
+		}
+		this.permits = permits;
+	}
+
+}
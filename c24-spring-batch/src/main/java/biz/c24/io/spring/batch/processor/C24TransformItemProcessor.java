@@ -15,22 +15,14 @@
  */
 package biz.c24.io.spring.batch.processor;
 
-import java.util.Collection;
-import java.util.LinkedList;
-
 import org.springframework.batch.core.annotation.AfterStep;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.beans.factory.annotation.Required;
 
 import biz.c24.io.api.data.ComplexDataObject;
-import biz.c24.io.api.data.ValidationEvent;
-import biz.c24.io.api.data.ValidationException;
-import biz.c24.io.api.data.ValidationListener;
-import biz.c24.io.api.data.ValidationManager;
-import biz.c24.io.api.presentation.JavaClassSink;
 import biz.c24.io.api.transform.Transform;
-import biz.c24.io.spring.batch.C24CompoundValidationException;
-import biz.c24.io.spring.batch.reader.C24ValidationException;
+import biz.c24.io.spring.util.JavaBeanConverter;
+import biz.c24.io.spring.util.TransformCache;
 
 /**
  * A Spring Batch ItemProcesor which invokes a C24 IO Transform to convert a CDO from one model to another.
@@ -50,12 +42,17 @@ public class C24TransformItemProcessor implements ItemProcessor<ComplexDataObjec
 	 */
 	private boolean failfast = true;
 	
-	private ThreadLocal<ValidationManager> validator = null;
+	private ValidationManagerPool validators = null;
+	
+	/**
+	 * Optional converter to use to convert CDOs to POJOs
+	 */
+	private JavaBeanConverter javaConverter = null;
 	
 	/**
-	 * Optional JavaClassSink to use to convert CDOs to POJOs
+	 * Optional cache of transform results
 	 */
-	private JavaClassSink javaSink = null;
+	private TransformCache cache = null;
 
 	/**
 	 * Default constructor. Requires that the transformer is initialised separately.
@@ -102,55 +99,17 @@ public class C24TransformItemProcessor implements ItemProcessor<ComplexDataObjec
 	 */
 	@Override
 	public Object process(ComplexDataObject item) throws Exception {
-		Object[][] transformedObj = transformer.transform(new Object[][]{{item}});
+		Object[][] transformedObj = cache != null? cache.transform(transformer, item) : transformer.transform(new Object[][]{{item}});
 		
 		ComplexDataObject result = (ComplexDataObject)transformedObj[0][0];
 		
-		if(validator != null) {
-	        try {	
-				ValidationManager mgr = validator.get();
-				if(mgr == null) {
-					mgr = new ValidationManager();
-					validator.set(mgr);
-				}
-				if(failfast) {
-					mgr.validateByException(result);
-				} else {
-					// Capture all failures
-					final Collection<ValidationEvent> events = new LinkedList<ValidationEvent>();
-					
-					ValidationListener listener = new ValidationListener() {
-			            public void validationPassed(ValidationEvent ve) {
-			            }
-	
-			            public void validationFailed(ValidationEvent ve) {
-			                events.add(ve);
-			            }
-			        };
-			        
-			        mgr.addValidationListener(listener);
-			        
-			        try {
-				        if(!mgr.validateByEvents(result)) {
-				        	if(events.size() == 1) {
-				        		// Treat it as though we were validating by exception
-				        		mgr.setEventBased(false);
-				        		mgr.fireValidationEvent(events.iterator().next());
-				        	} else {
-				        		throw new C24CompoundValidationException(result, events);
-				        	}
-				        } 
-			        } finally {
-			        	mgr.removeValidationListener(listener);
-			        }
-				}
-			} catch(ValidationException vEx) {
-				throw new C24ValidationException("Failed to validate message: " + vEx.getLocalizedMessage(), result, vEx);
-			}
+		ValidationManagerPool validators = this.validators;
+		if(validators != null) {
+			validators.validate(result, failfast);
 		}
 		
-		if(javaSink != null) {
-			return javaSink.convertObject(result);
+		if(javaConverter != null) {
+			return javaConverter.convert(result);
 		} else {		
 			return result;
 		}
@@ -181,7 +140,7 @@ public class C24TransformItemProcessor implements ItemProcessor<ComplexDataObjec
 	 * @return True if if validates generated objects
 	 */
 	public boolean isValidating() {
-		return validator != null;
+		return validators != null;
 	}
 
 	/**
@@ -190,7 +149,7 @@ public class C24TransformItemProcessor implements ItemProcessor<ComplexDataObjec
 	 * @param validate 
 	 */
 	public void setValidation(boolean validate) {
-		validator = validate? new ThreadLocal<ValidationManager>() : null;
+		validators = validate? new ValidationManagerPool() : null;
 	}
 	
 	/**
@@ -198,20 +157,20 @@ public class C24TransformItemProcessor implements ItemProcessor<ComplexDataObjec
 	 */
 	@AfterStep
 	public void cleanup() {
-		// Release any validation managers we're holding; no guarantee the same thread pool will be used next time
-		if(validator != null) {
-			validator = new ThreadLocal<ValidationManager>();
+		// Release any validation managers we're holding
+		if(validators != null) {
+			validators = new ValidationManagerPool();
 		}
 	}
 	
 	
 	/**
-	 * Returns the sink being used if any
+	 * Returns the class of the Java Beans we're converting to, if any
 	 * 
-	 * @return The current JavaClassSink
+	 * @return The Java Bean class or null if we return CDOs
 	 */
 	public Class<?> getTargetClass() {
-		return javaSink != null? javaSink.getRootClass() : null;
+		return javaConverter != null? javaConverter.getTargetClass() : null;
 	}
 
 	/**
@@ -221,13 +180,30 @@ public class C24TransformItemProcessor implements ItemProcessor<ComplexDataObjec
 	 */
 	public void setTargetClass(Class<?> targetClass) {
 		if(targetClass != null) {
-			javaSink = new JavaClassSink();
-			javaSink.setRootClass(targetClass);
+			javaConverter = new JavaBeanConverter(targetClass);
 		} else {
-			javaSink = null;
+			javaConverter = null;
 		}
 	}
 
+	/**
+	 * Get the cache used to memoize the results of the transform, if any
+	 * 
+	 * @return The cache, null if every item is transformed
+	 */
+	public TransformCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Memoizes the results of the transform. Only use if the transform is a pure function of the cache's key.
+	 * 
+	 * @param cache The cache to use, or null to transform every item
+	 */
+	public void setCache(TransformCache cache) {
+		this.cache = cache;
+	}
+
 	/**
 	 * Do we abort on first failure or fully validate the object
 	 * @return True iff this processor will abort on first failure
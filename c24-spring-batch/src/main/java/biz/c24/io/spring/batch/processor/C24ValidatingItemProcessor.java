@@ -15,21 +15,12 @@
  */
 package biz.c24.io.spring.batch.processor;
 
-import java.util.Collection;
-import java.util.LinkedList;
-
 import org.springframework.batch.item.ExecutionContext;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.batch.item.ItemStream;
 import org.springframework.batch.item.ItemStreamException;
 
 import biz.c24.io.api.data.ComplexDataObject;
-import biz.c24.io.api.data.ValidationEvent;
-import biz.c24.io.api.data.ValidationException;
-import biz.c24.io.api.data.ValidationListener;
-import biz.c24.io.api.data.ValidationManager;
-import biz.c24.io.spring.batch.C24CompoundValidationException;
-import biz.c24.io.spring.batch.reader.C24ValidationException;
 
 /**
  * An ItemProcessor that validates a ComplexDataObject.
@@ -41,7 +32,7 @@ import biz.c24.io.spring.batch.reader.C24ValidationException;
  */
 public class C24ValidatingItemProcessor implements ItemProcessor<ComplexDataObject, ComplexDataObject>, ItemStream {
 	
-	private ThreadLocal<ValidationManager> validators = null;
+	private ValidationManagerPool validators = null;
 	
 	/**
 	 * Whether or not to abort on the first failure
@@ -54,53 +45,14 @@ public class C24ValidatingItemProcessor implements ItemProcessor<ComplexDataObje
 	 */
 	@Override
 	public ComplexDataObject process(ComplexDataObject item) throws Exception {
-		ValidationManager mgr = validators.get();
-		if(mgr == null) {
-			mgr = new ValidationManager();
-			validators.set(mgr);
-		}
-		try {
-			if(failfast) {
-				mgr.validateByException(item);
-			} else {
-				// Capture all failures
-				final Collection<ValidationEvent> events = new LinkedList<ValidationEvent>();
-				
-				ValidationListener listener = new ValidationListener() {
-		            public void validationPassed(ValidationEvent ve) {
-		            }
-	
-		            public void validationFailed(ValidationEvent ve) {
-		                events.add(ve);
-		            }
-		        };
-		        
-		        mgr.addValidationListener(listener);
-		        
-		        try {
-			        if(!mgr.validateByEvents(item)) {
-			        	if(events.size() == 1) {
-			        		// Treat it as though we were validating by exception
-			        		mgr.setEventBased(false);
-			        		mgr.fireValidationEvent(events.iterator().next());
-			        	} else {
-			        		throw new C24CompoundValidationException(item, events);
-			        	}
-			        } 
-		        } finally {
-		        	mgr.removeValidationListener(listener);
-		        }
-			}
-		} catch(ValidationException vEx) {
-			throw new C24ValidationException("Failed to validate message: " + vEx.getLocalizedMessage(), item, vEx);
-		}
+		validators.validate(item, failfast);
 		return item;
 	}
 
 	@Override
 	public void open(ExecutionContext executionContext)
 			throws ItemStreamException {
-		validators = new ThreadLocal<ValidationManager>();
+		validators = new ValidationManagerPool();
 		
 	}
 
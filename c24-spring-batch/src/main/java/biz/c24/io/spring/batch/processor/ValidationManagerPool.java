@@ -0,0 +1,127 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.processor;
+
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.data.ValidationEvent;
+import biz.c24.io.api.data.ValidationException;
+import biz.c24.io.api.data.ValidationListener;
+import biz.c24.io.api.data.ValidationManager;
+import biz.c24.io.spring.batch.C24CompoundValidationException;
+import biz.c24.io.spring.batch.reader.C24ValidationException;
+
+/**
+ * A pool of ValidationManagers.
+ * 
+ * Unlike a ThreadLocal, managers are only held by a thread for the duration of a single validation so processors
+ * can be called from short-lived threads, such as those created per task by an asynchronous executor, without each
+ * one creating and pinning its own manager.
+ * 
+ * Also provides the validation logic shared by the C24 processors and writers.
+ * 
+ * @author Andrew Elmore
+ */
+public class ValidationManagerPool {
+	
+	private final Queue<ValidationManager> managers = new ConcurrentLinkedQueue<ValidationManager>();
+	
+	/**
+	 * Borrows a ValidationManager, creating a new one if none are free
+	 * 
+	 * @return A ValidationManager for the exclusive use of the caller until it is released
+	 */
+	public ValidationManager acquire() {
+		ValidationManager mgr = managers.poll();
+		return mgr != null? mgr : new ValidationManager();
+	}
+	
+	/**
+	 * Returns a ValidationManager to the pool
+	 * 
+	 * @param mgr A ValidationManager previously acquired from this pool
+	 */
+	public void release(ValidationManager mgr) {
+		managers.offer(mgr);
+	}
+	
+	/**
+	 * Validates a CDO using a ValidationManager borrowed from the pool
+	 * 
+	 * @param cdo The object to validate
+	 * @param failfast Whether to stop at the first failure or collect all of them
+	 * @see #validate(ValidationManager, ComplexDataObject, boolean)
+	 */
+	public void validate(ComplexDataObject cdo, boolean failfast) {
+		ValidationManager mgr = acquire();
+		try {
+			validate(mgr, cdo, failfast);
+		} finally {
+			release(mgr);
+		}
+	}
+	
+	/**
+	 * Validates a CDO, either stopping at the first failure or collecting all of them.
+	 * A single failure is reported as a C24ValidationException, multiple ones as a C24CompoundValidationException.
+	 * 
+	 * @param mgr The ValidationManager to use
+	 * @param cdo The object to validate
+	 * @param failfast Whether to stop at the first failure or collect all of them
+	 */
+	public static void validate(ValidationManager mgr, ComplexDataObject cdo, boolean failfast) {
+		try {
+			if(failfast) {
+				mgr.validateByException(cdo);
+			} else {
+				// Capture all failures
+				final Collection<ValidationEvent> events = new LinkedList<ValidationEvent>();
+				
+				ValidationListener listener = new ValidationListener() {
+		            public void validationPassed(ValidationEvent ve) {
+		            }
+	
+		            public void validationFailed(ValidationEvent ve) {
+		                events.add(ve);
+		            }
+		        };
+		        
+		        mgr.addValidationListener(listener);
+		        
+		        try {
+			        if(!mgr.validateByEvents(cdo)) {
+			        	if(events.size() == 1) {
+			        		// Treat it as though we were validating by exception
+			        		mgr.setEventBased(false);
+			        		mgr.fireValidationEvent(events.iterator().next());
+			        	} else {
+			        		throw new C24CompoundValidationException(cdo, events);
+			        	}
+			        } 
+		        } finally {
+		        	mgr.removeValidationListener(listener);
+		        }
+			}
+		} catch(ValidationException vEx) {
+			throw new C24ValidationException("Failed to validate message: " + vEx.getLocalizedMessage(), cdo, vEx);
+		}
+	}
+
+}
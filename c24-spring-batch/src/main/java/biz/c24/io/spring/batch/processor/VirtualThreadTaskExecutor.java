@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.processor;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.TaskExecutor;
+
+/**
+ * TaskExecutor which runs each task on a new virtual thread where the JVM supports them (Java 21 onwards).
+ * 
+ * On earlier JVMs each task is run on a new platform thread instead. Either way there is no bound on the number of
+ * threads; concurrency must be bounded by the caller. The C24AsyncItemProcessor does so with its permit count, which
+ * defaults to the number of processors.
+ * 
+ * @author Andrew Elmore
+ */
+public class VirtualThreadTaskExecutor implements TaskExecutor, DisposableBean {
+	
+	private static Logger LOG = LoggerFactory.getLogger(VirtualThreadTaskExecutor.class);
+	
+	/**
+	 * Executors.newVirtualThreadPerTaskExecutor if this JVM has it
+	 */
+	private static final Method VIRTUAL_THREAD_FACTORY = findVirtualThreadFactory();
+	
+	/**
+	 * The virtual thread executor; null if they aren't supported
+	 */
+	private final ExecutorService executor;
+	
+	public VirtualThreadTaskExecutor() {
+		ExecutorService executor = null;
+		if(VIRTUAL_THREAD_FACTORY != null) {
+			try {
+				executor = (ExecutorService)VIRTUAL_THREAD_FACTORY.invoke(null);
+			} catch(Exception ex) {
+				LOG.warn("Failed to create virtual thread executor; using platform threads", ex);
+			}
+		} else {
+			LOG.info("Virtual threads are not supported by this JVM; using platform threads");
+		}
+		this.executor = executor;
+	}
+	
+	/**
+	 * Whether this JVM supports virtual threads
+	 */
+	public static boolean isSupported() {
+		return VIRTUAL_THREAD_FACTORY != null;
+	}
+	
+	/**
+	 * Whether tasks are being run on virtual threads
+	 */
+	public boolean isVirtual() {
+		return executor != null;
+	}
+	
+	private static Method findVirtualThreadFactory() {
+		try {
+			return Class.forName("java.util.concurrent.Executors").getMethod("newVirtualThreadPerTaskExecutor");
+		} catch(Exception ex) {
+			// Not supported
+			return null;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.core.task.TaskExecutor#execute(java.lang.Runnable)
+	 */
+	@Override
+	public void execute(Runnable task) {
+		if(executor != null) {
+			executor.execute(task);
+		} else {
+			Thread thread = new Thread(task, "C24AsyncTask");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Stops accepting new tasks. Tasks already submitted are allowed to complete.
+	 */
+	@Override
+	public void destroy() {
+		if(executor != null) {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -24,6 +24,7 @@ import biz.c24.io.api.data.ValidationManager;
 import biz.c24.io.api.presentation.Source;
 import biz.c24.io.api.presentation.TextualSource;
 import biz.c24.io.spring.batch.C24CompoundValidationException;
+import biz.c24.io.spring.batch.ItemSequence;
 import biz.c24.io.spring.batch.reader.source.SplittingReaderSource;
 import biz.c24.io.spring.batch.reader.source.SplittingReader;
 import biz.c24.io.spring.core.C24Model;
@@ -31,8 +32,12 @@ import biz.c24.io.spring.source.SourceFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.annotation.AfterChunk;
+import org.springframework.batch.core.annotation.AfterChunkError;
 import org.springframework.batch.core.annotation.AfterStep;
+import org.springframework.batch.core.annotation.BeforeChunk;
 import org.springframework.batch.core.annotation.BeforeStep;
+import org.springframework.batch.core.scope.context.ChunkContext;
 import org.springframework.batch.item.ItemReader;
 import org.springframework.batch.item.NonTransientResourceException;
 import org.springframework.batch.item.ParseException;
@@ -44,7 +49,10 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.LinkedList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingDeque;
 import java.util.regex.Pattern;
 
 /**
@@ -59,6 +67,13 @@ import java.util.regex.Pattern;
  * 
  * In all cases the optional validation takes place in parallel if multiple threads are used.
  * 
+ * If an ItemSequence is set, each item is allocated a sequence number as it is extracted from the source so that a
+ * C24ItemWriter sharing the ItemSequence can write its output in input order. Each thread extracts a block of 
+ * consecutive elements at a time (or, if not splitting, parses a block of consecutive items while holding the shared
+ * parser) so that the items in a chunk are contiguous in the input; the ItemSequence's block size must match the step's commit interval and an IllegalStateException is thrown as soon as a
+ * chunk is found to be larger or smaller than a block. Once a failed read has been skipped, chunks no longer line up 
+ * with blocks and these checks are abandoned.
+ * 
  * @author Andrew Elmore
  */
 public class C24ItemReader<Result> implements ItemReader<Result> {
@@ -120,6 +135,32 @@ public class C24ItemReader<Result> implements ItemReader<Result> {
 	 */
 	private ParseListener<Object, Result> parseListener = null;
 	
+	/**
+	 * Optional; if set, used to record the order in which items are read
+	 */
+	private ItemSequence itemSequence = null;
+	
+	/**
+	 * Elements this thread has extracted from a shared reader but not yet parsed (or, if not splitting, items it has
+	 * parsed but not yet returned), if we're sequencing items
+	 */
+	private ThreadLocal<Deque<ElementContext>> extracted = new ThreadLocal<Deque<ElementContext>>();
+	
+	/**
+	 * Every thread's extracted elements, so that they can be picked up by other threads once the source is exhausted
+	 */
+	private Collection<Deque<ElementContext>> allExtracted = new ConcurrentLinkedQueue<Deque<ElementContext>>();
+	
+	/**
+	 * Tracks this thread's use of blocks during its current chunk; null outside of a chunk
+	 */
+	private ThreadLocal<BlockTracker> blockTracker = new ThreadLocal<BlockTracker>();
+	
+	/**
+	 * Whether chunks still line up with the ItemSequence's blocks; a skipped read throws them out
+	 */
+	private volatile boolean blocksAligned = true;
+	
 	
 	public C24ItemReader() {
 
@@ -135,6 +176,9 @@ public class C24ItemReader<Result> implements ItemReader<Result> {
 		if(elementStopPattern != null) {
 			Assert.notNull(elementStartPattern, "elementStopPattern can only be used if an elementStartPattern is also set");
 		}
+		if(itemSequence != null) {
+			Assert.isTrue(itemSequence.getBlockSize() > 0, "The ItemSequence's blockSize must be set to the step's commit interval");
+		}
 	}
 	
 	/**
@@ -152,6 +196,23 @@ public class C24ItemReader<Result> implements ItemReader<Result> {
 	public void setParseListener(ParseListener<Object, Result> parseListener) {
 		this.parseListener = parseListener;
 	}
+	
+	/**
+	 * Get the ItemSequence used to record the order in which items are read (if any)
+	 * @return The ItemSequence, null if there isn't one.
+	 */
+	public ItemSequence getItemSequence() {
+		return itemSequence;
+	}
+
+	/**
+	 * Sets an ItemSequence to record the order in which items are read. Share it with a C24ItemWriter to have
+	 * output written in input order.
+	 * @param itemSequence The ItemSequence to use, null to stop sequencing items
+	 */
+	public void setItemSequence(ItemSequence itemSequence) {
+		this.itemSequence = itemSequence;
+	}
 
 	/**
 	 * Returns the element type that we will attempt to parse from the source
@@ -290,6 +351,10 @@ public class C24ItemReader<Result> implements ItemReader<Result> {
 	 */
 	@BeforeStep
 	public void setup(StepExecution stepExecution) {		
+		if(itemSequence != null) {
+			itemSequence.reset();
+		}
+		blocksAligned = true;
 		source.initialise(stepExecution);
 	}
 	
@@ -301,9 +366,65 @@ public class C24ItemReader<Result> implements ItemReader<Result> {
 		if(validator != null) {
 			validator = new ThreadLocal<ValidationManager>();
 		}
+		extracted = new ThreadLocal<Deque<ElementContext>>();
+		allExtracted = new ConcurrentLinkedQueue<Deque<ElementContext>>();
+		blockTracker = new ThreadLocal<BlockTracker>();
 		source.close();
 	}
 	
+	/**
+	 * Starts tracking the blocks this thread extracts during the chunk, if we're sequencing items
+	 * 
+	 * @param context The chunk context
+	 */
+	@BeforeChunk
+	public void beforeChunk(ChunkContext context) {
+		if(itemSequence != null) {
+			blockTracker.set(new BlockTracker());
+		}
+	}
+	
+	/**
+	 * Checks that the chunk used up the whole of this thread's block, if we're sequencing items. Any elements left
+	 * over would be read as part of the next chunk, putting it out of step with the blocks.
+	 * 
+	 * @param context The chunk context
+	 */
+	@AfterChunk
+	public void afterChunk(ChunkContext context) {
+		BlockTracker tracker = blockTracker.get();
+		blockTracker.remove();
+		Deque<ElementContext> elements = extracted.get();
+		if(tracker != null && blocksAligned && elements != null && !elements.isEmpty()) {
+			throw new IllegalStateException("The step's commit interval is smaller than the ItemSequence's blockSize of " 
+					+ itemSequence.getBlockSize() + "; they must match for output to be written in input order");
+		}
+	}
+	
+	/**
+	 * Stops tracking the blocks this thread extracts
+	 * 
+	 * @param context The chunk context
+	 */
+	@AfterChunkError
+	public void afterChunkError(ChunkContext context) {
+		blockTracker.remove();
+	}
+	
+	/**
+	 * A thread's use of blocks during a chunk
+	 */
+	private static class BlockTracker {
+		/**
+		 * Whether the thread has extracted a full block
+		 */
+		private boolean fullBlock = false;
+		/**
+		 * Whether the thread is part way through a read; still set at the start of the next one if it failed
+		 */
+		private boolean reading = false;
+	}
+	
 
 	/**
 	 * Structure to associate a to-be-parsed element with externally supplied context.
@@ -319,6 +440,14 @@ public class C24ItemReader<Result> implements ItemReader<Result> {
 		}
 		public Object context;
 		public String element;
+		/**
+		 * The element's ItemSequence sequence number; -1 if not sequenced
+		 */
+		public long sequence = -1;
+		/**
+		 * The item if it was parsed as it was extracted, rather than element holding its text
+		 */
+		public ComplexDataObject item = null;
 	}
 	
 	
@@ -400,6 +529,141 @@ public class C24ItemReader<Result> implements ItemReader<Result> {
 		return context;
 	}
 	
+	/**
+	 * Gets the next element for this thread to parse when sequencing items.
+	 * Extracts a block of consecutive elements from the SplittingReader at a time and allocates each its sequence 
+	 * number while still holding the reader so that sequence numbers follow the order of the input.
+	 * 
+	 * Once the reader is exhausted, picks up elements that other threads have extracted but not yet started on; 
+	 * those threads may have already completed their final chunk. The items will still be written but not 
+	 * necessarily in input order.
+	 * 
+	 * @param reader The SplittingReader to extract elements from
+	 */
+	private ElementContext nextSequencedElement(SplittingReader reader) {
+		Deque<ElementContext> elements = getExtracted();
+		
+		ElementContext context = elements.pollFirst();
+		if(context == null) {
+			BlockTracker tracker = startBlock();
+			synchronized(reader) {
+				for(int i = 0; i < itemSequence.getBlockSize(); i++) {
+					ElementContext extractedContext = readElement(reader);
+					if(extractedContext.element == null || extractedContext.element.trim().length() == 0) {
+						break;
+					}
+					extractedContext.sequence = itemSequence.allocate();
+					elements.addLast(extractedContext);
+				}
+			}
+			endBlock(tracker, elements);
+			context = elements.pollFirst();
+		}
+		
+		if(context == null) {
+			// The reader is exhausted; see whether anyone else has elements left over
+			context = stealExtracted();
+		}
+		
+		// If we still have nothing, an empty element will trigger discarding the parser
+		return context != null? context : new ElementContext("", null);
+	}
+	
+	/**
+	 * Gets the next item for this thread when sequencing items without splitting.
+	 * Parses a block of consecutive items from the shared Parser at a time and allocates each its sequence number 
+	 * while still holding the parser, so that, as when splitting, each chunk's items are contiguous in the input.
+	 * 
+	 * Once the parser is exhausted, picks up items that other threads have parsed but not yet returned.
+	 * 
+	 * @param parser The Parser to parse items from
+	 * @return The item's context, holding the parsed item; null if there is nothing left
+	 */
+	private ElementContext nextSequencedItem(Parser parser) throws IOException {
+		Deque<ElementContext> elements = getExtracted();
+		
+		ElementContext context = elements.pollFirst();
+		if(context == null) {
+			BlockTracker tracker = startBlock();
+			synchronized(parser) {
+				for(int i = 0; i < itemSequence.getBlockSize(); i++) {
+					ComplexDataObject item = parser.read();
+					if(item == null || (item.getTotalAttrCount() == 0 && item.getTotalElementCount() == 0)) {
+						break;
+					}
+					ElementContext parsedContext = new ElementContext(null, null);
+					parsedContext.item = item;
+					parsedContext.sequence = itemSequence.allocate();
+					elements.addLast(parsedContext);
+				}
+			}
+			endBlock(tracker, elements);
+			context = elements.pollFirst();
+		}
+		
+		if(context == null) {
+			// The parser is exhausted; see whether anyone else has items left over
+			context = stealExtracted();
+		}
+		
+		return context;
+	}
+	
+	/**
+	 * Gets this thread's extracted but not yet returned elements
+	 */
+	private Deque<ElementContext> getExtracted() {
+		Deque<ElementContext> elements = extracted.get();
+		if(elements == null) {
+			elements = new LinkedBlockingDeque<ElementContext>();
+			extracted.set(elements);
+			allExtracted.add(elements);
+		}
+		return elements;
+	}
+	
+	/**
+	 * Called before this thread extracts a block. Fails if its chunk has already had a whole block.
+	 * 
+	 * @return The thread's BlockTracker; null if it isn't in a chunk
+	 */
+	private BlockTracker startBlock() {
+		BlockTracker tracker = blockTracker.get();
+		if(tracker != null && tracker.fullBlock && blocksAligned) {
+			// Our chunk has already had a whole block and wants more
+			throw new IllegalStateException("The step's commit interval is larger than the ItemSequence's blockSize of " 
+					+ itemSequence.getBlockSize() + "; they must match for output to be written in input order");
+		}
+		return tracker;
+	}
+	
+	/**
+	 * Called once this thread has extracted a block
+	 * 
+	 * @param tracker The thread's BlockTracker; null if it isn't in a chunk
+	 * @param elements The thread's extracted elements
+	 */
+	private void endBlock(BlockTracker tracker, Deque<ElementContext> elements) {
+		if(tracker != null && elements.size() == itemSequence.getBlockSize()) {
+			tracker.fullBlock = true;
+		}
+	}
+	
+	/**
+	 * Takes an element that another thread extracted but hasn't started on
+	 * 
+	 * @return The element; null if there are none
+	 */
+	private ElementContext stealExtracted() {
+		for(Deque<ElementContext> otherElements : allExtracted) {
+			ElementContext context = otherElements.pollLast();
+			if(context != null) {
+				return context;
+			}
+		}
+		return null;
+	}
+	
 	/**
 	 * Called once a thread determines it has exhausted the current parser (more accurately, the underlying Reader).
 	 * Triggers creation of an appropriate new Parser next time getParser is called.
@@ -538,6 +802,16 @@ public class C24ItemReader<Result> implements ItemReader<Result> {
 	public Result read() throws UnexpectedInputException,
 			ParseException, NonTransientResourceException {
 		
+		BlockTracker tracker = blockTracker.get();
+		if(tracker != null) {
+			if(tracker.reading && blocksAligned) {
+				// The last read failed and was skipped, so this chunk will take an extra element from the next block
+				blocksAligned = false;
+				LOG.warn("Skipped a failed read; chunks no longer line up with the ItemSequence's blocks so output may not be in input order");
+			}
+			tracker.reading = true;
+		}
+		
 		ComplexDataObject result = null;
 		Object context = null;
 		Parser parser = null;
@@ -558,9 +832,13 @@ public class C24ItemReader<Result> implements ItemReader<Result> {
                 }
 				
 				// Get the textual source for an element from the reader
-				ElementContext elementContext = readElement(reader);
+				ElementContext elementContext = itemSequence != null? nextSequencedElement(reader) : readElement(reader);
 				String element = elementContext.element;
 				context = elementContext.context;
+				if(elementContext.sequence >= 0) {
+					// Record it before parsing; even if it fails we've consumed its place in the sequence
+					itemSequence.record(elementContext.sequence);
+				}
 				
 				// If we got something then parse it
 				if(element != null && element.trim().length() > 0) {
@@ -582,7 +860,15 @@ public class C24ItemReader<Result> implements ItemReader<Result> {
 			} else {
 				// We'll parse CDOs from the parser in serial
 				try {
-					result = parser.read();
+					if(itemSequence != null) {
+						ElementContext itemContext = nextSequencedItem(parser);
+						if(itemContext != null) {
+							itemSequence.record(itemContext.sequence);
+							result = itemContext.item;
+						}
+					} else {
+						result = parser.read();
+					}
 				} catch(IOException ioEx) {
 					throw new ParseException("Failed to parse CDO from " + source.getName(), ioEx);
 				} finally {
@@ -644,7 +930,11 @@ public class C24ItemReader<Result> implements ItemReader<Result> {
 		}
 		
 		// If we have a ParseListener registered, allow it to intercept the return value
-		return parseListener == null || result == null? (Result)result : parseListener.process(result, context);
+		Result item = parseListener == null || result == null? (Result)result : parseListener.process(result, context);
+		if(tracker != null) {
+			tracker.reading = false;
+		}
+		return item;
 		
 	}
 	
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.writer;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemWriter;
+
+import biz.c24.io.spring.batch.writer.source.AsyncWriterSource;
+import biz.c24.io.spring.batch.writer.source.RestartableWriterSource;
+import biz.c24.io.spring.batch.writer.source.WriterSource;
+
+/**
+ * Base class for ItemWriters which write their output to a WriterSource.
+ * 
+ * Manages the lifecycle of the WriterSource and, if it is a RestartableWriterSource, its restart: the length of the
+ * output is saved in the step's ExecutionContext as each chunk is committed and, if the step is restarted, the source
+ * is asked to truncate its output to that length and append to it. As with Spring Batch's own writers, state should
+ * not be saved in multi-threaded steps, where output from chunks yet to be committed may already have been written.
+ * 
+ * Subclasses open the source from their BeforeStep callback, as it needs the StepExecution, and close it from their
+ * AfterStep callback.
+ * 
+ * @author Andrew Elmore
+ */
+public abstract class AbstractWriterSourceItemWriter<T> implements ItemWriter<T>, ItemStream {
+	
+	private static Logger LOG = LoggerFactory.getLogger(AbstractWriterSourceItemWriter.class);
+	
+	private static final String POSITION_KEY = "position";
+	
+	private WriterSource writerSource = null;
+	private String name;
+	private boolean saveState = true;
+	private volatile boolean initialised = false;
+	
+	/**
+	 * @param name The default name used to prefix the keys stored in the ExecutionContext
+	 */
+	protected AbstractWriterSourceItemWriter(String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * Initialises the WriterSource, carrying on from the last commit if the step is being restarted
+	 * 
+	 * @param stepExecution The step execution context
+	 */
+	protected void openWriterSource(StepExecution stepExecution) {
+		ExecutionContext executionContext = stepExecution.getExecutionContext();
+		String positionKey = getExecutionContextKey(POSITION_KEY);
+		if(saveState && writerSource instanceof RestartableWriterSource && executionContext.containsKey(positionKey)) {
+			// We're being restarted; carry on from the last commit
+			long position = executionContext.getLong(positionKey);
+			LOG.info("Restarting output from position {}", position);
+			((RestartableWriterSource)writerSource).initialise(stepExecution, position);
+		} else {
+			writerSource.initialise(stepExecution);
+		}
+		initialised = true;
+	}
+	
+	/**
+	 * Closes the WriterSource
+	 */
+	protected void closeWriterSource() {
+		initialised = false;
+		writerSource.close();
+	}
+	
+	/**
+	 * Blocks until everything handed to the WriterSource has actually been written, so that a chunk isn't committed
+	 * before its output is. Only has any effect for an AsyncWriterSource.
+	 */
+	protected void awaitWritten() throws IOException {
+		if(writerSource instanceof AsyncWriterSource) {
+			((AsyncWriterSource)writerSource).flush();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.batch.item.ItemStream#open(org.springframework.batch.item.ExecutionContext)
+	 */
+	@Override
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		// The WriterSource is opened by the BeforeStep callback as it needs the StepExecution
+	}
+	
+	/**
+	 * Records how much output has been written so that a restart can pick up from here
+	 * 
+	 * @param executionContext The step's execution context
+	 */
+	@Override
+	public void update(ExecutionContext executionContext) throws ItemStreamException {
+		if(saveState && initialised && writerSource instanceof RestartableWriterSource) {
+			executionContext.putLong(getExecutionContextKey(POSITION_KEY), ((RestartableWriterSource)writerSource).getPosition());
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.batch.item.ItemStream#close()
+	 */
+	@Override
+	public void close() throws ItemStreamException {
+		// The WriterSource is closed by the AfterStep callback
+	}
+	
+	/**
+	 * The key under which we store a value in the ExecutionContext
+	 */
+	private String getExecutionContextKey(String key) {
+		return name + "." + key;
+	}
+	
+	/**
+	 * Gets the WriterSource that output is written to
+	 * 
+	 * @return The WriterSource
+	 */
+	public WriterSource getWriterSource() {
+		return writerSource;
+	}
+	
+	/**
+	 * Sets the WriterSource that output is written to
+	 * 
+	 * @param writerSource The WriterSource to use
+	 */
+	public void setWriterSource(WriterSource writerSource) {
+		this.writerSource = writerSource;
+	}
+	
+	/**
+	 * The name used to prefix the keys this writer stores in the ExecutionContext
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Sets the name used to prefix the keys this writer stores in the ExecutionContext.
+	 * Must be unique within a step. Defaults to the short name of the writer's class.
+	 * 
+	 * @param name The name
+	 */
+	public void setName(String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * Whether the position of the output is saved so that the step can be restarted
+	 */
+	public boolean isSaveState() {
+		return saveState;
+	}
+	
+	/**
+	 * Sets whether the position of the output is saved in the ExecutionContext so that, if the WriterSource is a
+	 * RestartableWriterSource, a restarted step appends to the output of the failed one. Defaults to true.
+	 * 
+	 * @param saveState Whether to save state
+	 */
+	public void setSaveState(boolean saveState) {
+		this.saveState = saveState;
+	}
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.writer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.util.Assert;
+
+/**
+ * ItemWriter which waits for the results of a C24AsyncItemProcessor and passes them on to a delegate ItemWriter.
+ * 
+ * Results are passed on in the order their items were read. Items the delegate processor filtered out (ie for 
+ * which it returned null) are dropped. If processing an item failed, the exception it failed with is rethrown so 
+ * that the step's skip and retry policies see the original exception.
+ * 
+ * If the delegate is an ItemStream the calls are passed on to it. Step listener annotations on the delegate, such
+ * as those on a C24ItemWriter, are not picked up through this writer; register the delegate as a listener on the step.
+ * 
+ * @author Andrew Elmore
+ */
+public class C24AsyncItemWriter<T> implements ItemWriter<Future<T>>, ItemStream {
+	
+	private ItemWriter<T> delegate = null;
+	
+	/**
+	 * Asserts that the object has been properly configured
+	 */
+	@PostConstruct
+	public void validateConfiguration() {
+		Assert.notNull(delegate, "Delegate must be set");
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.batch.item.ItemWriter#write(java.util.List)
+	 */
+	@Override
+	public void write(List<? extends Future<T>> items) throws Exception {
+		List<T> results = new ArrayList<T>(items.size());
+		for(Future<T> future : items) {
+			try {
+				T result = future.get();
+				if(result != null) {
+					results.add(result);
+				}
+			} catch(ExecutionException exEx) {
+				Throwable cause = exEx.getCause();
+				if(cause instanceof Exception) {
+					throw (Exception)cause;
+				} else if(cause instanceof Error) {
+					throw (Error)cause;
+				}
+				throw exEx;
+			}
+		}
+		
+		delegate.write(results);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.batch.item.ItemStream#open(org.springframework.batch.item.ExecutionContext)
+	 */
+	@Override
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		if(delegate instanceof ItemStream) {
+			((ItemStream)delegate).open(executionContext);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.batch.item.ItemStream#update(org.springframework.batch.item.ExecutionContext)
+	 */
+	@Override
+	public void update(ExecutionContext executionContext) throws ItemStreamException {
+		if(delegate instanceof ItemStream) {
+			((ItemStream)delegate).update(executionContext);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.batch.item.ItemStream#close()
+	 */
+	@Override
+	public void close() throws ItemStreamException {
+		if(delegate instanceof ItemStream) {
+			((ItemStream)delegate).close();
+		}
+	}
+
+	/**
+	 * Get the ItemWriter that results are passed on to
+	 * 
+	 * @return The delegate ItemWriter
+	 */
+	public ItemWriter<T> getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * Set the ItemWriter that results are passed on to
+	 * 
+	 * @param delegate The ItemWriter to write the results
+	 */
+	@Required
+	public void setDelegate(ItemWriter<T> delegate) {
+		this.delegate = delegate;
+	}
+
+}
@@ -16,36 +16,82 @@
 package biz.c24.io.spring.batch.writer;
 
 import java.io.IOException;
-import java.io.StringWriter;
-import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.PostConstruct;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.annotation.AfterChunk;
+import org.springframework.batch.core.annotation.AfterChunkError;
 import org.springframework.batch.core.annotation.AfterStep;
 import org.springframework.batch.core.annotation.BeforeStep;
-import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.core.scope.context.ChunkContext;
 import org.springframework.beans.factory.annotation.Required;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 
 import biz.c24.io.api.data.ComplexDataObject;
 import biz.c24.io.api.presentation.Sink;
+import biz.c24.io.spring.batch.ItemSequence;
+import biz.c24.io.spring.batch.ItemSequence.Range;
+import biz.c24.io.spring.batch.writer.source.ByteWriterSource;
+import biz.c24.io.spring.batch.writer.source.PartitionedWriterSource;
 import biz.c24.io.spring.batch.writer.source.WriterSource;
 
 /**
  * ItemWriter that sinks and writes ComplexDataObjects to a Writer.
  * 
- * Allows concurrent calls to write but synchronises on individual CDO write to the writer.
+ * Either a WriterSource or a PartitionedWriterSource must be set, but not both.
+ * 
+ * Allows concurrent calls to write. Each thread sinks its chunk into its own reusable buffer; if the WriterSource
+ * is a ByteWriterSource the chunk is sunk straight to bytes in the source's encoding and handed over in a single
+ * write, otherwise it is written to the source's Writer while synchronised on it.
+ * 
+ * By default chunks are written in the order in which threads finish sinking them. If an ItemSequence shared with
+ * the C24ItemReader is set, chunks are instead written in the order their items were read; chunks which are ready
+ * early are held in a reorder buffer of bounded size until the chunks ahead of them have been written. The peak size
+ * of the reorder buffer and the time spent waiting for room in it are logged at the end of the step. See ItemSequence
+ * for the cases in which output can still be written out of order.
+ * 
+ * If the WriterSource is an AsyncWriterSource, write waits for the chunk's output to be written by the I/O thread
+ * before returning so that the chunk isn't committed until it has been, and any failure fails the chunk.
+ * 
+ * If a PartitionedWriterSource is set, each chunk is split up by partition and each partition's share is written to
+ * it separately. Ordering and restart are not supported in this case.
+ * 
+ * If the WriterSource is a RestartableWriterSource, a restarted step appends to the output of the failed one; see
+ * AbstractWriterSourceItemWriter.
  * 
  * @author Andrew Elmore
  */
-public class C24ItemWriter implements ItemWriter<ComplexDataObject>{
+public class C24ItemWriter extends AbstractWriterSourceItemWriter<ComplexDataObject> {
+	
+	private static Logger LOG = LoggerFactory.getLogger(C24ItemWriter.class);
 	
 	private Sink templateSink = null;
-	private ThreadLocal<Sink> sink = new ThreadLocal<Sink>();
-	private WriterSource writerSource = null;
-
+	private ThreadLocal<SinkBuffer> buffer = new ThreadLocal<SinkBuffer>();
+	
+	/**
+	 * Set instead of the WriterSource to spread the output over a number of partitions
+	 */
+	private PartitionedWriterSource partitionedWriterSource = null;
+	
+	/**
+	 * Optional; if set, chunks are written in the order their items were read
+	 */
+	private ItemSequence itemSequence = null;
+	private int reorderCapacity = 16 * 1024 * 1024;
+	private long reorderTimeout = 60000;
+	private volatile ReorderBuffer reorderBuffer = null;
+	
+	public C24ItemWriter() {
+		super(ClassUtils.getShortName(C24ItemWriter.class));
+	}
 	
 	/**
 	 * Asserts that the object has been properly configured
@@ -53,7 +99,12 @@ public class C24ItemWriter implements ItemWriter<ComplexDataObject>{
 	@PostConstruct
 	public void validateConfiguration() {
 		Assert.notNull(templateSink, "Sink must be set");
-		Assert.notNull(writerSource, "WriterSource must be set");
+		Assert.isTrue(getWriterSource() != null || partitionedWriterSource != null, 
+				"Either a WriterSource or a PartitionedWriterSource must be set");
+		Assert.isTrue(getWriterSource() == null || partitionedWriterSource == null, 
+				"Only one of WriterSource and PartitionedWriterSource may be set");
+		Assert.isTrue(itemSequence == null || partitionedWriterSource == null, 
+				"An ItemSequence cannot be used with a PartitionedWriterSource");
 	}
 	
 	/**
@@ -63,7 +114,14 @@ public class C24ItemWriter implements ItemWriter<ComplexDataObject>{
 	 */
 	@BeforeStep
 	public void setup(StepExecution stepExecution) {	
-		writerSource.initialise(stepExecution);
+		if(partitionedWriterSource != null) {
+			partitionedWriterSource.initialise(stepExecution);
+		} else {
+			openWriterSource(stepExecution);
+		}
+		if(itemSequence != null) {
+			reorderBuffer = new ReorderBuffer(getWriterSource(), reorderCapacity, reorderTimeout);
+		}
 	}
 	
 	
@@ -72,50 +130,77 @@ public class C24ItemWriter implements ItemWriter<ComplexDataObject>{
 	 */
 	@AfterStep
 	public void cleanup() {
-		writerSource.close();
+		try {
+			ReorderBuffer reorderBuffer = this.reorderBuffer;
+			if(reorderBuffer != null) {
+				this.reorderBuffer = null;
+				LOG.info("Reorder buffer peaked at {} chunks ({} bytes/chars); chunks waited {}ms for room", 
+						new Object[] {reorderBuffer.getMaxPendingChunks(), reorderBuffer.getMaxBufferedSize(), reorderBuffer.getStallTime()});
+				// Only non-empty if the step failed; write what we have rather than lose it
+				int unordered = reorderBuffer.flush();
+				if(unordered > 0) {
+					LOG.warn("Wrote {} chunks out of order as the chunks ahead of them were never written", unordered);
+				}
+			}
+		} catch(IOException ioEx) {
+			throw new RuntimeException(ioEx);
+		} finally {
+			if(partitionedWriterSource != null) {
+				partitionedWriterSource.close();
+			} else {
+				closeWriterSource();
+			}
+			// Release the buffers we're holding; no guarantee the same thread pool will be used next time
+			buffer = new ThreadLocal<SinkBuffer>();
+		}
 	}
 	
 	/**
-	 * Writes the contents of the StringWriter to our output file
+	 * Makes sure that items read on this thread which didn't make it to write, for example because they were
+	 * filtered or the chunk failed, don't hold up the chunks behind them
 	 * 
-	 * @param writer The StringWriter to read the data from
+	 * @param context The chunk context
 	 */
-	private void write(Sink sink) throws IOException {
-		
-		StringWriter writer = (StringWriter)sink.getWriter();
-		
-		writer.flush();
-		
-		StringBuffer buffer = writer.getBuffer();
-		
-		// Sadly StringBuffer doesn't allow us read-only access to its internal array, so we have to copy
-		String element = buffer.toString();
-		
-		Writer outputWriter = writerSource.getWriter();
-		synchronized(outputWriter) {
-			outputWriter.write(element);
+	@AfterChunk
+	public void afterChunk(ChunkContext context) throws IOException {
+		ReorderBuffer reorderBuffer = this.reorderBuffer;
+		if(reorderBuffer != null) {
+			reorderBuffer.discard(itemSequence.collect());
 		}
-		
-		// Reset the buffer for next time
-		buffer.setLength(0);
-		
+	}
+	
+	/**
+	 * @see #afterChunk(ChunkContext)
+	 * 
+	 * @param context The chunk context
+	 */
+	@AfterChunkError
+	public void afterChunkError(ChunkContext context) throws IOException {
+		afterChunk(context);
 	}
 
 	/**
-	 * Get a thread-safe Sink
+	 * Get this thread's SinkBuffer
 	 */
-	private Sink getThreadsafeSink() {
+	private SinkBuffer getThreadsafeBuffer() throws IOException {
 		
-		Sink sink = this.sink.get();
+		SinkBuffer buffer = this.buffer.get();
 		
-		if(sink == null) {
-			// First time this thread has used a sink; create one
-			sink = (Sink)templateSink.clone();
-			sink.setWriter(new StringWriter());
-			this.sink.set(sink);
+		if(buffer == null) {
+			// First time this thread has written; create one
+			// If the source can take encoded data, sink straight to bytes in its encoding
+			WriterSource writerSource = getWriterSource();
+			String encoding = null;
+			if(partitionedWriterSource != null) {
+				encoding = partitionedWriterSource.getEncoding();
+			} else if(writerSource instanceof ByteWriterSource) {
+				encoding = ((ByteWriterSource)writerSource).getEncoding();
+			}
+			buffer = new SinkBuffer(templateSink, encoding);
+			this.buffer.set(buffer);
 		}	
 		
-		return sink;
+		return buffer;
 	}
 	
 	/*
@@ -125,20 +210,93 @@ public class C24ItemWriter implements ItemWriter<ComplexDataObject>{
 	@Override
 	public void write(List<? extends ComplexDataObject> items) throws Exception {
 		
-		// Get a sink to use
-		Sink sink = getThreadsafeSink();
+		// Get a buffer to use
+		SinkBuffer buffer = getThreadsafeBuffer();
+		WriterSource writerSource = getWriterSource();
 
-		
-		for(ComplexDataObject cdo : items) {
-			// Sink the CDO
-			sink.writeObject(cdo);
+		try {
+			if(partitionedWriterSource != null) {
+				writePartitioned(buffer, items);
+				return;
+			}
+			
+			for(ComplexDataObject cdo : items) {
+				// Sink the CDO
+				buffer.write(cdo);
+			}
+			
+			// Now write the whole lot out
+			ReorderBuffer reorderBuffer = this.reorderBuffer;
+			List<Range> ranges = reorderBuffer != null? itemSequence.collect() : null;
+			if(ranges == null || ranges.isEmpty()) {
+				// Not ordering, or nothing to order these items against (e.g. they're being retried); write them now
+				buffer.writeTo(writerSource);
+				buffer.reset();
+			} else {
+				// The reorder buffer may keep hold of our buffer, in which case it may hand us another one
+				SinkBuffer next = reorderBuffer.submit(buffer, ranges);
+				if(next != buffer) {
+					this.buffer.set(next);
+				}
+			}
+			
+			// Don't let the chunk commit until its output has actually been written
+			awaitWritten();
+		} catch(Exception ex) {
+			// The buffer could be left holding part of a CDO; don't reuse it
+			this.buffer.remove();
+			ReorderBuffer reorderBuffer = this.reorderBuffer;
+			if(reorderBuffer != null) {
+				// Don't hold up the chunks behind us
+				reorderBuffer.discard(itemSequence.collect());
+			}
+			throw ex;
 		}
-		
-		// Now write the whole lot out
-		write(sink);
 
 	}
 	
+	/**
+	 * Writes each partition's share of the items to it
+	 * 
+	 * @param buffer The buffer to sink the items to
+	 * @param items The items to write
+	 */
+	private void writePartitioned(SinkBuffer buffer, List<? extends ComplexDataObject> items) throws IOException {
+		PartitionedWriterSource partitionedSource = partitionedWriterSource;
+		
+		// Group the items by partition, preserving their order
+		Map<ByteWriterSource, List<ComplexDataObject>> partitions = new LinkedHashMap<ByteWriterSource, List<ComplexDataObject>>();
+		try {
+			for(ComplexDataObject cdo : items) {
+				ByteWriterSource partition = partitionedSource.acquire(cdo);
+				List<ComplexDataObject> partitionItems = partitions.get(partition);
+				if(partitionItems == null) {
+					partitionItems = new ArrayList<ComplexDataObject>();
+					partitions.put(partition, partitionItems);
+				}
+				partitionItems.add(cdo);
+			}
+			
+			while(!partitions.isEmpty()) {
+				Map.Entry<ByteWriterSource, List<ComplexDataObject>> entry = partitions.entrySet().iterator().next();
+				for(ComplexDataObject cdo : entry.getValue()) {
+					buffer.write(cdo);
+				}
+				buffer.writeTo(entry.getKey());
+				long length = buffer.size();
+				buffer.reset();
+				
+				partitions.remove(entry.getKey());
+				partitionedSource.release(entry.getKey(), entry.getValue().size(), length);
+			}
+		} finally {
+			// Release anything we didn't get round to writing
+			for(Map.Entry<ByteWriterSource, List<ComplexDataObject>> entry : partitions.entrySet()) {
+				partitionedSource.release(entry.getKey(), entry.getValue().size(), 0);
+			}
+		}
+	}
+	
 	/**
 	 * The prototype sink used by this C24ItemWriter
 	 * 
@@ -159,22 +317,78 @@ public class C24ItemWriter implements ItemWriter<ComplexDataObject>{
 	}
 	
 	/**
-	 * Gets the WriterSource used by this C24ItemWriter to get a Writer to persist sunk ComplexDataObjects to
+	 * Gets the PartitionedWriterSource the output is spread over
 	 * 
-	 * @return The WriterSource used by this C24ItemWriter
+	 * @return The PartitionedWriterSource; null if output is written to the WriterSource
 	 */
-	public WriterSource getWriterSource() {
-		return writerSource;
+	public PartitionedWriterSource getPartitionedWriterSource() {
+		return partitionedWriterSource;
 	}
 	
 	/**
-	 * Sets the WriterSource that this C24ItemWriter will use to get a Writer to write sunk ComplexDataObjects to
+	 * Sets the PartitionedWriterSource to spread the output over, in place of a WriterSource
 	 * 
-	 * @param writerSource The WriterSource to use
+	 * @param partitionedWriterSource The PartitionedWriterSource to use
 	 */
-	@Required
-	public void setWriterSource(WriterSource writerSource) {
-		this.writerSource = writerSource;
+	public void setPartitionedWriterSource(PartitionedWriterSource partitionedWriterSource) {
+		this.partitionedWriterSource = partitionedWriterSource;
+	}
+	
+	/**
+	 * Gets the ItemSequence used to write chunks in the order their items were read
+	 * 
+	 * @return The ItemSequence; null if chunks are written as they become ready
+	 */
+	public ItemSequence getItemSequence() {
+		return itemSequence;
+	}
+	
+	/**
+	 * Sets the ItemSequence used to write chunks in the order their items were read.
+	 * The same ItemSequence must be set on the C24ItemReader.
+	 * 
+	 * @param itemSequence The ItemSequence shared with the reader
+	 */
+	public void setItemSequence(ItemSequence itemSequence) {
+		this.itemSequence = itemSequence;
+	}
+	
+	/**
+	 * The amount of output, in bytes (or characters if the WriterSource is not a ByteWriterSource), that can be held
+	 * in the reorder buffer
+	 */
+	public int getReorderCapacity() {
+		return reorderCapacity;
+	}
+	
+	/**
+	 * Sets the amount of output that can be held in the reorder buffer waiting for earlier chunks to be written.
+	 * Once full, chunks which are ready early wait for those ahead of them instead. Defaults to 16MB.
+	 * 
+	 * @param reorderCapacity The capacity of the reorder buffer
+	 */
+	public void setReorderCapacity(int reorderCapacity) {
+		this.reorderCapacity = reorderCapacity;
+	}
+	
+	/**
+	 * The maximum time in milliseconds a chunk will wait for room in the reorder buffer
+	 */
+	public long getReorderTimeout() {
+		return reorderTimeout;
+	}
+	
+	/**
+	 * Sets the maximum time in milliseconds a chunk will wait for room in the reorder buffer before the write fails.
+	 * Defaults to 60 seconds.
+	 * 
+	 * @param reorderTimeout The timeout in milliseconds
+	 */
+	public void setReorderTimeout(long reorderTimeout) {
+		if(reorderTimeout < 1) {
+			throw new IllegalArgumentException("reorderTimeout must be positive");
+		}
+		this.reorderTimeout = reorderTimeout;
 	}
 	
 }
@@ -0,0 +1,467 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.writer;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.annotation.AfterStep;
+import org.springframework.batch.core.annotation.BeforeStep;
+import org.springframework.batch.item.ParseException;
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.data.Element;
+import biz.c24.io.api.data.ValidationManager;
+import biz.c24.io.api.presentation.Sink;
+import biz.c24.io.api.presentation.Source;
+import biz.c24.io.api.presentation.TextualSource;
+import biz.c24.io.api.transform.Transform;
+import biz.c24.io.spring.batch.processor.ValidationManagerPool;
+import biz.c24.io.spring.batch.writer.source.ByteWriterSource;
+import biz.c24.io.spring.batch.writer.source.WriterSource;
+import biz.c24.io.spring.core.C24Model;
+import biz.c24.io.spring.source.SourceFactory;
+
+/**
+ * ItemWriter which runs the whole of a typical C24 step - parse, validate, transform, validate and sink - for each
+ * item in a single pass on the writing thread, before handing the chunk's output to a WriterSource in a single write.
+ *
+ * Items may either be the raw text of a record, for example as read by a FlatFileItemReader with a
+ * PassThroughLineMapper, in which case they are parsed into the configured element type, or ComplexDataObjects which
+ * have already been parsed. The transform is optional; if it is not set the parsed objects are sunk directly.
+ *
+ * Rather than each stage holding its own ThreadLocal caches, everything a thread needs to process an item - the iO
+ * source, the ValidationManager and the SinkBuffer - is held in a single context which is borrowed from a pool for
+ * the duration of a chunk. No intermediate objects are handed between components and nothing is retained once an
+ * item has been sunk.
+ *
+ * The time spent in each stage is accumulated across all threads and logged at the end of the step.
+ *
+ * As with C24ItemWriter, if the WriterSource is a RestartableWriterSource a restarted step appends to the output of
+ * the failed one, and if it is an AsyncWriterSource each write waits for the chunk's output to be written.
+ *
+ * @author Andrew Elmore
+ */
+public class C24PipelineItemWriter extends AbstractWriterSourceItemWriter<Object> {
+
+	private static Logger LOG = LoggerFactory.getLogger(C24PipelineItemWriter.class);
+
+	/**
+	 * The stages of the pipeline, in the order in which they are applied to each item
+	 */
+	public enum Stage {
+		PARSE, VALIDATE, TRANSFORM, VALIDATE_OUTPUT, SINK, WRITE
+	}
+
+	/**
+	 * Optional; the type of element to parse from textual items
+	 */
+	private Element elementType = null;
+
+	/**
+	 * Optional; SourceFactory to use to generate our iO Sources. Defaults to the model's default source
+	 */
+	private SourceFactory ioSourceFactory = null;
+
+	/**
+	 * Optional; the transform to apply to each parsed item
+	 */
+	private Transform transformer = null;
+
+	private boolean validate = false;
+	private boolean validateOutput = false;
+	private boolean failfast = true;
+
+	private Sink templateSink = null;
+
+	/**
+	 * Contexts not currently in use by a thread
+	 */
+	private Queue<PipelineContext> contexts = new ConcurrentLinkedQueue<PipelineContext>();
+
+	/**
+	 * Total time spent in each stage, in nanoseconds
+	 */
+	private final AtomicLong[] stageTimes = new AtomicLong[Stage.values().length];
+	private final AtomicLong itemCount = new AtomicLong();
+
+
+	public C24PipelineItemWriter() {
+		super(ClassUtils.getShortName(C24PipelineItemWriter.class));
+		for(int i = 0; i < stageTimes.length; i++) {
+			stageTimes[i] = new AtomicLong();
+		}
+	}
+
+	/**
+	 * Asserts that the object has been properly configured
+	 */
+	@PostConstruct
+	public void validateConfiguration() {
+		Assert.notNull(templateSink, "Sink must be set");
+		Assert.notNull(getWriterSource(), "WriterSource must be set");
+		Assert.isTrue(!validateOutput || transformer != null, "Output can only be validated if a transform is set");
+	}
+
+	/**
+	 * Initialise our context
+	 *
+	 * @param stepExecution The step execution context
+	 */
+	@BeforeStep
+	public void setup(StepExecution stepExecution) {
+		for(AtomicLong stageTime : stageTimes) {
+			stageTime.set(0);
+		}
+		itemCount.set(0);
+
+		openWriterSource(stepExecution);
+	}
+
+	/**
+	 * Clean up any resources we're consuming
+	 */
+	@AfterStep
+	public void cleanup() {
+		try {
+			if(LOG.isInfoEnabled()) {
+				StringBuilder timings = new StringBuilder();
+				for(Stage stage : Stage.values()) {
+					timings.append(timings.length() > 0? ", " : "").append(stage.name().toLowerCase()).append(' ')
+						.append(TimeUnit.NANOSECONDS.toMillis(getStageTime(stage))).append("ms");
+				}
+				LOG.info("Processed {} items; {}", itemCount.get(), timings);
+			}
+		} finally {
+			closeWriterSource();
+			// Release the contexts we're holding
+			contexts = new ConcurrentLinkedQueue<PipelineContext>();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.batch.item.ItemWriter#write(java.util.List)
+	 */
+	@Override
+	public void write(List<? extends Object> items) throws Exception {
+
+		PipelineContext context = acquireContext();
+
+		// Time spent in each stage by this chunk; only published to the totals once the chunk is done
+		long[] times = new long[stageTimes.length];
+		boolean reusable = false;
+
+		try {
+			long start = System.nanoTime();
+			long end;
+
+			for(Object item : items) {
+				ComplexDataObject cdo = null;
+
+				if(item instanceof ComplexDataObject) {
+					cdo = (ComplexDataObject)item;
+				} else if(item instanceof CharSequence) {
+					cdo = parse(context, item.toString());
+					end = System.nanoTime();
+					times[Stage.PARSE.ordinal()] += end - start;
+					start = end;
+					if(cdo == null) {
+						// Nothing to write
+						continue;
+					}
+				} else {
+					throw new IllegalArgumentException("Cannot process item of type " + (item != null? item.getClass().getName() : null));
+				}
+
+				if(validate) {
+					ValidationManagerPool.validate(context.getValidationManager(), cdo, failfast);
+					end = System.nanoTime();
+					times[Stage.VALIDATE.ordinal()] += end - start;
+					start = end;
+				}
+
+				if(transformer != null) {
+					cdo = (ComplexDataObject)transformer.transform(new Object[][]{{cdo}})[0][0];
+					end = System.nanoTime();
+					times[Stage.TRANSFORM.ordinal()] += end - start;
+					start = end;
+
+					if(validateOutput) {
+						ValidationManagerPool.validate(context.getValidationManager(), cdo, failfast);
+						end = System.nanoTime();
+						times[Stage.VALIDATE_OUTPUT.ordinal()] += end - start;
+						start = end;
+					}
+				}
+
+				context.buffer.write(cdo);
+				end = System.nanoTime();
+				times[Stage.SINK.ordinal()] += end - start;
+				start = end;
+			}
+
+			// Now write the whole lot out
+			context.buffer.writeTo(getWriterSource());
+			context.buffer.reset();
+			// Don't let the chunk commit until its output has actually been written
+			awaitWritten();
+			times[Stage.WRITE.ordinal()] += System.nanoTime() - start;
+
+			reusable = true;
+
+		} finally {
+			// If we failed, the buffer could be left holding part of a CDO; don't reuse it
+			if(reusable) {
+				contexts.offer(context);
+			}
+			for(int i = 0; i < times.length; i++) {
+				stageTimes[i].addAndGet(times[i]);
+			}
+		}
+
+		itemCount.addAndGet(items.size());
+	}
+
+	/**
+	 * Parses a ComplexDataObject from the textual form of an item
+	 *
+	 * @param context The context of the thread doing the parsing
+	 * @param text The item to parse
+	 * @return The parsed object, null if the item was empty
+	 */
+	private ComplexDataObject parse(PipelineContext context, String text) {
+		if(text.trim().length() == 0) {
+			return null;
+		}
+
+		if(elementType == null) {
+			throw new IllegalStateException("An element type must be set to process textual items");
+		}
+
+		Source source = context.getSource();
+		source.setReader(new StringReader(text));
+		try {
+			return source.readObject(elementType);
+		} catch(IOException ioEx) {
+			throw new ParseException("Failed to parse CDO from item. Message: " + text, ioEx);
+		}
+	}
+
+	/**
+	 * Borrows a context from the pool, creating a new one if none are free
+	 */
+	private PipelineContext acquireContext() throws IOException {
+		PipelineContext context = contexts.poll();
+		if(context == null) {
+			// If the source can take encoded data, sink straight to bytes in its encoding
+			WriterSource writerSource = getWriterSource();
+			String encoding = writerSource instanceof ByteWriterSource? ((ByteWriterSource)writerSource).getEncoding() : null;
+			context = new PipelineContext(new SinkBuffer(templateSink, encoding));
+		}
+		return context;
+	}
+
+	/**
+	 * Everything a thread needs to take an item through the pipeline. Only used by one thread at a time.
+	 */
+	private class PipelineContext {
+
+		private final SinkBuffer buffer;
+		private Source source = null;
+		private ValidationManager validationManager = null;
+
+		PipelineContext(SinkBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		Source getSource() {
+			if(source == null) {
+				if(ioSourceFactory == null) {
+					source = elementType.getModel().source();
+				} else {
+					source = ioSourceFactory.getSource(new StringReader(""));
+				}
+				if(source instanceof TextualSource) {
+					((TextualSource)source).setEndOfDataRequired(false);
+				}
+			}
+			return source;
+		}
+
+		ValidationManager getValidationManager() {
+			if(validationManager == null) {
+				validationManager = new ValidationManager();
+			}
+			return validationManager;
+		}
+	}
+
+	/**
+	 * The total time spent in a stage by all threads since the start of the step
+	 *
+	 * @param stage The stage
+	 * @return The time spent in nanoseconds
+	 */
+	public long getStageTime(Stage stage) {
+		return stageTimes[stage.ordinal()].get();
+	}
+
+	/**
+	 * The number of items written since the start of the step
+	 */
+	public long getItemCount() {
+		return itemCount.get();
+	}
+
+	/**
+	 * Returns the element type that we parse textual items into
+	 */
+	public Element getElementType() {
+		return elementType;
+	}
+
+	/**
+	 * Set the type of element that textual items will be parsed into.
+	 * Not required if items have already been parsed.
+	 *
+	 * @param elementType The type of element to parse
+	 */
+	public void setElementType(Element elementType) {
+		this.elementType = elementType;
+	}
+
+	/**
+	 * Allows setting of element type via the supplied model
+	 *
+	 * @param model The model of the type we wish to parse
+	 */
+	public void setModel(C24Model model) {
+		elementType = model.getRootElement();
+	}
+
+	/**
+	 * Sets the iO source factory to use to parse textual items
+	 *
+	 * @param ioSourceFactory
+	 */
+	public void setSourceFactory(SourceFactory ioSourceFactory) {
+		this.ioSourceFactory = ioSourceFactory;
+	}
+
+	public SourceFactory getSourceFactory() {
+		return this.ioSourceFactory;
+	}
+
+	/**
+	 * Get the C24 IO transformer applied to each item, if any
+	 *
+	 * @return The C24 IO transformer
+	 */
+	public Transform getTransformer() {
+		return transformer;
+	}
+
+	/**
+	 * Set the C24 IO transformer to apply to each item. If not set, items are sunk as parsed.
+	 *
+	 * @param transformer The C24 IO transformer to use
+	 */
+	public void setTransformer(Transform transformer) {
+		this.transformer = transformer;
+	}
+
+	/**
+	 * Query whether or not the items are validated before they are transformed
+	 */
+	public boolean isValidating() {
+		return validate;
+	}
+
+	/**
+	 * Set whether or not the items are validated before they are transformed (or sunk if there is no transform)
+	 *
+	 * @param validate Whether or not to validate items
+	 */
+	public void setValidate(boolean validate) {
+		this.validate = validate;
+	}
+
+	/**
+	 * Query whether or not the results of the transform are validated
+	 */
+	public boolean isValidatingOutput() {
+		return validateOutput;
+	}
+
+	/**
+	 * Set whether or not the results of the transform are validated
+	 *
+	 * @param validateOutput Whether or not to validate transformed items
+	 */
+	public void setValidateOutput(boolean validateOutput) {
+		this.validateOutput = validateOutput;
+	}
+
+	/**
+	 * Do we abort on first failure or fully validate the object
+	 * @return True iff validation will abort on first failure
+	 */
+	public boolean isFailfast() {
+		return failfast;
+	}
+
+	/**
+	 * Controls whether validation aborts on first failure or fully validates the object
+	 * @param failfast
+	 */
+	public void setFailfast(boolean failfast) {
+		this.failfast = failfast;
+	}
+
+	/**
+	 * The prototype sink used by this C24PipelineItemWriter
+	 *
+	 * @return The prototype sink
+	 */
+	public Sink getSink() {
+		return templateSink;
+	}
+
+	/**
+	 * Provides a prototype sink for this C24PipelineItemWriter to use when sinking ComplexDataObjects
+	 *
+	 * @param sink The prototype sink
+	 */
+	@Required
+	public void setSink(Sink sink) {
+		templateSink = sink;
+	}
+
+}
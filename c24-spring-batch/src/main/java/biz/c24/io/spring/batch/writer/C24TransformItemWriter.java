@@ -0,0 +1,322 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.writer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.batch.core.annotation.AfterStep;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.util.Assert;
+
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.data.ValidationManager;
+import biz.c24.io.api.transform.Transform;
+import biz.c24.io.spring.batch.processor.ValidationManagerPool;
+import biz.c24.io.spring.util.JavaBeanConverter;
+
+/**
+ * A Spring Batch ItemWriter which invokes a C24 IO Transform on a whole chunk of CDOs at once before passing the
+ * results on to a delegate ItemWriter. Optionally validates the results and/or converts them to target-model 
+ * compliant Java Beans.
+ * 
+ * By default each item is transformed separately. If batchSize is set above 1 (or to 0 for the whole chunk), items
+ * are instead passed to the transform as the values of its first input in batches of up to batchSize items,
+ * amortising the cost of setting up the transform over the batch. Only enable batching for transforms which map
+ * each of their inputs to exactly one output, in order; a batch which doesn't produce one output per input fails
+ * the chunk. The results are validated together using a ValidationManager borrowed from a pool.
+ * 
+ * If the delegate is an ItemStream it is opened, updated and closed along with this writer; any other callbacks
+ * it needs, such as those of a C24ItemWriter, require it to be registered with the step as a listener.
+ * 
+ * @author Andrew Elmore
+ */
+public class C24TransformItemWriter implements ItemWriter<ComplexDataObject>, ItemStream {
+	
+	/**
+	 * The C24 IO transform to use
+	 */
+	private Transform transformer = null;
+	
+	/**
+	 * The writer the results are passed to
+	 */
+	private ItemWriter<Object> delegate = null;
+	
+	/**
+	 * The maximum number of items passed to the transform in one call; 0 for the whole chunk
+	 */
+	private int batchSize = 1;
+	
+	/**
+	 * Whether or not to abort on the first failure
+	 */
+	private boolean failfast = true;
+	
+	private ValidationManagerPool validators = null;
+	
+	/**
+	 * Optional converter to use to convert CDOs to POJOs
+	 */
+	private JavaBeanConverter javaConverter = null;
+	
+	/**
+	 * Asserts that the object has been properly configured
+	 */
+	@PostConstruct
+	public void validateConfiguration() {
+		Assert.notNull(transformer, "Transformer must be set");
+		Assert.notNull(delegate, "Delegate must be set");
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.batch.item.ItemWriter#write(java.util.List)
+	 */
+	@Override
+	public void write(List<? extends ComplexDataObject> items) throws Exception {
+		List<Object> results = new ArrayList<Object>(items.size());
+		
+		int batch = batchSize > 0? batchSize : items.size();
+		for(int start = 0; start < items.size(); start += batch) {
+			List<? extends ComplexDataObject> batchItems = items.subList(start, Math.min(start + batch, items.size()));
+			List<ComplexDataObject> transformed = transform(batchItems);
+			ValidationManagerPool validators = this.validators;
+			if(validators != null) {
+				validate(validators, transformed);
+			}
+			for(ComplexDataObject result : transformed) {
+				results.add(javaConverter != null? javaConverter.convert(result) : result);
+			}
+		}
+		
+		delegate.write(results);
+	}
+	
+	/**
+	 * Transform a batch of items
+	 * 
+	 * @param items The items to transform
+	 * @return The transformed items, in the same order
+	 */
+	private List<ComplexDataObject> transform(List<? extends ComplexDataObject> items) throws Exception {
+		List<ComplexDataObject> results = new ArrayList<ComplexDataObject>(items.size());
+		
+		if(items.size() == 1) {
+			Object[][] transformedObj = transformer.transform(new Object[][]{{items.get(0)}});
+			results.add((ComplexDataObject)transformedObj[0][0]);
+			return results;
+		}
+		
+		Object[][] transformedObjs = transformer.transform(new Object[][]{items.toArray()});
+		int outputs = transformedObjs.length > 0 && transformedObjs[0] != null? transformedObjs[0].length : 0;
+		if(outputs != items.size()) {
+			throw new IllegalStateException("Transform " + transformer.getClass().getName() + " produced " + outputs 
+					+ " outputs from " + items.size() + " inputs; batchSize must be 1 for transforms which don't map "
+					+ "their inputs one-to-one");
+		}
+		for(Object result : transformedObjs[0]) {
+			results.add((ComplexDataObject)result);
+		}
+		return results;
+	}
+	
+	/**
+	 * Validate a batch of transformed items
+	 * 
+	 * @param validators The pool of ValidationManagers to use
+	 * @param results The items to validate
+	 */
+	private void validate(ValidationManagerPool validators, List<ComplexDataObject> results) {
+		// Hold one manager for the whole batch
+		ValidationManager mgr = validators.acquire();
+		try {
+			for(ComplexDataObject result : results) {
+				ValidationManagerPool.validate(mgr, result, failfast);
+			}
+		} finally {
+			validators.release(mgr);
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.batch.item.ItemStream#open(org.springframework.batch.item.ExecutionContext)
+	 */
+	@Override
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		if(delegate instanceof ItemStream) {
+			((ItemStream)delegate).open(executionContext);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.batch.item.ItemStream#update(org.springframework.batch.item.ExecutionContext)
+	 */
+	@Override
+	public void update(ExecutionContext executionContext) throws ItemStreamException {
+		if(delegate instanceof ItemStream) {
+			((ItemStream)delegate).update(executionContext);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.batch.item.ItemStream#close()
+	 */
+	@Override
+	public void close() throws ItemStreamException {
+		if(delegate instanceof ItemStream) {
+			((ItemStream)delegate).close();
+		}
+	}
+	
+	/**
+	 * Releases any transient state left over from this transformation step
+	 */
+	@AfterStep
+	public void cleanup() {
+		// Release any validation managers we're holding
+		if(validators != null) {
+			validators = new ValidationManagerPool();
+		}
+	}
+
+	/**
+	 * Get the C24 IO transformer used by this ItemWriter
+	 * 
+	 * @return The C24 IO transformer
+	 */
+	public Transform getTransformer() {
+		return transformer;
+	}
+
+	/**
+	 * Set the C24 IO transformer that this ItemWriter will use
+	 * 
+	 * @param transformer The C24 IO transformer to use
+	 */
+	@Required
+	public void setTransformer(Transform transformer) {
+		this.transformer = transformer;
+	}
+	
+	/**
+	 * Get the ItemWriter the transformed items are written to
+	 * 
+	 * @return The delegate ItemWriter
+	 */
+	public ItemWriter<Object> getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * Set the ItemWriter the transformed items are written to
+	 * 
+	 * @param delegate The delegate ItemWriter
+	 */
+	@Required
+	public void setDelegate(ItemWriter<Object> delegate) {
+		this.delegate = delegate;
+	}
+	
+	/**
+	 * The maximum number of items passed to the transform in a single call
+	 * 
+	 * @return The batch size; 1 if each item is transformed separately, 0 if the whole chunk is transformed at once
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Sets the maximum number of items passed to the transform in a single call, or 0 to transform the whole chunk
+	 * at once. Defaults to 1, transforming each item separately. Only set it higher if the transform maps each of
+	 * its inputs to exactly one output.
+	 * 
+	 * @param batchSize The batch size
+	 */
+	public void setBatchSize(int batchSize) {
+		if(batchSize < 0) {
+			throw new IllegalArgumentException("batchSize must not be negative");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Whether or not this writer validates the CDOs resulting from the transformation
+	 * 
+	 * @return True if if validates generated objects
+	 */
+	public boolean isValidating() {
+		return validators != null;
+	}
+
+	/**
+	 * Turn validation on or off
+	 * 
+	 * @param validate 
+	 */
+	public void setValidation(boolean validate) {
+		validators = validate? new ValidationManagerPool() : null;
+	}
+	
+	/**
+	 * Returns the class of the Java Beans we're converting to, if any
+	 * 
+	 * @return The Java Bean class or null if we write CDOs
+	 */
+	public Class<?> getTargetClass() {
+		return javaConverter != null? javaConverter.getTargetClass() : null;
+	}
+
+	/**
+	 * Turns on/off writing POJOs or ComplexDataObjects
+	 * 
+	 * @param targetClass The Java Bean class to sink to, or CDO if null
+	 */
+	public void setTargetClass(Class<?> targetClass) {
+		if(targetClass != null) {
+			javaConverter = new JavaBeanConverter(targetClass);
+		} else {
+			javaConverter = null;
+		}
+	}
+
+	/**
+	 * Do we abort on first failure or fully validate the object
+	 * @return True iff this writer will abort on first failure
+	 */
+	public boolean isFailfast() {
+		return failfast;
+	}
+
+	/**
+	 * Controls whether this writer aborts on first failure or fully validates the object
+	 * @param failfast
+	 */
+	public void setFailfast(boolean failfast) {
+		this.failfast = failfast;
+	}
+
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.writer;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.batch.item.WriteFailedException;
+
+import biz.c24.io.spring.batch.ItemSequence.Range;
+import biz.c24.io.spring.batch.writer.source.WriterSource;
+
+/**
+ * Holds sunk chunks until all of the items read before them have been written, then writes them in input order.
+ *
+ * Each chunk is identified by the sequence numbers of the items it was read from. A chunk is written as soon as the
+ * first of its items is the next item due; chunks that arrive early are parked along with their SinkBuffer, and their
+ * thread is given a fresh buffer to carry on with. Once the parked output reaches the capacity, early chunks wait for
+ * the chunks ahead of them rather than being parked; the chunk that is due is never made to wait.
+ *
+ * Not reusable between step executions.
+ *
+ * @author Andrew Elmore
+ */
+class ReorderBuffer {
+
+	private final WriterSource writerSource;
+	private final int capacity;
+	private final long timeout;
+
+	private final Object lock = new Object();
+
+	/**
+	 * The first sequence number that has not yet been written
+	 */
+	private long nextSequence = 0;
+
+	/**
+	 * Ranges that have been written or discarded but are not yet contiguous with nextSequence, keyed on start
+	 */
+	private final TreeMap<Long, Long> covered = new TreeMap<Long, Long>();
+
+	/**
+	 * Parked chunks keyed on the first sequence number they contain
+	 */
+	private final TreeMap<Long, Chunk> pending = new TreeMap<Long, Chunk>();
+
+	/**
+	 * Emptied buffers available for reuse
+	 */
+	private final LinkedList<SinkBuffer> freeBuffers = new LinkedList<SinkBuffer>();
+
+	private int bufferedSize = 0;
+	private int maxBufferedSize = 0;
+	private int maxPendingChunks = 0;
+	private long stallTime = 0;
+
+	/**
+	 * A parked chunk
+	 */
+	private static class Chunk {
+		private final SinkBuffer buffer;
+		private final List<Range> ranges;
+
+		Chunk(SinkBuffer buffer, List<Range> ranges) {
+			this.buffer = buffer;
+			this.ranges = ranges;
+		}
+	}
+
+	/**
+	 * Create a ReorderBuffer
+	 *
+	 * @param writerSource The WriterSource to write chunks to
+	 * @param capacity The amount of output that can be parked before early chunks have to wait
+	 * @param timeout The maximum time in milliseconds that a chunk will wait for those ahead of it
+	 */
+	ReorderBuffer(WriterSource writerSource, int capacity, long timeout) {
+		this.writerSource = writerSource;
+		this.capacity = capacity;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Write a chunk once the chunks ahead of it have been written.
+	 *
+	 * @param buffer The buffer holding the sunk chunk
+	 * @param ranges The sequence numbers of the items the chunk was read from
+	 * @return The buffer the caller should use for its next chunk; null if it needs to create one
+	 */
+	SinkBuffer submit(SinkBuffer buffer, List<Range> ranges) throws IOException {
+		long first = first(ranges);
+
+		synchronized(lock) {
+			long deadline = 0;
+			long stallStart = 0;
+			while(first > nextSequence && bufferedSize > 0 && bufferedSize + buffer.size() > capacity) {
+				// We're early and there's no room to park; wait for the chunks ahead of us
+				long now = System.currentTimeMillis();
+				if(stallStart == 0) {
+					stallStart = now;
+					deadline = now + timeout;
+				} else if(now >= deadline) {
+					stallTime += now - stallStart;
+					// Don't hold up those behind us
+					discard(ranges);
+					throw new WriteFailedException("Timed out after " + timeout + "ms waiting for item " + nextSequence
+							+ " to be written ahead of item " + first);
+				}
+				try {
+					lock.wait(deadline - now);
+				} catch(InterruptedException ex) {
+					discard(ranges);
+					Thread.currentThread().interrupt();
+					throw new WriteFailedException("Interrupted waiting for item " + nextSequence + " to be written", ex);
+				}
+			}
+			if(stallStart != 0) {
+				stallTime += System.currentTimeMillis() - stallStart;
+			}
+
+			if(first > nextSequence) {
+				// Park it
+				pending.put(first, new Chunk(buffer, ranges));
+				bufferedSize += buffer.size();
+				maxBufferedSize = Math.max(maxBufferedSize, bufferedSize);
+				maxPendingChunks = Math.max(maxPendingChunks, pending.size());
+				return freeBuffers.poll();
+			}
+
+			try {
+				buffer.writeTo(writerSource);
+			} catch(IOException ioEx) {
+				discard(ranges);
+				throw ioEx;
+			}
+			buffer.reset();
+			markWritten(ranges);
+			drain();
+			return buffer;
+		}
+	}
+
+	/**
+	 * Records that the items with these sequence numbers will not be written so that later chunks aren't held up
+	 *
+	 * @param ranges The sequence numbers of the items
+	 */
+	void discard(List<Range> ranges) throws IOException {
+		if(ranges.isEmpty()) {
+			return;
+		}
+		synchronized(lock) {
+			markWritten(ranges);
+			drain();
+		}
+	}
+
+	/**
+	 * Writes out any parked chunks regardless of whether the chunks ahead of them have been written
+	 *
+	 * @return The number of chunks that had to be written out of order
+	 */
+	int flush() throws IOException {
+		synchronized(lock) {
+			int count = pending.size();
+			for(Chunk chunk : pending.values()) {
+				chunk.buffer.writeTo(writerSource);
+			}
+			pending.clear();
+			bufferedSize = 0;
+			lock.notifyAll();
+			return count;
+		}
+	}
+
+	/**
+	 * Writes all parked chunks which are now due. Must be called holding lock.
+	 */
+	private void drain() throws IOException {
+		Map.Entry<Long, Chunk> entry;
+		while((entry = pending.firstEntry()) != null && entry.getKey() <= nextSequence) {
+			Chunk chunk = pending.remove(entry.getKey());
+			bufferedSize -= chunk.buffer.size();
+			chunk.buffer.writeTo(writerSource);
+			chunk.buffer.reset();
+			freeBuffers.add(chunk.buffer);
+			markWritten(chunk.ranges);
+		}
+		lock.notifyAll();
+	}
+
+	/**
+	 * Marks the ranges as written and advances nextSequence as far as it can. Must be called holding lock.
+	 */
+	private void markWritten(List<Range> ranges) {
+		for(Range range : ranges) {
+			covered.put(range.getStart(), range.getEnd());
+		}
+		Map.Entry<Long, Long> entry;
+		while((entry = covered.firstEntry()) != null && entry.getKey() <= nextSequence) {
+			covered.remove(entry.getKey());
+			nextSequence = Math.max(nextSequence, entry.getValue());
+		}
+	}
+
+	private static long first(List<Range> ranges) {
+		long first = Long.MAX_VALUE;
+		for(Range range : ranges) {
+			first = Math.min(first, range.getStart());
+		}
+		return first;
+	}
+
+	/**
+	 * The most output that has been parked at once
+	 */
+	int getMaxBufferedSize() {
+		synchronized(lock) {
+			return maxBufferedSize;
+		}
+	}
+
+	/**
+	 * The most chunks that have been parked at once
+	 */
+	int getMaxPendingChunks() {
+		synchronized(lock) {
+			return maxPendingChunks;
+		}
+	}
+
+	/**
+	 * The total time in milliseconds that chunks have spent waiting for room to be parked
+	 */
+	long getStallTime() {
+		synchronized(lock) {
+			return stallTime;
+		}
+	}
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.writer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.presentation.BinarySink;
+import biz.c24.io.api.presentation.Sink;
+import biz.c24.io.spring.batch.writer.source.ByteWriterSource;
+import biz.c24.io.spring.batch.writer.source.WriterSource;
+
+/**
+ * A reusable buffer that ComplexDataObjects are sunk into before being handed to a WriterSource.
+ *
+ * If an encoding is supplied, CDOs are sunk straight to bytes in that encoding; otherwise they are sunk to characters.
+ * Either way the buffer's internal array is handed to the WriterSource directly so no copies are taken, and the
+ * array is retained for reuse by subsequent chunks.
+ *
+ * As each buffer encodes independently, encodings which start their output with a byte order mark can't be used; UTF-16
+ * is written big-endian without one, which is how a UTF-16 reader treats unmarked data.
+ *
+ * Not thread-safe; C24ItemWriter holds one per thread.
+ *
+ * @author Andrew Elmore
+ */
+class SinkBuffer {
+
+	private static final int INITIAL_SIZE = 8192;
+
+	private final Sink sink;
+
+	/**
+	 * Holds the encoded output if we're sinking to bytes
+	 */
+	private final ExposedByteArrayOutputStream bytes;
+
+	/**
+	 * Encodes textual output into bytes. Null if we're sinking to characters or the sink is binary.
+	 */
+	private final Writer encoder;
+
+	/**
+	 * Holds the output if we're sinking to characters
+	 */
+	private final ExposedCharArrayWriter chars;
+
+	/**
+	 * Create a SinkBuffer
+	 *
+	 * @param templateSink The prototype sink to clone
+	 * @param encoding The encoding to sink to, or null to sink to characters
+	 */
+	SinkBuffer(Sink templateSink, String encoding) throws IOException {
+		sink = (Sink)templateSink.clone();
+
+		if(encoding != null) {
+			bytes = new ExposedByteArrayOutputStream(INITIAL_SIZE);
+			chars = null;
+			if(sink instanceof BinarySink) {
+				// Binary output is already bytes; there's nothing to encode
+				encoder = null;
+				sink.setOutputStream(bytes);
+			} else {
+				encoder = new OutputStreamWriter(bytes, getUnmarkedEncoding(encoding));
+				sink.setWriter(encoder);
+			}
+		} else {
+			if(sink instanceof BinarySink) {
+				throw new IllegalStateException("A BinarySink can only be used with a ByteWriterSource");
+			}
+			bytes = null;
+			encoder = null;
+			chars = new ExposedCharArrayWriter(INITIAL_SIZE);
+			sink.setWriter(chars);
+		}
+	}
+
+	/**
+	 * Sinks a ComplexDataObject to the end of the buffer
+	 *
+	 * @param cdo The ComplexDataObject to sink
+	 */
+	void write(ComplexDataObject cdo) throws IOException {
+		sink.writeObject(cdo);
+	}
+
+	/**
+	 * Ensures that everything sunk so far has been encoded into the buffer
+	 */
+	void flush() throws IOException {
+		if(encoder != null) {
+			encoder.flush();
+		}
+	}
+
+	/**
+	 * The amount of data currently in the buffer, in bytes or characters as appropriate
+	 */
+	int size() {
+		return bytes != null? bytes.size() : chars.size();
+	}
+
+	/**
+	 * Hands the contents of the buffer to the WriterSource in a single write
+	 *
+	 * @param writerSource The WriterSource to write to
+	 */
+	void writeTo(WriterSource writerSource) throws IOException {
+		flush();
+
+		if(bytes != null) {
+			((ByteWriterSource)writerSource).write(bytes.getBuffer(), 0, bytes.size());
+		} else {
+			Writer outputWriter = writerSource.getWriter();
+			synchronized(outputWriter) {
+				outputWriter.write(chars.getBuffer(), 0, chars.size());
+			}
+		}
+	}
+
+	/**
+	 * Empties the buffer, retaining its storage for reuse
+	 */
+	void reset() {
+		if(bytes != null) {
+			bytes.reset();
+		} else {
+			chars.reset();
+		}
+	}
+
+	/**
+	 * Get an equivalent of the encoding which doesn't write a byte order mark, so that the output of several buffers
+	 * can be concatenated
+	 *
+	 * @param encoding The encoding of the WriterSource
+	 * @return The encoding to sink with
+	 * @throws UnsupportedEncodingException If the encoding isn't supported or always writes a byte order mark
+	 */
+	private static String getUnmarkedEncoding(String encoding) throws UnsupportedEncodingException {
+		if("aa".getBytes(encoding).length == "a".getBytes(encoding).length * 2) {
+			return encoding;
+		}
+		if(Charset.forName(encoding).name().equals("UTF-16")) {
+			return "UTF-16BE";
+		}
+		throw new UnsupportedEncodingException(encoding + " writes a byte order mark, which would be repeated in the output");
+	}
+
+	/**
+	 * ByteArrayOutputStream which allows read access to its internal array
+	 */
+	private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+		ExposedByteArrayOutputStream(int size) {
+			super(size);
+		}
+		byte[] getBuffer() {
+			return buf;
+		}
+	}
+
+	/**
+	 * CharArrayWriter which allows read access to its internal array
+	 */
+	private static class ExposedCharArrayWriter extends CharArrayWriter {
+		ExposedCharArrayWriter(int size) {
+			super(size);
+		}
+		char[] getBuffer() {
+			return buf;
+		}
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.writer.source;
+
+import org.springframework.batch.core.StepExecution;
+import org.springframework.core.io.FileSystemResource;
+
+import biz.c24.io.spring.util.C24Utils;
+
+/**
+ * Base class for PartitionedWriterSources that write each partition to its own file.
+ * Partition files are named after the output file with the partition number inserted before its extension, so an
+ * output file of data.csv is written as data-0.csv, data-1.csv and so on. The output file is taken from the 
+ * supplied Resource or, if not specified, a parameter output.file in the job parameters.
+ * 
+ * @author Andrew Elmore
+ */
+public abstract class AbstractPartitionedWriterSource implements PartitionedWriterSource {
+
+	private FileSystemResource resource = null;
+	private String encoding = C24Utils.DEFAULT_FILE_ENCODING;
+	
+	private StepExecution stepExecution = null;
+	private String fileName = null;
+	
+	@Override
+	public void initialise(StepExecution stepExecution) {
+		// Extract the name of the file we're supposed to be writing to
+	    String fileName = resource != null? resource.getPath() : stepExecution.getJobParameters().getString("output.file");
+	    
+	    // Remove any leading file:// if it exists
+	    if(fileName.startsWith("file://")) {
+	    		fileName = fileName.substring("file://".length());
+	    }
+	    
+	    this.fileName = fileName;
+	    this.stepExecution = stepExecution;
+	}
+	
+	/**
+	 * Create and initialise the WriterSource for a partition
+	 * 
+	 * @param partition The number of the partition
+	 * @return The initialised WriterSource
+	 */
+	protected ByteWriterSource createPartition(int partition) {
+		FileWriterSource source = new FileWriterSource();
+		source.setResource(new FileSystemResource(getPartitionFileName(partition)));
+		source.setEncoding(encoding);
+		source.initialise(stepExecution);
+		return source;
+	}
+	
+	/**
+	 * The name of the file a partition is written to
+	 * 
+	 * @param partition The number of the partition
+	 * @return The partition's file name
+	 */
+	protected String getPartitionFileName(int partition) {
+		int extension = fileName.lastIndexOf('.');
+		if(extension <= Math.max(fileName.lastIndexOf('/'), fileName.lastIndexOf('\\'))) {
+			// No extension
+			return fileName + "-" + partition;
+		}
+		return fileName.substring(0, extension) + "-" + partition + fileName.substring(extension);
+	}
+	
+    /**
+     * The resource we use to determine our output path
+     * @return the resource this source will write to
+     */
+    public FileSystemResource getResource() {
+        return resource;
+    }
+
+    /**
+     * Set the resource we acquire our output path from
+     */
+    public void setResource(FileSystemResource resource) {
+        this.resource = resource;
+    }  
+    
+    /**
+     * Returns the encoding we are using when writing the files.
+     * Defaults to UTF-8
+     * @return the encoding being used to write the files
+     */
+    @Override
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Sets the encoding to use to write the files
+     * @param encoding the encoding the use
+     */
+    public void setEncoding(String encoding) {
+        this.encoding = encoding;
+    }   
+	
+}
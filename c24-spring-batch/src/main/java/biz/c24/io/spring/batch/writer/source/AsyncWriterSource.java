@@ -0,0 +1,352 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.writer.source;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.beans.factory.annotation.Required;
+
+/**
+ * A ByteWriterSource which decouples callers from the underlying I/O.
+ *
+ * Writes are copied into one of a fixed pool of buffers and queued for a dedicated I/O thread, which writes them to the
+ * delegate ByteWriterSource in the order they were queued. Callers only block if every buffer is in flight. With the
+ * default of two buffers, one can be filled while the other is being written.
+ *
+ * Write returns as soon as the data has been queued. Before a chunk is committed, flush should be called: it acts as a
+ * barrier, blocking until everything queued so far has been written and rethrowing any failure to write it, so that a
+ * chunk is never committed with its output unwritten. C24ItemWriter does this at the end of each write. No lock is held
+ * while waiting. A failure is also reported by the next call to write and by close.
+ *
+ * @author Andrew Elmore
+ */
+public class AsyncWriterSource implements ByteWriterSource {
+
+	private static final Logger LOG = LoggerFactory.getLogger(AsyncWriterSource.class);
+
+	private static final AtomicInteger threadCount = new AtomicInteger();
+
+	private ByteWriterSource delegate = null;
+
+	/**
+	 * The number of buffers that can be queued or being written at any one time
+	 */
+	private int bufferCount = 2;
+
+	/**
+	 * The initial size of each buffer. Buffers grow if a larger write is received.
+	 */
+	private int bufferSize = 64 * 1024;
+
+	/**
+	 * Queued after all other writes to signal the I/O thread to stop
+	 */
+	private static final Block END = new Block(0);
+
+	private BlockingQueue<Block> freeBlocks = null;
+	private BlockingQueue<Block> pendingBlocks = null;
+
+	/**
+	 * Guards submission ordering and the written sequence number
+	 */
+	private final Object lock = new Object();
+	private long submitted = 0;
+	private long written = 0;
+
+	private volatile Thread ioThread = null;
+	private volatile Throwable failure = null;
+
+	private Writer writer = null;
+
+	/**
+	 * A buffer queued for writing
+	 */
+	private static class Block {
+		private byte[] data;
+		private int length = 0;
+		private long sequence = 0;
+
+		Block(int size) {
+			data = new byte[size];
+		}
+
+		void fill(byte[] src, int offset, int length) {
+			if(data.length < length) {
+				data = new byte[length];
+			}
+			System.arraycopy(src, offset, data, 0, length);
+			this.length = length;
+		}
+	}
+
+	@Override
+	public void initialise(StepExecution stepExecution) {
+		delegate.initialise(stepExecution);
+
+		freeBlocks = new ArrayBlockingQueue<Block>(bufferCount);
+		for(int i = 0; i < bufferCount; i++) {
+			freeBlocks.add(new Block(bufferSize));
+		}
+		pendingBlocks = new LinkedBlockingQueue<Block>();
+		submitted = 0;
+		written = 0;
+		failure = null;
+
+		try {
+			writer = new OutputStreamWriter(new OutputStream() {
+				@Override
+				public void write(int b) throws IOException {
+					write(new byte[]{(byte)b}, 0, 1);
+				}
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					AsyncWriterSource.this.write(b, off, len);
+				}
+			}, getEncoding());
+		} catch(IOException ioEx) {
+			throw new RuntimeException(ioEx);
+		}
+
+		ioThread = new Thread(new IoWriter(), "C24-AsyncWriter-" + threadCount.incrementAndGet());
+		ioThread.setDaemon(true);
+		ioThread.start();
+	}
+
+	@Override
+	public void write(byte[] data, int offset, int length) throws IOException {
+		checkFailure();
+
+		if(length == 0) {
+			return;
+		}
+
+		Block block = null;
+		try {
+			while((block = freeBlocks.poll(1, TimeUnit.SECONDS)) == null) {
+				// Make sure we're not waiting on an I/O thread which has given up
+				checkFailure();
+			}
+		} catch(InterruptedException ex) {
+			throw new InterruptedIOException("Interrupted waiting for a free buffer");
+		}
+		block.fill(data, offset, length);
+
+		synchronized(lock) {
+			block.sequence = ++submitted;
+			pendingBlocks.add(block);
+		}
+	}
+
+	/**
+	 * Block until everything queued before the call, including anything buffered by the Writer, has been written to
+	 * the delegate
+	 *
+	 * @throws IOException if the I/O thread failed to write any of it
+	 */
+	public void flush() throws IOException {
+		Writer writer = this.writer;
+		if(writer == null) {
+			return;
+		}
+		writer.flush();
+		long sequence;
+		synchronized(lock) {
+			sequence = submitted;
+		}
+		awaitWritten(sequence);
+	}
+
+	/**
+	 * Block until the I/O thread has written everything up to and including the specified write
+	 *
+	 * @param sequence The sequence number of the write to wait for
+	 */
+	private void awaitWritten(long sequence) throws IOException {
+		synchronized(lock) {
+			while(written < sequence && failure == null) {
+				try {
+					lock.wait();
+				} catch(InterruptedException ex) {
+					throw new InterruptedIOException("Interrupted waiting for data to be written");
+				}
+			}
+		}
+		checkFailure();
+	}
+
+	/**
+	 * Rethrows any failure encountered by the I/O thread
+	 */
+	private void checkFailure() throws IOException {
+		Throwable ex = failure;
+		if(ex != null) {
+			if(ex instanceof IOException) {
+				throw (IOException)ex;
+			} else {
+				throw new IOException("Failed to write to " + delegate, ex);
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		Thread thread = ioThread;
+		if(thread != null) {
+			try {
+				writer.flush();
+				// Signal the I/O thread to stop once it's written everything ahead of us
+				synchronized(lock) {
+					pendingBlocks.add(END);
+				}
+				thread.join();
+				checkFailure();
+			} catch(IOException ioEx) {
+				throw new RuntimeException(ioEx);
+			} catch(InterruptedException ex) {
+				throw new RuntimeException(ex);
+			} finally {
+				ioThread = null;
+				writer = null;
+				delegate.close();
+			}
+		}
+	}
+
+	/**
+	 * Returns a Writer which encodes its data and queues it in the same way as write.
+	 * Callers should flush it before relying on the data having been queued.
+	 */
+	@Override
+	public Writer getWriter() {
+		return writer;
+	}
+
+	/**
+	 * Drains the queue of pending writes, passing each to the delegate
+	 */
+	private class IoWriter implements Runnable {
+
+		public void run() {
+			while(true) {
+				Block block;
+				try {
+					block = pendingBlocks.take();
+				} catch(InterruptedException ex) {
+					failure = ex;
+					break;
+				}
+				if(block == END) {
+					// Everything has been written
+					break;
+				}
+
+				if(failure == null) {
+					try {
+						delegate.write(block.data, 0, block.length);
+					} catch(Throwable ex) {
+						LOG.error("Failed to write to {}", delegate, ex);
+						failure = ex;
+					}
+				}
+
+				synchronized(lock) {
+					written = block.sequence;
+					lock.notifyAll();
+				}
+				freeBlocks.add(block);
+			}
+
+			// Release anyone still waiting on us
+			synchronized(lock) {
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * The encoding of the delegate
+	 */
+	@Override
+	public String getEncoding() {
+		return delegate.getEncoding();
+	}
+
+	/**
+	 * The ByteWriterSource that the I/O thread writes to
+	 */
+	public ByteWriterSource getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * Set the ByteWriterSource that the I/O thread will write to
+	 *
+	 * @param delegate The ByteWriterSource to write to
+	 */
+	@Required
+	public void setDelegate(ByteWriterSource delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * The number of buffers which can be queued or being written at once
+	 */
+	public int getBufferCount() {
+		return bufferCount;
+	}
+
+	/**
+	 * Set the number of buffers which can be queued or being written at once. Defaults to 2.
+	 * Callers block when all buffers are in use.
+	 *
+	 * @param bufferCount The number of buffers
+	 */
+	public void setBufferCount(int bufferCount) {
+		if(bufferCount < 1) {
+			throw new IllegalArgumentException("bufferCount must be at least 1");
+		}
+		this.bufferCount = bufferCount;
+	}
+
+	/**
+	 * The initial size in bytes of each buffer
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Set the initial size in bytes of each buffer. Buffers will grow to accommodate larger writes.
+	 *
+	 * @param bufferSize The initial buffer size
+	 */
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+}
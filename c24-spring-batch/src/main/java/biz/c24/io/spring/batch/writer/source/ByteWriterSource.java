@@ -0,0 +1,46 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.writer.source;
+
+import java.io.IOException;
+
+/**
+ * A WriterSource which can also accept data that has already been encoded.
+ * Allows a C24ItemWriter to sink ComplexDataObjects straight to bytes in the source's encoding and hand them over
+ * in a single bulk write, rather than having them encoded again by the source's Writer.
+ *
+ * @author Andrew Elmore
+ */
+public interface ByteWriterSource extends WriterSource {
+
+	/**
+	 * The encoding that data passed to write must be in
+	 *
+	 * @return The name of the encoding
+	 */
+	public abstract String getEncoding();
+
+	/**
+	 * Write a block of encoded data.
+	 * Implementations must allow concurrent callers and must write each block contiguously.
+	 *
+	 * @param data The array holding the encoded data
+	 * @param offset The offset into data at which to start writing
+	 * @param length The number of bytes to write
+	 * @throws IOException
+	 */
+	public abstract void write(byte[] data, int offset, int length) throws IOException;
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.writer.source;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.springframework.batch.core.StepExecution;
+import org.springframework.core.io.FileSystemResource;
+
+import biz.c24.io.spring.util.C24Utils;
+
+/**
+ * WriterSource that writes all output to a single compressed file.
+ * Expects to be told the path of the file to write to by the supplied Resource or, 
+ * if not specified, a parameter output.file in the job parameters.
+ * 
+ * The compression format is determined by the CompressionCodec, gzip by default. See StandardCodec for the formats
+ * supported out of the box; others can be plugged in by implementing CompressionCodec.
+ * 
+ * Compression happens on the thread that writes. To compress on a separate thread, wrap this source in an
+ * AsyncWriterSource.
+ * 
+ * @author Andrew Elmore
+ */
+public class CompressedFileWriterSource implements ByteWriterSource {
+
+	private OutputStream outputStream = null;
+	private OutputStreamWriter outputFile = null;
+	private FileSystemResource resource = null;
+	private String encoding = C24Utils.DEFAULT_FILE_ENCODING;
+	private CompressionCodec codec = StandardCodec.GZIP;
+	private int compressionLevel = CompressionCodec.DEFAULT_LEVEL;
+	
+
+	@Override
+	public void initialise(StepExecution stepExecution) {
+		// Extract the name of the file we're supposed to be writing to
+	    String fileName = resource != null? resource.getPath() : stepExecution.getJobParameters().getString("output.file");
+	    
+	    // Remove any leading file:// if it exists
+	    if(fileName.startsWith("file://")) {
+	    		fileName = fileName.substring("file://".length());
+	    }
+	
+	    if(codec instanceof StandardCodec) {
+	    	// Reject an unsupported level before we create the file
+	    	((StandardCodec)codec).checkLevel(compressionLevel);
+	    }
+	
+	    OutputStream fileStream = null;
+	    try {
+	    	fileStream = new BufferedOutputStream(new FileOutputStream(fileName), 64 * 1024);
+	    	outputStream = codec.compress(fileStream, compressionLevel);
+	    	outputFile = new OutputStreamWriter(outputStream, getEncoding());
+	    } catch(IOException ioEx) {
+	    	if(fileStream != null) {
+	    		try {
+	    			fileStream.close();
+	    		} catch(IOException closeEx) {
+	    			// Report the original failure
+	    		}
+	    	}
+	    	outputStream = null;
+	    	throw new RuntimeException(ioEx);
+	    }
+		
+	}
+
+	@Override
+	public void close() {
+		if(outputFile != null)  {
+			try {
+				// Completes the compressed stream
+				outputFile.close();
+			} catch(IOException ioEx) {
+		    	throw new RuntimeException(ioEx);
+		    } finally {
+		    	outputFile = null;
+		    	outputStream = null;
+		    }
+		}	
+	}
+
+	@Override
+	public Writer getWriter() {
+		return outputFile;
+	}
+	
+	@Override
+	public void write(byte[] data, int offset, int length) throws IOException {
+		// Share the Writer's lock so that we interleave correctly with anyone using it
+		synchronized(outputFile) {
+			// Push out anything the Writer has buffered before we write past it
+			outputFile.flush();
+			outputStream.write(data, offset, length);
+		}
+	}
+	
+
+    /**
+     * The resource we use to determine our output path
+     * @return the resource this CompressedFileWriterSource will write to
+     */
+    public FileSystemResource getResource() {
+        return resource;
+    }
+
+    /**
+     * Set the resource we acquire our output path from
+     */
+    public void setResource(FileSystemResource resource) {
+        this.resource = resource;
+    }  
+    
+    /**
+     * Returns the encoding we are using when writing the file.
+     * Defaults to UTF-8
+     * @return the encoding being used to write the file
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Sets the encoding to use to write the file
+     * @param encoding the encoding the use
+     */
+    public void setEncoding(String encoding) {
+        this.encoding = encoding;
+    }   
+    
+    /**
+     * The codec used to compress the file
+     */
+    public CompressionCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Sets the codec used to compress the file. Defaults to StandardCodec.GZIP.
+     * @param codec the codec to use
+     */
+    public void setCodec(CompressionCodec codec) {
+        if(codec == null) {
+            throw new IllegalArgumentException("codec must not be null");
+        }
+        this.codec = codec;
+    }
+    
+    /**
+     * The codec-specific compression level
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Sets the codec-specific compression level, for gzip 0 (none) to 9 (best). 
+     * Defaults to CompressionCodec.DEFAULT_LEVEL, the codec's own default.
+     * A level the StandardCodec doesn't support causes initialise to fail; see StandardCodec for the ranges.
+     * @param compressionLevel the compression level
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+    
+}
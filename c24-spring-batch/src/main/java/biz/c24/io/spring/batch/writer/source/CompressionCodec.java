@@ -0,0 +1,43 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.writer.source;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A compression format that a CompressedFileWriterSource can write in
+ * 
+ * @author Andrew Elmore
+ */
+public interface CompressionCodec {
+	
+	/**
+	 * The compression level to use if none is specified
+	 */
+	public static final int DEFAULT_LEVEL = -1;
+
+	/**
+	 * Wrap a stream so that everything written to it is compressed.
+	 * Closing the returned stream must complete the compressed data and close the underlying stream.
+	 * 
+	 * @param out The stream to write the compressed data to
+	 * @param level The codec-specific compression level, or DEFAULT_LEVEL for the codec's default
+	 * @return The compressing stream
+	 * @throws IOException
+	 */
+	public abstract OutputStream compress(OutputStream out, int level) throws IOException;
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.writer.source;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Pool of direct ByteBuffers shared by WriterSources.
+ * Direct buffers are expensive to allocate and are only freed when garbage collected, so rather than allocate new
+ * ones for every step execution we hand back those released by earlier ones.
+ *
+ * @author Andrew Elmore
+ */
+class DirectBufferPool {
+
+	private static final ConcurrentMap<Integer, Queue<ByteBuffer>> pool = new ConcurrentHashMap<Integer, Queue<ByteBuffer>>();
+
+	private DirectBufferPool() {
+	}
+
+	/**
+	 * Get an empty direct buffer
+	 *
+	 * @param capacity The required capacity in bytes
+	 * @return A cleared buffer of the requested capacity
+	 */
+	static ByteBuffer acquire(int capacity) {
+		Queue<ByteBuffer> buffers = pool.get(capacity);
+		ByteBuffer buffer = buffers != null? buffers.poll() : null;
+		return buffer != null? buffer : ByteBuffer.allocateDirect(capacity);
+	}
+
+	/**
+	 * Return a buffer to the pool. The caller must not use it again.
+	 *
+	 * @param buffer The buffer to return
+	 */
+	static void release(ByteBuffer buffer) {
+		buffer.clear();
+		Queue<ByteBuffer> buffers = pool.get(buffer.capacity());
+		if(buffers == null) {
+			pool.putIfAbsent(buffer.capacity(), new ConcurrentLinkedQueue<ByteBuffer>());
+			buffers = pool.get(buffer.capacity());
+		}
+		buffers.add(buffer);
+	}
+
+}
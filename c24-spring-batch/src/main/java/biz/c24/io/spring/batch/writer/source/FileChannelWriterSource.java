@@ -0,0 +1,298 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.writer.source;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.springframework.batch.core.StepExecution;
+import org.springframework.core.io.FileSystemResource;
+
+import biz.c24.io.spring.util.C24Utils;
+
+/**
+ * WriterSource that writes all output to a single file via a FileChannel.
+ * Expects to be told the path of the file to write to by the supplied Resource or,
+ * if not specified, a parameter output.file in the job parameters.
+ *
+ * Output is accumulated in a large direct buffer, taken from a pool shared between step executions, and only
+ * written to the channel when the buffer fills, so very large outputs need far fewer system calls than with
+ * FileWriterSource. The SyncPolicy controls whether and when the output is forced to disk.
+ *
+ * Optionally the file can be extended to an expected size up front, saving the file system from growing it
+ * piecemeal; the file is truncated to the amount actually written when the source is closed.
+ *
+ * On restart the file is truncated to the length it had when the last chunk was committed and appended to.
+ *
+ * @author Andrew Elmore
+ */
+public class FileChannelWriterSource implements ByteWriterSource, RestartableWriterSource {
+
+	private FileSystemResource resource = null;
+	private String encoding = C24Utils.DEFAULT_FILE_ENCODING;
+	private int bufferSize = 1024 * 1024;
+	private SyncPolicy syncPolicy = SyncPolicy.NONE;
+	private long preallocate = 0;
+
+	private RandomAccessFile file = null;
+	private FileChannel channel = null;
+	private ByteBuffer buffer = null;
+	private OutputStreamWriter writer = null;
+
+	/**
+	 * The position in the file at which the buffer's contents will be written
+	 */
+	private long position = 0;
+
+	@Override
+	public void initialise(StepExecution stepExecution) {
+		open(stepExecution, -1);
+	}
+
+	@Override
+	public void initialise(StepExecution stepExecution, long position) {
+		open(stepExecution, position);
+	}
+
+	/**
+	 * Opens the output file
+	 *
+	 * @param stepExecution The step execution
+	 * @param restartPosition The position to truncate the file to and append from; -1 to discard any existing contents
+	 */
+	private void open(StepExecution stepExecution, long restartPosition) {
+		// Extract the name of the file we're supposed to be writing to
+	    String fileName = resource != null? resource.getPath() : stepExecution.getJobParameters().getString("output.file");
+
+	    // Remove any leading file:// if it exists
+	    if(fileName.startsWith("file://")) {
+	    		fileName = fileName.substring("file://".length());
+	    }
+
+	    try {
+	    	file = new RandomAccessFile(fileName, "rw");
+	    	if(restartPosition < 0) {
+	    		// Discard any previous contents
+	    		restartPosition = 0;
+	    	} else if(file.length() < restartPosition) {
+	    		file.close();
+	    		file = null;
+	    		throw new IllegalStateException("Cannot restart; " + fileName + " is shorter than the " + restartPosition + " bytes previously written");
+	    	}
+	    	// Lose anything written by chunks that weren't committed
+	    	file.setLength(Math.max(restartPosition, preallocate));
+	    	channel = file.getChannel();
+	    	position = restartPosition;
+	    	buffer = DirectBufferPool.acquire(bufferSize);
+	    	writer = new OutputStreamWriter(new OutputStream() {
+	    		@Override
+	    		public void write(int b) throws IOException {
+	    			write(new byte[]{(byte)b}, 0, 1);
+	    		}
+	    		@Override
+	    		public void write(byte[] b, int off, int len) throws IOException {
+	    			append(b, off, len);
+	    		}
+	    	}, getEncoding());
+	    } catch(IOException ioEx) {
+	    	throw new RuntimeException(ioEx);
+	    }
+	}
+
+	@Override
+	public void close() {
+		if(writer != null) {
+			try {
+				synchronized(writer) {
+					writer.flush();
+					flushBuffer();
+					if(preallocate > 0) {
+						// Lose any space we didn't use
+						channel.truncate(position);
+					}
+					if(syncPolicy != SyncPolicy.NONE) {
+						channel.force(true);
+					}
+				}
+			} catch(IOException ioEx) {
+		    	throw new RuntimeException(ioEx);
+		    } finally {
+		    	try {
+		    		file.close();
+		    	} catch(IOException ioEx) {
+		    		throw new RuntimeException(ioEx);
+		    	} finally {
+		    		DirectBufferPool.release(buffer);
+		    		buffer = null;
+		    		channel = null;
+		    		file = null;
+		    		writer = null;
+		    	}
+		    }
+		}
+	}
+
+	@Override
+	public long getPosition() {
+		synchronized(writer) {
+			try {
+				writer.flush();
+				flushBuffer();
+				return position;
+			} catch(IOException ioEx) {
+				throw new RuntimeException(ioEx);
+			}
+		}
+	}
+
+	/**
+	 * Returns a Writer which encodes its output into the same buffer as write
+	 */
+	@Override
+	public Writer getWriter() {
+		return writer;
+	}
+
+	@Override
+	public void write(byte[] data, int offset, int length) throws IOException {
+		// Share the Writer's lock so that we interleave correctly with anyone using it
+		synchronized(writer) {
+			// Push out anything the Writer has buffered before we write past it
+			writer.flush();
+			append(data, offset, length);
+			if(syncPolicy == SyncPolicy.CHUNK) {
+				flushBuffer();
+				channel.force(false);
+			}
+		}
+	}
+
+	/**
+	 * Copies the data into the buffer, writing the buffer to the channel whenever it fills
+	 */
+	private void append(byte[] data, int offset, int length) throws IOException {
+		synchronized(writer) {
+			while(length > 0) {
+				if(!buffer.hasRemaining()) {
+					flushBuffer();
+				}
+				int count = Math.min(length, buffer.remaining());
+				buffer.put(data, offset, count);
+				offset += count;
+				length -= count;
+			}
+		}
+	}
+
+	/**
+	 * Writes the contents of the buffer to the channel
+	 */
+	private void flushBuffer() throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+		buffer.clear();
+	}
+
+    /**
+     * The resource we use to determine our output path
+     * @return the resource this FileChannelWriterSource will write to
+     */
+    public FileSystemResource getResource() {
+        return resource;
+    }
+
+    /**
+     * Set the resource we acquire our output path from
+     */
+    public void setResource(FileSystemResource resource) {
+        this.resource = resource;
+    }
+
+    /**
+     * Returns the encoding we are using when writing the file.
+     * Defaults to UTF-8
+     * @return the encoding being used to write the file
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Sets the encoding to use to write the file
+     * @param encoding the encoding the use
+     */
+    public void setEncoding(String encoding) {
+        this.encoding = encoding;
+    }
+
+    /**
+     * The size in bytes of the direct buffer output is accumulated in
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Sets the size in bytes of the direct buffer output is accumulated in before being written to the file.
+     * Defaults to 1MB.
+     * @param bufferSize the buffer size
+     */
+    public void setBufferSize(int bufferSize) {
+        if(bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be positive");
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * When output is forced to disk
+     */
+    public SyncPolicy getSyncPolicy() {
+        return syncPolicy;
+    }
+
+    /**
+     * Sets when output is forced to disk. Defaults to SyncPolicy.NONE.
+     * @param syncPolicy the sync policy to use
+     */
+    public void setSyncPolicy(SyncPolicy syncPolicy) {
+        this.syncPolicy = syncPolicy;
+    }
+
+    /**
+     * The size in bytes the file is extended to when opened
+     */
+    public long getPreallocate() {
+        return preallocate;
+    }
+
+    /**
+     * Sets the size in bytes to extend the file to when it is opened, typically the expected size of the output.
+     * Defaults to 0, in which case the file grows as it is written.
+     * @param preallocate the size to extend the file to
+     */
+    public void setPreallocate(long preallocate) {
+        this.preallocate = preallocate;
+    }
+
+}
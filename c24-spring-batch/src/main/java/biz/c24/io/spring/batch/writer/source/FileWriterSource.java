@@ -17,8 +17,10 @@ package biz.c24.io.spring.batch.writer.source;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.channels.FileChannel;
 
 import org.springframework.batch.core.StepExecution;
 import org.springframework.core.io.FileSystemResource;
@@ -30,17 +32,36 @@ import biz.c24.io.spring.util.C24Utils;
  * Expects to be told the path of the file to write to by the supplied Resource or, 
  * if not specified, a parameter output.file in the job parameters.
  * 
+ * On restart the file is truncated to the length it had when the last chunk was committed and appended to.
+ * 
  * @author Andrew Elmore
  */
-public class FileWriterSource implements WriterSource {
+public class FileWriterSource implements ByteWriterSource, RestartableWriterSource {
 
+	private OutputStream outputStream = null;
 	private OutputStreamWriter outputFile = null;
+	private FileChannel channel = null;
 	private FileSystemResource resource = null;
 	private String encoding = C24Utils.DEFAULT_FILE_ENCODING;
 	
 
 	@Override
 	public void initialise(StepExecution stepExecution) {
+		open(stepExecution, -1);
+	}
+	
+	@Override
+	public void initialise(StepExecution stepExecution, long position) {
+		open(stepExecution, position);
+	}
+	
+	/**
+	 * Opens the output file
+	 * 
+	 * @param stepExecution The step execution
+	 * @param position The position to truncate the file to and append from; -1 to discard any existing contents
+	 */
+	private void open(StepExecution stepExecution, long position) {
 		// Extract the name of the file we're supposed to be writing to
 	    String fileName = resource != null? resource.getPath() : stepExecution.getJobParameters().getString("output.file");
 	    
@@ -50,7 +71,19 @@ public class FileWriterSource implements WriterSource {
 	    }
 	
 	    try {
-	    	outputFile = new OutputStreamWriter(new FileOutputStream(fileName), getEncoding());
+	    	FileOutputStream fileStream = new FileOutputStream(fileName, position >= 0);
+	    	channel = fileStream.getChannel();
+	    	if(position >= 0) {
+	    		if(channel.size() < position) {
+	    			fileStream.close();
+	    			channel = null;
+	    			throw new IllegalStateException("Cannot restart; " + fileName + " is shorter than the " + position + " bytes previously written");
+	    		}
+	    		// Lose anything written by chunks that weren't committed
+	    		channel.truncate(position);
+	    	}
+	    	outputStream = fileStream;
+	    	outputFile = new OutputStreamWriter(outputStream, getEncoding());
 	    } catch(IOException ioEx) {
 	    	throw new RuntimeException(ioEx);
 	    }
@@ -66,15 +99,39 @@ public class FileWriterSource implements WriterSource {
 		    	throw new RuntimeException(ioEx);
 		    } finally {
 		    	outputFile = null;
+		    	outputStream = null;
+		    	channel = null;
 		    }
 		}	
 	}
 
+	@Override
+	public long getPosition() {
+		synchronized(outputFile) {
+			try {
+				outputFile.flush();
+				return channel.size();
+			} catch(IOException ioEx) {
+				throw new RuntimeException(ioEx);
+			}
+		}
+	}
+
 	@Override
 	public Writer getWriter() {
 		return outputFile;
 	}
 	
+	@Override
+	public void write(byte[] data, int offset, int length) throws IOException {
+		// Share the Writer's lock so that we interleave correctly with anyone using it
+		synchronized(outputFile) {
+			// Push out anything the Writer has buffered before we write past it
+			outputFile.flush();
+			outputStream.write(data, offset, length);
+		}
+	}
+	
 
     /**
      * The resource we use to determine our output path
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.writer.source;
+
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.WriteFailedException;
+
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.data.IOXPathException;
+import biz.c24.io.spring.util.XPathCache;
+
+/**
+ * PartitionedWriterSource which spreads records over a fixed number of files according to a key taken from each
+ * record. All records with the same key are written to the same file.
+ *
+ * The key is either the value of a named element of the record or the result of evaluating an XPath expression
+ * against it. Records without a key are written to the first file.
+ *
+ * @author Andrew Elmore
+ */
+public class KeyPartitionedFileWriterSource extends AbstractPartitionedWriterSource {
+
+	private int partitionCount = 1;
+	private String keyElement = null;
+	private String keyXPath = null;
+
+	private XPathCache xpathCache = XPathCache.getSharedInstance();
+
+	private ByteWriterSource[] partitions = null;
+
+	@Override
+	public void initialise(StepExecution stepExecution) {
+		if(keyElement == null && keyXPath == null) {
+			throw new IllegalStateException("Either keyElement or keyXPath must be set");
+		}
+
+		super.initialise(stepExecution);
+		partitions = new ByteWriterSource[partitionCount];
+		for(int i = 0; i < partitionCount; i++) {
+			partitions[i] = createPartition(i);
+		}
+	}
+
+	@Override
+	public ByteWriterSource acquire(ComplexDataObject item) {
+		Object key = getKey(item);
+		return partitions[key == null? 0 : (key.hashCode() & Integer.MAX_VALUE) % partitions.length];
+	}
+
+	/**
+	 * Extracts the partitioning key from a record
+	 *
+	 * @param item The record
+	 * @return The key; null if the record doesn't have one
+	 */
+	protected Object getKey(ComplexDataObject item) {
+		if(keyElement != null) {
+			return item.getElement(keyElement);
+		}
+
+		try {
+			return xpathCache.getXPath(keyXPath).getString(item);
+		} catch(IOXPathException ex) {
+			throw new WriteFailedException("Failed to evaluate partition key " + keyXPath + " against " + item, ex);
+		}
+	}
+
+	@Override
+	public void release(ByteWriterSource partition, int items, long length) {
+		// Partitions are open for the duration of the step
+	}
+
+	@Override
+	public void close() {
+		if(partitions != null) {
+			try {
+				for(ByteWriterSource partition : partitions) {
+					partition.close();
+				}
+			} finally {
+				partitions = null;
+			}
+		}
+	}
+
+	/**
+	 * The number of files records are spread over
+	 */
+	public int getPartitionCount() {
+		return partitionCount;
+	}
+
+	/**
+	 * Sets the number of files records are spread over. Defaults to 1.
+	 *
+	 * @param partitionCount The number of files
+	 */
+	public void setPartitionCount(int partitionCount) {
+		if(partitionCount < 1) {
+			throw new IllegalArgumentException("partitionCount must be at least 1");
+		}
+		this.partitionCount = partitionCount;
+	}
+
+	/**
+	 * The name of the element whose value is used as the partitioning key
+	 */
+	public String getKeyElement() {
+		return keyElement;
+	}
+
+	/**
+	 * Sets the name of the element whose value is used as the partitioning key.
+	 * Cheaper than keyXPath where the key is a direct child of the record.
+	 *
+	 * @param keyElement The element name
+	 */
+	public void setKeyElement(String keyElement) {
+		this.keyElement = keyElement;
+	}
+
+	/**
+	 * The XPath expression evaluated to get the partitioning key
+	 */
+	public String getKeyXPath() {
+		return keyXPath;
+	}
+
+	/**
+	 * Sets an XPath expression to evaluate against each record to get its partitioning key
+	 *
+	 * @param keyXPath The XPath expression
+	 */
+	public void setKeyXPath(String keyXPath) {
+		this.keyXPath = keyXPath;
+	}
+
+}
@@ -0,0 +1,457 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.writer.source;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.core.io.FileSystemResource;
+
+import biz.c24.io.spring.util.C24Utils;
+
+/**
+ * WriterSource that writes all output to a single zip file, compressing in parallel.
+ * Expects to be told the path of the file to write to by the supplied Resource or,
+ * if not specified, by the parameter output.file in the job parameters.
+ *
+ * Rather than have every thread queue up behind a single Deflater, each writing thread gets its own entry in the
+ * zip file which it compresses independently. Entries are compressed to temporary files alongside the output and
+ * assembled into the zip file when the source is closed. If only one thread wrote, the single entry is named as
+ * ZipFileWriterSource would name it; otherwise the entries are numbered, so output.csv.zip would contain
+ * output-0.csv, output-1.csv and so on.
+ *
+ * Large outputs are written in Zip64 format as required.
+ *
+ * @author Andrew Elmore
+ */
+public class ParallelZipFileWriterSource implements ByteWriterSource {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ParallelZipFileWriterSource.class);
+
+	private static final long ZIP64_THRESHOLD = 0xFFFFFFFFL;
+	private static final int ZIP64_ENTRY_THRESHOLD = 0xFFFF;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static String pathSepString = System.getProperty("file.separator");
+
+	private FileSystemResource resource = null;
+	private String encoding = C24Utils.DEFAULT_FILE_ENCODING;
+	private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+	private String fileName = null;
+	private String entryName = null;
+	private AtomicInteger entryCount = null;
+	private List<Entry> entries = null;
+	private ThreadLocal<Entry> threadEntry = new ThreadLocal<Entry>();
+
+	/**
+	 * A thread's entry, compressed to a temporary file
+	 */
+	private class Entry {
+		private final int index;
+		private final File tempFile;
+		private final Deflater deflater;
+		private final DeflaterOutputStream out;
+		private final CRC32 crc = new CRC32();
+		private long size = 0;
+		private long compressedSize = 0;
+		private long offset = 0;
+		private OutputStreamWriter writer = null;
+
+		Entry(int index) throws IOException {
+			this.index = index;
+			File outputFile = new File(fileName);
+			tempFile = File.createTempFile(outputFile.getName() + "-", ".part", outputFile.getAbsoluteFile().getParentFile());
+			deflater = new Deflater(compressionLevel, true);
+			out = new DeflaterOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE), deflater, BUFFER_SIZE);
+		}
+
+		void write(byte[] data, int offset, int length) throws IOException {
+			crc.update(data, offset, length);
+			out.write(data, offset, length);
+			size += length;
+		}
+
+		Writer getWriter() throws IOException {
+			if(writer == null) {
+				writer = new OutputStreamWriter(new OutputStream() {
+					@Override
+					public void write(int b) throws IOException {
+						write(new byte[]{(byte)b}, 0, 1);
+					}
+					@Override
+					public void write(byte[] b, int off, int len) throws IOException {
+						Entry.this.write(b, off, len);
+					}
+				}, getEncoding());
+			}
+			return writer;
+		}
+
+		void finish() throws IOException {
+			try {
+				if(writer != null) {
+					writer.flush();
+				}
+				out.close();
+				compressedSize = tempFile.length();
+			} finally {
+				deflater.end();
+			}
+		}
+	}
+
+	@Override
+	public void initialise(StepExecution stepExecution) {
+		// Extract the name of the file we're supposed to be writing to
+        String fileName = resource != null? resource.getPath() : stepExecution.getJobParameters().getString("output.file");
+
+	    // Remove any leading file:// if it exists
+	    if(fileName.startsWith("file://")) {
+	    		fileName = fileName.substring("file://".length());
+	    }
+
+	    // Now create the name of our zipEntry
+	    // Strip off the leading path and the suffix (ie the zip extension)
+	    int tailStarts = fileName.lastIndexOf(pathSepString) + 1;
+	    int tailEnds = fileName.lastIndexOf('.');
+	    if(tailEnds < tailStarts) {
+	    	tailEnds = fileName.length();
+	    }
+
+	    this.fileName = fileName;
+	    this.entryName = fileName.substring(tailStarts, tailEnds);
+	    entryCount = new AtomicInteger();
+	    entries = new ArrayList<Entry>();
+	    threadEntry = new ThreadLocal<Entry>();
+	}
+
+	/**
+	 * Get the calling thread's entry, creating it if necessary
+	 */
+	private Entry getEntry() throws IOException {
+		Entry entry = threadEntry.get();
+		if(entry == null) {
+			entry = new Entry(entryCount.getAndIncrement());
+			synchronized(entries) {
+				entries.add(entry);
+			}
+			threadEntry.set(entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * Returns a Writer to the calling thread's entry
+	 */
+	@Override
+	public Writer getWriter() {
+		try {
+			return getEntry().getWriter();
+		} catch(IOException ioEx) {
+			throw new RuntimeException(ioEx);
+		}
+	}
+
+	@Override
+	public void write(byte[] data, int offset, int length) throws IOException {
+		Entry entry = getEntry();
+		if(entry.writer != null) {
+			// Push out anything the Writer has buffered before we write past it
+			entry.writer.flush();
+		}
+		entry.write(data, offset, length);
+	}
+
+	@Override
+	public void close() {
+		if(entries == null) {
+			return;
+		}
+
+		try {
+			synchronized(entries) {
+				if(entries.isEmpty()) {
+					// Nothing was written but we still want an entry in the file
+					getEntry();
+				}
+				for(Entry entry : entries) {
+					entry.finish();
+				}
+				assemble();
+			}
+		} catch(IOException ioEx) {
+			throw new RuntimeException(ioEx);
+		} finally {
+			for(Entry entry : entries) {
+				if(!entry.tempFile.delete()) {
+					LOG.warn("Failed to delete temporary file {}", entry.tempFile);
+				}
+			}
+			entries = null;
+			threadEntry = new ThreadLocal<Entry>();
+		}
+	}
+
+	/**
+	 * The name of an entry in the zip file
+	 */
+	private String getEntryName(Entry entry) {
+		if(entries.size() == 1) {
+			return entryName;
+		}
+		int extension = entryName.lastIndexOf('.');
+		return extension < 0? entryName + "-" + entry.index
+				: entryName.substring(0, extension) + "-" + entry.index + entryName.substring(extension);
+	}
+
+	/**
+	 * Writes the zip file from the compressed entries
+	 */
+	private void assemble() throws IOException {
+		int[] time = getDosTime();
+		ZipStream out = new ZipStream(new BufferedOutputStream(new FileOutputStream(fileName), BUFFER_SIZE));
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+
+			for(Entry entry : entries) {
+				entry.offset = out.written;
+				byte[] name = getEntryName(entry).getBytes("UTF-8");
+				boolean zip64 = entry.size >= ZIP64_THRESHOLD || entry.compressedSize >= ZIP64_THRESHOLD;
+
+				// Local file header
+				out.writeInt(0x04034b50);
+				out.writeShort(zip64? 45 : 20);
+				out.writeShort(0x0800);	// UTF-8 names
+				out.writeShort(8);		// Deflated
+				out.writeShort(time[0]);
+				out.writeShort(time[1]);
+				out.writeInt(entry.crc.getValue());
+				out.writeInt(zip64? ZIP64_THRESHOLD : entry.compressedSize);
+				out.writeInt(zip64? ZIP64_THRESHOLD : entry.size);
+				out.writeShort(name.length);
+				out.writeShort(zip64? 20 : 0);
+				out.write(name);
+				if(zip64) {
+					out.writeShort(0x0001);
+					out.writeShort(16);
+					out.writeLong(entry.size);
+					out.writeLong(entry.compressedSize);
+				}
+
+				// The compressed data
+				InputStream in = new FileInputStream(entry.tempFile);
+				try {
+					int read;
+					while((read = in.read(buffer)) >= 0) {
+						out.write(buffer, 0, read);
+					}
+				} finally {
+					in.close();
+				}
+			}
+
+			long centralStart = out.written;
+			for(Entry entry : entries) {
+				byte[] name = getEntryName(entry).getBytes("UTF-8");
+				boolean zip64Size = entry.size >= ZIP64_THRESHOLD || entry.compressedSize >= ZIP64_THRESHOLD;
+				boolean zip64Offset = entry.offset >= ZIP64_THRESHOLD;
+				int extraLength = (zip64Size? 16 : 0) + (zip64Offset? 8 : 0);
+
+				// Central directory header
+				out.writeInt(0x02014b50);
+				out.writeShort(extraLength > 0? 45 : 20);
+				out.writeShort(extraLength > 0? 45 : 20);
+				out.writeShort(0x0800);
+				out.writeShort(8);
+				out.writeShort(time[0]);
+				out.writeShort(time[1]);
+				out.writeInt(entry.crc.getValue());
+				out.writeInt(zip64Size? ZIP64_THRESHOLD : entry.compressedSize);
+				out.writeInt(zip64Size? ZIP64_THRESHOLD : entry.size);
+				out.writeShort(name.length);
+				out.writeShort(extraLength > 0? extraLength + 4 : 0);
+				out.writeShort(0);	// Comment
+				out.writeShort(0);	// Disk
+				out.writeShort(0);	// Internal attributes
+				out.writeInt(0);	// External attributes
+				out.writeInt(zip64Offset? ZIP64_THRESHOLD : entry.offset);
+				out.write(name);
+				if(extraLength > 0) {
+					out.writeShort(0x0001);
+					out.writeShort(extraLength);
+					if(zip64Size) {
+						out.writeLong(entry.size);
+						out.writeLong(entry.compressedSize);
+					}
+					if(zip64Offset) {
+						out.writeLong(entry.offset);
+					}
+				}
+			}
+			long centralEnd = out.written;
+			long centralSize = centralEnd - centralStart;
+
+			if(centralStart >= ZIP64_THRESHOLD || entries.size() >= ZIP64_ENTRY_THRESHOLD) {
+				// Zip64 end of central directory record
+				out.writeInt(0x06064b50);
+				out.writeLong(44);
+				out.writeShort(45);
+				out.writeShort(45);
+				out.writeInt(0);
+				out.writeInt(0);
+				out.writeLong(entries.size());
+				out.writeLong(entries.size());
+				out.writeLong(centralSize);
+				out.writeLong(centralStart);
+
+				// ...and its locator
+				out.writeInt(0x07064b50);
+				out.writeInt(0);
+				out.writeLong(centralEnd);
+				out.writeInt(1);
+			}
+
+			// End of central directory record
+			int entryCount = Math.min(entries.size(), ZIP64_ENTRY_THRESHOLD);
+			out.writeInt(0x06054b50);
+			out.writeShort(0);
+			out.writeShort(0);
+			out.writeShort(entryCount);
+			out.writeShort(entryCount);
+			out.writeInt(Math.min(centralSize, ZIP64_THRESHOLD));
+			out.writeInt(Math.min(centralStart, ZIP64_THRESHOLD));
+			out.writeShort(0);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * The current time in MS-DOS format
+	 *
+	 * @return The time and date fields
+	 */
+	private static int[] getDosTime() {
+		Calendar now = Calendar.getInstance();
+		int time = (now.get(Calendar.HOUR_OF_DAY) << 11) | (now.get(Calendar.MINUTE) << 5) | (now.get(Calendar.SECOND) >> 1);
+		int date = ((now.get(Calendar.YEAR) - 1980) << 9) | ((now.get(Calendar.MONTH) + 1) << 5) | now.get(Calendar.DAY_OF_MONTH);
+		return new int[] {time, date};
+	}
+
+	/**
+	 * OutputStream which writes little-endian values and keeps track of how much it has written
+	 */
+	private static class ZipStream extends FilterOutputStream {
+		private long written = 0;
+
+		ZipStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			written++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			written += len;
+		}
+
+		void writeShort(int value) throws IOException {
+			write(value & 0xFF);
+			write((value >>> 8) & 0xFF);
+		}
+
+		void writeInt(long value) throws IOException {
+			writeShort((int)(value & 0xFFFF));
+			writeShort((int)((value >>> 16) & 0xFFFF));
+		}
+
+		void writeLong(long value) throws IOException {
+			writeInt(value & 0xFFFFFFFFL);
+			writeInt(value >>> 32);
+		}
+	}
+
+    /**
+     * The resource we use to determine our output path
+     * @return the resource this ParallelZipFileWriterSource will write to
+     */
+    public FileSystemResource getResource() {
+        return resource;
+    }
+
+    /**
+     * Set the resource we acquire our output path from
+     */
+    public void setResource(FileSystemResource resource) {
+        this.resource = resource;
+    }
+
+    /**
+     * Returns the encoding we are using when writing the file.
+     * Defaults to UTF-8
+     * @return the encoding being used to write the file
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Sets the encoding to use to write the file
+     * @param encoding the encoding the use
+     */
+    public void setEncoding(String encoding) {
+        this.encoding = encoding;
+    }
+
+    /**
+     * The Deflater compression level
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Sets the Deflater compression level, from 0 (none) to 9 (best). Defaults to Deflater.DEFAULT_COMPRESSION.
+     * @param compressionLevel the compression level
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+}
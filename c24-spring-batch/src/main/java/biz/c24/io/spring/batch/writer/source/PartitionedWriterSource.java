@@ -0,0 +1,70 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.writer.source;
+
+import org.springframework.batch.core.StepExecution;
+
+import biz.c24.io.api.data.ComplexDataObject;
+
+/**
+ * A source of output which spreads it over a number of partitions, each of which is a WriterSource in its own
+ * right. The C24ItemWriter asks it which partition each item belongs in, then writes each partition's share of a 
+ * chunk to that partition.
+ * 
+ * It is deliberately not a WriterSource itself, as there is no single Writer to write to; it can only be used as a 
+ * C24ItemWriter's partitionedWriterSource.
+ * 
+ * @author Andrew Elmore
+ */
+public interface PartitionedWriterSource {
+
+	/**
+	 * Initialise the source
+	 * 
+	 * @param stepExecution
+	 */
+	public abstract void initialise(StepExecution stepExecution);
+
+	/**
+	 * Close the source and all of its partitions, releasing any held resources
+	 */
+	public abstract void close();
+
+	/**
+	 * The encoding used by all of the partitions
+	 * 
+	 * @return The name of the encoding
+	 */
+	public abstract String getEncoding();
+	
+	/**
+	 * Get the partition an item should be written to.
+	 * Every call must be matched by the item being included in a subsequent call to release.
+	 * 
+	 * @param item The item to be written
+	 * @return The partition to write it to
+	 */
+	public abstract ByteWriterSource acquire(ComplexDataObject item);
+	
+	/**
+	 * Notify the source that items acquired from a partition have been written to it, or will not be written
+	 * 
+	 * @param partition The partition the items were acquired from
+	 * @param items The number of items
+	 * @param length The number of bytes written to the partition
+	 */
+	public abstract void release(ByteWriterSource partition, int items, long length);
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.writer.source;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.batch.core.StepExecution;
+import org.springframework.core.io.FileSystemResource;
+
+import biz.c24.io.spring.util.C24Utils;
+
+/**
+ * WriterSource that lets several threads write to a single file at once.
+ * Expects to be told the path of the file to write to by the supplied Resource or,
+ * if not specified, a parameter output.file in the job parameters.
+ *
+ * Rather than serialising writers through a lock, each write reserves the next range of the file by atomically
+ * advancing the file position and then writes its data into that range with a positional FileChannel write. Each
+ * block is written contiguously but blocks appear in the order their ranges were reserved, not the order their
+ * writes complete, so this is only suitable for unordered output.
+ *
+ * The Writer shares the same mechanism; data written to it is written when its buffer fills or it is flushed.
+ *
+ * Optionally the file can be extended to an expected size up front; the file is truncated to the amount actually
+ * reserved when the source is closed. If a write fails, the range it reserved is left unfilled.
+ *
+ * @author Andrew Elmore
+ */
+public class PositionalFileWriterSource implements ByteWriterSource {
+
+	private FileSystemResource resource = null;
+	private String encoding = C24Utils.DEFAULT_FILE_ENCODING;
+	private SyncPolicy syncPolicy = SyncPolicy.NONE;
+	private long preallocate = 0;
+
+	private RandomAccessFile file = null;
+	private FileChannel channel = null;
+	private OutputStreamWriter writer = null;
+
+	/**
+	 * The start of the next range to be reserved
+	 */
+	private final AtomicLong position = new AtomicLong();
+
+	@Override
+	public void initialise(StepExecution stepExecution) {
+		// Extract the name of the file we're supposed to be writing to
+	    String fileName = resource != null? resource.getPath() : stepExecution.getJobParameters().getString("output.file");
+
+	    // Remove any leading file:// if it exists
+	    if(fileName.startsWith("file://")) {
+	    		fileName = fileName.substring("file://".length());
+	    }
+
+	    try {
+	    	file = new RandomAccessFile(fileName, "rw");
+	    	// Discard any previous contents
+	    	file.setLength(preallocate);
+	    	channel = file.getChannel();
+	    	position.set(0);
+	    	writer = new OutputStreamWriter(new OutputStream() {
+	    		@Override
+	    		public void write(int b) throws IOException {
+	    			write(new byte[]{(byte)b}, 0, 1);
+	    		}
+	    		@Override
+	    		public void write(byte[] b, int off, int len) throws IOException {
+	    			PositionalFileWriterSource.this.write(b, off, len);
+	    		}
+	    	}, getEncoding());
+	    } catch(IOException ioEx) {
+	    	throw new RuntimeException(ioEx);
+	    }
+	}
+
+	@Override
+	public void close() {
+		if(writer != null) {
+			try {
+				writer.flush();
+				// Lose any space we didn't use
+				channel.truncate(position.get());
+				if(syncPolicy != SyncPolicy.NONE) {
+					channel.force(true);
+				}
+			} catch(IOException ioEx) {
+		    	throw new RuntimeException(ioEx);
+		    } finally {
+		    	try {
+		    		file.close();
+		    	} catch(IOException ioEx) {
+		    		throw new RuntimeException(ioEx);
+		    	} finally {
+		    		channel = null;
+		    		file = null;
+		    		writer = null;
+		    	}
+		    }
+		}
+	}
+
+	/**
+	 * Returns a Writer which writes via write. Callers sharing it must synchronise on it.
+	 */
+	@Override
+	public Writer getWriter() {
+		return writer;
+	}
+
+	@Override
+	public void write(byte[] data, int offset, int length) throws IOException {
+		if(length == 0) {
+			return;
+		}
+		// Reserve our range; from here on we don't need to coordinate with anyone
+		long start = position.getAndAdd(length);
+		ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+		while(buffer.hasRemaining()) {
+			start += channel.write(buffer, start);
+		}
+		if(syncPolicy == SyncPolicy.CHUNK) {
+			channel.force(false);
+		}
+	}
+
+    /**
+     * The resource we use to determine our output path
+     * @return the resource this PositionalFileWriterSource will write to
+     */
+    public FileSystemResource getResource() {
+        return resource;
+    }
+
+    /**
+     * Set the resource we acquire our output path from
+     */
+    public void setResource(FileSystemResource resource) {
+        this.resource = resource;
+    }
+
+    /**
+     * Returns the encoding we are using when writing the file.
+     * Defaults to UTF-8
+     * @return the encoding being used to write the file
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Sets the encoding to use to write the file
+     * @param encoding the encoding the use
+     */
+    public void setEncoding(String encoding) {
+        this.encoding = encoding;
+    }
+
+    /**
+     * When output is forced to disk
+     */
+    public SyncPolicy getSyncPolicy() {
+        return syncPolicy;
+    }
+
+    /**
+     * Sets when output is forced to disk. Defaults to SyncPolicy.NONE.
+     * @param syncPolicy the sync policy to use
+     */
+    public void setSyncPolicy(SyncPolicy syncPolicy) {
+        this.syncPolicy = syncPolicy;
+    }
+
+    /**
+     * The size in bytes the file is extended to when opened
+     */
+    public long getPreallocate() {
+        return preallocate;
+    }
+
+    /**
+     * Sets the size in bytes to extend the file to when it is opened, typically the expected size of the output.
+     * Defaults to 0, in which case the file grows as it is written.
+     * @param preallocate the size to extend the file to
+     */
+    public void setPreallocate(long preallocate) {
+        this.preallocate = preallocate;
+    }
+
+}
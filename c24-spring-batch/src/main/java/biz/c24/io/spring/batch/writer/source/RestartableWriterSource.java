@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.writer.source;
+
+import org.springframework.batch.core.StepExecution;
+
+/**
+ * A WriterSource which can pick up where a previous, failed, step execution left off.
+ * 
+ * The C24ItemWriter records the position returned by getPosition in the step's ExecutionContext as each chunk is
+ * committed. When the step is restarted it passes the last recorded position back in to initialise; the source
+ * must discard any output after that position, which belongs to chunks that were rolled back, and append from there.
+ * 
+ * @author Andrew Elmore
+ */
+public interface RestartableWriterSource extends WriterSource {
+	
+	/**
+	 * Reopen the output written by a previous step execution
+	 * 
+	 * @param stepExecution The step execution
+	 * @param position The position, as returned by getPosition, to truncate the output to and append from
+	 */
+	public abstract void initialise(StepExecution stepExecution, long position);
+	
+	/**
+	 * Makes sure everything written so far has been passed to the underlying output and returns its length.
+	 * 
+	 * @return The number of bytes of output written
+	 */
+	public abstract long getPosition();
+}
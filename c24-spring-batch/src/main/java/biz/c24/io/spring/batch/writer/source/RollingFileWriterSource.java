@@ -0,0 +1,159 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.writer.source;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.springframework.batch.core.StepExecution;
+
+import biz.c24.io.api.data.ComplexDataObject;
+
+/**
+ * PartitionedWriterSource which starts a new file once the current one holds a maximum number of records and/or
+ * bytes.
+ *
+ * The record limit is exact. The byte limit is checked as each record is allocated to a file but sizes are only
+ * known once records have been written, so a file can overrun the limit by the size of the chunks being written to
+ * it concurrently. Files are closed as soon as the last write to them has completed.
+ *
+ * @author Andrew Elmore
+ */
+public class RollingFileWriterSource extends AbstractPartitionedWriterSource {
+
+	private long maxRecords = 0;
+	private long maxBytes = 0;
+
+	/**
+	 * Usage of the files we're currently writing to
+	 */
+	private static class Partition {
+		private final int number;
+		private long records = 0;
+		private long bytes = 0;
+		private int outstanding = 0;
+
+		Partition(int number) {
+			this.number = number;
+		}
+	}
+
+	private final Object lock = new Object();
+	private Map<ByteWriterSource, Partition> open = null;
+	private ByteWriterSource current = null;
+	private Partition currentPartition = null;
+
+	@Override
+	public void initialise(StepExecution stepExecution) {
+		super.initialise(stepExecution);
+		synchronized(lock) {
+			open = new IdentityHashMap<ByteWriterSource, Partition>();
+			roll(0);
+		}
+	}
+
+	/**
+	 * Start writing to a new file. Must be called holding lock.
+	 *
+	 * @param number The number of the new file
+	 */
+	private void roll(int number) {
+		if(current != null && currentPartition.outstanding == 0) {
+			// Nobody else is going to write to it
+			open.remove(current);
+			current.close();
+		}
+		current = createPartition(number);
+		currentPartition = new Partition(number);
+		open.put(current, currentPartition);
+	}
+
+	@Override
+	public ByteWriterSource acquire(ComplexDataObject item) {
+		synchronized(lock) {
+			if((maxRecords > 0 && currentPartition.records >= maxRecords) || (maxBytes > 0 && currentPartition.bytes >= maxBytes)) {
+				roll(currentPartition.number + 1);
+			}
+			currentPartition.records++;
+			currentPartition.outstanding++;
+			return current;
+		}
+	}
+
+	@Override
+	public void release(ByteWriterSource partition, int items, long length) {
+		synchronized(lock) {
+			Partition usage = open.get(partition);
+			usage.outstanding -= items;
+			usage.bytes += length;
+			if(usage.outstanding == 0 && partition != current) {
+				// It's been rolled and this was the last write to it
+				open.remove(partition);
+				partition.close();
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		synchronized(lock) {
+			if(open != null) {
+				try {
+					for(ByteWriterSource partition : open.keySet()) {
+						partition.close();
+					}
+				} finally {
+					open = null;
+					current = null;
+					currentPartition = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The maximum number of records written to each file
+	 */
+	public long getMaxRecords() {
+		return maxRecords;
+	}
+
+	/**
+	 * Sets the maximum number of records written to each file. Defaults to 0 (unlimited).
+	 *
+	 * @param maxRecords The maximum number of records
+	 */
+	public void setMaxRecords(long maxRecords) {
+		this.maxRecords = maxRecords;
+	}
+
+	/**
+	 * The approximate maximum number of bytes written to each file
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Sets the approximate maximum number of bytes written to each file. Defaults to 0 (unlimited).
+	 *
+	 * @param maxBytes The maximum number of bytes
+	 */
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+}
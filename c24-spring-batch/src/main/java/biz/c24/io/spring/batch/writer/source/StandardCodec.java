@@ -0,0 +1,210 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.writer.source;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The CompressionCodecs available out of the box.
+ * 
+ * GZIP and DEFLATE (zlib format) use the JDK's Deflater and accept levels 0-9. LZ4 uses the lz4-java library and 
+ * accepts levels 1-17, using its high compression mode for any level rather than the default fast mode. ZSTD uses 
+ * zstd-jni if it is on the classpath, accepting levels 1-22, and otherwise the pure Java aircompressor library, 
+ * which only supports its default level. None of these libraries are dependencies of this project so must be added
+ * to the classpath to use LZ4 or ZSTD.
+ * 
+ * Levels a codec doesn't support are rejected with an IllegalArgumentException rather than ignored.
+ * 
+ * @author Andrew Elmore
+ */
+public enum StandardCodec implements CompressionCodec {
+
+	GZIP {
+		@Override
+		public void checkLevel(int level) {
+			checkRange(level, 0, 9);
+		}
+		
+		@Override
+		public OutputStream compress(OutputStream out, final int level) throws IOException {
+			checkLevel(level);
+			return new GZIPOutputStream(out, BUFFER_SIZE) {
+				{
+					def.setLevel(level);
+				}
+			};
+		}
+	},
+	
+	DEFLATE {
+		@Override
+		public void checkLevel(int level) {
+			checkRange(level, 0, 9);
+		}
+		
+		@Override
+		public OutputStream compress(OutputStream out, int level) throws IOException {
+			checkLevel(level);
+			final Deflater deflater = new Deflater(level);
+			return new DeflaterOutputStream(out, deflater, BUFFER_SIZE) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						// We supplied the Deflater so we have to release it
+						deflater.end();
+					}
+				}
+			};
+		}
+	},
+	
+	LZ4 {
+		@Override
+		public void checkLevel(int level) {
+			checkRange(level, 1, 17);
+		}
+		
+		@Override
+		public OutputStream compress(OutputStream out, int level) throws IOException {
+			checkLevel(level);
+			String streamClassName = "net.jpountz.lz4.LZ4FrameOutputStream";
+			try {
+				Class<?> factoryClass = load("net.jpountz.lz4.LZ4Factory", "lz4-java");
+				Object factory = factoryClass.getMethod("fastestInstance").invoke(null);
+				Object compressor = level == DEFAULT_LEVEL? 
+						factoryClass.getMethod("fastCompressor").invoke(factory) :
+						factoryClass.getMethod("highCompressor", int.class).invoke(factory, level);
+				
+				Class<?> hashFactoryClass = load("net.jpountz.xxhash.XXHashFactory", "lz4-java");
+				Object checksum = hashFactoryClass.getMethod("hash32").invoke(
+						hashFactoryClass.getMethod("fastestInstance").invoke(null));
+				
+				// The same framing the single argument constructor uses
+				Class<?> blockSizeClass = load(streamClassName + "$BLOCKSIZE", "lz4-java");
+				Class<?> flagClass = load(streamClassName + "$FLG$Bits", "lz4-java");
+				Object flags = Array.newInstance(flagClass, 1);
+				Array.set(flags, 0, enumValue(flagClass, "BLOCK_INDEPENDENCE"));
+				
+				Class<?> streamClass = load(streamClassName, "lz4-java");
+				return (OutputStream)streamClass.getConstructor(OutputStream.class, blockSizeClass, long.class, 
+						load("net.jpountz.lz4.LZ4Compressor", "lz4-java"), load("net.jpountz.xxhash.XXHash32", "lz4-java"), 
+						flags.getClass())
+						.newInstance(out, enumValue(blockSizeClass, "SIZE_4MB"), -1L, compressor, checksum, flags);
+			} catch(InvocationTargetException ex) {
+				throw rethrow(streamClassName, ex);
+			} catch(RuntimeException ex) {
+				throw ex;
+			} catch(Exception ex) {
+				throw new IllegalStateException("Failed to create " + streamClassName, ex);
+			}
+		}
+	},
+	
+	ZSTD {
+		@Override
+		public void checkLevel(int level) {
+			if(isZstdJniAvailable()) {
+				checkRange(level, 1, 22);
+			} else if(level != DEFAULT_LEVEL) {
+				throw new IllegalArgumentException("Compression level " + level 
+						+ " is not supported by aircompressor; add zstd-jni to the classpath to set the zstd level");
+			}
+		}
+		
+		@Override
+		public OutputStream compress(OutputStream out, int level) throws IOException {
+			checkLevel(level);
+			String streamClassName = isZstdJniAvailable()? ZSTD_JNI_STREAM : "io.airlift.compress.zstd.ZstdOutputStream";
+			try {
+				Class<?> streamClass = load(streamClassName, "aircompressor or zstd-jni");
+				if(level == DEFAULT_LEVEL) {
+					return (OutputStream)streamClass.getConstructor(OutputStream.class).newInstance(out);
+				} else {
+					return (OutputStream)streamClass.getConstructor(OutputStream.class, int.class).newInstance(out, level);
+				}
+			} catch(InvocationTargetException ex) {
+				throw rethrow(streamClassName, ex);
+			} catch(RuntimeException ex) {
+				throw ex;
+			} catch(Exception ex) {
+				throw new IllegalStateException("Failed to create " + streamClassName, ex);
+			}
+		}
+	};
+	
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	private static final String ZSTD_JNI_STREAM = "com.github.luben.zstd.ZstdOutputStream";
+	
+	/**
+	 * Checks that this codec supports a compression level, so that misconfiguration can be reported before any 
+	 * output is created
+	 * 
+	 * @param level The compression level, or DEFAULT_LEVEL
+	 * @throws IllegalArgumentException if the level isn't supported
+	 */
+	public abstract void checkLevel(int level);
+	
+	private static void checkRange(int level, int min, int max) {
+		if(level != DEFAULT_LEVEL && (level < min || level > max)) {
+			throw new IllegalArgumentException("Compression level must be between " + min + " and " + max 
+					+ " but was " + level);
+		}
+	}
+	
+	private static boolean isZstdJniAvailable() {
+		try {
+			Class.forName(ZSTD_JNI_STREAM, false, StandardCodec.class.getClassLoader());
+			return true;
+		} catch(ClassNotFoundException ex) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Load a class from an optional library
+	 * 
+	 * @param className The class to load
+	 * @param library The name of the library providing it
+	 */
+	private static Class<?> load(String className, String library) {
+		try {
+			return Class.forName(className, true, StandardCodec.class.getClassLoader());
+		} catch(ClassNotFoundException ex) {
+			throw new IllegalStateException("The " + library + " library must be on the classpath to use " + className, ex);
+		}
+	}
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object enumValue(Class<?> enumClass, String name) {
+		return Enum.valueOf((Class<? extends Enum>)enumClass, name);
+	}
+	
+	private static IOException rethrow(String className, InvocationTargetException ex) {
+		if(ex.getCause() instanceof IOException) {
+			return (IOException)ex.getCause();
+		}
+		throw new IllegalStateException("Failed to create " + className, ex.getCause());
+	}
+}
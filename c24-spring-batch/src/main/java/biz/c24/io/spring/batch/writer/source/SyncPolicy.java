@@ -0,0 +1,39 @@
+/*
+ * Copyright 2012 C24 Technologies.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.writer.source;
+
+/**
+ * Controls when a WriterSource forces its output to the storage device.
+ *
+ * @author Andrew Elmore
+ */
+public enum SyncPolicy {
+
+	/**
+	 * Leave it to the operating system
+	 */
+	NONE,
+
+	/**
+	 * After every chunk has been written, so that a committed chunk's output is durable
+	 */
+	CHUNK,
+
+	/**
+	 * Once, when the step's output is closed
+	 */
+	STEP
+}
@@ -34,7 +34,7 @@ import biz.c24.io.spring.util.C24Utils;
  * 
  * @author Andrew Elmore
  */
-public class ZipFileWriterSource implements WriterSource {
+public class ZipFileWriterSource implements ByteWriterSource {
 
 	private OutputStreamWriter outputWriter = null;
 	private FileSystemResource resource = null;
@@ -104,6 +104,16 @@ public class ZipFileWriterSource implements WriterSource {
 		return outputWriter;
 	}
 	
+	@Override
+	public void write(byte[] data, int offset, int length) throws IOException {
+		// Share the Writer's lock so that we interleave correctly with anyone using it
+		synchronized(outputWriter) {
+			// Push out anything the Writer has buffered before we write past it
+			outputWriter.flush();
+			zipStream.write(data, offset, length);
+		}
+	}
+	
     /**
      * The resource we use to determine our output path
      * @return the resource this ZipFileWriterSource will write to
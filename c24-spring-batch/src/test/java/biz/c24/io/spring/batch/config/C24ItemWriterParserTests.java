@@ -23,9 +23,21 @@ import org.springframework.core.io.FileSystemResource;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import biz.c24.io.api.data.Element;
 import biz.c24.io.api.presentation.Sink;
+import biz.c24.io.examples.models.basic.EmployeeElement;
+import biz.c24.io.examples.transforms.basic.EmployeeToEmailTransform;
 import biz.c24.io.spring.batch.writer.C24ItemWriter;
+import biz.c24.io.spring.batch.writer.C24PipelineItemWriter;
+import biz.c24.io.spring.batch.writer.source.AsyncWriterSource;
+import biz.c24.io.spring.batch.writer.source.CompressedFileWriterSource;
+import biz.c24.io.spring.batch.writer.source.CompressionCodec;
+import biz.c24.io.spring.batch.writer.source.FileChannelWriterSource;
 import biz.c24.io.spring.batch.writer.source.FileWriterSource;
+import biz.c24.io.spring.batch.writer.source.KeyPartitionedFileWriterSource;
+import biz.c24.io.spring.batch.writer.source.PartitionedWriterSource;
+import biz.c24.io.spring.batch.writer.source.StandardCodec;
+import biz.c24.io.spring.batch.writer.source.SyncPolicy;
 import biz.c24.io.spring.batch.writer.source.WriterSource;
 import biz.c24.io.spring.batch.writer.source.ZipFileWriterSource;
 import biz.c24.io.spring.util.C24Utils;
@@ -59,6 +71,22 @@ public class C24ItemWriterParserTests {
 	@Qualifier("ioCustomItemWriter")
 	private C24ItemWriter ioCustomItemWriter;
 	
+	@Autowired
+	@Qualifier("ioChannelItemWriter")
+	private C24ItemWriter ioChannelItemWriter;
+	
+	@Autowired
+	@Qualifier("ioPartitionedItemWriter")
+	private C24ItemWriter ioPartitionedItemWriter;
+	
+	@Autowired
+	@Qualifier("ioCompressedItemWriter")
+	private C24ItemWriter ioCompressedItemWriter;
+	
+	@Autowired
+	@Qualifier("ioPipelineItemWriter")
+	private C24PipelineItemWriter ioPipelineItemWriter;
+	
 	@Test
 	public void validateParser() {
 		
@@ -88,6 +116,55 @@ public class C24ItemWriterParserTests {
         assertThat(fileSource.getResource().getPath(), is("/tmp/test.zip"));
         assertThat(fileSource.getEncoding(), is("TestEncoding"));
     }
+   
+   @Test
+   public void validateFileChannelWriterParsing() {
+       WriterSource source = ioChannelItemWriter.getWriterSource();
+       assertThat(source, is(FileChannelWriterSource.class));
+       
+       FileChannelWriterSource fileSource = (FileChannelWriterSource) source;
+       assertThat(fileSource.getResource().getPath(), is("/tmp/data.csv"));
+       assertThat(fileSource.getEncoding(), is(C24Utils.DEFAULT_FILE_ENCODING));
+       assertThat(fileSource.getBufferSize(), is(4096));
+       assertThat(fileSource.getSyncPolicy(), is(SyncPolicy.CHUNK));
+       assertThat(fileSource.getPreallocate(), is(1048576L));
+   }
+   
+   @Test
+   public void validatePartitionedFileWriterParsing() {
+       assertThat(ioPartitionedItemWriter.getWriterSource(), is(nullValue()));
+       PartitionedWriterSource source = ioPartitionedItemWriter.getPartitionedWriterSource();
+       assertThat(source, is(KeyPartitionedFileWriterSource.class));
+       
+       KeyPartitionedFileWriterSource fileSource = (KeyPartitionedFileWriterSource) source;
+       assertThat(fileSource.getResource().getPath(), is("/tmp/data.csv"));
+       assertThat(fileSource.getPartitionCount(), is(4));
+       assertThat(fileSource.getKeyXPath(), is("LastName"));
+       assertThat(fileSource.getKeyElement(), nullValue());
+   }
+   
+   @Test
+   public void validateCompressedFileWriterParsing() {
+       WriterSource source = ioCompressedItemWriter.getWriterSource();
+       assertThat(source, is(AsyncWriterSource.class));
+       
+       CompressedFileWriterSource fileSource = (CompressedFileWriterSource) ((AsyncWriterSource) source).getDelegate();
+       assertThat(fileSource.getResource().getPath(), is("/tmp/data.csv.gz"));
+       assertThat(fileSource.getCodec(), is((CompressionCodec)StandardCodec.DEFLATE));
+       assertThat(fileSource.getCompressionLevel(), is(9));
+   }
+   
+   @Test
+   public void validatePipelineItemWriterParsing() {
+       assertThat(ioPipelineItemWriter.getWriterSource(), is(fileWriterSource));
+       assertThat(ioPipelineItemWriter.getSink(), is(textualSink));
+       assertThat(ioPipelineItemWriter.getElementType(), is((Element)EmployeeElement.getInstance()));
+       assertThat(ioPipelineItemWriter.getTransformer(), is(EmployeeToEmailTransform.class));
+       assertThat(ioPipelineItemWriter.isValidating(), is(true));
+       assertThat(ioPipelineItemWriter.isValidatingOutput(), is(true));
+       assertThat(ioPipelineItemWriter.isFailfast(), is(false));
+       assertThat(ioPipelineItemWriter.isSaveState(), is(true));
+   }
 	
 
 }
@@ -20,14 +20,19 @@ import static org.junit.Assert.*;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.springframework.batch.item.ItemWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import biz.c24.io.api.transform.Transform;
+import biz.c24.io.spring.batch.processor.C24AsyncItemProcessor;
 import biz.c24.io.spring.batch.processor.C24TransformItemProcessor;
 import biz.c24.io.spring.batch.processor.C24TransformItemProcessorTests.MyEmail;
+import biz.c24.io.spring.batch.processor.VirtualThreadTaskExecutor;
+import biz.c24.io.spring.batch.writer.C24AsyncItemWriter;
+import biz.c24.io.spring.batch.writer.C24TransformItemWriter;
 
 /**
  * Validate the C24TranformItemProcessor parser
@@ -62,6 +67,22 @@ public class C24TransformItemProcessorParserTests {
 	@Qualifier("javaSinkItemProcessor")
 	C24TransformItemProcessor javaSinkItemProcessor;
 	
+	@Autowired
+	@Qualifier("transformItemWriter")
+	C24TransformItemWriter transformItemWriter;
+	
+	@Autowired
+	@Qualifier("listItemWriter")
+	ItemWriter<Object> listItemWriter;
+	
+	@Autowired
+	@Qualifier("asyncItemProcessor")
+	C24AsyncItemProcessor<Object> asyncItemProcessor;
+	
+	@Autowired
+	@Qualifier("asyncItemWriter")
+	C24AsyncItemWriter<Object> asyncItemWriter;
+	
 	@Autowired
 	Transform transform;
 	
@@ -89,6 +110,22 @@ public class C24TransformItemProcessorParserTests {
 
 	}
 	
+	@Test
+	public void validateWriterParser() {
+		assertThat(transformItemWriter.getTransformer(), is(transform));
+		assertThat(transformItemWriter.getDelegate(), is(listItemWriter));
+		assertThat(transformItemWriter.getBatchSize(), is(50));
+		assertThat(transformItemWriter.isValidating(), is(true));
+		assertThat(transformItemWriter.isFailfast(), is(false));
+		assertThat(transformItemWriter.getTargetClass(), nullValue());
+	}
 	
+	@Test
+	public void validateAsyncParser() {
+		assertThat(asyncItemProcessor.getDelegate(), is((Object)validatingTransformItemProcessor));
+		assertThat(asyncItemProcessor.getPermits(), is(8));
+		assertThat(asyncItemProcessor.getTaskExecutor(), is(VirtualThreadTaskExecutor.class));
+		assertThat(asyncItemWriter.getDelegate(), is((Object)listItemWriter));
+	}
 
 }
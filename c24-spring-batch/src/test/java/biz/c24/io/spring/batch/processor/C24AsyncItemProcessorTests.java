@@ -0,0 +1,221 @@
+/*
+ * Copyright 2012 C24 Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.validator.ValidationException;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.*;
+
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.examples.models.basic.Email;
+import biz.c24.io.examples.models.basic.Employee;
+import biz.c24.io.examples.transforms.basic.EmployeeToEmailTransform;
+import biz.c24.io.spring.batch.writer.C24AsyncItemWriter;
+import biz.c24.io.spring.batch.writer.C24TransformItemWriterTests.ListItemWriter;
+
+/**
+ * Test the C24AsyncItemProcessor and C24AsyncItemWriter
+ * 
+ * @author Andrew Elmore
+ */
+public class C24AsyncItemProcessorTests {
+	
+	private Employee createEmployee(String firstName, String lastName) {
+		Employee employee = new Employee();
+		employee.setFirstName(firstName);
+		employee.setLastName(lastName);
+		employee.setSalutation("Mr");
+		employee.setJobTitle("Compliance Officer");
+		return employee;
+	}
+	
+	private List<Future<Object>> processAll(C24AsyncItemProcessor<Object> processor, List<Employee> employees) throws Exception {
+		List<Future<Object>> futures = new ArrayList<Future<Object>>();
+		for(Employee employee : employees) {
+			futures.add(processor.process(employee));
+		}
+		return futures;
+	}
+	
+	@Test
+	public void testTransform() throws Exception {
+		
+		List<Employee> employees = new ArrayList<Employee>();
+		for(int i = 0; i < 50; i++) {
+			employees.add(createEmployee("Dave", "Taylor" + (char)('a' + i % 26)));
+		}
+		
+		for(boolean virtual : new boolean[] {false, true}) {
+			C24AsyncItemProcessor<Object> processor = new C24AsyncItemProcessor<Object>();
+			processor.setDelegate(new C24TransformItemProcessor(new EmployeeToEmailTransform(), true));
+			processor.setTaskExecutor(virtual? new VirtualThreadTaskExecutor() : new SimpleAsyncTaskExecutor());
+			processor.setPermits(4);
+			
+			ListItemWriter delegate = new ListItemWriter();
+			C24AsyncItemWriter<Object> writer = new C24AsyncItemWriter<Object>();
+			writer.setDelegate(delegate);
+			
+			writer.write(processAll(processor, employees));
+			
+			// Confirm we got one email per employee and in the same order
+			List<Object> emails = delegate.getItems();
+			assertThat(emails.size(), is(employees.size()));
+			for(int i = 0; i < employees.size(); i++) {
+				assertThat(emails.get(i), instanceOf(Email.class));
+				assertThat(((Email)emails.get(i)).getSurname(), is(employees.get(i).getLastName()));
+			}
+		}
+	}
+	
+	@Test
+	public void testInvalidItem() throws Exception {
+		
+		List<Employee> employees = new ArrayList<Employee>();
+		employees.add(createEmployee("Dave", "Taylor"));
+		// Use of @ is invalid in an email address
+		employees.add(createEmployee("@ave", "T@ylor"));
+		
+		C24AsyncItemProcessor<Object> processor = new C24AsyncItemProcessor<Object>();
+		processor.setDelegate(new C24TransformItemProcessor(new EmployeeToEmailTransform(), true));
+		processor.setTaskExecutor(new SimpleAsyncTaskExecutor());
+		
+		ListItemWriter delegate = new ListItemWriter();
+		C24AsyncItemWriter<Object> writer = new C24AsyncItemWriter<Object>();
+		writer.setDelegate(delegate);
+		
+		try {
+			writer.write(processAll(processor, employees));
+			fail("C24AsyncItemWriter failed to rethrow the validation failure");
+		} catch(ValidationException vEx) {
+			// Expected behaviour
+		}
+		
+		// Nothing should have been passed on
+		assertThat(delegate.getItems().size(), is(0));
+	}
+	
+	@Test
+	public void testPermits() throws Exception {
+		
+		final AtomicInteger active = new AtomicInteger();
+		final AtomicInteger maxActive = new AtomicInteger();
+		
+		C24AsyncItemProcessor<Object> processor = new C24AsyncItemProcessor<Object>();
+		processor.setDelegate(new ItemProcessor<ComplexDataObject, Object>() {
+			public Object process(ComplexDataObject item) throws Exception {
+				int current = active.incrementAndGet();
+				synchronized(maxActive) {
+					maxActive.set(Math.max(maxActive.get(), current));
+				}
+				Thread.sleep(10);
+				active.decrementAndGet();
+				return item;
+			}
+		});
+		processor.setTaskExecutor(new SimpleAsyncTaskExecutor());
+		processor.setPermits(3);
+		
+		List<Employee> employees = new ArrayList<Employee>();
+		for(int i = 0; i < 30; i++) {
+			employees.add(createEmployee("Dave", "Taylor"));
+		}
+		
+		ListItemWriter delegate = new ListItemWriter();
+		C24AsyncItemWriter<Object> writer = new C24AsyncItemWriter<Object>();
+		writer.setDelegate(delegate);
+		writer.write(processAll(processor, employees));
+		
+		assertThat(delegate.getItems().size(), is(employees.size()));
+		assertThat(maxActive.get(), is(lessThanOrEqualTo(3)));
+	}
+	
+	@Test
+	public void testDefaultPermits() {
+		C24AsyncItemProcessor<Object> processor = new C24AsyncItemProcessor<Object>();
+		assertThat(processor.getPermits(), is(Runtime.getRuntime().availableProcessors()));
+	}
+	
+	@Test
+	public void testReducePermitsWhileProcessing() throws Exception {
+		
+		final AtomicInteger active = new AtomicInteger();
+		final AtomicInteger maxActive = new AtomicInteger();
+		final CountDownLatch latch = new CountDownLatch(1);
+		
+		final C24AsyncItemProcessor<Object> processor = new C24AsyncItemProcessor<Object>();
+		processor.setDelegate(new ItemProcessor<ComplexDataObject, Object>() {
+			public Object process(ComplexDataObject item) throws Exception {
+				int current = active.incrementAndGet();
+				if(latch.getCount() == 0) {
+					synchronized(maxActive) {
+						maxActive.set(Math.max(maxActive.get(), current));
+					}
+				}
+				latch.await();
+				active.decrementAndGet();
+				return item;
+			}
+		});
+		processor.setTaskExecutor(new SimpleAsyncTaskExecutor());
+		processor.setPermits(4);
+		
+		final List<Employee> employees = new ArrayList<Employee>();
+		for(int i = 0; i < 4; i++) {
+			employees.add(createEmployee("Dave", "Taylor"));
+		}
+		List<Future<Object>> futures = processAll(processor, employees);
+		
+		// The items already in progress must still count against the reduced permits
+		processor.setPermits(2);
+		final List<Future<Object>> lateFutures = new ArrayList<Future<Object>>();
+		Thread thread = new Thread() {
+			public void run() {
+				try {
+					lateFutures.addAll(processAll(processor, employees));
+				} catch(Exception ex) {
+					// Picked up by the size check below
+				}
+			}
+		};
+		thread.start();
+		Thread.sleep(100);
+		assertThat(active.get(), is(4));
+		
+		latch.countDown();
+		thread.join(5000);
+		
+		ListItemWriter delegate = new ListItemWriter();
+		C24AsyncItemWriter<Object> writer = new C24AsyncItemWriter<Object>();
+		writer.setDelegate(delegate);
+		futures.addAll(lateFutures);
+		writer.write(futures);
+		
+		assertThat(delegate.getItems().size(), is(8));
+		assertThat(maxActive.get(), is(lessThanOrEqualTo(2)));
+	}
+
+}
@@ -15,17 +15,26 @@
  */
 package biz.c24.io.spring.batch.processor;
 
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Test;
+import org.springframework.beans.BeanUtils;
 import org.springframework.batch.item.validator.ValidationException;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
 
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.presentation.JavaClassSink;
 import biz.c24.io.api.transform.Transform;
 import biz.c24.io.examples.models.basic.Email;
 import biz.c24.io.examples.models.basic.Employee;
 import biz.c24.io.examples.transforms.basic.EmployeeToEmailTransform;
 import biz.c24.io.spring.batch.C24CompoundValidationException;
+import biz.c24.io.spring.util.JavaBeanConverter;
+import biz.c24.io.spring.util.TransformCache;
 
 /**
  * Test the C24TransformItemProcessor
@@ -147,5 +156,91 @@ public class C24TransformItemProcessorTests {
 		
 	}
 	
+	@Test
+	public void testPojoConversionMatchesJavaClassSink() throws Exception {
+		Employee validEmployee = new Employee();
+		
+		validEmployee.setFirstName("Dave");
+		validEmployee.setLastName("Taylor");
+		validEmployee.setSalutation("Mr");
+		validEmployee.setJobTitle("Compliance Officer");
+		
+		ComplexDataObject email = (ComplexDataObject)employeeToEmail.transform(new Object[][]{{validEmployee}})[0][0];
+		
+		JavaClassSink sink = new JavaClassSink();
+		sink.setRootClass(MyEmail.class);
+		MyEmail expected = (MyEmail)sink.convertObject(email);
+		
+		JavaBeanConverter converter = new JavaBeanConverter(MyEmail.class);
+		// Second time round uses the cached plan
+		for(int i = 0; i < 2; i++) {
+			MyEmail actual = (MyEmail)converter.convert(email);
+			for(PropertyDescriptor descriptor : BeanUtils.getPropertyDescriptors(MyEmail.class)) {
+				Method getter = descriptor.getReadMethod();
+				if(getter != null) {
+					assertThat(descriptor.getName(), getter.invoke(actual), is(getter.invoke(expected)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testCachedTransform() throws Exception {
+		
+		final AtomicInteger transforms = new AtomicInteger();
+		Transform countingTransform = new EmployeeToEmailTransform() {
+			@Override
+			public Object[][] transform(Object[][] in) {
+				transforms.incrementAndGet();
+				try {
+					return super.transform(in);
+				} catch(Exception ex) {
+					throw new RuntimeException(ex);
+				}
+			}
+		};
+		
+		TransformCache cache = new TransformCache();
+		cache.setKeyXPaths(new String[] {"FirstName", "LastName"});
+		
+		C24TransformItemProcessor transformer = new C24TransformItemProcessor(countingTransform, true);
+		transformer.setCache(cache);
+		
+		Email first = null;
+		for(String jobTitle : new String[] {"Compliance Officer", "Barman", "Fireman"}) {
+			// The job title doesn't contribute to the email so isn't part of the key
+			Employee employee = new Employee();
+			employee.setFirstName("Dave");
+			employee.setLastName("Taylor");
+			employee.setSalutation("Mr");
+			employee.setJobTitle(jobTitle);
+			
+			Email email = (Email)transformer.process(employee);
+			assertThat(email.getSurname(), is("Taylor"));
+			if(first == null) {
+				first = email;
+			} else {
+				// We should get a copy each time
+				assertThat(email, not(sameInstance(first)));
+			}
+		}
+		
+		assertThat(transforms.get(), is(1));
+		assertThat(cache.getMissCount(), is(1L));
+		assertThat(cache.getHitCount(), is(2L));
+		
+		// A different key has to be transformed, and evicts the first once the cache is full
+		cache.setMaxSize(1);
+		Employee other = new Employee();
+		other.setFirstName("Andy");
+		other.setLastName("Acheson");
+		other.setSalutation("Mr");
+		other.setJobTitle("Barman");
+		assertThat(((Email)transformer.process(other)).getSurname(), is("Acheson"));
+		
+		assertThat(transforms.get(), is(2));
+		assertThat(cache.size(), is(1));
+		assertThat(cache.getEvictionCount(), is(1L));
+	}
 
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012 C24 Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.processor.performance;
+
+import java.io.IOException;
+import java.text.DecimalFormat;
+
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.presentation.JavaClassSink;
+import biz.c24.io.examples.models.basic.Employee;
+import biz.c24.io.examples.transforms.basic.EmployeeToEmailTransform;
+import biz.c24.io.spring.batch.processor.C24TransformItemProcessorTests.MyEmail;
+import biz.c24.io.spring.util.JavaBeanConverter;
+
+/**
+ * Compare the cost of converting CDOs to POJOs with a JavaClassSink and with a JavaBeanConverter
+ * 
+ * @author Andrew Elmore
+ *
+ */
+public class PojoConversionPerformance {
+
+    private static long WARMUP_SECS = 5;
+    private static long RUN_SECS = 5;
+    
+    /**
+     * Something which converts a CDO to a POJO
+     */
+    private interface Conversion {
+        Object convert(ComplexDataObject cdo) throws IOException;
+    }
+    
+    /**
+     * Repeatedly run the conversion for the specified time
+     * 
+     * @return The number of conversions performed
+     */
+    private static long run(Conversion conversion, ComplexDataObject cdo, long secs) throws IOException {
+        long count = 0;
+        long stopTime = System.currentTimeMillis() + (secs * 1000);
+        while(System.currentTimeMillis() < stopTime) {
+            // Check the time every so often
+            for(int i = 0; i < 1000; i++) {
+                conversion.convert(cdo);
+            }
+            count += 1000;
+        }
+        return count;
+    }
+    
+    private static void measure(String name, Conversion conversion, ComplexDataObject cdo) throws IOException {
+        run(conversion, cdo, WARMUP_SECS);
+        
+        long start = System.nanoTime();
+        long count = run(conversion, cdo, RUN_SECS);
+        long elapsed = System.nanoTime() - start;
+        
+        DecimalFormat df = new DecimalFormat("#0.00");
+        System.out.println(name + " throughput (conversions/sec): " + df.format(count / (elapsed / (double)1000000000)));
+        System.out.println(name + " mean latency (ns): " + df.format(elapsed / (double)count));
+    }
+ 
+    public static void main(String[] args) throws Exception {        
+        
+        Employee employee = new Employee();
+        employee.setFirstName("Dave");
+        employee.setLastName("Taylor");
+        employee.setSalutation("Mr");
+        employee.setJobTitle("Compliance Officer");
+        
+        ComplexDataObject email = (ComplexDataObject)new EmployeeToEmailTransform().transform(new Object[][]{{employee}})[0][0];
+        
+        final JavaClassSink sink = new JavaClassSink();
+        sink.setRootClass(MyEmail.class);
+        measure("JavaClassSink", new Conversion() {
+            public Object convert(ComplexDataObject cdo) throws IOException {
+                return sink.convertObject(cdo);
+            }
+        }, email);
+        
+        final JavaBeanConverter converter = new JavaBeanConverter(MyEmail.class);
+        measure("JavaBeanConverter", new Conversion() {
+            public Object convert(ComplexDataObject cdo) throws IOException {
+                return converter.convert(cdo);
+            }
+        }, email);
+    }
+    
+}
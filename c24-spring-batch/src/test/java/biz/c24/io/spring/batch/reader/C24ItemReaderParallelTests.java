@@ -16,29 +16,46 @@
 package biz.c24.io.spring.batch.reader;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
 
 import org.junit.Test;
 import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.ExecutionContext;
 import org.springframework.batch.item.ItemReader;
 import org.springframework.batch.item.NonTransientResourceException;
 import org.springframework.batch.item.ParseException;
 import org.springframework.batch.item.UnexpectedInputException;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
 
 import biz.c24.io.api.data.ComplexDataObject;
 import biz.c24.io.api.data.ValidationException;
+import biz.c24.io.api.presentation.TextualSink;
 import biz.c24.io.examples.models.basic.EmployeeElement;
+import biz.c24.io.spring.batch.ItemSequence;
+import biz.c24.io.spring.batch.reader.source.FileSource;
 import biz.c24.io.spring.batch.reader.source.SplittingReaderSource;
 import biz.c24.io.spring.batch.reader.source.ZipFileSource;
+import biz.c24.io.spring.batch.writer.C24ItemWriter;
+import biz.c24.io.spring.batch.writer.source.WriterSource;
 import biz.c24.io.spring.core.C24Model;
 import biz.c24.io.spring.source.SourceFactory;
 
@@ -113,6 +130,98 @@ public class C24ItemReaderParallelTests {
     }
     
     
+    @Test
+    public void testSequencedReadWithoutSplitting() throws Exception {
+        
+        final int blockSize = 5;
+        
+        // Enough records for each thread to read several chunks
+        File inputFile = File.createTempFile("ItemReaderParallelTest-", ".csv");
+        inputFile.deleteOnExit();
+        PrintWriter input = new PrintWriter(new FileWriter(inputFile));
+        for(int i = 0; i < 20 * blockSize; i++) {
+            input.println("Mr,Dave,Taylor" + i + ",Porter");
+        }
+        input.close();
+        
+        FileSource source = new FileSource();
+        source.setResource(new FileSystemResource(inputFile));
+        
+        ItemSequence itemSequence = new ItemSequence();
+        itemSequence.setBlockSize(blockSize);
+        
+        // One parser shared between the threads
+        final C24ItemReader<ComplexDataObject> reader = new C24ItemReader<ComplexDataObject>();
+        reader.setModel(employeeModel);
+        reader.setSource(source);
+        reader.setItemSequence(itemSequence);
+        reader.validateConfiguration();
+        
+        final StringWriter output = new StringWriter();
+        final C24ItemWriter writer = new C24ItemWriter();
+        writer.setSink(new TextualSink());
+        writer.setWriterSource(new WriterSource() {
+            public void initialise(StepExecution stepExecution) {
+            }
+            public void close() {
+            }
+            public Writer getWriter() {
+                return output;
+            }
+        });
+        writer.setItemSequence(itemSequence);
+        
+        StepExecution stepExecution = getStepExecution();
+        when(stepExecution.getExecutionContext()).thenReturn(new ExecutionContext());
+        reader.setup(stepExecution);
+        writer.setup(stepExecution);
+        
+        // Each thread reads and writes a chunk of blockSize items at a time, finishing them in a random order
+        final Exception[] failure = new Exception[1];
+        Thread[] threads = new Thread[4];
+        for(int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        int read = blockSize;
+                        while(read == blockSize) {
+                            List<ComplexDataObject> chunk = new ArrayList<ComplexDataObject>();
+                            reader.beforeChunk(null);
+                            ComplexDataObject obj = null;
+                            while(chunk.size() < blockSize && (obj = reader.read()) != null) {
+                                chunk.add(obj);
+                            }
+                            read = chunk.size();
+                            Thread.sleep((long)(Math.random() * 3));
+                            if(read > 0) {
+                                writer.write(chunk);
+                            }
+                            writer.afterChunk(null);
+                            reader.afterChunk(null);
+                        }
+                    } catch(Exception ex) {
+                        failure[0] = ex;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for(Thread thread : threads) {
+            thread.join(20000);
+        }
+        assertNull(failure[0]);
+        
+        writer.cleanup();
+        reader.cleanup();
+        
+        // The output should be in input order
+        BufferedReader written = new BufferedReader(new StringReader(output.toString()));
+        for(int i = 0; i < 20 * blockSize; i++) {
+            assertThat(written.readLine(), is("Mr,Dave,Taylor" + i + ",Porter"));
+        }
+        assertNull(written.readLine());
+    }
+    
     private Collection<ComplexDataObject> readFile(C24Model model, String optionalElementStartRegEx, String optionalElementStopRegEx, boolean validate, SplittingReaderSource source) throws IOException, UnexpectedInputException, ParseException, NonTransientResourceException, ValidationException {
         return readFile(model, optionalElementStartRegEx, optionalElementStopRegEx, validate, source, null);
     }
@@ -30,6 +30,7 @@ import biz.c24.io.api.data.ComplexDataObject;
 import biz.c24.io.api.data.ValidationException;
 import biz.c24.io.examples.models.basic.EmployeeElement;
 import biz.c24.io.spring.batch.C24CompoundValidationException;
+import biz.c24.io.spring.batch.ItemSequence;
 import biz.c24.io.spring.batch.reader.source.SplittingReaderSource;
 import biz.c24.io.spring.batch.reader.source.FileSource;
 import biz.c24.io.spring.batch.reader.source.ZipFileSource;
@@ -251,6 +252,76 @@ public class C24ItemReaderTests {
 		assertThat(source.useMultipleThreadsPerReader(), is(true));
 	}
 	
+	@Test
+	public void testSequencedChunksMatchingBlocks() throws Exception {
+		C24ItemReader<ComplexDataObject> reader = getSequencedReader(1);
+		reader.setup(getStepExecution());
+		
+		// One item per chunk
+		for(int i = 0; i < 3; i++) {
+			reader.beforeChunk(null);
+			assertThat(reader.read(), is(notNullValue()));
+			reader.afterChunk(null);
+		}
+		reader.beforeChunk(null);
+		assertThat(reader.read(), is(nullValue()));
+		reader.afterChunk(null);
+		
+		reader.cleanup();
+	}
+	
+	@Test
+	public void testSequencedChunkLargerThanBlock() throws Exception {
+		C24ItemReader<ComplexDataObject> reader = getSequencedReader(1);
+		reader.setup(getStepExecution());
+		
+		reader.beforeChunk(null);
+		assertThat(reader.read(), is(notNullValue()));
+		try {
+			// A second item needs a second block
+			reader.read();
+			fail("Reading more than a block in a chunk should have failed");
+		} catch(IllegalStateException ex) {
+			// Expected
+		}
+		reader.afterChunkError(null);
+		
+		reader.cleanup();
+	}
+	
+	@Test
+	public void testSequencedChunkSmallerThanBlock() throws Exception {
+		C24ItemReader<ComplexDataObject> reader = getSequencedReader(2);
+		reader.setup(getStepExecution());
+		
+		reader.beforeChunk(null);
+		assertThat(reader.read(), is(notNullValue()));
+		try {
+			// The rest of the block would end up in the next chunk
+			reader.afterChunk(null);
+			fail("Ending a chunk part way through a block should have failed");
+		} catch(IllegalStateException ex) {
+			// Expected
+		}
+		
+		reader.cleanup();
+	}
+	
+	private C24ItemReader<ComplexDataObject> getSequencedReader(int blockSize) {
+		FileSource source = new FileSource();
+		source.setResource(new ClassPathResource("employees-3-valid.csv"));
+		
+		ItemSequence itemSequence = new ItemSequence();
+		itemSequence.setBlockSize(blockSize);
+		
+		C24ItemReader<ComplexDataObject> reader = new C24ItemReader<ComplexDataObject>();
+		reader.setModel(employeeModel);
+		reader.setElementStartPattern(".*");
+		reader.setSource(source);
+		reader.setItemSequence(itemSequence);
+		return reader;
+	}
+	
 	private Collection<ComplexDataObject> readFile(C24Model model, String optionalElementStartRegEx, String optionalElementStopRegEx, boolean validate, SplittingReaderSource source) throws IOException, UnexpectedInputException, ParseException, NonTransientResourceException, ValidationException {
 		return readFile(model, optionalElementStartRegEx, optionalElementStopRegEx, validate, source, null);
 	}
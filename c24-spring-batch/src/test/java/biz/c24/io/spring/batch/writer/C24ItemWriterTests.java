@@ -21,6 +21,9 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Enumeration;
 import java.util.LinkedList;
 import java.util.List;
@@ -29,14 +32,19 @@ import java.util.zip.ZipFile;
 import org.junit.Test;
 import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.ExecutionContext;
 import org.springframework.core.io.FileSystemResource;
 
 import biz.c24.io.api.presentation.TextualSink;
 import biz.c24.io.examples.models.basic.Employee;
+import biz.c24.io.spring.batch.ItemSequence;
 import biz.c24.io.spring.batch.writer.source.FileWriterSource;
+import biz.c24.io.spring.batch.writer.source.RollingFileWriterSource;
+import biz.c24.io.spring.batch.writer.source.WriterSource;
 import biz.c24.io.spring.batch.writer.source.ZipFileWriterSource;
 import static org.mockito.Mockito.*;
 import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.junit.Assert.*;
 
 /**
@@ -211,6 +219,227 @@ public class C24ItemWriterTests {
         }   
     }
     
+    @Test
+    public void testWriterOnlySourceWrite() throws Exception {
+        
+        // A WriterSource which can't accept encoded data; the writer should fall back to sinking to characters
+        final StringWriter output = new StringWriter();
+        WriterSource source = new WriterSource() {
+            public void initialise(StepExecution stepExecution) {
+            }
+            public void close() {
+            }
+            public Writer getWriter() {
+                return output;
+            }
+        };
+        
+        // Configure the ItemWriter
+        C24ItemWriter itemWriter = new C24ItemWriter();     
+        itemWriter.setSink(new TextualSink());
+        itemWriter.setWriterSource(source);
+        itemWriter.setup(getStepExecution(null));
+        // Write the employees out over multiple chunks to make sure the buffer is reused correctly
+        itemWriter.write(employees.subList(0, 1));
+        itemWriter.write(employees.subList(1, employees.size()));
+        itemWriter.cleanup();
+        
+        // Check that we wrote out what was expected
+        BufferedReader reader = new BufferedReader(new StringReader(output.toString()));
+        for(Employee employee : employees) {
+            String expected = employee.getFirstName() + "," + employee.getLastName() + "," + employee.getJobTitle();
+            assertThat(reader.readLine(), is(expected));
+        }
+        assertThat(reader.readLine(), is((String)null));
+    }
+    
+    @Test
+    public void testRollingFileWrite() throws Exception {
+        
+        // Get somewhere temporary to write out to
+        File outputDir = File.createTempFile("ItemWriterTest-", "");
+        outputDir.delete();
+        outputDir.mkdir();
+        outputDir.deleteOnExit();
+        String outputFileName = new File(outputDir, "output.csv").getAbsolutePath();
+        
+        RollingFileWriterSource source = new RollingFileWriterSource();
+        source.setMaxRecords(2);
+        
+        // Configure the ItemWriter
+        C24ItemWriter itemWriter = new C24ItemWriter();     
+        itemWriter.setSink(new TextualSink());
+        itemWriter.setPartitionedWriterSource(source);
+        itemWriter.setup(getStepExecution(outputFileName));
+        itemWriter.write(employees);
+        itemWriter.cleanup();
+        
+        // We should have rolled onto a second file after the first two employees
+        File first = new File(outputDir, "output-0.csv");
+        File second = new File(outputDir, "output-1.csv");
+        first.deleteOnExit();
+        second.deleteOnExit();
+        assertFalse(new File(outputDir, "output-2.csv").exists());
+        
+        FileInputStream inputStream = new FileInputStream(first);
+        try {
+            compareCsv(inputStream, employees.subList(0, 2));
+        } finally {
+            inputStream.close();
+        }
+        inputStream = new FileInputStream(second);
+        try {
+            compareCsv(inputStream, employees.subList(2, 3));
+        } finally {
+            inputStream.close();
+        }
+    }
+    
+    @Test
+    public void testUtf16WriteFromSeveralThreads() throws Exception {
+
+        // Get somewhere temporary to write out to
+        File outputFile = File.createTempFile("ItemWriterTest-", ".csv");
+        outputFile.deleteOnExit();
+        String outputFileName = outputFile.getAbsolutePath();
+
+        // Configure the ItemWriter
+        FileWriterSource source = new FileWriterSource();
+        source.setEncoding("UTF-16");
+        final C24ItemWriter itemWriter = new C24ItemWriter();
+        itemWriter.setSink(new TextualSink());
+        itemWriter.setWriterSource(source);
+        itemWriter.setup(getStepExecution(outputFileName));
+
+        // Each thread sinks into its own buffer
+        itemWriter.write(employees.subList(0, 1));
+        final Exception[] failure = new Exception[1];
+        Thread thread = new Thread() {
+            public void run() {
+                try {
+                    itemWriter.write(employees.subList(1, employees.size()));
+                } catch(Exception ex) {
+                    failure[0] = ex;
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        assertNull(failure[0]);
+        itemWriter.cleanup();
+
+        // A byte order mark part way through would show up as a stray character
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(outputFile), "UTF-16"));
+        try {
+            for(Employee employee : employees) {
+                String expected = employee.getFirstName() + "," + employee.getLastName() + "," + employee.getJobTitle();
+                assertThat(reader.readLine(), is(expected));
+            }
+            assertThat(reader.readLine(), is((String)null));
+        } finally {
+            reader.close();
+        }
+    }
+    
+    @Test
+    public void testOrderedWrite() throws Exception {
+        
+        final StringWriter output = new StringWriter();
+        WriterSource source = new WriterSource() {
+            public void initialise(StepExecution stepExecution) {
+            }
+            public void close() {
+            }
+            public Writer getWriter() {
+                return output;
+            }
+        };
+        
+        final ItemSequence itemSequence = new ItemSequence();
+        
+        // Configure the ItemWriter
+        final C24ItemWriter itemWriter = new C24ItemWriter();     
+        itemWriter.setSink(new TextualSink());
+        itemWriter.setWriterSource(source);
+        itemWriter.setItemSequence(itemSequence);
+        itemWriter.setup(getStepExecution(null));
+        
+        // This thread read the last two employees, so its chunk must be held back...
+        itemSequence.record(1);
+        itemSequence.record(2);
+        itemWriter.write(employees.subList(1, employees.size()));
+        assertThat(output.toString().length(), is(0));
+        
+        // ...until another thread writes the first one
+        final Exception[] failure = new Exception[1];
+        Thread thread = new Thread() {
+            public void run() {
+                try {
+                    itemSequence.record(0);
+                    itemWriter.write(employees.subList(0, 1));
+                } catch(Exception ex) {
+                    failure[0] = ex;
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        assertNull(failure[0]);
+        itemWriter.cleanup();
+        
+        // Check that everything was written in the order it was read
+        BufferedReader reader = new BufferedReader(new StringReader(output.toString()));
+        for(Employee employee : employees) {
+            String expected = employee.getFirstName() + "," + employee.getLastName() + "," + employee.getJobTitle();
+            assertThat(reader.readLine(), is(expected));
+        }
+        assertThat(reader.readLine(), is((String)null));
+    }
+    
+    @Test
+    public void testRestart() throws Exception {
+        
+        // Get somewhere temporary to write out to    
+        File outputFile = File.createTempFile("ItemWriterTest-", ".csv");
+        outputFile.deleteOnExit();
+        String outputFileName = outputFile.getAbsolutePath();
+        
+        // Commit a chunk then fail after writing the next one
+        ExecutionContext executionContext = new ExecutionContext();
+        C24ItemWriter itemWriter = new C24ItemWriter();     
+        itemWriter.setSink(new TextualSink());
+        itemWriter.setWriterSource(new FileWriterSource());
+        itemWriter.setup(getStepExecution(outputFileName, executionContext));
+        itemWriter.open(executionContext);
+        itemWriter.write(employees.subList(0, 2));
+        itemWriter.update(executionContext);
+        itemWriter.write(employees.subList(2, 3));
+        itemWriter.cleanup();
+        itemWriter.close();
+        
+        assertThat(executionContext.getLong("C24ItemWriter.position"), is(greaterThan(0L)));
+        
+        // Restart; the failed chunk should be replaced rather than duplicated
+        ExecutionContext restartContext = new ExecutionContext(executionContext);
+        itemWriter = new C24ItemWriter();     
+        itemWriter.setSink(new TextualSink());
+        itemWriter.setWriterSource(new FileWriterSource());
+        itemWriter.setup(getStepExecution(outputFileName, restartContext));
+        itemWriter.open(restartContext);
+        itemWriter.write(employees.subList(2, 3));
+        itemWriter.update(restartContext);
+        itemWriter.cleanup();
+        itemWriter.close();
+        
+        assertThat(restartContext.getLong("C24ItemWriter.position"), is(outputFile.length()));
+        
+        FileInputStream inputStream = new FileInputStream(outputFileName);
+        try {
+            compareCsv(inputStream, employees);
+        } finally {
+            inputStream.close();
+        }
+    }
     
     /**
 	 * Utility method to check that the contents of a CSV employee file match the list of employees we used to generate it
@@ -244,12 +473,23 @@ public class C24ItemWriterTests {
 	 * @param outputFileName The filename we want the ItemWriter to write to	
 	 */
 	private StepExecution getStepExecution(String outputFileName) throws IOException {
+		return getStepExecution(outputFileName, new ExecutionContext());
+	}
+	
+	/**
+	 * Mock up the necessary job parameters and the step's execution context
+	 * 
+	 * @param outputFileName The filename we want the ItemWriter to write to	
+	 * @param executionContext The step's execution context
+	 */
+	private StepExecution getStepExecution(String outputFileName, ExecutionContext executionContext) throws IOException {
 		
 		JobParameters jobParams = mock(JobParameters.class);
 		when(jobParams.getString("output.file")).thenReturn(outputFileName);
 
 		StepExecution stepExecution = mock(StepExecution.class);
 		when(stepExecution.getJobParameters()).thenReturn(jobParams);
+		when(stepExecution.getExecutionContext()).thenReturn(executionContext);
 		
 		return stepExecution;
 		
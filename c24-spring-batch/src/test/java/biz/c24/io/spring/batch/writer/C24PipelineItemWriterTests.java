@@ -0,0 +1,196 @@
+/*
+ * Copyright 2012 C24 Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.writer;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.validator.ValidationException;
+import org.springframework.util.FileCopyUtils;
+
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.presentation.Source;
+import biz.c24.io.api.presentation.TextualSink;
+import biz.c24.io.api.transform.Transform;
+import biz.c24.io.examples.models.basic.EmployeeElement;
+import biz.c24.io.examples.transforms.basic.EmployeeToEmailTransform;
+import biz.c24.io.spring.batch.C24CompoundValidationException;
+import biz.c24.io.spring.batch.writer.C24PipelineItemWriter.Stage;
+import biz.c24.io.spring.batch.writer.source.FileWriterSource;
+import biz.c24.io.spring.core.C24Model;
+import static org.mockito.Mockito.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.*;
+
+/**
+ * Validate the C24PipelineItemWriter
+ * 
+ * @author Andrew Elmore
+ */
+public class C24PipelineItemWriterTests {
+	
+	private C24Model employeeModel = new C24Model(EmployeeElement.getInstance());
+	
+	private Transform employeeToEmail = new EmployeeToEmailTransform();
+	
+	private List<String> validLines = Arrays.asList(
+			"Mr,Andy,Acheson,Software Developer",
+			"Mr,Joe,Bloggs,Security Guard",
+			"Mr,Greg,Gatsby,Managing Director");
+	
+	private List<String> invalidLines = Arrays.asList(
+			"Mr,Andy,Acheson,Software Developer",
+			"Mr,joe,bloggs,Security Guard",
+			"Mr,Greg,Gatsby,Managing Director");
+	
+	@Test
+	public void testParseTransformAndSink() throws Exception {
+		
+		File outputFile = File.createTempFile("PipelineItemWriterTest-", ".csv");
+		outputFile.deleteOnExit();
+		
+		C24PipelineItemWriter writer = createWriter();
+		writer.setTransformer(employeeToEmail);
+		writer.setValidate(true);
+		writer.setValidateOutput(true);
+		
+		writer.setup(getStepExecution(outputFile.getAbsolutePath()));
+		writer.write(validLines.subList(0, 2));
+		writer.write(validLines.subList(2, 3));
+		writer.cleanup();
+		
+		// The output should be exactly what we'd get by running each stage in turn
+		StringWriter expected = new StringWriter();
+		TextualSink sink = new TextualSink();
+		sink.setWriter(expected);
+		for(String line : validLines) {
+			Object[][] email = employeeToEmail.transform(new Object[][]{{parse(line)}});
+			sink.writeObject((ComplexDataObject)email[0][0]);
+		}
+		
+		assertThat(FileCopyUtils.copyToString(new FileReader(outputFile)), is(expected.toString()));
+		
+		assertThat(writer.getItemCount(), is(3L));
+		assertThat(writer.getStageTime(Stage.PARSE), is(greaterThan(0L)));
+		assertThat(writer.getStageTime(Stage.TRANSFORM), is(greaterThan(0L)));
+		assertThat(writer.getStageTime(Stage.SINK), is(greaterThan(0L)));
+	}
+	
+	@Test
+	public void testParsedItems() throws Exception {
+		
+		File outputFile = File.createTempFile("PipelineItemWriterTest-", ".csv");
+		outputFile.deleteOnExit();
+		
+		// No transform; the items should be sunk as they are
+		C24PipelineItemWriter writer = createWriter();
+		writer.setValidate(true);
+		
+		StringWriter expected = new StringWriter();
+		TextualSink sink = new TextualSink();
+		sink.setWriter(expected);
+		
+		Object[] items = new Object[validLines.size()];
+		for(int i = 0; i < items.length; i++) {
+			ComplexDataObject cdo = parse(validLines.get(i));
+			items[i] = cdo;
+			sink.writeObject(cdo);
+		}
+		
+		writer.setup(getStepExecution(outputFile.getAbsolutePath()));
+		writer.write(Arrays.asList(items));
+		writer.cleanup();
+		
+		assertThat(FileCopyUtils.copyToString(new FileReader(outputFile)), is(expected.toString()));
+		assertThat(writer.getStageTime(Stage.PARSE), is(0L));
+		assertThat(writer.getStageTime(Stage.TRANSFORM), is(0L));
+	}
+	
+	@Test
+	public void testInvalidItems() throws Exception {
+		
+		File outputFile = File.createTempFile("PipelineItemWriterTest-", ".csv");
+		outputFile.deleteOnExit();
+		
+		C24PipelineItemWriter writer = createWriter();
+		writer.setValidate(true);
+		
+		writer.setup(getStepExecution(outputFile.getAbsolutePath()));
+		try {
+			writer.write(invalidLines);
+			fail("C24PipelineItemWriter failed to detect invalid CDO");
+		} catch(ValidationException vEx) {
+			// Expected behaviour
+			assertThat(vEx, not(instanceOf(C24CompoundValidationException.class)));
+		}
+		
+		writer.setFailfast(false);
+		try {
+			writer.write(invalidLines);
+			fail("C24PipelineItemWriter failed to detect invalid CDO");
+		} catch(C24CompoundValidationException cvEx) {
+			// Expected behaviour
+			assertThat(cvEx.getFailures().size(), is(2));
+		}
+		writer.cleanup();
+		
+		// Nothing should have been written
+		assertThat(outputFile.length(), is(0L));
+	}
+	
+	private C24PipelineItemWriter createWriter() {
+		C24PipelineItemWriter writer = new C24PipelineItemWriter();
+		writer.setModel(employeeModel);
+		writer.setSink(new TextualSink());
+		writer.setWriterSource(new FileWriterSource());
+		writer.validateConfiguration();
+		return writer;
+	}
+	
+	private ComplexDataObject parse(String line) throws IOException {
+		Source source = employeeModel.getRootElement().getModel().source();
+		source.setReader(new StringReader(line));
+		return source.readObject(employeeModel.getRootElement());
+	}
+	
+	/**
+	 * Mock up the necessary job parameters
+	 * 
+	 * @param outputFileName The filename we want the ItemWriter to write to	
+	 */
+	private StepExecution getStepExecution(String outputFileName) throws IOException {
+		
+		JobParameters jobParams = mock(JobParameters.class);
+		when(jobParams.getString("output.file")).thenReturn(outputFileName);
+
+		StepExecution stepExecution = mock(StepExecution.class);
+		when(stepExecution.getJobParameters()).thenReturn(jobParams);
+		when(stepExecution.getExecutionContext()).thenReturn(new ExecutionContext());
+		
+		return stepExecution;
+		
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2012 C24 Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.batch.writer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.validator.ValidationException;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.transform.Transform;
+import biz.c24.io.examples.models.basic.Email;
+import biz.c24.io.examples.models.basic.Employee;
+import biz.c24.io.examples.transforms.basic.EmployeeToEmailTransform;
+import biz.c24.io.spring.batch.C24CompoundValidationException;
+import biz.c24.io.spring.batch.processor.C24TransformItemProcessorTests.MyEmail;
+
+/**
+ * Test the C24TransformItemWriter
+ * 
+ * @author Andrew Elmore
+ */
+public class C24TransformItemWriterTests {
+	
+	private Transform employeeToEmail = new EmployeeToEmailTransform();
+	
+	/**
+	 * ItemWriter which remembers what it was asked to write
+	 */
+	public static class ListItemWriter implements ItemWriter<Object> {
+		
+		private List<Object> items = new ArrayList<Object>();
+		
+		@Override
+		public void write(List<? extends Object> items) throws Exception {
+			this.items.addAll(items);
+		}
+		
+		public List<Object> getItems() {
+			return items;
+		}
+	}
+	
+	private Employee createEmployee(String firstName, String lastName) {
+		Employee employee = new Employee();
+		employee.setFirstName(firstName);
+		employee.setLastName(lastName);
+		employee.setSalutation("Mr");
+		employee.setJobTitle("Compliance Officer");
+		return employee;
+	}
+	
+	private List<ComplexDataObject> employees = Arrays.<ComplexDataObject>asList(
+			createEmployee("Dave", "Taylor"),
+			createEmployee("Andy", "Acheson"),
+			createEmployee("Steven", "Blair"),
+			createEmployee("Matthew", "Richardson"),
+			createEmployee("Bob", "Smith"));
+	
+	@Test
+	public void testTransformsEachItemByDefault() throws Exception {
+		ListItemWriter delegate = new ListItemWriter();
+		
+		C24TransformItemWriter writer = new C24TransformItemWriter();
+		writer.setTransformer(employeeToEmail);
+		writer.setDelegate(delegate);
+		assertThat(writer.getBatchSize(), is(1));
+		
+		writer.write(employees);
+		
+		List<Object> emails = delegate.getItems();
+		assertThat(emails.size(), is(employees.size()));
+		for(int i = 0; i < employees.size(); i++) {
+			assertThat(((Email)emails.get(i)).getSurname(), is(((Employee)employees.get(i)).getLastName()));
+		}
+	}
+	
+	@Test
+	public void testValidTransform() throws Exception {
+		
+		for(int batchSize : new int[] {0, 1, 2, 5}) {
+			ListItemWriter delegate = new ListItemWriter();
+			
+			C24TransformItemWriter writer = new C24TransformItemWriter();
+			writer.setTransformer(employeeToEmail);
+			writer.setDelegate(delegate);
+			writer.setBatchSize(batchSize);
+			writer.setValidation(true);
+			
+			writer.write(employees);
+			
+			// Confirm we got one email per employee and in the same order
+			List<Object> emails = delegate.getItems();
+			assertThat(emails.size(), is(employees.size()));
+			for(int i = 0; i < employees.size(); i++) {
+				assertThat(emails.get(i), instanceOf(Email.class));
+				assertThat(((Email)emails.get(i)).getSurname(), is(((Employee)employees.get(i)).getLastName()));
+			}
+		}
+	}
+	
+	@Test
+	public void testInvalidTransform() throws Exception {
+		List<ComplexDataObject> chunk = new ArrayList<ComplexDataObject>(employees);
+		// Use of @ is invalid in an email address
+		chunk.add(createEmployee("@ave", "T@ylor"));
+		
+		ListItemWriter delegate = new ListItemWriter();
+		C24TransformItemWriter writer = new C24TransformItemWriter();
+		writer.setTransformer(employeeToEmail);
+		writer.setDelegate(delegate);
+		writer.setBatchSize(2);
+		writer.setValidation(false);
+		
+		// Validation is off so this should succeed
+		writer.write(chunk);
+		assertThat(delegate.getItems().size(), is(chunk.size()));
+		
+		delegate.getItems().clear();
+		writer.setValidation(true);
+		try {
+			writer.write(chunk);
+			fail("C24TransformItemWriter failed to detect invalid CDO");
+		} catch(ValidationException vEx) {
+			// Expected behaviour
+		}
+		
+		writer.setFailfast(false);
+		try {
+			writer.write(chunk);
+			fail("C24TransformItemWriter failed to detect invalid CDO");
+		} catch(C24CompoundValidationException cvEx) {
+			// Expected behaviour
+			assertThat(cvEx.getFailures().size(), is(2));
+		} catch(ValidationException vEx) {
+			fail("C24TransformItemWriter failed to detect multiple failures");
+		}
+		
+		// Nothing should have been passed on
+		assertThat(delegate.getItems().size(), is(0));
+	}
+	
+	@Test
+	public void testPojoTransform() throws Exception {
+		ListItemWriter delegate = new ListItemWriter();
+		
+		C24TransformItemWriter writer = new C24TransformItemWriter();
+		writer.setTransformer(employeeToEmail);
+		writer.setDelegate(delegate);
+		writer.setTargetClass(MyEmail.class);
+		writer.setValidation(true);
+		
+		writer.write(employees.subList(0, 1));
+		
+		assertThat(delegate.getItems().size(), is(1));
+		Object obj = delegate.getItems().get(0);
+		assertThat(obj, instanceOf(MyEmail.class));
+		
+		MyEmail email = (MyEmail) obj;
+		assertThat(email.getFirstNameInitial(), is("D"));
+		assertThat(email.getSurname(), is("Taylor"));
+		assertThat(email.getDomainName(), is("@company.com"));
+	}
+
+}
@@ -0,0 +1,219 @@
+package biz.c24.io.spring.batch.writer.source;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.core.io.FileSystemResource;
+
+
+public class AsyncWriterSourceTests {
+
+    private StepExecution getStepExecution() {
+        JobParameters params = mock(JobParameters.class);
+        StepExecution execution = mock(StepExecution.class);
+        when(execution.getJobParameters()).thenReturn(params);
+        return execution;
+    }
+
+    private AsyncWriterSource getSource(File outputFile) {
+        FileWriterSource fileSource = new FileWriterSource();
+        fileSource.setResource(new FileSystemResource(outputFile.getAbsolutePath()));
+
+        AsyncWriterSource source = new AsyncWriterSource();
+        source.setDelegate(fileSource);
+        return source;
+    }
+
+    @Test
+    public void testOrderedWrites() throws IOException {
+        // Confirm that writes from a single thread are written in order, including those made via the Writer
+
+        File outputFile = File.createTempFile("ItemWriterTest-", ".csv");
+        outputFile.deleteOnExit();
+
+        AsyncWriterSource source = getSource(outputFile);
+        source.setBufferSize(4);
+        source.initialise(getStepExecution());
+
+        for(int i = 0; i < 100; i++) {
+            byte[] line = ("line" + i + "\n").getBytes(source.getEncoding());
+            source.write(line, 0, line.length);
+        }
+        Writer writer = source.getWriter();
+        writer.write("last\n");
+        source.close();
+
+        BufferedReader reader = new BufferedReader(new FileReader(outputFile));
+        for(int i = 0; i < 100; i++) {
+            assertThat(reader.readLine(), is("line" + i));
+        }
+        assertThat(reader.readLine(), is("last"));
+        assertThat(reader.readLine(), is((String)null));
+        reader.close();
+    }
+
+    @Test
+    public void testConcurrentWrites() throws Exception {
+        // Confirm that concurrent writes are all written intact
+
+        File outputFile = File.createTempFile("ItemWriterTest-", ".csv");
+        outputFile.deleteOnExit();
+
+        final AsyncWriterSource source = getSource(outputFile);
+        source.setBufferCount(3);
+        source.initialise(getStepExecution());
+
+        final int numThreads = 4;
+        final int linesPerThread = 500;
+        final CountDownLatch done = new CountDownLatch(numThreads);
+
+        for(int t = 0; t < numThreads; t++) {
+            final int threadNum = t;
+            new Thread() {
+                public void run() {
+                    try {
+                        for(int i = 0; i < linesPerThread; i++) {
+                            byte[] line = (threadNum + "-" + i + "\n").getBytes(source.getEncoding());
+                            source.write(line, 0, line.length);
+                            if(i % 50 == 49) {
+                                // As a chunk commit would
+                                source.flush();
+                            }
+                        }
+                    } catch(IOException ioEx) {
+                        throw new RuntimeException(ioEx);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        done.await();
+        source.close();
+
+        Set<String> lines = new HashSet<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(outputFile));
+        String line;
+        while((line = reader.readLine()) != null) {
+            lines.add(line);
+        }
+        reader.close();
+
+        assertThat(lines.size(), is(numThreads * linesPerThread));
+        for(int t = 0; t < numThreads; t++) {
+            for(int i = 0; i < linesPerThread; i++) {
+                assertTrue(lines.contains(t + "-" + i));
+            }
+        }
+    }
+
+    @Test
+    public void testFlushWaitsForWrite() throws Exception {
+        // Confirm that write returns without waiting for the I/O thread but flush doesn't
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final StringBuilder output = new StringBuilder();
+        AsyncWriterSource source = new AsyncWriterSource();
+        source.setDelegate(new StubWriterSource() {
+            @Override
+            public void write(byte[] data, int offset, int length) throws IOException {
+                try {
+                    release.await();
+                } catch(InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+                synchronized(output) {
+                    output.append(new String(data, offset, length, getEncoding()));
+                }
+            }
+        });
+        source.initialise(getStepExecution());
+
+        byte[] data = "chunk".getBytes(source.getEncoding());
+        source.write(data, 0, data.length);
+        synchronized(output) {
+            assertThat(output.length(), is(0));
+        }
+
+        final CountDownLatch flushed = new CountDownLatch(1);
+        final AsyncWriterSource flushingSource = source;
+        new Thread() {
+            public void run() {
+                try {
+                    flushingSource.flush();
+                    flushed.countDown();
+                } catch(IOException ioEx) {
+                    throw new RuntimeException(ioEx);
+                }
+            }
+        }.start();
+
+        assertFalse(flushed.await(200, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertTrue(flushed.await(10, TimeUnit.SECONDS));
+        synchronized(output) {
+            assertThat(output.toString(), is("chunk"));
+        }
+        source.close();
+    }
+
+    @Test
+    public void testFlushReportsFailure() throws Exception {
+        AsyncWriterSource source = new AsyncWriterSource();
+        source.setDelegate(new StubWriterSource() {
+            @Override
+            public void write(byte[] data, int offset, int length) throws IOException {
+                throw new IOException("Disk full");
+            }
+        });
+        source.initialise(getStepExecution());
+
+        byte[] data = "chunk".getBytes(source.getEncoding());
+        source.write(data, 0, data.length);
+        try {
+            source.flush();
+            fail("The failure to write should have been reported");
+        } catch(IOException ioEx) {
+            assertThat(ioEx.getMessage(), is("Disk full"));
+        }
+        try {
+            source.close();
+        } catch(RuntimeException ex) {
+            // Reported again on close
+        }
+    }
+
+    /**
+     * A delegate which discards everything
+     */
+    private static class StubWriterSource implements ByteWriterSource {
+        public void initialise(StepExecution stepExecution) {
+        }
+        public void close() {
+        }
+        public Writer getWriter() {
+            return null;
+        }
+        public String getEncoding() {
+            return "UTF-8";
+        }
+        public void write(byte[] data, int offset, int length) throws IOException {
+        }
+    }
+
+}
@@ -0,0 +1,217 @@
+package biz.c24.io.spring.batch.writer.source;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+import static org.mockito.Mockito.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.Test;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.core.io.FileSystemResource;
+
+
+public class CompressedFileWriterSourceTests {
+
+    private StepExecution getStepExecution(String outputFileName) {
+        JobParameters params = mock(JobParameters.class);
+        when(params.getString("output.file")).thenReturn(outputFileName);
+        StepExecution execution = mock(StepExecution.class);
+        when(execution.getJobParameters()).thenReturn(params);
+        return execution;
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        // Confirm that by default we write gzip and that encoded data and data written via the Writer are 
+        // interleaved in order
+        
+        // Get somewhere temporary to write out to    
+        File outputFile = File.createTempFile("ItemWriterTest-", ".csv.gz");
+        outputFile.deleteOnExit();
+
+        CompressedFileWriterSource source = new CompressedFileWriterSource();
+        source.setCompressionLevel(9);
+        source.initialise(getStepExecution(outputFile.getAbsolutePath()));
+        
+        source.getWriter().write("first,");
+        byte[] encoded = "second,".getBytes(source.getEncoding());
+        source.write(encoded, 0, encoded.length);
+        source.getWriter().write("third");
+        source.close();
+        
+        // Read the file back and confirm the data is in the order we wrote it
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(outputFile)), source.getEncoding()));
+        assertThat(reader.readLine(), is("first,second,third"));
+        assertThat(reader.readLine(), is((String)null));
+        reader.close();
+    }
+    
+    @Test
+    public void testDeflate() throws IOException {
+        // Get somewhere temporary to write out to    
+        File outputFile = File.createTempFile("ItemWriterTest-", ".csv.z");
+        outputFile.deleteOnExit();
+        
+        CompressedFileWriterSource source = new CompressedFileWriterSource();
+        source.setResource(new FileSystemResource(outputFile.getAbsolutePath()));
+        source.setCodec(StandardCodec.DEFLATE);
+        
+        source.initialise(getStepExecution(null));
+        source.getWriter().write("testDeflate");
+        source.close();
+        
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new InflaterInputStream(new FileInputStream(outputFile)), source.getEncoding()));
+        assertThat(reader.readLine(), is("testDeflate"));
+        reader.close();
+    }
+    
+    @Test
+    public void testCustomCodec() throws IOException {
+        // Confirm that we can plug in our own codec
+        
+        // Get somewhere temporary to write out to    
+        File outputFile = File.createTempFile("ItemWriterTest-", ".csv");
+        outputFile.deleteOnExit();
+        
+        final int[] levels = new int[1];
+        CompressedFileWriterSource source = new CompressedFileWriterSource();
+        source.setResource(new FileSystemResource(outputFile.getAbsolutePath()));
+        source.setCompressionLevel(3);
+        source.setCodec(new CompressionCodec() {
+            @Override
+            public OutputStream compress(OutputStream out, int level) throws IOException {
+                levels[0] = level;
+                // No compression at all
+                return out;
+            }
+        });
+        
+        source.initialise(getStepExecution(null));
+        source.getWriter().write("testCustomCodec");
+        source.close();
+        
+        assertThat(levels[0], is(3));
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(outputFile), source.getEncoding()));
+        assertThat(reader.readLine(), is("testCustomCodec"));
+        reader.close();
+    }
+    
+    @Test
+    public void testLevelOutOfRange() throws IOException {
+        File outputFile = File.createTempFile("ItemWriterTest-", ".csv.gz");
+        outputFile.delete();
+        
+        CompressedFileWriterSource source = new CompressedFileWriterSource();
+        source.setResource(new FileSystemResource(outputFile.getAbsolutePath()));
+        source.setCompressionLevel(12);
+        
+        try {
+            source.initialise(getStepExecution(null));
+            fail("Level 12 should have been rejected for gzip");
+        } catch(IllegalArgumentException ex) {
+            // Expected
+        }
+        assertThat(outputFile.exists(), is(false));
+    }
+    
+    @Test
+    public void testLz4() throws Exception {
+        assumeTrue(isPresent("net.jpountz.lz4.LZ4FrameInputStream"));
+        
+        File outputFile = File.createTempFile("ItemWriterTest-", ".csv.lz4");
+        outputFile.deleteOnExit();
+        
+        CompressedFileWriterSource source = new CompressedFileWriterSource();
+        source.setResource(new FileSystemResource(outputFile.getAbsolutePath()));
+        source.setCodec(StandardCodec.LZ4);
+        source.setCompressionLevel(12);
+        
+        source.initialise(getStepExecution(null));
+        source.getWriter().write("testLz4");
+        source.close();
+        
+        assertThat(readBack(outputFile, "net.jpountz.lz4.LZ4FrameInputStream", source.getEncoding()), is("testLz4"));
+    }
+    
+    @Test
+    public void testZstdLevel() throws Exception {
+        assumeTrue(isPresent("com.github.luben.zstd.ZstdInputStream"));
+        
+        File outputFile = File.createTempFile("ItemWriterTest-", ".csv.zst");
+        outputFile.deleteOnExit();
+        
+        CompressedFileWriterSource source = new CompressedFileWriterSource();
+        source.setResource(new FileSystemResource(outputFile.getAbsolutePath()));
+        source.setCodec(StandardCodec.ZSTD);
+        source.setCompressionLevel(19);
+        
+        source.initialise(getStepExecution(null));
+        source.getWriter().write("testZstdLevel");
+        source.close();
+        
+        assertThat(readBack(outputFile, "com.github.luben.zstd.ZstdInputStream", source.getEncoding()), is("testZstdLevel"));
+    }
+    
+    @Test
+    public void testZstdAircompressor() throws Exception {
+        assumeTrue(isPresent("io.airlift.compress.zstd.ZstdInputStream"));
+        assumeTrue(!isPresent("com.github.luben.zstd.ZstdOutputStream"));
+        
+        File outputFile = File.createTempFile("ItemWriterTest-", ".csv.zst");
+        outputFile.deleteOnExit();
+        
+        CompressedFileWriterSource source = new CompressedFileWriterSource();
+        source.setResource(new FileSystemResource(outputFile.getAbsolutePath()));
+        source.setCodec(StandardCodec.ZSTD);
+        
+        source.initialise(getStepExecution(null));
+        source.getWriter().write("testZstdAircompressor");
+        source.close();
+        
+        assertThat(readBack(outputFile, "io.airlift.compress.zstd.ZstdInputStream", source.getEncoding()), is("testZstdAircompressor"));
+        
+        // aircompressor has no levels so setting one must fail rather than be ignored
+        source.setCompressionLevel(19);
+        try {
+            source.initialise(getStepExecution(null));
+            fail("aircompressor should have rejected the level");
+        } catch(IllegalArgumentException ex) {
+            // Expected
+        }
+    }
+    
+    private static boolean isPresent(String className) {
+        try {
+            Class.forName(className);
+            return true;
+        } catch(ClassNotFoundException ex) {
+            return false;
+        }
+    }
+    
+    /**
+     * Decompresses the first line of a file using a stream class from an optional library
+     */
+    private static String readBack(File file, String inputStreamClass, String encoding) throws Exception {
+        InputStream in = (InputStream)Class.forName(inputStreamClass).getConstructor(InputStream.class)
+                .newInstance(new FileInputStream(file));
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, encoding));
+        try {
+            return reader.readLine();
+        } finally {
+            reader.close();
+        }
+    }
+    
+}
@@ -0,0 +1,133 @@
+package biz.c24.io.spring.batch.writer.source;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import org.junit.Test;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.core.io.FileSystemResource;
+
+
+public class FileChannelWriterSourceTests {
+
+    private StepExecution getStepExecution(String outputFileName) {
+        JobParameters params = mock(JobParameters.class);
+        when(params.getString("output.file")).thenReturn(outputFileName);
+        StepExecution execution = mock(StepExecution.class);
+        when(execution.getJobParameters()).thenReturn(params);
+        return execution;
+    }
+
+    @Test
+    public void testNoResource() throws IOException {
+        // Confirm that FileChannelWriterSource defaults to using output.file from the job parameters if we don't
+        // specify a resource
+        
+        // Get somewhere temporary to write out to    
+        File outputFile = File.createTempFile("ItemWriterTest-", ".csv");
+        outputFile.deleteOnExit();
+
+        FileChannelWriterSource source = new FileChannelWriterSource();
+        source.initialise(getStepExecution(outputFile.getAbsolutePath()));
+        
+        final String testString = "testDefaultResource";
+        source.getWriter().write(testString);
+        source.close();
+        
+        // Read the file back and confirm it contains the test string
+        BufferedReader reader = new BufferedReader(new FileReader(outputFile));
+        assertThat(reader.readLine(), is(testString));
+        reader.close();
+    }
+    
+    @Test
+    public void testEncodedWrite() throws IOException {
+        // Confirm that encoded data and data written via the Writer are interleaved in order, including across
+        // buffer boundaries
+        
+        // Get somewhere temporary to write out to    
+        File outputFile = File.createTempFile("ItemWriterTest-", ".csv");
+        outputFile.deleteOnExit();
+        
+        FileChannelWriterSource source = new FileChannelWriterSource();
+        source.setResource(new FileSystemResource(outputFile.getAbsolutePath()));
+        source.setEncoding("UTF-16BE");
+        source.setBufferSize(16);
+        source.setSyncPolicy(SyncPolicy.CHUNK);
+        
+        source.initialise(getStepExecution(null));
+        
+        source.getWriter().write("first,");
+        byte[] encoded = "second,".getBytes(source.getEncoding());
+        source.write(encoded, 0, encoded.length);
+        source.getWriter().write("third");
+        source.close();
+        
+        // Read the file back and confirm the data is in the order we wrote it
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(outputFile), "UTF-16BE"));
+        assertThat(reader.readLine(), is("first,second,third"));
+        assertThat(reader.readLine(), is((String)null));
+        reader.close();
+    }
+    
+    @Test
+    public void testPreallocate() throws IOException {
+        // Confirm that the file is truncated to what was written
+        
+        // Get somewhere temporary to write out to    
+        File outputFile = File.createTempFile("ItemWriterTest-", ".csv");
+        outputFile.deleteOnExit();
+        
+        FileChannelWriterSource source = new FileChannelWriterSource();
+        source.setResource(new FileSystemResource(outputFile.getAbsolutePath()));
+        source.setPreallocate(64 * 1024);
+        
+        source.initialise(getStepExecution(null));
+        assertThat(outputFile.length(), is(64 * 1024L));
+        
+        byte[] data = "line\n".getBytes(source.getEncoding());
+        source.write(data, 0, data.length);
+        source.close();
+        
+        assertThat(outputFile.length(), is((long)data.length));
+    }
+    
+    @Test
+    public void testRestart() throws IOException {
+        // Confirm that a restart discards anything written after the recorded position and appends from there
+        
+        // Get somewhere temporary to write out to    
+        File outputFile = File.createTempFile("ItemWriterTest-", ".csv");
+        outputFile.deleteOnExit();
+        
+        FileChannelWriterSource source = new FileChannelWriterSource();
+        source.setResource(new FileSystemResource(outputFile.getAbsolutePath()));
+        source.setPreallocate(64 * 1024);
+        
+        source.initialise(getStepExecution(null));
+        source.getWriter().write("committed\n");
+        long position = source.getPosition();
+        source.getWriter().write("rolled back\n");
+        source.close();
+        
+        source.initialise(getStepExecution(null), position);
+        source.getWriter().write("restarted\n");
+        source.close();
+        
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(outputFile), source.getEncoding()));
+        assertThat(reader.readLine(), is("committed"));
+        assertThat(reader.readLine(), is("restarted"));
+        assertThat(reader.readLine(), is((String)null));
+        reader.close();
+    }
+    
+}
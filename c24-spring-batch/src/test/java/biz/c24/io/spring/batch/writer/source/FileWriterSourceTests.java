@@ -6,8 +6,10 @@ import static org.hamcrest.CoreMatchers.*;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 
 import org.junit.Test;
 import org.springframework.batch.core.JobParameters;
@@ -78,4 +80,34 @@ public class FileWriterSourceTests {
         reader.close();
     }
     
+    @Test
+    public void testEncodedWrite() throws IOException {
+        // Confirm that encoded data and data written via the Writer are interleaved in order
+        
+        // Get somewhere temporary to write out to    
+        File outputFile = File.createTempFile("ItemWriterTest-", ".csv");
+        outputFile.deleteOnExit();
+        
+        FileWriterSource source = new FileWriterSource();
+        source.setResource(new FileSystemResource(outputFile.getAbsolutePath()));
+        source.setEncoding("UTF-16BE");
+        
+        JobParameters params = mock(JobParameters.class);
+        StepExecution execution = mock(StepExecution.class);
+        when(execution.getJobParameters()).thenReturn(params);
+        
+        source.initialise(execution);
+        
+        source.getWriter().write("first,");
+        byte[] encoded = "second,".getBytes(source.getEncoding());
+        source.write(encoded, 0, encoded.length);
+        source.getWriter().write("third");
+        source.close();
+        
+        // Read the file back and confirm the data is in the order we wrote it
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(outputFile), "UTF-16BE"));
+        assertThat(reader.readLine(), is("first,second,third"));
+        reader.close();
+    }
+    
 }
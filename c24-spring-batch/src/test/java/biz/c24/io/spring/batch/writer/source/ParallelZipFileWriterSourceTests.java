@@ -0,0 +1,130 @@
+package biz.c24.io.spring.batch.writer.source;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.Test;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.core.io.FileSystemResource;
+
+
+public class ParallelZipFileWriterSourceTests {
+
+    private StepExecution getStepExecution() {
+        JobParameters params = mock(JobParameters.class);
+        StepExecution execution = mock(StepExecution.class);
+        when(execution.getJobParameters()).thenReturn(params);
+        return execution;
+    }
+
+    @Test
+    public void testSingleThread() throws IOException {
+        // Confirm that a single thread's output is written to a single entry named as ZipFileWriterSource would
+        
+        File outputFile = File.createTempFile("ItemWriterTest-", ".csv.zip");
+        outputFile.deleteOnExit();
+        
+        ParallelZipFileWriterSource source = new ParallelZipFileWriterSource();
+        source.setResource(new FileSystemResource(outputFile.getAbsolutePath()));
+        source.initialise(getStepExecution());
+        
+        source.getWriter().write("first\n");
+        byte[] encoded = "second\n".getBytes(source.getEncoding());
+        source.write(encoded, 0, encoded.length);
+        source.close();
+        
+        ZipFile zipFile = new ZipFile(outputFile);
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        assertTrue(entries.hasMoreElements());
+        ZipEntry entry = entries.nextElement();
+        assertFalse(entries.hasMoreElements());
+        assertThat(entry.getName(), is(outputFile.getName().substring(0, outputFile.getName().length() - ".zip".length())));
+        
+        BufferedReader reader = new BufferedReader(new InputStreamReader(zipFile.getInputStream(entry)));
+        assertThat(reader.readLine(), is("first"));
+        assertThat(reader.readLine(), is("second"));
+        assertThat(reader.readLine(), is((String)null));
+        reader.close();
+        zipFile.close();
+    }
+    
+    @Test
+    public void testConcurrentWrites() throws Exception {
+        // Confirm that each thread gets its own entry and nothing is lost
+        
+        File outputDir = File.createTempFile("ItemWriterTest-", "");
+        outputDir.delete();
+        outputDir.mkdir();
+        outputDir.deleteOnExit();
+        File outputFile = new File(outputDir, "output.csv.zip");
+        outputFile.deleteOnExit();
+        
+        final ParallelZipFileWriterSource source = new ParallelZipFileWriterSource();
+        source.setResource(new FileSystemResource(outputFile.getAbsolutePath()));
+        source.initialise(getStepExecution());
+        
+        final int numThreads = 4;
+        final int linesPerThread = 1000;
+        final CountDownLatch done = new CountDownLatch(numThreads);
+        
+        for(int t = 0; t < numThreads; t++) {
+            final int threadNum = t;
+            new Thread() {
+                public void run() {
+                    try {
+                        for(int i = 0; i < linesPerThread; i++) {
+                            byte[] line = (threadNum + "-" + i + "\n").getBytes(source.getEncoding());
+                            source.write(line, 0, line.length);
+                        }
+                    } catch(IOException ioEx) {
+                        throw new RuntimeException(ioEx);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        
+        done.await();
+        source.close();
+        
+        // Only the zip file should remain
+        assertThat(outputDir.list().length, is(1));
+        
+        Set<String> names = new HashSet<String>();
+        Set<String> lines = new HashSet<String>();
+        ZipFile zipFile = new ZipFile(outputFile);
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while(entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            names.add(entry.getName());
+            BufferedReader reader = new BufferedReader(new InputStreamReader(zipFile.getInputStream(entry)));
+            String line;
+            while((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+            reader.close();
+        }
+        zipFile.close();
+        
+        assertThat(names.size(), is(numThreads));
+        for(int t = 0; t < numThreads; t++) {
+            assertTrue(names.contains("output-" + t + ".csv"));
+        }
+        assertThat(lines.size(), is(numThreads * linesPerThread));
+    }
+    
+}
@@ -0,0 +1,115 @@
+package biz.c24.io.spring.batch.writer.source;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import static org.hamcrest.CoreMatchers.*;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.core.io.FileSystemResource;
+
+
+public class PositionalFileWriterSourceTests {
+
+    private StepExecution getStepExecution(String outputFileName) {
+        JobParameters params = mock(JobParameters.class);
+        when(params.getString("output.file")).thenReturn(outputFileName);
+        StepExecution execution = mock(StepExecution.class);
+        when(execution.getJobParameters()).thenReturn(params);
+        return execution;
+    }
+
+    @Test
+    public void testNoResource() throws IOException {
+        // Confirm that PositionalFileWriterSource defaults to using output.file from the job parameters if we don't
+        // specify a resource
+        
+        // Get somewhere temporary to write out to    
+        File outputFile = File.createTempFile("ItemWriterTest-", ".csv");
+        outputFile.deleteOnExit();
+
+        PositionalFileWriterSource source = new PositionalFileWriterSource();
+        source.initialise(getStepExecution(outputFile.getAbsolutePath()));
+        
+        final String testString = "testDefaultResource";
+        source.getWriter().write(testString);
+        source.close();
+        
+        // Read the file back and confirm it contains the test string
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(outputFile), source.getEncoding()));
+        assertThat(reader.readLine(), is(testString));
+        reader.close();
+    }
+    
+    @Test
+    public void testConcurrentWrites() throws Exception {
+        // Confirm that concurrent writes neither overlap nor leave gaps, and that the preallocated space we don't 
+        // use is released
+        
+        // Get somewhere temporary to write out to    
+        File outputFile = File.createTempFile("ItemWriterTest-", ".csv");
+        outputFile.deleteOnExit();
+        
+        final PositionalFileWriterSource source = new PositionalFileWriterSource();
+        source.setResource(new FileSystemResource(outputFile.getAbsolutePath()));
+        source.setPreallocate(1024 * 1024);
+        source.initialise(getStepExecution(null));
+        
+        final int numThreads = 4;
+        final int linesPerThread = 1000;
+        final long[] written = new long[numThreads];
+        final CountDownLatch done = new CountDownLatch(numThreads);
+        
+        for(int t = 0; t < numThreads; t++) {
+            final int threadNum = t;
+            new Thread() {
+                public void run() {
+                    try {
+                        for(int i = 0; i < linesPerThread; i++) {
+                            byte[] line = (threadNum + "-" + i + "\n").getBytes(source.getEncoding());
+                            source.write(line, 0, line.length);
+                            written[threadNum] += line.length;
+                        }
+                    } catch(IOException ioEx) {
+                        throw new RuntimeException(ioEx);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        
+        done.await();
+        source.close();
+        
+        long total = 0;
+        for(long length : written) {
+            total += length;
+        }
+        assertThat(outputFile.length(), is(total));
+        
+        Set<String> lines = new HashSet<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(outputFile), source.getEncoding()));
+        String line;
+        while((line = reader.readLine()) != null) {
+            lines.add(line);
+        }
+        reader.close();
+        
+        assertThat(lines.size(), is(numThreads * linesPerThread));
+        for(int t = 0; t < numThreads; t++) {
+            for(int i = 0; i < linesPerThread; i++) {
+                assertThat(lines.contains(t + "-" + i), is(true));
+            }
+        }
+    }
+    
+}
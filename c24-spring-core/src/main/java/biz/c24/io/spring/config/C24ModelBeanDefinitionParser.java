@@ -18,6 +18,7 @@ package biz.c24.io.spring.config;
 import static biz.c24.io.spring.config.BeanDefinitionUtils.*;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Set;
 import java.util.regex.Pattern;
 
@@ -34,6 +35,7 @@ import org.springframework.core.type.classreading.MetadataReaderFactory;
 import org.springframework.core.type.filter.AssignableTypeFilter;
 import org.springframework.core.type.filter.RegexPatternTypeFilter;
 import org.springframework.core.type.filter.TypeFilter;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.StringUtils;
 import org.w3c.dom.Element;
 
@@ -72,6 +74,40 @@ public class C24ModelBeanDefinitionParser extends AbstractBeanDefinitionParser {
 		return getSourcedBeanDefinition(builder, context.extractSource(element));
 	}
 
+	/**
+	 * Looks up the {@code DocumentRootElement} for the given base package in the {@link C24ModelIndex}, falling back
+	 * to classpath scanning if it is not indexed.
+	 * 
+	 * @param basePackage
+	 * @param context
+	 * @param source
+	 * @return
+	 */
+	private AbstractBeanDefinition getC24ModelFromPackage(String basePackage, ParserContext context, Object source) {
+
+		ClassLoader classLoader = context.getReaderContext().getBeanClassLoader();
+		if (classLoader == null) {
+			classLoader = ClassUtils.getDefaultClassLoader();
+		}
+
+		List<String> indexed;
+		try {
+			indexed = C24ModelIndex.findRootElements(basePackage, classLoader);
+		} catch (IOException e) {
+			context.getReaderContext().error("Failed to read " + C24ModelIndex.INDEX_LOCATION, source, e);
+			return null;
+		}
+
+		if (indexed.size() > 1) {
+			context.getReaderContext().error("Found multiple classes ending on 'DocumentRootElement' in " 
+					+ C24ModelIndex.INDEX_LOCATION + "!", source);
+		} else if (indexed.size() == 1) {
+			return getC24ModelFromElement(indexed.get(0), context, source);
+		}
+
+		return scanForC24Model(basePackage, context, source);
+	}
+
 	/**
 	 * Classpath scans the given base package for subclasses of {@link biz.c24.io.api.data.Element} whose names end on
 	 * {@code DocumentRootElement}.
@@ -81,7 +117,7 @@ public class C24ModelBeanDefinitionParser extends AbstractBeanDefinitionParser {
 	 * @param source
 	 * @return
 	 */
-	private AbstractBeanDefinition getC24ModelFromPackage(String basePackage, ParserContext context, Object source) {
+	private AbstractBeanDefinition scanForC24Model(String basePackage, ParserContext context, Object source) {
 
 		ClassPathScanningCandidateComponentProvider provider = new ClassPathScanningCandidateComponentProvider(false);
 		provider.addIncludeFilter(new TypeFilter() {
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.config;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Index of the root elements of the iO models on the classpath, so that {@code <c24:model base-package="..."/>} can
+ * find a model's {@code *DocumentRootElement} without scanning every class in the package.
+ *
+ * The index is a {@value #INDEX_LOCATION} resource listing the fully qualified class names of the root elements,
+ * one per line; lines starting with # are ignored. Each jar or classes directory containing models can have its
+ * own. It is generated at build time by running {@link #main} over the compiled classes, for example from the
+ * exec-maven-plugin in the process-classes phase.
+ *
+ * @author Andrew Elmore
+ */
+public class C24ModelIndex {
+
+	public static final String INDEX_LOCATION = "META-INF/c24.models";
+
+	private static final String ROOT_ELEMENT_SUFFIX = "DocumentRootElement";
+
+	private C24ModelIndex() {
+	}
+
+	/**
+	 * Finds the indexed root elements in the given package or its sub-packages
+	 *
+	 * @param basePackage The package to search
+	 * @param classLoader The ClassLoader to find the indexes with
+	 * @return The class names of the root elements; empty if there are none or there is no index
+	 */
+	public static List<String> findRootElements(String basePackage, ClassLoader classLoader) throws IOException {
+		String prefix = basePackage + ".";
+
+		Set<String> rootElements = new LinkedHashSet<String>();
+		Enumeration<URL> indexes = classLoader.getResources(INDEX_LOCATION);
+		while(indexes.hasMoreElements()) {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(indexes.nextElement().openStream(), "UTF-8"));
+			try {
+				String line;
+				while((line = reader.readLine()) != null) {
+					line = line.trim();
+					if(line.startsWith(prefix) && !line.startsWith("#")) {
+						rootElements.add(line);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		}
+
+		return new ArrayList<String>(rootElements);
+	}
+
+	/**
+	 * Writes an index of the root elements found in a directory of compiled classes
+	 *
+	 * @param classesDir The root of the compiled classes
+	 * @param index The file to write the index to
+	 * @return The number of root elements indexed
+	 */
+	public static int writeIndex(File classesDir, File index) throws IOException {
+		List<String> rootElements = new ArrayList<String>();
+		findRootElements(classesDir, "", rootElements);
+		Collections.sort(rootElements);
+
+		File parent = index.getParentFile();
+		if(parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("Failed to create directory " + parent);
+		}
+
+		Writer writer = new OutputStreamWriter(new FileOutputStream(index), "UTF-8");
+		try {
+			writer.write("# iO model root elements; generated by " + C24ModelIndex.class.getName() + "\n");
+			for(String rootElement : rootElements) {
+				writer.write(rootElement);
+				writer.write('\n');
+			}
+		} finally {
+			writer.close();
+		}
+
+		return rootElements.size();
+	}
+
+	private static void findRootElements(File dir, String packagePrefix, List<String> rootElements) {
+		File[] files = dir.listFiles();
+		if(files == null) {
+			return;
+		}
+		for(File file : files) {
+			String name = file.getName();
+			if(file.isDirectory()) {
+				findRootElements(file, packagePrefix + name + ".", rootElements);
+			} else if(name.endsWith(ROOT_ELEMENT_SUFFIX + ".class") && name.indexOf('$') < 0) {
+				rootElements.add(packagePrefix + name.substring(0, name.length() - ".class".length()));
+			}
+		}
+	}
+
+	/**
+	 * Generates an index for a directory of compiled classes.
+	 *
+	 * Usage: C24ModelIndex classesDir [indexFile]
+	 *
+	 * The index is written to classesDir/{@value #INDEX_LOCATION} unless indexFile is given.
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length < 1 || args.length > 2) {
+			System.err.println("Usage: " + C24ModelIndex.class.getName() + " classesDir [indexFile]");
+			System.exit(1);
+		}
+
+		File classesDir = new File(args[0]);
+		File index = args.length > 1? new File(args[1]) : new File(classesDir, INDEX_LOCATION);
+		int count = writeIndex(classesDir, index);
+		System.out.println("Indexed " + count + " model root elements in " + index);
+	}
+
+}
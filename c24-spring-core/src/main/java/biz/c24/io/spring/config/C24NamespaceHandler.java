@@ -34,5 +34,6 @@ class C24NamespaceHandler extends NamespaceHandlerSupport {
 		registerBeanDefinitionParser("marshaller", new C24MarshallerBeanDefinitionParser());
 		registerBeanDefinitionParser("http-message-converter", new C24HttpMessageConverterBeanDefinitionParser());
 		registerBeanDefinitionParser("model", new C24ModelBeanDefinitionParser());
+		registerBeanDefinitionParser("warm-up", new C24WarmUpBeanDefinitionParser());
 	}
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.config;
+
+import static biz.c24.io.spring.config.BeanDefinitionUtils.*;
+
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.xml.AbstractBeanDefinitionParser;
+import org.springframework.beans.factory.xml.BeanDefinitionParser;
+import org.springframework.beans.factory.xml.ParserContext;
+import org.springframework.util.StringUtils;
+import org.w3c.dom.Element;
+
+import biz.c24.io.spring.core.C24WarmUp;
+
+/**
+ * {@link BeanDefinitionParser} to parse {@code warm-up} elements.
+ * 
+ * @author Andrew Elmore
+ */
+class C24WarmUpBeanDefinitionParser extends AbstractBeanDefinitionParser {
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.beans.factory.xml.AbstractBeanDefinitionParser#parseInternal(org.w3c.dom.Element, org.springframework.beans.factory.xml.ParserContext)
+	 */
+	@Override
+	protected AbstractBeanDefinition parseInternal(Element element, ParserContext parserContext) {
+
+		String modelRef = element.getAttribute("model-ref");
+		modelRef = StringUtils.hasText(modelRef) ? modelRef : C24ModelBeanDefinitionParser.DEFAULT_BEAN_NAME;
+
+		BeanDefinitionBuilder builder = BeanDefinitionBuilder.rootBeanDefinition(C24WarmUp.class);
+		builder.addConstructorArgReference(modelRef);
+
+		String sourceFactoryRef = element.getAttribute("source-factory-ref");
+		if (StringUtils.hasText(sourceFactoryRef)) {
+			builder.addPropertyReference("sourceFactory", sourceFactoryRef);
+		}
+
+		String sinkFactoryRef = element.getAttribute("sink-factory-ref");
+		if (StringUtils.hasText(sinkFactoryRef)) {
+			builder.addPropertyReference("sinkFactory", sinkFactoryRef);
+		}
+
+		// Resource patterns and class names are converted by the standard property editors
+		String samples = element.getAttribute("samples");
+		if (StringUtils.hasText(samples)) {
+			builder.addPropertyValue("samples", samples);
+		}
+
+		String transforms = element.getAttribute("transforms");
+		if (StringUtils.hasText(transforms)) {
+			builder.addPropertyValue("transforms", transforms);
+		}
+
+		String validate = element.getAttribute("validate");
+		if (StringUtils.hasText(validate)) {
+			builder.addPropertyValue("validate", Boolean.parseBoolean(validate));
+		}
+
+		String iterations = element.getAttribute("iterations");
+		if (StringUtils.hasText(iterations)) {
+			builder.addPropertyValue("iterations", iterations);
+		}
+
+		String phase = element.getAttribute("phase");
+		if (StringUtils.hasText(phase)) {
+			builder.addPropertyValue("phase", phase);
+		}
+
+		String autoStartup = element.getAttribute("auto-startup");
+		if (StringUtils.hasText(autoStartup)) {
+			builder.addPropertyValue("autoStartup", Boolean.parseBoolean(autoStartup));
+		}
+
+		return getSourcedBeanDefinition(builder, parserContext.extractSource(element));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.beans.factory.xml.AbstractBeanDefinitionParser#shouldGenerateIdAsFallback()
+	 */
+	@Override
+	protected boolean shouldGenerateIdAsFallback() {
+		return true;
+	}
+}
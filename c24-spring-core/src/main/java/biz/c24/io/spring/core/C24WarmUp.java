@@ -0,0 +1,376 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+import org.springframework.util.FileCopyUtils;
+
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.data.DocumentRoot;
+import biz.c24.io.api.data.Element;
+import biz.c24.io.api.data.ValidationManager;
+import biz.c24.io.api.presentation.Sink;
+import biz.c24.io.api.presentation.Source;
+import biz.c24.io.api.transform.Transform;
+import biz.c24.io.spring.sink.SinkFactory;
+import biz.c24.io.spring.source.SourceFactory;
+import biz.c24.io.spring.util.C24Utils;
+
+/**
+ * Exercises a model's parser, validator, transforms and sink when the application context starts, so that the first
+ * real messages aren't slowed down by class loading and interpreted code.
+ * 
+ * Each sample is parsed, validated, transformed by each of the transforms and written to a sink, the whole set being
+ * repeated the configured number of iterations. If no samples are supplied, an empty instance of the model's root
+ * type is validated, transformed and sunk instead; its validation failures are expected and ignored. This warms less
+ * of the model so real samples are preferred.
+ * Failures are counted and logged rather than preventing the context from starting.
+ * 
+ * To warm the same code paths as a C24UnmarshallingTransformer, C24Transformer or C24ItemReader, configure this with
+ * the same SourceFactory and Transform classes. By default it runs in the earliest lifecycle phase so that it
+ * completes before message-driven endpoints and job launchers start.
+ * 
+ * @author Andrew Elmore
+ */
+public class C24WarmUp implements SmartLifecycle {
+
+	private static final Log LOG = LogFactory.getLog(C24WarmUp.class);
+
+	private final C24Model model;
+
+	private SourceFactory sourceFactory;
+	private SinkFactory sinkFactory;
+	private Resource[] samples;
+	private Class<? extends Transform>[] transforms;
+	private boolean validate = true;
+	private int iterations = 1000;
+
+	private boolean autoStartup = true;
+	private int phase = Integer.MIN_VALUE;
+	private volatile boolean running = false;
+
+	private volatile long totalTime = 0;
+	private volatile long firstIterationTime = 0;
+	private volatile long lastIterationTime = 0;
+	private volatile int errorCount = 0;
+
+	/**
+	 * Creates a warm-up for the given model
+	 * 
+	 * @param model The model to warm up
+	 */
+	public C24WarmUp(C24Model model) {
+		Assert.notNull(model);
+		this.model = model;
+	}
+
+	/**
+	 * Runs the warm-up, blocking until it has completed
+	 */
+	public void warmUp() throws Exception {
+
+		List<byte[]> data = new ArrayList<byte[]>();
+		if (samples != null) {
+			for (Resource sample : samples) {
+				data.add(FileCopyUtils.copyToByteArray(sample.getInputStream()));
+			}
+		}
+
+		List<Transform> xforms = new ArrayList<Transform>();
+		if (transforms != null) {
+			for (Class<? extends Transform> transform : transforms) {
+				xforms.add(BeanUtils.instantiateClass(transform));
+			}
+		}
+
+		SourceFactory factory = sourceFactory != null ? sourceFactory : model;
+		ValidationManager validationManager = validate ? new ValidationManager() : null;
+
+		errorCount = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			long iterationStart = System.nanoTime();
+			if (data.isEmpty()) {
+				try {
+					process(createSyntheticSample(), validationManager, xforms, true);
+				} catch (Exception ex) {
+					error(ex);
+				}
+			} else {
+				for (byte[] sample : data) {
+					try {
+						Source source = factory.getSource(new ByteArrayInputStream(sample));
+						ComplexDataObject cdo = source.readObject(model.getRootElement());
+						process(C24Utils.potentiallyUnwrapDocumentRoot(cdo), validationManager, xforms, false);
+					} catch (Exception ex) {
+						error(ex);
+					}
+				}
+			}
+			long iterationTime = System.nanoTime() - iterationStart;
+			if (i == 0) {
+				firstIterationTime = iterationTime;
+			}
+			lastIterationTime = iterationTime;
+		}
+		totalTime = System.nanoTime() - start;
+
+		if (LOG.isInfoEnabled()) {
+			LOG.info("Warmed up " + model.getRootElement().getName() + " with " + iterations + " iterations in "
+					+ totalTime / 1000000 + "ms; first iteration " + firstIterationTime / 1000 + "us, last "
+					+ lastIterationTime / 1000 + "us" + (errorCount > 0 ? ", " + errorCount + " failures" : ""));
+		}
+	}
+
+	private void process(ComplexDataObject cdo, ValidationManager validationManager, List<Transform> xforms,
+			boolean synthetic) {
+		if (validationManager != null) {
+			try {
+				if (synthetic) {
+					// An empty instance is bound to break some rules; run them all but ignore the outcome
+					validationManager.validateByEvents(cdo);
+				} else {
+					validationManager.validateByException(cdo);
+				}
+			} catch (Exception ex) {
+				error(ex);
+			}
+		}
+		for (Transform xform : xforms) {
+			try {
+				xform.transform(new Object[][] { { cdo } });
+			} catch (Exception ex) {
+				error(ex);
+			}
+		}
+		if (sinkFactory != null) {
+			try {
+				Sink sink = sinkFactory.createSink(new StringWriter());
+				sink.writeObject(cdo);
+			} catch (IOException ex) {
+				error(ex);
+			}
+		}
+	}
+
+	/**
+	 * Creates an empty instance of the type the model parses to
+	 */
+	@SuppressWarnings("unchecked")
+	private ComplexDataObject createSyntheticSample() {
+		Element element = model.getRootElement();
+		Class<? extends ComplexDataObject> type = element.getType().getValidObjectClass();
+		if (DocumentRoot.class.isAssignableFrom(type)) {
+			DocumentRoot root = (DocumentRoot) BeanUtils.instantiateClass(type);
+			if (root.getElementDeclCount() > 0) {
+				type = root.getElementDecl(0).getType().getValidObjectClass();
+			}
+		}
+		return BeanUtils.instantiateClass(type);
+	}
+
+	private void error(Exception ex) {
+		// Only log the first; the same failure is likely to recur on every iteration
+		if (errorCount++ == 0) {
+			LOG.warn("Warm-up of " + model.getRootElement().getName() + " failed", ex);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.context.Lifecycle#start()
+	 */
+	public void start() {
+		try {
+			warmUp();
+		} catch (Exception ex) {
+			// A failed warm-up only costs latency; don't prevent the context starting
+			LOG.warn("Unable to warm up " + model.getRootElement().getName(), ex);
+		}
+		running = true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.context.Lifecycle#stop()
+	 */
+	public void stop() {
+		running = false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.context.SmartLifecycle#stop(java.lang.Runnable)
+	 */
+	public void stop(Runnable callback) {
+		stop();
+		callback.run();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.context.Lifecycle#isRunning()
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+
+	public boolean isAutoStartup() {
+		return autoStartup;
+	}
+
+	/**
+	 * Whether to warm up when the context starts. Defaults to true.
+	 * 
+	 * @param autoStartup
+	 */
+	public void setAutoStartup(boolean autoStartup) {
+		this.autoStartup = autoStartup;
+	}
+
+	public int getPhase() {
+		return phase;
+	}
+
+	/**
+	 * The lifecycle phase to warm up in. Defaults to Integer.MIN_VALUE so it runs before other components start.
+	 * 
+	 * @param phase
+	 */
+	public void setPhase(int phase) {
+		this.phase = phase;
+	}
+
+	public SourceFactory getSourceFactory() {
+		return sourceFactory;
+	}
+
+	/**
+	 * The SourceFactory to parse the samples with. Defaults to the model's own source.
+	 * 
+	 * @param sourceFactory
+	 */
+	public void setSourceFactory(SourceFactory sourceFactory) {
+		this.sourceFactory = sourceFactory;
+	}
+
+	public SinkFactory getSinkFactory() {
+		return sinkFactory;
+	}
+
+	/**
+	 * The SinkFactory to write the parsed samples with. If not set, sinks are not warmed up.
+	 * 
+	 * @param sinkFactory
+	 */
+	public void setSinkFactory(SinkFactory sinkFactory) {
+		this.sinkFactory = sinkFactory;
+	}
+
+	public Resource[] getSamples() {
+		return samples;
+	}
+
+	/**
+	 * Representative messages in the model's format
+	 * 
+	 * @param samples
+	 */
+	public void setSamples(Resource[] samples) {
+		this.samples = samples;
+	}
+
+	public Class<? extends Transform>[] getTransforms() {
+		return transforms;
+	}
+
+	/**
+	 * Transforms to apply to each parsed sample
+	 * 
+	 * @param transforms
+	 */
+	public void setTransforms(Class<? extends Transform>[] transforms) {
+		this.transforms = transforms;
+	}
+
+	public boolean isValidate() {
+		return validate;
+	}
+
+	/**
+	 * Whether to validate the parsed samples. Defaults to true.
+	 * 
+	 * @param validate
+	 */
+	public void setValidate(boolean validate) {
+		this.validate = validate;
+	}
+
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * The number of times to process the samples. Defaults to 1000, enough for the JIT compiler to compile the hot
+	 * paths.
+	 * 
+	 * @param iterations
+	 */
+	public void setIterations(int iterations) {
+		Assert.isTrue(iterations > 0, "iterations must be positive");
+		this.iterations = iterations;
+	}
+
+	/**
+	 * @return The time taken by the last warm-up in nanoseconds
+	 */
+	public long getTotalTime() {
+		return totalTime;
+	}
+
+	/**
+	 * @return The time taken by the first iteration of the last warm-up in nanoseconds
+	 */
+	public long getFirstIterationTime() {
+		return firstIterationTime;
+	}
+
+	/**
+	 * @return The time taken by the final iteration of the last warm-up in nanoseconds
+	 */
+	public long getLastIterationTime() {
+		return lastIterationTime;
+	}
+
+	/**
+	 * @return The number of failures during the last warm-up
+	 */
+	public int getErrorCount() {
+		return errorCount;
+	}
+
+}
@@ -17,11 +17,16 @@ package biz.c24.io.spring.sink;
 
 import java.io.ByteArrayOutputStream;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
 
 import biz.c24.io.api.presentation.Sink;
 
 /**
- * 
+ * The type of output produced by marshalling a ComplexDataObject to a Sink.
+ *
+ * A Sink obtained from getSink can be reused for further objects by calling
+ * reset once its output has been taken; the buffer it writes to is emptied but
+ * its storage retained.
  */
 public enum OutputType {
 
@@ -37,6 +42,11 @@ public enum OutputType {
 			return sink.getWriter().toString();
 		}
 
+		@Override
+		public void reset(Sink sink) {
+			((StringWriter) sink.getWriter()).getBuffer().setLength(0);
+		}
+
 	},
 
 	BYTE_ARRAY {
@@ -52,10 +62,65 @@ public enum OutputType {
 					.getOutputStream();
 			return baos.toByteArray();
 		}
+
+		@Override
+		public void reset(Sink sink) {
+			((ByteArrayOutputStream) sink.getOutputStream()).reset();
+		}
+	},
+
+	/**
+	 * Outputs a ByteBuffer wrapping the array the Sink wrote to, saving the
+	 * copy BYTE_ARRAY takes. As the output holds on to the array, reset gives
+	 * the Sink a new one, sized to fit the output just taken.
+	 */
+	BYTE_BUFFER {
+
+		@Override
+		public Sink getSink(SinkFactory factory) {
+			return factory.createSink(new ExposedByteArrayOutputStream(INITIAL_SIZE));
+		}
+
+		@Override
+		public Object getOutput(Sink sink) {
+			ExposedByteArrayOutputStream baos = (ExposedByteArrayOutputStream) sink
+					.getOutputStream();
+			return ByteBuffer.wrap(baos.getBuffer(), 0, baos.size());
+		}
+
+		@Override
+		public void reset(Sink sink) {
+			ExposedByteArrayOutputStream baos = (ExposedByteArrayOutputStream) sink
+					.getOutputStream();
+			sink.setOutputStream(new ExposedByteArrayOutputStream(Math.max(baos.size(), INITIAL_SIZE)));
+		}
 	};
 
+	private static final int INITIAL_SIZE = 256;
+
 	public abstract Sink getSink(SinkFactory factory);
 
 	public abstract Object getOutput(Sink sink);
 
+	/**
+	 * Empties the buffer of a Sink obtained from getSink so that it can be
+	 * reused. Any output previously taken from the Sink is unaffected.
+	 * 
+	 * @param sink
+	 */
+	public abstract void reset(Sink sink);
+
+	/**
+	 * ByteArrayOutputStream which allows read access to its internal array
+	 */
+	private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+		ExposedByteArrayOutputStream(int size) {
+			super(size);
+		}
+
+		byte[] getBuffer() {
+			return buf;
+		}
+	}
+
 }
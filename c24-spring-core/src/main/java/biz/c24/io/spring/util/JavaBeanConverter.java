@@ -0,0 +1,292 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.util;
+
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.cglib.beans.BeanCopier;
+import org.springframework.cglib.core.Converter;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.presentation.JavaClassSink;
+
+/**
+ * Converts ComplexDataObjects to Java Beans, a faster alternative to {@link JavaClassSink#convertObject}.
+ * 
+ * The first time an object of a given generated ComplexDataObject class is converted, every writable property of the
+ * target class is matched by name against the getters of the generated class and a copier is generated which copies
+ * the values straight from one to the other; subsequent conversions involve no introspection or reflective calls. Values
+ * which are themselves ComplexDataObjects, or arrays of them, are converted the same way.
+ * 
+ * Where a property can't be copied directly, for example because it has no same-named getter or its value needs 
+ * converting to a different type, conversion of that class falls back to a JavaClassSink.
+ * 
+ * Instances are thread safe and should be shared.
+ * 
+ * @author Andrew Elmore
+ */
+public class JavaBeanConverter {
+	
+	/**
+	 * How to convert one ComplexDataObject class to a Java Bean class
+	 */
+	private static class Plan {
+		private final Constructor<?> constructor;
+		private final BeanCopier copier;
+		
+		Plan(Constructor<?> constructor, BeanCopier copier) {
+			this.constructor = constructor;
+			this.copier = copier;
+		}
+	}
+	
+	/**
+	 * A plan used when we have to fall back to a JavaClassSink
+	 */
+	private static final Plan UNSUPPORTED = new Plan(null, null);
+	
+	/**
+	 * Cache key; a source and target class
+	 */
+	private static class PlanKey {
+		private final Class<?> source;
+		private final Class<?> target;
+		
+		PlanKey(Class<?> source, Class<?> target) {
+			this.source = source;
+			this.target = target;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof PlanKey)) {
+				return false;
+			}
+			PlanKey other = (PlanKey)obj;
+			return source == other.source && target == other.target;
+		}
+		
+		@Override
+		public int hashCode() {
+			return source.hashCode() * 31 + target.hashCode();
+		}
+	}
+	
+	/**
+	 * Carries an IOException from a JavaClassSink out through the copier
+	 */
+	@SuppressWarnings("serial")
+	private static class ConversionFailure extends RuntimeException {
+		ConversionFailure(IOException cause) {
+			super(cause);
+		}
+	}
+	
+	private final Class<?> targetClass;
+	
+	private final ConcurrentMap<PlanKey, Plan> plans = new ConcurrentHashMap<PlanKey, Plan>();
+	
+	private final ConcurrentMap<Class<?>, JavaClassSink> sinks = new ConcurrentHashMap<Class<?>, JavaClassSink>();
+	
+	/**
+	 * Converts the values of individual properties as they're copied
+	 */
+	private final Converter converter = new Converter() {
+		@SuppressWarnings("rawtypes")
+		@Override
+		public Object convert(Object value, Class target, Object context) {
+			try {
+				return convertValue(value, target);
+			} catch(IOException ioEx) {
+				throw new ConversionFailure(ioEx);
+			}
+		}
+	};
+	
+	/**
+	 * Construct a JavaBeanConverter
+	 * 
+	 * @param targetClass The Java Bean class to convert to
+	 */
+	public JavaBeanConverter(Class<?> targetClass) {
+		Assert.notNull(targetClass, "The target class must not be null");
+		this.targetClass = targetClass;
+	}
+	
+	/**
+	 * The class this converter creates
+	 * 
+	 * @return The Java Bean class
+	 */
+	public Class<?> getTargetClass() {
+		return targetClass;
+	}
+
+	/**
+	 * Convert a ComplexDataObject to an instance of the target class
+	 * 
+	 * @param cdo The object to convert
+	 * @return The equivalent Java Bean
+	 * @throws IOException If a JavaClassSink we fall back to fails
+	 */
+	public Object convert(ComplexDataObject cdo) throws IOException {
+		try {
+			return convert(cdo, targetClass);
+		} catch(ConversionFailure failure) {
+			throw (IOException)failure.getCause();
+		}
+	}
+	
+	/**
+	 * Convert a ComplexDataObject to an instance of the given class
+	 */
+	private Object convert(ComplexDataObject cdo, Class<?> target) throws IOException {
+		Plan plan = getPlan(cdo.getClass(), target);
+		if(plan == UNSUPPORTED) {
+			return getSink(target).convertObject(cdo);
+		}
+		Object bean = BeanUtils.instantiateClass(plan.constructor);
+		plan.copier.copy(cdo, bean, converter);
+		return bean;
+	}
+	
+	/**
+	 * Convert a property value to the type of the property it's being copied to
+	 */
+	private Object convertValue(Object value, Class<?> target) throws IOException {
+		if(value == null || ClassUtils.isAssignableValue(target, value)) {
+			return value;
+		} else if(value instanceof ComplexDataObject) {
+			return convert((ComplexDataObject)value, target);
+		} else if(value.getClass().isArray() && target.isArray()) {
+			int length = Array.getLength(value);
+			Object result = Array.newInstance(target.getComponentType(), length);
+			for(int i = 0; i < length; i++) {
+				Array.set(result, i, convertValue(Array.get(value, i), target.getComponentType()));
+			}
+			return result;
+		} else {
+			// Plans are only created for properties we can convert
+			throw new IllegalStateException("Cannot convert " + value.getClass().getName() + " to " + target.getName());
+		}
+	}
+	
+	private Plan getPlan(Class<?> source, Class<?> target) {
+		PlanKey key = new PlanKey(source, target);
+		Plan plan = plans.get(key);
+		if(plan == null) {
+			// Not worth guarding against two threads doing this at once; they'll produce equivalent plans
+			plan = createPlan(source, target);
+			plans.put(key, plan);
+		}
+		return plan;
+	}
+	
+	private JavaClassSink getSink(Class<?> target) {
+		JavaClassSink sink = sinks.get(target);
+		if(sink == null) {
+			sink = new JavaClassSink();
+			sink.setRootClass(target);
+			JavaClassSink existing = sinks.putIfAbsent(target, sink);
+			if(existing != null) {
+				sink = existing;
+			}
+		}
+		return sink;
+	}
+	
+	/**
+	 * Work out how to convert instances of one class to the other
+	 * 
+	 * @param source The generated ComplexDataObject class
+	 * @param target The Java Bean class
+	 * @return The plan, or UNSUPPORTED if we can't copy every writable property directly
+	 */
+	private Plan createPlan(Class<?> source, Class<?> target) {
+		if(source == ComplexDataObject.class || !Modifier.isPublic(source.getModifiers()) || !Modifier.isPublic(target.getModifiers())) {
+			// No generated getters or no access to them
+			return UNSUPPORTED;
+		}
+		
+		Map<String, Method> getters = new HashMap<String, Method>();
+		for(PropertyDescriptor descriptor : BeanUtils.getPropertyDescriptors(source)) {
+			if(descriptor.getReadMethod() != null) {
+				getters.put(descriptor.getName(), descriptor.getReadMethod());
+			}
+		}
+		
+		int matched = 0;
+		for(PropertyDescriptor descriptor : BeanUtils.getPropertyDescriptors(target)) {
+			Method setter = descriptor.getWriteMethod();
+			if(setter == null) {
+				continue;
+			}
+			Method getter = getters.get(descriptor.getName());
+			if(getter == null) {
+				// A JavaClassSink may still populate it, e.g. from an element with a different name
+				return UNSUPPORTED;
+			}
+			if(getter.getDeclaringClass().isAssignableFrom(ComplexDataObject.class)) {
+				// Not an element of the model; a JavaClassSink wouldn't copy it
+				return UNSUPPORTED;
+			}
+			if(!isConvertible(getter.getReturnType(), setter.getParameterTypes()[0])) {
+				return UNSUPPORTED;
+			}
+			matched++;
+		}
+		
+		Constructor<?> constructor = ClassUtils.getConstructorIfAvailable(target);
+		if(matched == 0 || constructor == null) {
+			return UNSUPPORTED;
+		}
+		
+		try {
+			return new Plan(constructor, BeanCopier.create(source, target, true));
+		} catch(RuntimeException ex) {
+			// Most likely the copier's class couldn't be generated in the source class's ClassLoader
+			return UNSUPPORTED;
+		}
+	}
+	
+	/**
+	 * Whether we know how to convert values of one type to another
+	 */
+	private static boolean isConvertible(Class<?> source, Class<?> target) {
+		if(ClassUtils.isAssignable(target, source)) {
+			return true;
+		} else if(ComplexDataObject.class.isAssignableFrom(source)) {
+			return !target.isPrimitive() && !target.isArray() && !target.isInterface() 
+					&& !Modifier.isAbstract(target.getModifiers());
+		} else if(source.isArray() && target.isArray()) {
+			return isConvertible(source.getComponentType(), target.getComponentType());
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.util;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.data.IOXPathException;
+import biz.c24.io.api.transform.Transform;
+
+/**
+ * Memoizes the results of a Transform which is a pure function of a few values of its input, such as a code
+ * mapping or reference data lookup, so that inputs with the same key are only transformed once.
+ *
+ * The key is made up of the values of the configured child elements and/or the string values of the configured
+ * XPath expressions; the transform must not depend on any other part of its input. Entries are evicted least
+ * recently used first once maxSize is reached and, if a timeToLive is set, once they are older than it.
+ *
+ * By default a deep copy of the cached result is returned each time so callers can modify it freely; if callers
+ * treat results as immutable, copying can be turned off. Hit, miss and eviction counts are maintained.
+ *
+ * Instances are thread safe. Use one cache per Transform.
+ *
+ * @author Andrew Elmore
+ */
+public class TransformCache {
+
+	/**
+	 * A cached result
+	 */
+	private static class Entry {
+		private final Object[][] result;
+		private final long created;
+
+		Entry(Object[][] result, long created) {
+			this.result = result;
+			this.created = created;
+		}
+	}
+
+	private String[] keyElements = new String[0];
+	private String[] keyXPaths = new String[0];
+
+	private XPathCache xpathCache = XPathCache.getSharedInstance();
+
+	private int maxSize = 10000;
+	private long timeToLive = 0;
+	private boolean copyResults = true;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Guarded by itself
+	 */
+	private final Map<Object, Entry> entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+			if(size() > maxSize) {
+				evictions.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	};
+
+	/**
+	 * Transforms the input, using the cached result if there is one for the input's key
+	 *
+	 * @param transform The transform to use if the result isn't cached
+	 * @param input The object to transform
+	 * @return The result of the transform
+	 */
+	public Object[][] transform(Transform transform, ComplexDataObject input) throws Exception {
+		Object key = getKey(input);
+		Entry entry;
+		synchronized(entries) {
+			entry = entries.get(key);
+			if(entry != null && timeToLive > 0 && System.currentTimeMillis() - entry.created > timeToLive) {
+				entries.remove(key);
+				evictions.incrementAndGet();
+				entry = null;
+			}
+		}
+
+		if(entry != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+			// Don't hold the lock while we transform; worst case two threads transform the same key at once
+			entry = new Entry(transform.transform(new Object[][]{{input}}), System.currentTimeMillis());
+			synchronized(entries) {
+				entries.put(key, entry);
+			}
+		}
+
+		return copyResults? copy(entry.result) : entry.result;
+	}
+
+	/**
+	 * Builds the cache key for an input object
+	 *
+	 * @param input The input to the transform
+	 * @return Its key
+	 */
+	protected Object getKey(ComplexDataObject input) throws IOXPathException {
+		if(keyElements.length == 0 && keyXPaths.length == 0) {
+			throw new IllegalStateException("Either keyElements or keyXPaths must be set");
+		}
+		Object[] key = new Object[keyElements.length + keyXPaths.length];
+		int i = 0;
+		for(String keyElement : keyElements) {
+			key[i++] = input.getElement(keyElement);
+		}
+		for(String keyXPath : keyXPaths) {
+			key[i++] = xpathCache.getXPath(keyXPath).getString(input);
+		}
+		return Arrays.asList(key);
+	}
+
+	/**
+	 * Deep copies the ComplexDataObjects in a result
+	 */
+	private Object[][] copy(Object[][] result) throws CloneNotSupportedException {
+		Object[][] copy = new Object[result.length][];
+		for(int i = 0; i < result.length; i++) {
+			copy[i] = new Object[result[i].length];
+			for(int j = 0; j < result[i].length; j++) {
+				Object obj = result[i][j];
+				copy[i][j] = obj instanceof ComplexDataObject? ((ComplexDataObject)obj).cloneDeep() : obj;
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Empties the cache. The hit, miss and eviction counts are left untouched.
+	 */
+	public void clear() {
+		synchronized(entries) {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * The number of results currently cached
+	 */
+	public int size() {
+		synchronized(entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * The number of transforms served from the cache
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * The number of transforms which weren't in the cache and had to be performed
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * The number of results evicted because the cache was full or they had expired
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * The names of the child elements of the input whose values form part of the key
+	 */
+	public String[] getKeyElements() {
+		return keyElements;
+	}
+
+	/**
+	 * Sets the names of the child elements of the input whose values form part of the key.
+	 * Cheaper than keyXPaths where the values are direct children of the input.
+	 *
+	 * @param keyElements The element names
+	 */
+	public void setKeyElements(String[] keyElements) {
+		this.keyElements = keyElements != null? keyElements : new String[0];
+	}
+
+	/**
+	 * The XPath expressions whose values against the input form part of the key
+	 */
+	public String[] getKeyXPaths() {
+		return keyXPaths;
+	}
+
+	/**
+	 * Sets XPath expressions to evaluate against the input to form part of the key
+	 *
+	 * @param keyXPaths The XPath expressions
+	 */
+	public void setKeyXPaths(String[] keyXPaths) {
+		this.keyXPaths = keyXPaths != null? keyXPaths : new String[0];
+	}
+
+	/**
+	 * The cache of compiled keyXPaths
+	 */
+	public XPathCache getXPathCache() {
+		return xpathCache;
+	}
+
+	/**
+	 * Sets the cache of compiled keyXPaths. Defaults to the shared XPathCache.
+	 *
+	 * @param xpathCache The cache to use
+	 */
+	public void setXPathCache(XPathCache xpathCache) {
+		Assert.notNull(xpathCache, "xpathCache must not be null");
+		this.xpathCache = xpathCache;
+	}
+
+	/**
+	 * The maximum number of results held
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Sets the maximum number of results held; once reached the least recently used are evicted. Defaults to 10000.
+	 *
+	 * @param maxSize The maximum number of results
+	 */
+	public void setMaxSize(int maxSize) {
+		Assert.isTrue(maxSize > 0, "maxSize must be positive");
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * The time in milliseconds after which a result is evicted; 0 if results don't expire
+	 */
+	public long getTimeToLive() {
+		return timeToLive;
+	}
+
+	/**
+	 * Sets the time in milliseconds after which a result is evicted and the input transformed again.
+	 * Defaults to 0, in which case results only expire when the cache is full.
+	 *
+	 * @param timeToLive The time to live in milliseconds
+	 */
+	public void setTimeToLive(long timeToLive) {
+		Assert.isTrue(timeToLive >= 0, "timeToLive must not be negative");
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * Whether a deep copy of the cached result is returned
+	 */
+	public boolean isCopyResults() {
+		return copyResults;
+	}
+
+	/**
+	 * Sets whether a deep copy of the cached result is returned each time. Defaults to true; only turn it off if
+	 * nothing downstream modifies the results.
+	 *
+	 * @param copyResults Whether to copy results
+	 */
+	public void setCopyResults(boolean copyResults) {
+		this.copyResults = copyResults;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "TransformCache [size=" + size() + ", hits=" + hits.get() + ", misses=" + misses.get()
+				+ ", evictions=" + evictions.get() + "]";
+	}
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+import biz.c24.io.api.data.IOXPath;
+import biz.c24.io.api.data.IOXPathException;
+import biz.c24.io.api.data.IOXPathFactory;
+import biz.c24.io.api.data.XPathStatement;
+
+/**
+ * Caches compiled IOXPaths so that expressions evaluated on every message are only compiled once. Compiling a simple
+ * expression typically costs more than evaluating it.
+ *
+ * IOXPaths aren't thread safe so each thread has its own cache, bounded to maxSize expressions with the least
+ * recently used evicted first. Expressions are keyed on either their text or the XPathStatement they were created
+ * from.
+ *
+ * Components share the instance returned by {@link #getSharedInstance()} unless given their own.
+ *
+ * @author Andrew Elmore
+ */
+public class XPathCache {
+
+	private static final XPathCache SHARED = new XPathCache();
+
+	/**
+	 * @return The cache used by default by the components which evaluate XPath expressions
+	 */
+	public static XPathCache getSharedInstance() {
+		return SHARED;
+	}
+
+	private volatile int maxSize = 256;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	private final ThreadLocal<Map<Object, IOXPath>> xpaths = new ThreadLocal<Map<Object, IOXPath>>() {
+		@Override
+		protected Map<Object, IOXPath> initialValue() {
+			return new LinkedHashMap<Object, IOXPath>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Object, IOXPath> eldest) {
+					if(size() > maxSize) {
+						evictions.incrementAndGet();
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+	};
+
+	/**
+	 * Gets the compiled form of an XPath expression for use by the calling thread
+	 *
+	 * @param expression The XPath expression
+	 * @return The compiled expression
+	 */
+	public IOXPath getXPath(String expression) throws IOXPathException {
+		Assert.notNull(expression, "The XPath expression must not be null");
+		Map<Object, IOXPath> xpaths = this.xpaths.get();
+		IOXPath xpath = xpaths.get(expression);
+		if(xpath != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+			xpath = IOXPathFactory.getInstance(new XPathStatement(expression));
+			xpaths.put(expression, xpath);
+		}
+		return xpath;
+	}
+
+	/**
+	 * Gets the compiled form of an XPath statement for use by the calling thread
+	 *
+	 * @param statement The XPath statement
+	 * @return The compiled statement
+	 */
+	public IOXPath getXPath(XPathStatement statement) throws IOXPathException {
+		Assert.notNull(statement, "The XPath statement must not be null");
+		Map<Object, IOXPath> xpaths = this.xpaths.get();
+		IOXPath xpath = xpaths.get(statement);
+		if(xpath != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+			xpath = IOXPathFactory.getInstance(statement);
+			xpaths.put(statement, xpath);
+		}
+		return xpath;
+	}
+
+	/**
+	 * Empties the calling thread's cache
+	 */
+	public void clear() {
+		xpaths.remove();
+	}
+
+	/**
+	 * The number of lookups served from the cache
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * The number of lookups which required the expression to be compiled
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * The number of compiled expressions evicted because a thread's cache was full
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * The maximum number of compiled expressions held per thread
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Sets the maximum number of compiled expressions held per thread; once reached the least recently used are
+	 * evicted. Defaults to 256.
+	 *
+	 * @param maxSize The maximum number of expressions
+	 */
+	public void setMaxSize(int maxSize) {
+		Assert.isTrue(maxSize > 0, "maxSize must be positive");
+		this.maxSize = maxSize;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "XPathCache [hits=" + hits.get() + ", misses=" + misses.get() + ", evictions=" + evictions.get() + "]";
+	}
+
+}
@@ -27,6 +27,7 @@ import org.springframework.beans.factory.config.RuntimeBeanReference;
 import org.springframework.beans.factory.xml.XmlBeanFactory;
 import org.springframework.core.io.ClassPathResource;
 
+import biz.c24.io.spring.core.C24WarmUp;
 import biz.c24.io.spring.http.C24HttpMessageConverter;
 import biz.c24.io.spring.oxm.C24Marshaller;
 
@@ -63,6 +64,21 @@ public class C24MarshallerBeanDefinitionParserIntegrationTests {
 		assertThat(constructorArgument.getValue(), instanceOf(Collection.class));
 	}
 
+	@Test
+	public void warmUpElementSetsUpAWarmUpForTheDefaultModel() {
+
+		BeanDefinition definition = getDefinitionFromFile("marshaller.xml", "c24warmUp");
+
+		assertThat(definition, is(notNullValue()));
+		assertThat(definition.getBeanClassName(), is(C24WarmUp.class.getName()));
+
+		ValueHolder constructorArgument = definition.getConstructorArgumentValues().getArgumentValue(0, null);
+		assertThat(((RuntimeBeanReference) constructorArgument.getValue()).getBeanName(),
+				is(C24ModelBeanDefinitionParser.DEFAULT_BEAN_NAME));
+		assertThat(definition.getPropertyValues().getPropertyValue("iterations").getValue(), is((Object) "10"));
+		assertThat(definition.getPropertyValues().getPropertyValue("validate").getValue(), is((Object) false));
+	}
+
 	private BeanDefinition getDefinitionFromFile(String filename, String beanName) {
 		XmlBeanFactory factory = new XmlBeanFactory(new ClassPathResource(filename, this.getClass()));
 		return factory.getBeanDefinition(beanName);
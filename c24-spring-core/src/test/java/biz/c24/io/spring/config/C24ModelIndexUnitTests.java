@@ -0,0 +1,83 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.config;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Unit tests for {@link C24ModelIndex}.
+ * 
+ * @author Andrew Elmore
+ */
+public class C24ModelIndexUnitTests {
+
+	@Test
+	public void findsIndexedRootElement() throws Exception {
+
+		List<String> result = C24ModelIndex.findRootElements("nonamespace", ClassUtils.getDefaultClassLoader());
+		assertThat(result, is(Arrays.asList("nonamespace.SampleModelDocumentRootElement")));
+	}
+
+	@Test
+	public void findsNothingForUnindexedPackage() throws Exception {
+
+		List<String> result = C24ModelIndex.findRootElements("biz.c24.io.spring", ClassUtils.getDefaultClassLoader());
+		assertTrue(result.isEmpty());
+	}
+
+	@Test
+	public void indexesCompiledClasses() throws Exception {
+
+		File classesDir = createTempDir();
+		touch(new File(classesDir, "com/acme/model/AcmeDocumentRootElement.class"));
+		touch(new File(classesDir, "com/acme/model/AcmeDocumentRootElement$1.class"));
+		touch(new File(classesDir, "com/acme/model/TradeElement.class"));
+		touch(new File(classesDir, "com/acme/other/OtherDocumentRootElement.class"));
+
+		File index = new File(classesDir, C24ModelIndex.INDEX_LOCATION);
+		assertThat(C24ModelIndex.writeIndex(classesDir, index), is(2));
+
+		ClassLoader classLoader = new URLClassLoader(new URL[] { classesDir.toURI().toURL() }, null);
+		assertThat(C24ModelIndex.findRootElements("com.acme.model", classLoader), 
+				is(Arrays.asList("com.acme.model.AcmeDocumentRootElement")));
+		assertThat(C24ModelIndex.findRootElements("com.acme", classLoader), 
+				is(Arrays.asList("com.acme.model.AcmeDocumentRootElement", "com.acme.other.OtherDocumentRootElement")));
+	}
+
+	private static File createTempDir() throws IOException {
+		File dir = File.createTempFile("c24-model-index", "");
+		assertTrue(dir.delete());
+		assertTrue(dir.mkdir());
+		dir.deleteOnExit();
+		return dir;
+	}
+
+	private static void touch(File file) throws IOException {
+		assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+		assertTrue(file.createNewFile());
+	}
+}
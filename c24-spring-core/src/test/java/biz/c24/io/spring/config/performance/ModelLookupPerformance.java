@@ -0,0 +1,106 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.config.performance;
+
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.regex.Pattern;
+
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.core.type.filter.RegexPatternTypeFilter;
+import org.springframework.core.type.filter.TypeFilter;
+import org.springframework.util.ClassUtils;
+
+import biz.c24.io.spring.config.C24ModelIndex;
+
+/**
+ * Compare the cost of finding a model's root element by classpath scanning and from the {@link C24ModelIndex}, and
+ * report the time taken to start a context which declares a model by base-package.
+ * 
+ * Run with a large generated model on the classpath and the package name as an argument to see the difference in
+ * cold-start time.
+ * 
+ * @author Andrew Elmore
+ */
+public class ModelLookupPerformance {
+
+	private static int RUNS = 20;
+
+	/**
+	 * A way of finding a model's root element
+	 */
+	private interface Lookup {
+		Object find(String basePackage) throws IOException;
+	}
+
+	private static void measure(String name, Lookup lookup, String basePackage) throws IOException {
+		// The first lookup is the one that matters at context start
+		long start = System.nanoTime();
+		Object result = lookup.find(basePackage);
+		long cold = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int i = 0; i < RUNS; i++) {
+			lookup.find(basePackage);
+		}
+		long warm = System.nanoTime() - start;
+
+		DecimalFormat df = new DecimalFormat("#0.00");
+		System.out.println(name + " found: " + result);
+		System.out.println(name + " cold lookup (ms): " + df.format(cold / 1000000.0));
+		System.out.println(name + " mean warm lookup (ms): " + df.format(warm / 1000000.0 / RUNS));
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		String basePackage = args.length > 0 ? args[0] : "nonamespace";
+
+		// Start a context first so the results aren't skewed by loading Spring itself
+		long start = System.nanoTime();
+		ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext("biz/c24/io/spring/config/marshaller.xml");
+		System.out.println("Context start (ms): " + new DecimalFormat("#0.00").format((System.nanoTime() - start) / 1000000.0));
+		context.close();
+
+		measure("Index", new Lookup() {
+			public Object find(String basePackage) throws IOException {
+				return C24ModelIndex.findRootElements(basePackage, ClassUtils.getDefaultClassLoader());
+			}
+		}, basePackage);
+
+		measure("Scan", new Lookup() {
+			public Object find(String basePackage) throws IOException {
+				ClassPathScanningCandidateComponentProvider provider = new ClassPathScanningCandidateComponentProvider(false);
+				provider.addIncludeFilter(new TypeFilter() {
+
+					private final TypeFilter nameFilter = new RegexPatternTypeFilter(Pattern.compile(".*DocumentRootElement"));
+					private final TypeFilter typeFilter = new AssignableTypeFilter(biz.c24.io.api.data.Element.class);
+
+					public boolean match(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory)
+							throws IOException {
+						return nameFilter.match(metadataReader, metadataReaderFactory)
+								&& typeFilter.match(metadataReader, metadataReaderFactory);
+					}
+				});
+				return provider.findCandidateComponents(basePackage).iterator().next().getBeanClassName();
+			}
+		}, basePackage);
+	}
+
+}
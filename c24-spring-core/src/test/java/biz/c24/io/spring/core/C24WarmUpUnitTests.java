@@ -0,0 +1,92 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.core;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import nonamespace.CustomerElement;
+
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+
+import biz.c24.io.spring.model.TestConstants;
+import biz.c24.io.spring.sink.XmlSinkFactory;
+import biz.c24.io.spring.source.XmlSourceFactory;
+
+/**
+ * Unit tests for {@link C24WarmUp}.
+ * 
+ * @author Andrew Elmore
+ */
+public class C24WarmUpUnitTests {
+
+	C24Model model = new C24Model(new CustomerElement());
+
+	@Test
+	public void warmsUpWithSamples() {
+		C24WarmUp warmUp = new C24WarmUp(model);
+		warmUp.setSourceFactory(new XmlSourceFactory());
+		warmUp.setSinkFactory(new XmlSinkFactory());
+		warmUp.setSamples(new Resource[] { new ByteArrayResource(TestConstants.SAMPLE_XML.getBytes()) });
+		warmUp.setIterations(10);
+
+		warmUp.start();
+
+		assertThat(warmUp.isRunning(), is(true));
+		assertThat(warmUp.getErrorCount(), is(0));
+		assertTrue(warmUp.getTotalTime() > 0);
+		assertTrue(warmUp.getFirstIterationTime() > 0);
+		assertTrue(warmUp.getLastIterationTime() > 0);
+
+		warmUp.stop();
+		assertThat(warmUp.isRunning(), is(false));
+	}
+
+	@Test
+	public void warmsUpWithSyntheticSample() {
+		C24WarmUp warmUp = new C24WarmUp(model);
+		warmUp.setSinkFactory(new XmlSinkFactory());
+		warmUp.setValidate(false);
+		warmUp.setIterations(10);
+
+		warmUp.start();
+
+		assertThat(warmUp.isRunning(), is(true));
+		assertThat(warmUp.getErrorCount(), is(0));
+		assertTrue(warmUp.getTotalTime() > 0);
+	}
+
+	@Test
+	public void ignoresValidationFailuresOfSyntheticSample() {
+		C24WarmUp warmUp = new C24WarmUp(model);
+		warmUp.setIterations(10);
+
+		warmUp.start();
+
+		assertThat(warmUp.isValidate(), is(true));
+		assertThat(warmUp.getErrorCount(), is(0));
+	}
+
+	@Test
+	public void runsBeforeOtherComponents() {
+		C24WarmUp warmUp = new C24WarmUp(model);
+		assertThat(warmUp.getPhase(), is(Integer.MIN_VALUE));
+		assertThat(warmUp.isAutoStartup(), is(true));
+	}
+
+}
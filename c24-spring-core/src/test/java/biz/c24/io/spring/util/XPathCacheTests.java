@@ -0,0 +1,92 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.util;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import biz.c24.io.api.data.IOXPath;
+import biz.c24.io.api.data.XPathStatement;
+
+/**
+ *
+ * @author Andrew Elmore
+ */
+public class XPathCacheTests {
+
+	@Test
+	public void reusesCompiledExpressions() throws Exception {
+
+		XPathCache cache = new XPathCache();
+		IOXPath xpath = cache.getXPath("//Employee/FirstName");
+
+		assertThat(cache.getXPath("//Employee/FirstName"), is(sameInstance(xpath)));
+		assertThat(cache.getXPath("//Employee/LastName"), is(not(sameInstance(xpath))));
+		assertThat(cache.getHitCount(), is(1L));
+		assertThat(cache.getMissCount(), is(2L));
+	}
+
+	@Test
+	public void reusesCompiledStatements() throws Exception {
+
+		XPathCache cache = new XPathCache();
+		XPathStatement statement = new XPathStatement("//Employee/FirstName");
+		IOXPath xpath = cache.getXPath(statement);
+
+		assertThat(cache.getXPath(statement), is(sameInstance(xpath)));
+	}
+
+	@Test
+	public void compilesPerThread() throws Exception {
+
+		final XPathCache cache = new XPathCache();
+		IOXPath xpath = cache.getXPath("//Employee/FirstName");
+
+		final IOXPath[] other = new IOXPath[1];
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					other[0] = cache.getXPath("//Employee/FirstName");
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		thread.start();
+		thread.join();
+
+		assertThat(other[0], is(notNullValue()));
+		assertThat(other[0], is(not(sameInstance(xpath))));
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsed() throws Exception {
+
+		XPathCache cache = new XPathCache();
+		cache.setMaxSize(2);
+
+		IOXPath first = cache.getXPath("//Employee/FirstName");
+		cache.getXPath("//Employee/LastName");
+		cache.getXPath("//Employee/FirstName");
+		cache.getXPath("//Employee/JobTitle");
+
+		assertThat(cache.getEvictionCount(), is(1L));
+		assertThat(cache.getXPath("//Employee/FirstName"), is(sameInstance(first)));
+	}
+}
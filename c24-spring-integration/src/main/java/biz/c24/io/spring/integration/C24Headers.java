@@ -43,4 +43,9 @@ public abstract class C24Headers {
 	public static final String FAIL_EVENTS = PREFIX + "failEvents";
 	public static final String VALID = PREFIX + "valid";
 
+	/**
+	 * The index within its batch of an element which failed to unmarshal
+	 */
+	public static final String BATCH_INDEX = PREFIX + "batchIndex";
+
 }
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.integration;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.springframework.messaging.MessagingException;
+import org.springframework.util.Assert;
+
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.presentation.Source;
+import biz.c24.io.spring.core.C24Model;
+import biz.c24.io.spring.source.SourceFactory;
+import biz.c24.io.spring.util.C24Utils;
+
+/**
+ * A message payload holding a raw message which is only unmarshalled when its
+ * ComplexDataObject is first needed.
+ * 
+ * Components which only read the object should use {@link #getObject()} (or
+ * {@link #unwrap(Object)}); anything which changes it must use
+ * {@link #getModifiableObject()} so that the raw message is no longer
+ * considered a faithful representation of it. While it is unmodified, a
+ * C24MarshallingTransformer can pass the raw message through rather than
+ * marshalling the object again.
+ * 
+ * Parsing errors are reported when the object is first accessed rather than
+ * when the payload is created.
+ * 
+ * @author Andrew Elmore
+ */
+public final class C24LazyPayload {
+
+	private final Object raw;
+	private final C24Model model;
+	private final SourceFactory sourceFactory;
+	private final boolean unwrapDocumentRoot;
+
+	private volatile ComplexDataObject object = null;
+	private volatile boolean modified = false;
+
+	/**
+	 * @param raw
+	 *            The raw message; either a String or a byte[]
+	 * @param model
+	 *            The model to unmarshal it with
+	 * @param sourceFactory
+	 *            Creates the Source to unmarshal it with
+	 * @param unwrapDocumentRoot
+	 *            Whether to unwrap the object if it's a document root
+	 */
+	public C24LazyPayload(Object raw, C24Model model,
+			SourceFactory sourceFactory, boolean unwrapDocumentRoot) {
+		Assert.isTrue(raw instanceof String || raw instanceof byte[],
+				"raw must be a String or byte[]");
+		Assert.notNull(model, "model must not be null");
+		Assert.notNull(sourceFactory, "sourceFactory must not be null");
+		this.raw = raw;
+		this.model = model;
+		this.sourceFactory = sourceFactory;
+		this.unwrapDocumentRoot = unwrapDocumentRoot;
+	}
+
+	/**
+	 * If the payload is a C24LazyPayload, returns its object for read-only
+	 * use; otherwise returns the payload unchanged.
+	 * 
+	 * @param payload
+	 *            A message payload
+	 * @return The payload to process
+	 */
+	public static Object unwrap(Object payload) {
+		return payload instanceof C24LazyPayload ? ((C24LazyPayload) payload)
+				.getObject() : payload;
+	}
+
+	/**
+	 * @return The raw message; either a String or a byte[]
+	 */
+	public Object getRaw() {
+		return raw;
+	}
+
+	public C24Model getModel() {
+		return model;
+	}
+
+	/**
+	 * @return Whether the raw message has been unmarshalled yet
+	 */
+	public boolean isUnmarshalled() {
+		return object != null;
+	}
+
+	/**
+	 * @return Whether the object may have been changed since it was
+	 *         unmarshalled
+	 */
+	public boolean isModified() {
+		return modified;
+	}
+
+	/**
+	 * Returns the object for read-only use, unmarshalling the raw message if
+	 * this is the first access.
+	 * 
+	 * @return The object
+	 * @throws MessagingException
+	 *             If the raw message can't be unmarshalled
+	 */
+	public ComplexDataObject getObject() {
+		ComplexDataObject result = object;
+		if (result == null) {
+			synchronized (this) {
+				result = object;
+				if (result == null) {
+					result = unmarshal();
+					object = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the object for code which may change it. The raw message is
+	 * subsequently no longer used in place of the object.
+	 * 
+	 * @return The object
+	 * @throws MessagingException
+	 *             If the raw message can't be unmarshalled
+	 */
+	public ComplexDataObject getModifiableObject() {
+		ComplexDataObject result = getObject();
+		modified = true;
+		return result;
+	}
+
+	private ComplexDataObject unmarshal() {
+		Source source = raw instanceof String ? sourceFactory
+				.getSource(new StringReader((String) raw)) : sourceFactory
+				.getSource(new ByteArrayInputStream((byte[]) raw));
+		try {
+			ComplexDataObject result = source.readObject(model.getRootElement());
+			return unwrapDocumentRoot ? C24Utils
+					.potentiallyUnwrapDocumentRoot(result) : result;
+		} catch (IOException e) {
+			throw new MessagingException("Failed to unmarshal lazy payload", e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "C24LazyPayload [unmarshalled=" + isUnmarshalled()
+				+ ", modified=" + modified + "]";
+	}
+
+}
@@ -37,14 +37,17 @@ class C24NamespaceHandler extends NamespaceHandlerSupport {
 		registerBeanDefinitionParser("unmarshalling-transformer",
 				new UnmarshallingTransformerParser());
 		registerBeanDefinitionParser("marshalling-transformer", new MarshallingTransformerParser());
-		//registerBeanDefinitionParser("file-splitting-transformer", new FileSplittingTransformerParser());
+		registerBeanDefinitionParser("file-splitting-transformer", new FileSplittingTransformerParser());
 		registerBeanDefinitionParser("transformer", new TransformerParser());
 		registerBeanDefinitionParser("xpath-transformer",
 				new XPathTransformerParser());
+		registerBeanDefinitionParser("unmarshalling-splitter", new UnmarshallingSplitterParser());
 
 		registerBeanDefinitionParser("xpath-router", new XPathRouterParser());
 		registerBeanDefinitionParser("xpath-selector",
 				new XPathSelectorParser());
+		registerBeanDefinitionParser("raw-router", new RawValueRouterParser());
+		registerBeanDefinitionParser("raw-selector", new RawValueSelectorParser());
 		
 		registerBeanDefinitionParser("validating-selector", new ValidatingMessageSelectorParser());
 
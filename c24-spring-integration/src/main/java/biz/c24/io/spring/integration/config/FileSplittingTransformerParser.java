@@ -23,6 +23,10 @@ public class FileSplittingTransformerParser extends AbstractTransformerParser {
 
         IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "batch-size", "batchSize");
         IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "initiator", "initiator");
-        IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "terminator", "terminator");
+        IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "encoding", "encoding");
+        IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "output-type", "outputType");
+        IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "keep-line-terminators", "keepLineTerminators");
+        IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "buffer-size", "bufferSize");
+        IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "max-in-flight", "maxInFlight");
     }
 }
\ No newline at end of file
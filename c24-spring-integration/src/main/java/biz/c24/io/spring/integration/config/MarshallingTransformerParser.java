@@ -18,6 +18,7 @@ package biz.c24.io.spring.integration.config;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.xml.ParserContext;
 import org.springframework.integration.config.xml.AbstractTransformerParser;
+import org.springframework.integration.config.xml.IntegrationNamespaceUtils;
 import org.springframework.util.Assert;
 import org.w3c.dom.Element;
 
@@ -44,6 +45,9 @@ public class MarshallingTransformerParser extends AbstractTransformerParser {
 		Assert.hasText(outputType, "the 'output-type' attribute is required");
 		builder.addPropertyValue("outputType", outputType);
 
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder,
+				element, "raw-pass-through", "rawPassThrough");
+
 	}
 
 }
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.integration.config;
+
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.xml.AbstractSingleBeanDefinitionParser;
+import org.springframework.beans.factory.xml.ParserContext;
+import org.springframework.integration.config.xml.IntegrationNamespaceUtils;
+import org.w3c.dom.Element;
+
+/**
+ * Parser for the &lt;raw-selector/&gt; element.
+ * 
+ * @author Andrew Elmore
+ */
+public class RawValueSelectorParser extends AbstractSingleBeanDefinitionParser {
+
+	@Override
+	protected String getBeanClassName(Element element) {
+		return "biz.c24.io.spring.integration.selector.C24RawValueMessageSelector";
+	}
+
+	@Override
+	protected boolean shouldGenerateId() {
+		return false;
+	}
+
+	@Override
+	protected boolean shouldGenerateIdAsFallback() {
+		return true;
+	}
+
+	@Override
+	protected void doParse(Element element, ParserContext parserContext,
+			BeanDefinitionBuilder builder) {
+
+		builder.addConstructorArgReference(element.getAttribute("extractor"));
+		builder.addPropertyValue("valueToTestFor", element.getAttribute("string-test-value"));
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "case-sensitive");
+	}
+
+}
@@ -47,6 +47,21 @@ public class TransformerParser extends AbstractTransformerParser {
 		
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, 
 				"target-class");
+		
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, 
+				"cache-ref", "cache");
+
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element,
+				"batch-size");
+
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element,
+				"executor-ref", "executor");
+
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element,
+				"parallel-threshold");
+
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element,
+				"parallelism");
 
 	}
 
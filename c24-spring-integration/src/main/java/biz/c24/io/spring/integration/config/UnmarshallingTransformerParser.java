@@ -50,6 +50,21 @@ public class UnmarshallingTransformerParser extends AbstractTransformerParser {
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder,
 				element, "unwrap-document-root", "unwrapDocumentRoot");
 
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder,
+				element, "lazy");
+
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder,
+				element, "executor-ref", "executor");
+
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder,
+				element, "parallel-threshold");
+
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder,
+				element, "parallelism");
+
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder,
+				element, "error-channel", "errorChannel");
+
 	}
 
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.integration.extractor;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.springframework.util.Assert;
+
+import biz.c24.io.spring.util.C24Utils;
+
+/**
+ * Base class for extractors which scan the payload as a stream of characters.
+ * 
+ * String, char[], byte[] and Reader payloads are supported. Scanning stops as soon as the value has been found so
+ * only the start of a message is typically read. A Reader payload must support mark and reset; it is reset after
+ * scanning so that it can still be parsed, which limits the scan to the first readLimit characters.
+ * 
+ * @author Andrew Elmore
+ */
+public abstract class AbstractRawValueExtractor implements RawValueExtractor {
+
+	private String encoding = C24Utils.DEFAULT_FILE_ENCODING;
+
+	private int readLimit = 64 * 1024;
+
+	/*
+	 * (non-Javadoc)
+	 * @see biz.c24.io.spring.integration.extractor.RawValueExtractor#extractValue(java.lang.Object)
+	 */
+	public String extractValue(Object payload) throws IOException {
+		if (payload instanceof String) {
+			return scan(new StringReader((String) payload));
+		} else if (payload instanceof char[]) {
+			return scan(new CharArrayReader((char[]) payload));
+		} else if (payload instanceof byte[]) {
+			return scan(new BufferedReader(new InputStreamReader(new ByteArrayInputStream((byte[]) payload),
+					encoding)));
+		} else if (payload instanceof Reader) {
+			Reader reader = (Reader) payload;
+			if (!reader.markSupported()) {
+				throw new IllegalArgumentException("Reader payloads must support mark and reset");
+			}
+			reader.mark(readLimit);
+			try {
+				return scan(new BufferedReader(new LimitedReader(reader, readLimit)));
+			} finally {
+				reader.reset();
+			}
+		}
+		throw new IllegalArgumentException("Cannot extract a value from payloads of type ["
+				+ (payload == null ? "<null>" : payload.getClass().getName())
+				+ "]. Only String, char[], byte[] and Reader are supported.");
+	}
+
+	/**
+	 * Scans the message for the value
+	 * 
+	 * @param reader The message
+	 * @return The value, or null if it isn't present
+	 */
+	protected abstract String scan(Reader reader) throws IOException;
+
+	public String getEncoding() {
+		return encoding;
+	}
+
+	/**
+	 * The encoding of byte[] payloads. Defaults to UTF-8.
+	 * 
+	 * @param encoding
+	 */
+	public void setEncoding(String encoding) {
+		Assert.hasText(encoding, "encoding must not be empty");
+		this.encoding = encoding;
+	}
+
+	public int getReadLimit() {
+		return readLimit;
+	}
+
+	/**
+	 * The maximum number of characters of a Reader payload to scan. Defaults to 64k.
+	 * 
+	 * @param readLimit
+	 */
+	public void setReadLimit(int readLimit) {
+		Assert.isTrue(readLimit > 0, "readLimit must be positive");
+		this.readLimit = readLimit;
+	}
+
+	/**
+	 * Stops reading from a Reader before its mark is invalidated
+	 */
+	private static class LimitedReader extends Reader {
+		private final Reader reader;
+		private int remaining;
+
+		LimitedReader(Reader reader, int limit) {
+			this.reader = reader;
+			this.remaining = limit;
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			int read = reader.read(cbuf, off, Math.min(len, remaining));
+			if (read > 0) {
+				remaining -= read;
+			}
+			return read;
+		}
+
+		@Override
+		public void close() {
+			// The payload is left open for whatever parses it
+		}
+	}
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.integration.extractor;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.springframework.util.Assert;
+
+/**
+ * Extracts a field from a record of a raw delimited (e.g. CSV) message.
+ * 
+ * Quoting isn't interpreted, so the field and those preceding it must not contain the delimiter.
+ * 
+ * @author Andrew Elmore
+ */
+public class DelimitedValueExtractor extends AbstractRawValueExtractor {
+
+	private final int field;
+
+	private int record = 0;
+
+	private char delimiter = ',';
+
+	/**
+	 * @param field The zero-based index of the field within its record
+	 */
+	public DelimitedValueExtractor(int field) {
+		Assert.isTrue(field >= 0, "field must not be negative");
+		this.field = field;
+	}
+
+	@Override
+	protected String scan(Reader reader) throws IOException {
+		int ch = reader.read();
+
+		// Skip to the record
+		for (int i = 0; i < record; i++) {
+			while (ch != -1 && ch != '\n') {
+				ch = reader.read();
+			}
+			if (ch == -1) {
+				return null;
+			}
+			ch = reader.read();
+		}
+
+		// Skip to the field
+		for (int i = 0; i < field; i++) {
+			while (ch != -1 && ch != delimiter && ch != '\r' && ch != '\n') {
+				ch = reader.read();
+			}
+			if (ch != delimiter) {
+				return null;
+			}
+			ch = reader.read();
+		}
+
+		if (ch == -1) {
+			return null;
+		}
+		StringBuilder value = new StringBuilder();
+		while (ch != -1 && ch != delimiter && ch != '\r' && ch != '\n') {
+			value.append((char) ch);
+			ch = reader.read();
+		}
+		return value.toString();
+	}
+
+	public int getField() {
+		return field;
+	}
+
+	public int getRecord() {
+		return record;
+	}
+
+	/**
+	 * The zero-based index of the record (line) to extract the field from. Defaults to 0.
+	 * 
+	 * @param record
+	 */
+	public void setRecord(int record) {
+		Assert.isTrue(record >= 0, "record must not be negative");
+		this.record = record;
+	}
+
+	public char getDelimiter() {
+		return delimiter;
+	}
+
+	/**
+	 * The field delimiter. Defaults to ','.
+	 * 
+	 * @param delimiter
+	 */
+	public void setDelimiter(char delimiter) {
+		this.delimiter = delimiter;
+	}
+
+}
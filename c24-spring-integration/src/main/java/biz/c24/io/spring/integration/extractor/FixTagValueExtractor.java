@@ -0,0 +1,93 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.integration.extractor;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.springframework.util.Assert;
+
+/**
+ * Extracts the value of a tag, such as MsgType (35), from a raw FIX message.
+ * 
+ * Fields are delimited by SOH unless another delimiter, commonly '|', is configured.
+ * 
+ * @author Andrew Elmore
+ */
+public class FixTagValueExtractor extends AbstractRawValueExtractor {
+
+	public static final char SOH = '\u0001';
+
+	private final int tag;
+
+	private char delimiter = SOH;
+
+	/**
+	 * @param tag The number of the tag to extract
+	 */
+	public FixTagValueExtractor(int tag) {
+		Assert.isTrue(tag > 0, "tag must be positive");
+		this.tag = tag;
+	}
+
+	@Override
+	protected String scan(Reader reader) throws IOException {
+		int ch = reader.read();
+		while (ch != -1) {
+			// At the start of a field; read the tag number
+			int fieldTag = 0;
+			while (ch >= '0' && ch <= '9') {
+				fieldTag = fieldTag * 10 + (ch - '0');
+				ch = reader.read();
+			}
+
+			if (ch == '=' && fieldTag == tag) {
+				StringBuilder value = new StringBuilder();
+				while ((ch = reader.read()) != -1 && ch != delimiter) {
+					value.append((char) ch);
+				}
+				return value.toString();
+			}
+
+			// Skip to the next field
+			while (ch != -1 && ch != delimiter) {
+				ch = reader.read();
+			}
+			if (ch != -1) {
+				ch = reader.read();
+			}
+		}
+		return null;
+	}
+
+	public int getTag() {
+		return tag;
+	}
+
+	public char getDelimiter() {
+		return delimiter;
+	}
+
+	/**
+	 * The field delimiter. Defaults to SOH.
+	 * 
+	 * @param delimiter
+	 */
+	public void setDelimiter(char delimiter) {
+		this.delimiter = delimiter;
+	}
+
+}
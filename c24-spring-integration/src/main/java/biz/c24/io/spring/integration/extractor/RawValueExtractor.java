@@ -0,0 +1,38 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.integration.extractor;
+
+import java.io.IOException;
+
+/**
+ * Extracts a single value, such as a message type, from a raw (unparsed) message so that it can be routed or
+ * filtered without being unmarshalled.
+ * 
+ * @author Andrew Elmore
+ */
+public interface RawValueExtractor {
+
+	/**
+	 * Extracts the value from a raw payload
+	 * 
+	 * @param payload The payload
+	 * @return The value, or null if it isn't present
+	 * @throws IllegalArgumentException If the payload isn't of a supported type
+	 * @throws IOException If the payload can't be read
+	 */
+	String extractValue(Object payload) throws IOException;
+
+}
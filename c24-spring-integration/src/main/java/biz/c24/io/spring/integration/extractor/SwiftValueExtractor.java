@@ -0,0 +1,92 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.integration.extractor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+import org.springframework.util.Assert;
+
+/**
+ * Extracts either the message type (e.g. 103) from the application header block or the value of a text block field
+ * (e.g. 20) from a raw SWIFT FIN message.
+ * 
+ * Only the first line of a multi-line field is returned.
+ * 
+ * @author Andrew Elmore
+ */
+public class SwiftValueExtractor extends AbstractRawValueExtractor {
+
+	private static final String APPLICATION_HEADER = "{2:";
+
+	private String field = null;
+
+	private boolean messageType = false;
+
+	@Override
+	protected String scan(Reader reader) throws IOException {
+		Assert.state(messageType ^ field != null, "Exactly one of field and messageType must be set");
+
+		BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+		String fieldStart = messageType ? null : ":" + field + ":";
+
+		String line;
+		while ((line = lines.readLine()) != null) {
+			if (messageType) {
+				// {2:I103... for input messages, {2:O103... for output
+				int idx = line.indexOf(APPLICATION_HEADER);
+				if (idx >= 0 && line.length() >= idx + APPLICATION_HEADER.length() + 4) {
+					int start = idx + APPLICATION_HEADER.length() + 1;
+					return line.substring(start, start + 3);
+				}
+			} else if (line.startsWith(fieldStart)) {
+				return line.substring(fieldStart.length());
+			} else if (line.startsWith("-}")) {
+				// End of the text block
+				break;
+			}
+		}
+		return null;
+	}
+
+	public String getField() {
+		return field;
+	}
+
+	/**
+	 * The tag of the text block field to extract, e.g. 20 or 32A
+	 * 
+	 * @param field
+	 */
+	public void setField(String field) {
+		this.field = field;
+	}
+
+	public boolean isMessageType() {
+		return messageType;
+	}
+
+	/**
+	 * Whether to extract the message type rather than a field
+	 * 
+	 * @param messageType
+	 */
+	public void setMessageType(boolean messageType) {
+		this.messageType = messageType;
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.integration.extractor;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.springframework.util.Assert;
+
+/**
+ * Extracts the text or an attribute of an element from a raw XML message using a streaming (StAX) parser.
+ * 
+ * The element is identified by a path of local names; namespaces are ignored. A path starting with / is matched from
+ * the document element, e.g. {@code /Envelope/Header/MsgType}; one starting with // may start at any depth, e.g.
+ * {@code //Header/MsgType}. The first matching element is used. Its text is returned unless an attribute is
+ * configured; elements with child elements aren't supported.
+ * 
+ * @author Andrew Elmore
+ */
+public class XmlValueExtractor extends AbstractRawValueExtractor {
+
+	private final XMLInputFactory factory;
+
+	private final String[] steps;
+
+	private final boolean anyDepth;
+
+	private String attribute = null;
+
+	/**
+	 * @param path The path to the element
+	 */
+	public XmlValueExtractor(String path) {
+		Assert.hasText(path, "path must not be empty");
+		Assert.isTrue(path.startsWith("/"), "path must start with / or //");
+		anyDepth = path.startsWith("//");
+		steps = path.substring(anyDepth ? 2 : 1).split("/");
+
+		factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
+
+	@Override
+	protected String scan(Reader reader) throws IOException {
+		try {
+			XMLStreamReader xml = factory.createXMLStreamReader(reader);
+			try {
+				List<String> stack = new ArrayList<String>();
+				while (xml.hasNext()) {
+					int event = xml.next();
+					if (event == XMLStreamConstants.START_ELEMENT) {
+						stack.add(xml.getLocalName());
+						if (matches(stack)) {
+							return attribute != null ? xml.getAttributeValue(null, attribute) : xml.getElementText();
+						}
+					} else if (event == XMLStreamConstants.END_ELEMENT) {
+						stack.remove(stack.size() - 1);
+					}
+				}
+				return null;
+			} finally {
+				xml.close();
+			}
+		} catch (XMLStreamException e) {
+			IOException ex = new IOException("Failed to scan XML for " + (anyDepth ? "//" : "/") + join(steps));
+			ex.initCause(e);
+			throw ex;
+		}
+	}
+
+	private boolean matches(List<String> stack) {
+		int offset = stack.size() - steps.length;
+		if (offset < 0 || (!anyDepth && offset != 0)) {
+			return false;
+		}
+		for (int i = steps.length - 1; i >= 0; i--) {
+			if (!steps[i].equals(stack.get(offset + i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String join(String[] steps) {
+		StringBuilder path = new StringBuilder();
+		for (String step : steps) {
+			if (path.length() > 0) {
+				path.append('/');
+			}
+			path.append(step);
+		}
+		return path.toString();
+	}
+
+	public String getAttribute() {
+		return attribute;
+	}
+
+	/**
+	 * The local name of the attribute of the element to extract. If not set, the element's text is extracted.
+	 * 
+	 * @param attribute
+	 */
+	public void setAttribute(String attribute) {
+		this.attribute = attribute;
+	}
+
+}
@@ -2,6 +2,7 @@ package biz.c24.io.spring.integration.jdbc;
 
 
 import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.spring.integration.C24LazyPayload;
 import org.springframework.integration.jdbc.SqlParameterSourceFactory;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.messaging.Message;
@@ -21,8 +22,8 @@ public class CdoSqlParameterSourceFactory implements SqlParameterSourceFactory {
         Assert.notNull(input, "Input to Source Factory must not be null");
         Assert.isInstanceOf(Message.class, input, "input must be instance of org.springframework.messaging.Message");
         Message message = (Message) input;
-        Assert.isInstanceOf(ComplexDataObject.class, message.getPayload(), "Payload of the message must be a biz.c24.io.api.data.ComplexDataObject");
-        ComplexDataObject payload = (ComplexDataObject)message.getPayload();
-        return new CdoSqlParameterSource(payload);
+        Object payload = C24LazyPayload.unwrap(message.getPayload());
+        Assert.isInstanceOf(ComplexDataObject.class, payload, "Payload of the message must be a biz.c24.io.api.data.ComplexDataObject");
+        return new CdoSqlParameterSource((ComplexDataObject)payload);
     }
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.integration.router;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.integration.router.AbstractMappingMessageRouter;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.util.Assert;
+
+import biz.c24.io.spring.integration.extractor.RawValueExtractor;
+
+/**
+ * Message Router that determines channel names from a value extracted from
+ * the raw payload, such as a message type, so that messages can be routed
+ * before, or instead of, being unmarshalled.
+ * 
+ * @author Andrew Elmore
+ */
+public class C24RawValueRouter extends AbstractMappingMessageRouter {
+
+	private final RawValueExtractor extractor;
+
+	/**
+	 * Create a router that uses the given extractor.
+	 * 
+	 * @param extractor
+	 *            extracts the channel key from the payload
+	 */
+	public C24RawValueRouter(RawValueExtractor extractor) {
+		Assert.notNull(extractor, "extractor must not be null");
+		this.extractor = extractor;
+	}
+
+	@Override
+	public String getComponentType() {
+		return "int-c24:raw-router";
+	}
+
+	@Override
+	protected List<Object> getChannelKeys(Message<?> message) {
+
+		String channel;
+		try {
+			channel = extractor.extractValue(message.getPayload());
+		} catch (IllegalArgumentException e) {
+			throw new MessagingException(message, "Cannot route based on the payload", e);
+		} catch (IOException e) {
+			throw new MessagingException(message, "Exception when trying to extract the routing key", e);
+		}
+
+		return channel != null ? Collections.singletonList((Object) channel) : Collections.emptyList();
+	}
+}
@@ -26,8 +26,9 @@ import org.springframework.util.Assert;
 import biz.c24.io.api.data.ComplexDataObject;
 import biz.c24.io.api.data.IOXPath;
 import biz.c24.io.api.data.IOXPathException;
-import biz.c24.io.api.data.IOXPathFactory;
 import biz.c24.io.api.data.XPathStatement;
+import biz.c24.io.spring.integration.C24LazyPayload;
+import biz.c24.io.spring.util.XPathCache;
 
 /**
  * Message Router that uses {@link XPathStatement} evaluation to determine
@@ -42,6 +43,8 @@ public class C24XPathRouter extends AbstractMappingMessageRouter {
 
 	private final XPathStatement statement;
 
+	private XPathCache xpathCache = XPathCache.getSharedInstance();
+
 	/**
 	 * Create a router that uses an XPath expression.
 	 * 
@@ -71,7 +74,7 @@ public class C24XPathRouter extends AbstractMappingMessageRouter {
 
 	protected IOXPath createXPath() {
 		try {
-			return IOXPathFactory.getInstance(statement);
+			return xpathCache.getXPath(statement);
 		} catch (IOXPathException e) {
 			throw new MessagingException(
 					"Exception when trying to instantiate the Xpath statement ["
@@ -79,12 +82,26 @@ public class C24XPathRouter extends AbstractMappingMessageRouter {
 		}
 	}
 
+	public XPathCache getXPathCache() {
+		return xpathCache;
+	}
+
+	/**
+	 * Sets the cache of compiled XPaths. Defaults to the shared XPathCache.
+	 * 
+	 * @param xpathCache
+	 */
+	public void setXPathCache(XPathCache xpathCache) {
+		Assert.notNull(xpathCache, "xpathCache must not be null");
+		this.xpathCache = xpathCache;
+	}
+
 	@Override
 	protected List<Object> getChannelKeys(Message<?> message) {
 
 		ComplexDataObject cdo;
 		try {
-			cdo = (ComplexDataObject) message.getPayload();
+			cdo = (ComplexDataObject) C24LazyPayload.unwrap(message.getPayload());
 		} catch (ClassCastException e) {
 
 			Object payload = message.getPayload();
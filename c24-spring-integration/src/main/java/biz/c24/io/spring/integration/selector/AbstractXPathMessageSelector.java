@@ -24,8 +24,9 @@ import org.springframework.xml.xpath.XPathException;
 import biz.c24.io.api.data.ComplexDataObject;
 import biz.c24.io.api.data.IOXPath;
 import biz.c24.io.api.data.IOXPathException;
-import biz.c24.io.api.data.IOXPathFactory;
 import biz.c24.io.api.data.XPathStatement;
+import biz.c24.io.spring.integration.C24LazyPayload;
+import biz.c24.io.spring.util.XPathCache;
 
 /**
  * @author askogman
@@ -35,6 +36,8 @@ public abstract class AbstractXPathMessageSelector implements MessageSelector {
 
 	XPathStatement statement;
 
+	private XPathCache xpathCache = XPathCache.getSharedInstance();
+
 	public AbstractXPathMessageSelector(String statement) {
 		Assert.notNull(statement, "The XPath statement must not be null.");
 
@@ -48,11 +51,25 @@ public abstract class AbstractXPathMessageSelector implements MessageSelector {
 	}
 
 	protected IOXPath createXPath() throws IOXPathException {
-		return IOXPathFactory.getInstance(statement);
+		return xpathCache.getXPath(statement);
+	}
+
+	public XPathCache getXPathCache() {
+		return xpathCache;
+	}
+
+	/**
+	 * Sets the cache of compiled XPaths. Defaults to the shared XPathCache.
+	 * 
+	 * @param xpathCache
+	 */
+	public void setXPathCache(XPathCache xpathCache) {
+		Assert.notNull(xpathCache, "xpathCache must not be null");
+		this.xpathCache = xpathCache;
 	}
 
 	final public boolean accept(Message<?> message) {
-		Object payload = message.getPayload();
+		Object payload = C24LazyPayload.unwrap(message.getPayload());
 
 		ComplexDataObject cdo;
 		try {
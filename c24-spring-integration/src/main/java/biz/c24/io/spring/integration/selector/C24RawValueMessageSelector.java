@@ -0,0 +1,90 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.integration.selector;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.integration.core.MessageSelector;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.util.Assert;
+
+import biz.c24.io.spring.integration.extractor.RawValueExtractor;
+
+/**
+ * Accepts messages where a value extracted from the raw payload matches the
+ * value to test for, without unmarshalling the payload.
+ * 
+ * @author Andrew Elmore
+ */
+public class C24RawValueMessageSelector implements MessageSelector, InitializingBean {
+
+	private final RawValueExtractor extractor;
+
+	private volatile boolean caseSensitive = true;
+
+	private volatile String stringTestValue;
+
+	/**
+	 * @param extractor
+	 */
+	public C24RawValueMessageSelector(RawValueExtractor extractor) {
+		Assert.notNull(extractor, "The extractor must not be null.");
+		this.extractor = extractor;
+	}
+
+	public boolean accept(Message<?> message) {
+
+		String value;
+		try {
+			value = extractor.extractValue(message.getPayload());
+		} catch (IllegalArgumentException e) {
+			throw new MessagingException(message, "Cannot evaluate the payload", e);
+		} catch (IOException e) {
+			throw new MessagingException(message, "Exception thrown trying to extract a value from the payload", e);
+		}
+
+		if (this.caseSensitive) {
+			return this.stringTestValue.equals(value);
+		}
+		else {
+			return this.stringTestValue.equalsIgnoreCase(value);
+		}
+	}
+
+	public String getValueToTestFor() {
+		return stringTestValue;
+	}
+
+	public void setValueToTestFor(String valueToTestFor) {
+		Assert.notNull(valueToTestFor, "'valueToTestFor' must not be null.");
+		this.stringTestValue = valueToTestFor;
+	}
+
+	public boolean isCaseSensitive() {
+		return caseSensitive;
+	}
+
+	public void setCaseSensitive(boolean caseSensitive) {
+		this.caseSensitive = caseSensitive;
+	}
+
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(stringTestValue, "'valueToTestFor' must not be null.");
+	}
+
+}
@@ -26,6 +26,7 @@ import biz.c24.io.api.data.ComplexDataObject;
 import biz.c24.io.api.data.ValidationEventCollector;
 import biz.c24.io.api.data.ValidationException;
 import biz.c24.io.api.data.ValidationManager;
+import biz.c24.io.spring.integration.C24LazyPayload;
 import biz.c24.io.spring.integration.validation.C24AggregatedMessageValidationException;
 
 /**
@@ -49,7 +50,7 @@ public class C24ValidatingMessageSelector implements MessageSelector {
 	 * springframework.integration.Message)
 	 */
 	public boolean accept(Message<?> message) {
-		Object payload = message.getPayload();
+		Object payload = C24LazyPayload.unwrap(message.getPayload());
 
 		ComplexDataObject cdo;
 		try {
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.integration.splitter;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.integration.splitter.AbstractMessageSplitter;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.MessagingException;
+import org.springframework.util.Assert;
+import org.springframework.web.multipart.MultipartFile;
+
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.data.Element;
+import biz.c24.io.api.presentation.Source;
+import biz.c24.io.api.presentation.TextualSource;
+import biz.c24.io.api.presentation.XMLSource;
+import biz.c24.io.spring.core.C24Model;
+import biz.c24.io.spring.source.SourceFactory;
+import biz.c24.io.spring.util.C24Utils;
+
+/**
+ * Unmarshals a payload containing many records, such as a File or
+ * InputStream, into one message per record.
+ *
+ * Records are parsed one after another from a single Source, reading the
+ * model's root element each time, and each is sent on as soon as it has been
+ * parsed. Only the record being parsed is held in memory, however large the
+ * payload. Parsing stops at the end of the data or at the first record which
+ * can't be parsed; as there is no way to skip to the next record, the rest of
+ * the payload is abandoned and a MessagingException thrown.
+ *
+ * Streams opened from File and MultipartFile payloads are closed once the
+ * records are exhausted, parsing fails or sending a record fails;
+ * InputStreams and Readers are left for the sender to close. The number of
+ * records isn't known up front, so the sequence size header of the messages
+ * is 0.
+ *
+ * Only sources which can read one record after another, such as a
+ * TextualSource, are supported. An XMLSource reads a single document and
+ * closes the stream, so a payload which would be read with one is rejected;
+ * use a C24UnmarshallingTransformer and an XPath splitter instead.
+ *
+ * @author Andrew Elmore
+ */
+public class C24UnmarshallingSplitter extends AbstractMessageSplitter {
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private final C24Model model;
+	private SourceFactory sourceFactory;
+	private boolean unwrapDocumentRoot = true;
+
+	/**
+	 * The records of the message being split on this thread, between
+	 * splitMessage and produceOutput
+	 */
+	private final ThreadLocal<RecordIterator> splitting = new ThreadLocal<RecordIterator>();
+
+	/**
+	 * Create a splitter, using the default source for the model provided.
+	 *
+	 * @param model
+	 *            The model whose root element is a single record
+	 */
+	public C24UnmarshallingSplitter(C24Model model) {
+		this(model, null);
+	}
+
+	/**
+	 * Create a splitter.
+	 *
+	 * @param model
+	 *            The model whose root element is a single record
+	 * @param sourceFactory
+	 */
+	public C24UnmarshallingSplitter(C24Model model, SourceFactory sourceFactory) {
+		Assert.notNull(model, "model must not be null");
+
+		this.model = model;
+		this.sourceFactory = sourceFactory;
+	}
+
+	public void setSourceFactory(SourceFactory sourceFactory) {
+		this.sourceFactory = sourceFactory;
+	}
+
+	public void setUnwrapDocumentRoot(boolean unwrapDocumentRoot) {
+		this.unwrapDocumentRoot = unwrapDocumentRoot;
+	}
+
+	@Override
+	protected Object splitMessage(Message<?> message) {
+		Object payload = message.getPayload();
+		SourceFactory factory = sourceFactory != null ? sourceFactory : model;
+
+		Source source;
+		Closeable opened = null;
+		try {
+			if (payload instanceof Reader) {
+				source = factory.getSource((Reader) payload);
+			} else if (payload instanceof String) {
+				source = factory.getSource(new StringReader((String) payload));
+			} else if (payload instanceof InputStream) {
+				source = factory.getSource((InputStream) payload);
+			} else if (payload instanceof byte[]) {
+				source = factory.getSource(new ByteArrayInputStream((byte[]) payload));
+			} else if (payload instanceof MultipartFile) {
+				InputStream stream = ((MultipartFile) payload).getInputStream();
+				opened = stream;
+				source = factory.getSource(stream);
+			} else if (payload instanceof File) {
+				InputStream stream = new BufferedInputStream(new FileInputStream((File) payload));
+				opened = stream;
+				source = factory.getSource(stream);
+			} else {
+				throw new MessagingException(message,
+						"failed to split message, payload not assignable from java.io.InputStream/Reader and no conversion possible");
+			}
+		} catch (IOException e) {
+			throw new MessageHandlingException(message, e);
+		}
+
+		if (source instanceof XMLSource) {
+			close(opened, message);
+			throw new MessagingException(message,
+					"failed to split message, an XMLSource can only read a single record from a payload");
+		}
+
+		if (source instanceof TextualSource) {
+			// Otherwise the source expects the first record to be the whole of the data
+			((TextualSource) source).setEndOfDataRequired(false);
+		}
+
+		RecordIterator records = new RecordIterator(message, source, opened);
+		splitting.set(records);
+		return records;
+	}
+
+	/**
+	 * Sends a message for each record, making sure that any stream we opened
+	 * is closed even if sending fails part way through
+	 */
+	@Override
+	protected void produceOutput(Object result, MessageHeaders requestHeaders) {
+		RecordIterator records = splitting.get();
+		splitting.remove();
+		try {
+			super.produceOutput(result, requestHeaders);
+		} finally {
+			if (records != null) {
+				records.finish();
+			}
+		}
+	}
+
+	private void close(Closeable opened, Message<?> message) {
+		if (opened != null) {
+			try {
+				opened.close();
+			} catch (IOException e) {
+				logger.warn("Failed to close the stream for " + message.getPayload(), e);
+			}
+		}
+	}
+
+	/**
+	 * Parses the next record each time one is asked for
+	 */
+	private class RecordIterator implements Iterator<ComplexDataObject> {
+
+		private final Message<?> message;
+		private final Source source;
+		private final Element element;
+		private Closeable opened;
+
+		private ComplexDataObject next;
+		private boolean finished = false;
+		private int count = 0;
+
+		RecordIterator(Message<?> message, Source source, Closeable opened) {
+			this.message = message;
+			this.source = source;
+			this.element = model.getRootElement();
+			this.opened = opened;
+		}
+
+		public boolean hasNext() {
+			if (next == null && !finished) {
+				try {
+					next = read();
+				} catch (IOException e) {
+					finish();
+					throw new MessageHandlingException(message, "Failed to parse record " + (count + 1), e);
+				}
+				if (next == null) {
+					finish();
+				}
+			}
+			return next != null;
+		}
+
+		public ComplexDataObject next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			ComplexDataObject result = next;
+			next = null;
+			count++;
+			return unwrapDocumentRoot ? C24Utils.potentiallyUnwrapDocumentRoot(result) : result;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		private ComplexDataObject read() throws IOException {
+			ComplexDataObject obj = source.readObject(element);
+			if (obj != null && obj.getTotalAttrCount() == 0 && obj.getTotalElementCount() == 0) {
+				// Nothing left to read
+				obj = null;
+			}
+			return obj;
+		}
+
+		private void finish() {
+			if (finished) {
+				return;
+			}
+			finished = true;
+			close(opened, message);
+			opened = null;
+			if (logger.isDebugEnabled()) {
+				logger.debug("Unmarshalled " + count + " records from " + message.getPayload());
+			}
+		}
+	}
+
+}
@@ -1,26 +1,84 @@
 package biz.c24.io.spring.integration.transformer;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.integration.channel.ChannelInterceptorAware;
+import org.springframework.integration.channel.ExecutorChannel;
+import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
 import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.PollableChannel;
+import org.springframework.messaging.support.ChannelInterceptorAdapter;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.transformer.AbstractPayloadTransformer;
+import org.springframework.util.Assert;
+
+import biz.c24.io.spring.sink.OutputType;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
+/**
+ * Splits a file into records and sends them in batches to the message processing channel. The transformer's own
+ * output is Boolean.TRUE once the whole file has been sent.
+ *
+ * A record starts at each line matching the initiator, or at every line if there is no initiator; lines before the
+ * first match are skipped. Each batch is sent as a List of Strings or, if the output type is BYTE_ARRAY, a List of
+ * byte[] holding the records' bytes as they appear in the file, avoiding decoding them only for them to be
+ * re-encoded downstream.
+ *
+ * The file is read through a FileChannel and split on its bytes, so the encoding must be one in which CR and LF are
+ * single bytes that never occur within other characters, such as UTF-8, US-ASCII or ISO-8859-1.
+ *
+ * Sends to an ExecutorChannel or QueueChannel return before the batch has been processed. Setting maxInFlight caps
+ * the number of batches sent but not yet handled (executor channels) or received (pollable channels); once reached,
+ * the split waits for the consumers to catch up rather than filling the heap with pending batches.
+ */
 public class C24FileSplittingTransformer extends AbstractPayloadTransformer<Object, Object> {
 
     private final static int DEFAULT_BATCH_SIZE = 1;
     private final static String DEFAULT_TERMINATOR = System.getProperty("line.separator");
+    private final static int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final Log logger = LogFactory.getLog(getClass());
+
     private Pattern initiator;
     private String terminator = DEFAULT_TERMINATOR;
     private final MessageChannel messageProcessingChannel;
     private int batchSize = DEFAULT_BATCH_SIZE;
+    private Charset charset = Charset.defaultCharset();
+    private OutputType outputType = OutputType.STRING;
+    private boolean keepLineTerminators = false;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private int maxInFlight = 0;
+
+    /**
+     * Bounds the batches in flight when maxInFlight is set; created on first use
+     */
+    private volatile InFlightWindow window;
+
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong recordsSent = new AtomicLong();
+    private final AtomicLong batchesSent = new AtomicLong();
 
 
     public C24FileSplittingTransformer(MessageChannel messageProcessingChannel) {
+          Assert.notNull(messageProcessingChannel, "messageProcessingChannel must not be null");
           this.messageProcessingChannel = messageProcessingChannel;
     }
 
@@ -32,56 +90,262 @@ public class C24FileSplittingTransformer extends AbstractPayloadTransformer<Obje
 
     @Override
     protected Object transformPayload(Object payload) throws Exception {
+        if(!(payload instanceof File)) {
+            throw new MessagingException("Cannot split payload of type ["
+                    + (payload != null ? payload.getClass().getName() : "null") + "]. Only File is supported.");
+        }
         File file = (File)payload;
+        InFlightWindow window = getWindow();
+        Splitter splitter = new Splitter(window);
+
+        long start = System.currentTimeMillis();
         try {
-            BufferedReader reader = new BufferedReader(new FileReader(file));
-
-            StringBuffer currentMessage = null;
-            int linesProcessed = 0;
-            List<String> batchContainer = new ArrayList<String>(batchSize);
-            // Read through the file
-            while (reader.ready()) {
-                String line = reader.readLine();
-                if (initiator == null || initiator.matcher(line).matches()) {
-                    // We've encountered a line which matches our message start pattern
-                    // Dump out the current message
-                    if (currentMessage != null) {
-                        linesProcessed += 1;
-                        batchContainer.add(currentMessage.toString());
-                        if ((linesProcessed % batchSize) == 0) {
-                            messageProcessingChannel.send(MessageBuilder.withPayload(new ArrayList<String>(batchContainer)).build());
-                            batchContainer.clear();
-                        }
-                    }
-                    // Reset the StringBuffer ready for the next message
-                    currentMessage = new StringBuffer();
+            FileInputStream stream = new FileInputStream(file);
+            try {
+                splitter.split(stream.getChannel());
+            } finally {
+                stream.close();
+            }
+        } catch (FileNotFoundException fnfEx) {
+            throw new MessageHandlingException(MessageBuilder.withPayload(payload).build(), fnfEx);
+        } catch(IOException iEx) {
+            throw new MessageHandlingException(MessageBuilder.withPayload(payload).build(), iEx);
+        } catch(InterruptedException iEx) {
+            Thread.currentThread().interrupt();
+            throw new MessageHandlingException(MessageBuilder.withPayload(payload).build(), iEx);
+        }
+
+        bytesRead.addAndGet(splitter.bytes);
+        recordsSent.addAndGet(splitter.records);
+        batchesSent.addAndGet(splitter.batches);
+
+        if(logger.isInfoEnabled()) {
+            long elapsed = Math.max(System.currentTimeMillis() - start, 1);
+            logger.info("Split " + file + " into " + splitter.records + " records in " + splitter.batches
+                    + " batches in " + elapsed + "ms (" + (splitter.records * 1000 / elapsed) + " records/s, "
+                    + (splitter.bytes * 1000 / 1024 / elapsed) + "KB/s)");
+        }
+
+        return Boolean.TRUE;
+    }
+
+    /**
+     * Splits one file. Lines are found by scanning the bytes in the buffer, which always holds at least the whole of
+     * the current line, and are accumulated into record until the next initiator.
+     */
+    private class Splitter {
+
+        private final InFlightWindow window;
+
+        private byte[] buffer = new byte[bufferSize];
+        private int index = 0;
+        private int endIndex = 0;
+
+        private byte[] record = new byte[256];
+        private int recordLength = -1;
+
+        private List<Object> batch = new ArrayList<Object>(batchSize);
+
+        long bytes = 0;
+        long records = 0;
+        long batches = 0;
+
+        Splitter(InFlightWindow window) {
+            this.window = window;
+        }
+
+        void split(FileChannel channel) throws IOException, InterruptedException {
+            boolean eof = false;
+            while(true) {
+                // Find the end of the line starting at index
+                int end = index;
+                while(end < endIndex && buffer[end] != '\n' && buffer[end] != '\r') {
+                    end++;
+                }
+                int next = end;
+                if(end < endIndex) {
+                    next = buffer[end] == '\r' && end + 1 < endIndex && buffer[end + 1] == '\n' ? end + 2 : end + 1;
                 }
-                if (currentMessage != null) {
-                    currentMessage.append(line);
-                    //currentMessage.append(terminator);
+                // A line is complete if it's terminated, barring a trailing CR which may be followed by LF
+                boolean complete = end < endIndex && (buffer[end] == '\n' || end + 1 < endIndex);
+                if(!complete && !eof) {
+                    eof = !fillBuffer(channel);
+                    continue;
                 }
+                if(index == endIndex) {
+                    break;
+                }
+                line(index, end, next);
+                index = next;
+            }
+            if(recordLength > 0) {
+                endRecord();
             }
+            if(!batch.isEmpty()) {
+                send();
+            }
+        }
 
-            // Ensure we write out the last message
-            if(currentMessage != null && currentMessage.length() > 0) {
-                batchContainer.add(currentMessage.toString());
-                messageProcessingChannel.send(MessageBuilder.withPayload(new ArrayList<String>(batchContainer)).build());
-                batchContainer.clear();
+        /**
+         * Keeps the unconsumed data and reads more after it, growing the buffer if the current line fills it
+         *
+         * @return False if the end of the file has been reached
+         */
+        private boolean fillBuffer(FileChannel channel) throws IOException {
+            int remaining = endIndex - index;
+            if(index > 0) {
+                System.arraycopy(buffer, index, buffer, 0, remaining);
+            } else if(remaining == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
             }
+            index = 0;
+            endIndex = remaining;
 
-            return Boolean.TRUE;
+            int read = channel.read(ByteBuffer.wrap(buffer, endIndex, buffer.length - endIndex));
+            if(read <= 0) {
+                return false;
+            }
+            endIndex += read;
+            bytes += read;
+            return true;
+        }
 
-        } catch (FileNotFoundException fnfEx) {
-            throw new MessageHandlingException(MessageBuilder.withPayload(payload).build(), fnfEx);
-        } catch(IOException iEx) {
-            throw new MessageHandlingException(MessageBuilder.withPayload(payload).build(), iEx);
+        private void line(int start, int end, int next) throws InterruptedException {
+            if(initiator == null || initiator.matcher(new String(buffer, start, end - start, charset)).matches()) {
+                if(recordLength >= 0) {
+                    endRecord();
+                }
+                recordLength = 0;
+            }
+            if(recordLength >= 0) {
+                append(start, keepLineTerminators ? next : end);
+            }
+        }
+
+        private void append(int start, int end) {
+            int length = end - start;
+            if(recordLength + length > record.length) {
+                record = Arrays.copyOf(record, Math.max(record.length * 2, recordLength + length));
+            }
+            System.arraycopy(buffer, start, record, recordLength, length);
+            recordLength += length;
+        }
+
+        private void endRecord() throws InterruptedException {
+            batch.add(outputType == OutputType.BYTE_ARRAY ? Arrays.copyOf(record, recordLength)
+                    : new String(record, 0, recordLength, charset));
+            records++;
+            if(batch.size() == batchSize) {
+                send();
+            }
+        }
+
+        private void send() throws InterruptedException {
+            Message<List<Object>> message = MessageBuilder.withPayload(batch).build();
+            batch = new ArrayList<Object>(batchSize);
+            if(window == null) {
+                messageProcessingChannel.send(message);
+            } else {
+                window.send(message);
+            }
+            batches++;
         }
     }
 
+    /**
+     * Lazily attaches the in-flight window to the message processing channel
+     */
+    private InFlightWindow getWindow() {
+        if(maxInFlight <= 0 || window != null) {
+            return window;
+        }
+        synchronized(this) {
+            if(window == null) {
+                if(messageProcessingChannel instanceof ChannelInterceptorAware) {
+                    InFlightWindow newWindow = new InFlightWindow(maxInFlight);
+                    ((ChannelInterceptorAware) messageProcessingChannel).addInterceptor(newWindow);
+                    window = newWindow;
+                } else {
+                    logger.warn("Cannot limit the batches in flight on " + messageProcessingChannel
+                            + " as it does not support interceptors");
+                }
+            }
+        }
+        return window;
+    }
+
+    /**
+     * Takes a permit for each batch sent and gives it back once the batch has been handled by an executor channel's
+     * subscriber, received from a pollable channel or, for any other channel, once the send returns.
+     */
+    private class InFlightWindow extends ChannelInterceptorAdapter implements ExecutorChannelInterceptor {
+
+        private final Semaphore semaphore;
+        private final Set<UUID> inFlight = Collections.newSetFromMap(new ConcurrentHashMap<UUID, Boolean>());
+
+        InFlightWindow(int permits) {
+            this.semaphore = new Semaphore(permits);
+        }
+
+        void send(Message<?> message) throws InterruptedException {
+            semaphore.acquire();
+            UUID id = message.getHeaders().getId();
+            inFlight.add(id);
+            boolean sent = false;
+            try {
+                sent = messageProcessingChannel.send(message);
+            } finally {
+                if(!sent) {
+                    release(message);
+                }
+            }
+        }
+
+        private void release(Message<?> message) {
+            if(inFlight.remove(message.getHeaders().getId())) {
+                semaphore.release();
+            }
+        }
+
+        @Override
+        public void postSend(Message<?> message, MessageChannel channel, boolean sent) {
+            if(!(channel instanceof ExecutorChannel) && !(channel instanceof PollableChannel)) {
+                release(message);
+            }
+        }
+
+        @Override
+        public Message<?> postReceive(Message<?> message, MessageChannel channel) {
+            if(message != null) {
+                release(message);
+            }
+            return message;
+        }
+
+        public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+            return message;
+        }
+
+        public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler,
+                Exception ex) {
+            release(message);
+        }
+    }
+
+    /**
+     * @deprecated Line terminators are now either kept as they appear in the file or dropped; see
+     *             {@link #setKeepLineTerminators(boolean)}
+     */
+    @Deprecated
     public String getTerminator() {
         return terminator;
     }
 
+    /**
+     * @deprecated Line terminators are now either kept as they appear in the file or dropped; see
+     *             {@link #setKeepLineTerminators(boolean)}
+     */
+    @Deprecated
     public void setTerminator(String lineTerminator) {
         this.terminator = lineTerminator;
     }
@@ -91,7 +355,103 @@ public class C24FileSplittingTransformer extends AbstractPayloadTransformer<Obje
     }
 
     public void setBatchSize(int batchSize) {
+        Assert.isTrue(batchSize > 0, "batchSize must be positive");
         this.batchSize = batchSize;
     }
 
-}
\ No newline at end of file
+    public String getEncoding() {
+        return charset.name();
+    }
+
+    /**
+     * Sets the encoding of the files. Defaults to the platform encoding.
+     *
+     * @param encoding An encoding in which CR and LF are single bytes, such as UTF-8 or ISO-8859-1
+     */
+    public void setEncoding(String encoding) {
+        Charset charset = Charset.forName(encoding);
+        byte[] crlf = "\r\n".getBytes(charset);
+        Assert.isTrue(crlf.length == 2 && crlf[0] == '\r' && crlf[1] == '\n', "Encoding " + encoding
+                + " is not supported as line terminators are not single bytes");
+        this.charset = charset;
+    }
+
+    public OutputType getOutputType() {
+        return outputType;
+    }
+
+    /**
+     * Sets whether records are sent as Strings or byte[]s. Defaults to STRING.
+     *
+     * @param outputType
+     */
+    public void setOutputType(OutputType outputType) {
+        Assert.notNull(outputType, "outputType must not be null");
+        Assert.isTrue(outputType != OutputType.BYTE_BUFFER, "outputType must be STRING or BYTE_ARRAY");
+        this.outputType = outputType;
+    }
+
+    public boolean isKeepLineTerminators() {
+        return keepLineTerminators;
+    }
+
+    /**
+     * Sets whether each line of a record keeps its line terminator. Defaults to false, in which case a record's lines
+     * are concatenated without them.
+     *
+     * @param keepLineTerminators
+     */
+    public void setKeepLineTerminators(boolean keepLineTerminators) {
+        this.keepLineTerminators = keepLineTerminators;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Sets the initial size in bytes of the read buffer. It grows if a line is longer. Defaults to 64KB.
+     *
+     * @param bufferSize
+     */
+    public void setBufferSize(int bufferSize) {
+        Assert.isTrue(bufferSize > 0, "bufferSize must be positive");
+        this.bufferSize = bufferSize;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Sets the maximum number of batches sent but not yet processed. Defaults to 0, meaning no limit.
+     *
+     * @param maxInFlight
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        Assert.isTrue(maxInFlight >= 0, "maxInFlight must not be negative");
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * The total number of bytes read from all the files split
+     */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    /**
+     * The total number of records sent
+     */
+    public long getRecordsSent() {
+        return recordsSent.get();
+    }
+
+    /**
+     * The total number of batches sent
+     */
+    public long getBatchesSent() {
+        return batchesSent.get();
+    }
+
+}
@@ -15,6 +15,8 @@
  */
 package biz.c24.io.spring.integration.transformer;
 
+import java.nio.ByteBuffer;
+
 import org.springframework.beans.factory.annotation.Required;
 import org.springframework.messaging.MessagingException;
 import org.springframework.integration.transformer.AbstractPayloadTransformer;
@@ -22,10 +24,18 @@ import org.springframework.util.Assert;
 
 import biz.c24.io.api.data.ComplexDataObject;
 import biz.c24.io.api.presentation.Sink;
+import biz.c24.io.spring.integration.C24LazyPayload;
 import biz.c24.io.spring.sink.OutputType;
 import biz.c24.io.spring.sink.SinkFactory;
 
 /**
+ * Marshals ComplexDataObject payloads using the Sink from the configured
+ * SinkFactory.
+ * 
+ * Each thread reuses a single Sink and output buffer across messages rather
+ * than creating new ones per message; the buffer grows to fit the largest
+ * message the thread has marshalled and is retained at that size.
+ * 
  * @author askogman
  * 
  */
@@ -35,12 +45,37 @@ public class C24MarshallingTransformer extends AbstractPayloadTransformer<Object
 
 	OutputType outputType;
 
+	boolean rawPassThrough = false;
+
+	/**
+	 * The Sink each thread reuses. Replaced whenever the sink factory or output
+	 * type change so that stale sinks are never used.
+	 */
+	private volatile ThreadLocal<Sink> sinks = new ThreadLocal<Sink>();
+
 	public OutputType getOutputType() {
 		return outputType;
 	}
 
 	public void setOutputType(OutputType outputType) {
 		this.outputType = outputType;
+		this.sinks = new ThreadLocal<Sink>();
+	}
+
+	public boolean isRawPassThrough() {
+		return rawPassThrough;
+	}
+
+	/**
+	 * Whether to output the raw message of an unmodified
+	 * {@link C24LazyPayload} rather than marshalling its object. Only enable if
+	 * the sink writes the same format the payloads were read from. Defaults to
+	 * false.
+	 * 
+	 * @param rawPassThrough
+	 */
+	public void setRawPassThrough(boolean rawPassThrough) {
+		this.rawPassThrough = rawPassThrough;
 	}
 
 	public SinkFactory getSinkFactory() {
@@ -50,6 +85,7 @@ public class C24MarshallingTransformer extends AbstractPayloadTransformer<Object
 	@Required
 	public void setSinkFactory(SinkFactory sinkFactory) {
 		this.sinkFactory = sinkFactory;
+		this.sinks = new ThreadLocal<Sink>();
 	}
 
 	@Override
@@ -62,6 +98,20 @@ public class C24MarshallingTransformer extends AbstractPayloadTransformer<Object
 	@Override
 	protected Object transformPayload(Object payload) throws Exception {
 
+		if (payload instanceof C24LazyPayload) {
+			C24LazyPayload lazyPayload = (C24LazyPayload) payload;
+			Object raw = lazyPayload.getRaw();
+			if (rawPassThrough && !lazyPayload.isModified()) {
+				if (outputType == OutputType.STRING ? raw instanceof String : raw instanceof byte[]) {
+					return raw;
+				}
+				if (outputType == OutputType.BYTE_BUFFER && raw instanceof byte[]) {
+					return ByteBuffer.wrap((byte[]) raw);
+				}
+			}
+			payload = lazyPayload.getObject();
+		}
+
 		ComplexDataObject cdo;
 		try {
 			cdo = (ComplexDataObject) payload;
@@ -71,13 +121,23 @@ public class C24MarshallingTransformer extends AbstractPayloadTransformer<Object
 					+ "]. Only ComplexDataObject is supported.", e);
 		}
 
-		Sink sink = outputType.getSink(sinkFactory);
+		ThreadLocal<Sink> threadSinks = sinks;
+		Sink sink = threadSinks.get();
+		if (sink == null) {
+			sink = outputType.getSink(sinkFactory);
+			threadSinks.set(sink);
+		}
 
-		sink.writeObject(cdo);
+		try {
+			sink.writeObject(cdo);
 
-		Object outputPayload = outputType.getOutput(sink);
+			Object outputPayload = outputType.getOutput(sink);
 
-		return outputPayload;
+			return outputPayload;
+		} finally {
+			// Also discards anything partially written if marshalling failed
+			outputType.reset(sink);
+		}
 	}
 
 }
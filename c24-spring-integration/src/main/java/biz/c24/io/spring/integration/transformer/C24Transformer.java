@@ -17,21 +17,36 @@ package biz.c24.io.spring.integration.transformer;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.messaging.Message;
 import org.springframework.integration.transformer.AbstractTransformer;
 import org.springframework.util.Assert;
 
 import biz.c24.io.api.data.ComplexDataObject;
-import biz.c24.io.api.presentation.JavaClassSink;
 import biz.c24.io.api.transform.Transform;
+import biz.c24.io.spring.integration.C24LazyPayload;
+import biz.c24.io.spring.util.JavaBeanConverter;
+import biz.c24.io.spring.util.TransformCache;
 
 /**
- * TODO Consider adding a subclass that uses a pool of transform objects.
+ * Transforms the payload using an iO Transform.
+ * 
+ * A Collection or array payload is treated as a batch and transformed into a
+ * List holding one entry per element, in the order of the batch. Each entry
+ * is what transforming the element on its own would have returned, as
+ * governed by alwaysReturnArray. Elements are passed to the transform
+ * batchSize at a time as the values of its first input, so a batchSize above
+ * 1 should only be used with transforms which map each input value
+ * independently to a single value on each output. If an executor is set,
+ * batches larger than the parallel threshold are divided between threads,
+ * each with its own Transform instance.
  * 
  * @author askogman
  * @author Andrew Elmore
@@ -43,10 +58,16 @@ InitializingBean {
 	private final Log logger = LogFactory.getLog(this.getClass());
 
 	private Class<? extends Transform> transformClass;
-	private JavaClassSink javaSink = null;
+	private JavaBeanConverter javaConverter = null;
+	private TransformCache cache = null;
 
 	private boolean alwaysReturnArray = false;
 
+	private int batchSize = 1;
+	private TaskExecutor executor;
+	private int parallelThreshold = 100;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
 	public Class<? extends Transform> getTransformClass() {
 		return transformClass;
 	}
@@ -69,10 +90,9 @@ InitializingBean {
 	 */
 	public void setTargetClass(Class<?> targetClass) {
 		if(targetClass != null) {
-			javaSink = new JavaClassSink();
-			javaSink.setRootClass(targetClass);
+			javaConverter = new JavaBeanConverter(targetClass);
 		} else {
-			javaSink = null;
+			javaConverter = null;
 		}
 	}
 
@@ -92,19 +112,84 @@ InitializingBean {
 	@Override
 	protected Object doTransform(Message<?> message) throws Exception {
 
-		Transform transform = buildTransform(message);
+		Object payload = C24LazyPayload.unwrap(message.getPayload());
 
-		// TODO Support list or array as input
-		Object payload = message.getPayload();
+		if (payload instanceof Collection) {
+			return transformBatch(message, new ArrayList<Object>((Collection<?>) payload));
+		} else if (payload instanceof Object[]) {
+			return transformBatch(message, Arrays.asList((Object[]) payload));
+		}
 
-		Object[][] results = transform
-				.transform(new Object[][] { new Object[] { payload } });
+		Transform transform = buildTransform(message);
+
+		Object[][] results = cache != null && payload instanceof ComplexDataObject
+				? cache.transform(transform, (ComplexDataObject) payload)
+				: transform.transform(new Object[][] { new Object[] { payload } });
 
 		Object output = extractOutputPayload(results);
 
 		return output;
 	}
 
+	private List<Object> transformBatch(final Message<?> message, final List<Object> elements) throws Exception {
+
+		// Cached results are looked up one input at a time
+		final int size = cache != null ? 1 : batchSize;
+		final Object[][][] results = new Object[(elements.size() + size - 1) / size][][];
+
+		new ChunkedBatch() {
+			@Override
+			protected void process(int from, int to) throws Exception {
+				Transform transform = buildTransform(message);
+				for (int i = from; i < to; i++) {
+					int start = i * size;
+					Object[] inputs = new Object[Math.min(size, elements.size() - start)];
+					for (int j = 0; j < inputs.length; j++) {
+						inputs[j] = C24LazyPayload.unwrap(elements.get(start + j));
+					}
+					results[i] = cache != null && inputs[0] instanceof ComplexDataObject
+							? cache.transform(transform, (ComplexDataObject) inputs[0])
+							: transform.transform(new Object[][] { inputs });
+				}
+			}
+		}.run(results.length, elements.size() > parallelThreshold ? executor : null, parallelism);
+
+		List<Object> output = new ArrayList<Object>(elements.size());
+		for (int i = 0; i < results.length; i++) {
+			int inputs = Math.min(size, elements.size() - i * size);
+			if (inputs == 1) {
+				output.add(extractOutputPayload(results[i]));
+			} else {
+				for (int j = 0; j < inputs; j++) {
+					output.add(extractOutputPayload(elementResults(results[i], j, inputs)));
+				}
+			}
+		}
+		return output;
+	}
+
+	/**
+	 * Picks out the outputs of one element from the results of transforming a
+	 * number of elements together
+	 * 
+	 * @param results The results of the transform
+	 * @param index The index of the element in the inputs
+	 * @param inputs The number of elements transformed together
+	 * @return The element's value on each output
+	 */
+	private Object[][] elementResults(Object[][] results, int index, int inputs) {
+		Object[][] elementResults = new Object[results.length][];
+		for (int i = 0; i < results.length; i++) {
+			if (results[i].length != inputs) {
+				throw new IllegalStateException("Transform " + transformClass.getName() + " produced "
+						+ results[i].length + " values on output " + i + " for " + inputs
+						+ " inputs; set batchSize to 1 for transforms which don't map each input to one value");
+			}
+			elementResults[i] = new Object[] { results[i][index] };
+		}
+		return elementResults;
+	}
+
 	protected Object extractOutputPayload(Object[][] results) throws IOException {
 
 		if (results.length == 0) {
@@ -137,17 +222,17 @@ InitializingBean {
 	}
 	
 	private Object sink(Object obj) throws IOException {
-		if(javaSink != null) {
-			obj = javaSink.convertObject((ComplexDataObject)obj);
+		if(javaConverter != null) {
+			obj = javaConverter.convert((ComplexDataObject)obj);
 		}
 		
 		return obj;
 	}
 	
 	private Object[] sink(Object[] objs) throws IOException {
-		if(javaSink != null) {
+		if(javaConverter != null) {
 			for(int i = 0; i < objs.length; i++) {
-				objs[i] = javaSink.convertObject((ComplexDataObject)objs[i]);
+				objs[i] = javaConverter.convert((ComplexDataObject)objs[i]);
 			}
 		}
 		
@@ -203,4 +288,76 @@ InitializingBean {
 	public void setAlwaysReturnArray(boolean alwaysReturnArray) {
 		this.alwaysReturnArray = alwaysReturnArray;
 	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Sets the number of elements of a batch passed to each call of the
+	 * transform. Defaults to 1. Ignored if a cache is set.
+	 * 
+	 * @param batchSize
+	 */
+	public void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0, "batchSize must be positive");
+		this.batchSize = batchSize;
+	}
+
+	public TaskExecutor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Sets the executor used to transform large batches in parallel. If not
+	 * set, batches are transformed on the calling thread.
+	 * 
+	 * @param executor
+	 */
+	public void setExecutor(TaskExecutor executor) {
+		this.executor = executor;
+	}
+
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	/**
+	 * Sets the number of elements a batch must exceed before it is
+	 * transformed in parallel. Defaults to 100.
+	 * 
+	 * @param parallelThreshold
+	 */
+	public void setParallelThreshold(int parallelThreshold) {
+		Assert.isTrue(parallelThreshold >= 0, "parallelThreshold must not be negative");
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Sets the number of chunks a large batch is split into, including the one
+	 * transformed by the calling thread. Defaults to the number of processors.
+	 * 
+	 * @param parallelism
+	 */
+	public void setParallelism(int parallelism) {
+		Assert.isTrue(parallelism > 0, "parallelism must be positive");
+		this.parallelism = parallelism;
+	}
+
+	public TransformCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Memoizes the results of the transform. Only use if the transform is a pure function of the cache's key.
+	 * 
+	 * @param cache The cache to use, or null to transform every payload
+	 */
+	public void setCache(TransformCache cache) {
+		this.cache = cache;
+	}
 }
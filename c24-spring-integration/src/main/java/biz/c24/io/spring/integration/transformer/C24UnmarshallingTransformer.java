@@ -21,16 +21,28 @@ import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandlingException;
 import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.support.ErrorMessage;
 import org.springframework.integration.transformer.AbstractPayloadTransformer;
 import org.springframework.util.Assert;
+import org.springframework.util.FileCopyUtils;
 
 import biz.c24.io.api.data.ComplexDataObject;
 import biz.c24.io.api.presentation.Source;
 import biz.c24.io.spring.core.C24Model;
+import biz.c24.io.spring.integration.C24Headers;
+import biz.c24.io.spring.integration.C24LazyPayload;
 import biz.c24.io.spring.source.SourceFactory;
 import biz.c24.io.spring.util.C24Utils;
 import org.springframework.web.multipart.MultipartFile;
@@ -48,6 +60,17 @@ import org.springframework.web.multipart.MultipartFile;
  * determine the Complex Object and we just pick then one it parsed to
  * </ol>
  * 
+ * If lazy is set, the payload is instead read into a {@link C24LazyPayload}
+ * which is only unmarshalled when its object is first accessed.
+ * 
+ * A Collection or array payload, such as a batch from the
+ * {@link C24FileSplittingTransformer}, is unmarshalled element by element into
+ * a List. If an executor is set, batches larger than the parallel threshold
+ * are split into chunks which are unmarshalled concurrently, the calling
+ * thread taking one. An element which fails to unmarshal is left out of the
+ * List and reported to the error channel, or logged if there isn't one, so
+ * one bad record doesn't fail the batch.
+ * 
  * @author askogman
  * 
  */
@@ -57,6 +80,11 @@ AbstractPayloadTransformer<Object, Object> {
 	private final C24Model model;
 	private SourceFactory sourceFactory;
 	private boolean unwrapDocumentRoot = true;
+	private boolean lazy = false;
+	private TaskExecutor executor;
+	private int parallelThreshold = 100;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private MessageChannel errorChannel;
     // Cache Sources per-thread for performance
     private ThreadLocal<Source> source = new ThreadLocal<Source>();
 	    
@@ -66,6 +94,81 @@ AbstractPayloadTransformer<Object, Object> {
 		this.unwrapDocumentRoot = unwrapDocumentRoot;
 	}
 
+	public boolean isLazy() {
+		return lazy;
+	}
+
+	/**
+	 * Whether to defer unmarshalling by emitting a {@link C24LazyPayload}
+	 * holding the raw message. Defaults to false.
+	 * 
+	 * @param lazy
+	 */
+	public void setLazy(boolean lazy) {
+		this.lazy = lazy;
+	}
+
+	public TaskExecutor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Sets the executor used to unmarshal large batches in parallel. If not
+	 * set, batches are unmarshalled on the calling thread.
+	 * 
+	 * @param executor
+	 */
+	public void setExecutor(TaskExecutor executor) {
+		this.executor = executor;
+	}
+
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	/**
+	 * Sets the number of elements a batch must exceed before it is
+	 * unmarshalled in parallel. Defaults to 100.
+	 * 
+	 * @param parallelThreshold
+	 */
+	public void setParallelThreshold(int parallelThreshold) {
+		Assert.isTrue(parallelThreshold >= 0, "parallelThreshold must not be negative");
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Sets the number of chunks a large batch is split into, including the one
+	 * unmarshalled by the calling thread. Defaults to the number of
+	 * processors.
+	 * 
+	 * @param parallelism
+	 */
+	public void setParallelism(int parallelism) {
+		Assert.isTrue(parallelism > 0, "parallelism must be positive");
+		this.parallelism = parallelism;
+	}
+
+	public MessageChannel getErrorChannel() {
+		return errorChannel;
+	}
+
+	/**
+	 * Sets the channel to which an ErrorMessage is sent for each element of a
+	 * batch which fails to unmarshal. The failed message holds the element and
+	 * its index in the {@link C24Headers#BATCH_INDEX} header. If not set,
+	 * failures are logged.
+	 * 
+	 * @param errorChannel
+	 */
+	public void setErrorChannel(MessageChannel errorChannel) {
+		this.errorChannel = errorChannel;
+	}
+
 	protected final Log logger = LogFactory.getLog(getClass());
 
 	/**
@@ -111,6 +214,21 @@ AbstractPayloadTransformer<Object, Object> {
 	@Override
 	protected Object transformPayload(Object payload) throws Exception {
 
+		if (payload instanceof Collection) {
+			return transformBatch(new ArrayList<Object>((Collection<?>) payload));
+		} else if (payload instanceof Object[]) {
+			return transformBatch(Arrays.asList((Object[]) payload));
+		}
+
+		return transformElement(payload);
+	}
+
+	private Object transformElement(Object payload) throws Exception {
+
+		if (lazy) {
+			return new C24LazyPayload(getRawFor(payload), model, sourceFactory, unwrapDocumentRoot);
+		}
+
 		Source source = getSourceFor(payload);
 
 		ComplexDataObject result = source.readObject(model.getRootElement());
@@ -123,8 +241,78 @@ AbstractPayloadTransformer<Object, Object> {
 
 	}
 
+	/**
+	 * Marks the elements of a batch which failed to unmarshal
+	 */
+	private static final Object FAILED = new Object();
+
+	private List<Object> transformBatch(final List<Object> elements) throws Exception {
+
+		final Object[] results = new Object[elements.size()];
+
+		new ChunkedBatch() {
+			@Override
+			protected void process(int from, int to) {
+				transformElements(elements, from, to, results);
+			}
+		}.run(elements.size(), elements.size() > parallelThreshold ? executor : null, parallelism);
+
+		List<Object> output = new ArrayList<Object>(results.length);
+		for (Object result : results) {
+			if (result != FAILED) {
+				output.add(result);
+			}
+		}
+		return output;
+	}
+
+	private void transformElements(List<Object> elements, int from, int to, Object[] results) {
+		for (int i = from; i < to; i++) {
+			Object element = elements.get(i);
+			if (element == null) {
+				results[i] = FAILED;
+				logger.warn("Skipping null element " + i + " of batch");
+				continue;
+			}
+			try {
+				results[i] = transformElement(element);
+			} catch (Exception e) {
+				results[i] = FAILED;
+				MessagingException failure = new MessageHandlingException(MessageBuilder.withPayload(element)
+						.setHeader(C24Headers.BATCH_INDEX, i).build(), "Failed to unmarshal element " + i
+						+ " of batch", e);
+				if (errorChannel != null) {
+					errorChannel.send(new ErrorMessage(failure));
+				} else {
+					logger.warn(failure.getMessage(), e);
+				}
+			}
+		}
+	}
+
 
 	
+	/**
+	 * Reads the payload into a String or byte[] which can be unmarshalled
+	 * later
+	 */
+	Object getRawFor(Object payload) throws Exception {
+		if (payload instanceof String || payload instanceof byte[]) {
+			return payload;
+		} else if (payload instanceof Reader) {
+			return FileCopyUtils.copyToString((Reader) payload);
+		} else if (payload instanceof InputStream) {
+			return FileCopyUtils.copyToByteArray((InputStream) payload);
+		} else if (payload instanceof MultipartFile) {
+			return ((MultipartFile) payload).getBytes();
+		} else if (payload instanceof File) {
+			return FileCopyUtils.copyToByteArray((File) payload);
+		} else {
+			throw new MessagingException(
+					"failed to transform message, payload not assignable from java.io.InputStream/Reader and no conversion possible");
+		}
+	}
+
 	Source getSourceFor(Object payload) throws Exception {
 		Source source = this.source.get();
 		if(source == null) {
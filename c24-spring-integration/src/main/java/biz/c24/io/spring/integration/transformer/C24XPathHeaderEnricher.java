@@ -26,19 +26,27 @@ import org.springframework.util.Assert;
 import biz.c24.io.api.data.ComplexDataObject;
 import biz.c24.io.api.data.IOXPath;
 import biz.c24.io.api.data.IOXPathException;
-import biz.c24.io.api.data.IOXPathFactory;
 import biz.c24.io.api.data.XPathStatement;
+import biz.c24.io.spring.integration.C24LazyPayload;
 import biz.c24.io.spring.integration.xpath.XPathEvaluationType;
+import biz.c24.io.spring.util.XPathCache;
 
 /**
  * Transformer implementation that evaluates XPath expressions against the
  * message payload and inserts the result of the evaluation into a message
  * header. The header names will match the keys in the map of expressions.
  * 
+ * Expressions given as strings and evaluated to strings or objects are
+ * resolved together in a single pass over the payload by an
+ * {@link XPathEvaluationPlan}, falling back to XPath for any which can't be
+ * resolved directly.
+ * 
  * @author Adam Skogman
  */
 public class C24XPathHeaderEnricher extends HeaderEnricher {
 
+	private final XPathEvaluationPlan plan = new XPathEvaluationPlan();
+
 	/**
 	 * Create an instance of XPathHeaderEnricher using a map with header names
 	 * as keys and XPathExpressionValueHolders to evaluate the values.
@@ -46,6 +54,24 @@ public class C24XPathHeaderEnricher extends HeaderEnricher {
 	public C24XPathHeaderEnricher(
 			Map<String, XPathExpressionEvaluatingHeaderValueMessageProcessor> expressionMap) {
 		super(expressionMap);
+
+		for (XPathExpressionEvaluatingHeaderValueMessageProcessor processor : expressionMap.values()) {
+			processor.addTo(plan);
+		}
+	}
+
+	@Override
+	public Message<?> transform(Message<?> message) {
+		if (plan.isEmpty()) {
+			return super.transform(message);
+		}
+
+		plan.evaluate(message);
+		try {
+			return super.transform(message);
+		} finally {
+			plan.clear();
+		}
 	}
 
 	static class XPathExpressionEvaluatingHeaderValueMessageProcessor implements
@@ -53,6 +79,12 @@ public class C24XPathHeaderEnricher extends HeaderEnricher {
 
 		private final XPathStatement statement;
 
+		private final String expression;
+
+		private XPathEvaluationPlan plan = null;
+
+		private int slot = -1;
+
 		private volatile XPathEvaluationType evaluationType = XPathEvaluationType.STRING_RESULT;
 
 		private volatile Boolean overwrite = null;
@@ -61,6 +93,7 @@ public class C24XPathHeaderEnricher extends HeaderEnricher {
 				String statement) {
 			Assert.hasText(statement, "statement must have text");
 			this.statement = new XPathStatement(statement);
+			this.expression = statement;
 
 		}
 
@@ -68,6 +101,19 @@ public class C24XPathHeaderEnricher extends HeaderEnricher {
 				XPathStatement statement) {
 			Assert.notNull(statement, "statement must not be null");
 			this.statement = statement;
+			this.expression = null;
+		}
+
+		/**
+		 * Adds this processor's expression to the plan if its value may be
+		 * resolved without XPath
+		 */
+		void addTo(XPathEvaluationPlan plan) {
+			if (expression != null
+					&& (evaluationType == XPathEvaluationType.STRING_RESULT || evaluationType == XPathEvaluationType.OBJECT_RESULT)) {
+				slot = plan.add(expression);
+				this.plan = slot >= 0 ? plan : null;
+			}
 		}
 
 		public void setEvaluationType(XPathEvaluationType evaluationType) {
@@ -84,7 +130,7 @@ public class C24XPathHeaderEnricher extends HeaderEnricher {
 
 		public Object processMessage(Message<?> message) {
 
-			Object payload = message.getPayload();
+			Object payload = C24LazyPayload.unwrap(message.getPayload());
 
 			ComplexDataObject cdo;
 			try {
@@ -96,14 +142,25 @@ public class C24XPathHeaderEnricher extends HeaderEnricher {
 								+ "]. Only ComplexDataObject is supported.", e);
 			}
 
-			Object result;
-			try {
-				IOXPath xpath = createXPath(statement);
+			Object result = plan != null ? plan.getValue(message, slot)
+					: XPathEvaluationPlan.UNRESOLVED;
+			if (evaluationType == XPathEvaluationType.STRING_RESULT
+					&& !(result instanceof String)) {
+				result = XPathEvaluationPlan.UNRESOLVED;
+			} else if (evaluationType != XPathEvaluationType.OBJECT_RESULT
+					&& evaluationType != XPathEvaluationType.STRING_RESULT) {
+				result = XPathEvaluationPlan.UNRESOLVED;
+			}
+
+			if (result == XPathEvaluationPlan.UNRESOLVED) {
+				try {
+					IOXPath xpath = createXPath(statement);
 
-				result = evaluationType.evaluateXPath(xpath, cdo);
-			} catch (IOXPathException e) {
-				throw new MessagingException(message,
-						"Exception during XPath evaluation", e);
+					result = evaluationType.evaluateXPath(xpath, cdo);
+				} catch (IOXPathException e) {
+					throw new MessagingException(message,
+							"Exception during XPath evaluation", e);
+				}
 			}
 
 			if (result instanceof String && ((String) result).length() == 0) {
@@ -116,7 +173,7 @@ public class C24XPathHeaderEnricher extends HeaderEnricher {
 
 	protected static IOXPath createXPath(XPathStatement statement)
 			throws IOXPathException {
-		return IOXPathFactory.getInstance(statement);
+		return XPathCache.getSharedInstance().getXPath(statement);
 	}
 
 }
@@ -16,24 +16,27 @@
 package biz.c24.io.spring.integration.transformer;
 
 import org.springframework.integration.transformer.AbstractPayloadTransformer;
+import org.springframework.messaging.MessagingException;
 import org.springframework.util.Assert;
 
 import biz.c24.io.api.data.ComplexDataObject;
 import biz.c24.io.api.data.IOXPath;
 import biz.c24.io.api.data.IOXPathException;
-import biz.c24.io.api.data.IOXPathFactory;
 import biz.c24.io.api.data.XPathStatement;
+import biz.c24.io.spring.integration.C24LazyPayload;
 import biz.c24.io.spring.integration.xpath.XPathEvaluationType;
+import biz.c24.io.spring.util.XPathCache;
 
 /**
  * @author askogman
  * 
  */
 public class C24XPathTransformer extends
-AbstractPayloadTransformer<ComplexDataObject, Object> {
+AbstractPayloadTransformer<Object, Object> {
 
 	volatile XPathStatement statement;
 	volatile XPathEvaluationType evaluationType = XPathEvaluationType.OBJECT_RESULT;
+	volatile XPathCache xpathCache = XPathCache.getSharedInstance();
 
 	public C24XPathTransformer(String statement) {
 		Assert.notNull(statement, "The XPath statement must not be null.");
@@ -48,18 +51,25 @@ AbstractPayloadTransformer<ComplexDataObject, Object> {
 	}
 
 	@Override
-	protected Object transformPayload(ComplexDataObject payload)
+	protected Object transformPayload(Object payload)
 			throws Exception {
 
+		Object cdo = C24LazyPayload.unwrap(payload);
+		if (!(cdo instanceof ComplexDataObject)) {
+			throw new MessagingException("Cannot evaluate payload of type ["
+					+ (cdo != null ? cdo.getClass().getName() : "null")
+					+ "]. Only ComplexDataObject is supported.");
+		}
+
 		IOXPath xpath = createXPath();
 
 		Object transformedPayload = evaluationType
-				.evaluateXPath(xpath, payload);
+				.evaluateXPath(xpath, (ComplexDataObject) cdo);
 		return transformedPayload;
 	}
 
 	protected IOXPath createXPath() throws IOXPathException {
-		return IOXPathFactory.getInstance(statement);
+		return xpathCache.getXPath(statement);
 	}
 
 	public XPathStatement getStatement() {
@@ -72,6 +82,20 @@ AbstractPayloadTransformer<ComplexDataObject, Object> {
 		this.statement = statement;
 	}
 
+	public XPathCache getXPathCache() {
+		return xpathCache;
+	}
+
+	/**
+	 * Sets the cache of compiled XPaths. Defaults to the shared XPathCache.
+	 * 
+	 * @param xpathCache
+	 */
+	public void setXPathCache(XPathCache xpathCache) {
+		Assert.notNull(xpathCache, "xpathCache must not be null");
+		this.xpathCache = xpathCache;
+	}
+
 	public XPathEvaluationType getEvaluationType() {
 		return evaluationType;
 	}
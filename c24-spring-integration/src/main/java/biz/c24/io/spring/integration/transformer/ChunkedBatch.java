@@ -0,0 +1,105 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.integration.transformer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.springframework.core.task.TaskExecutor;
+
+/**
+ * Processes the elements of a batch in contiguous chunks, concurrently if an
+ * executor is given. The calling thread processes the first chunk itself and
+ * then works through the rest, running any chunk that no worker has started
+ * yet itself rather than waiting for it; this means the calling thread can
+ * belong to the executor's own pool without risk of deadlock. A chunk the
+ * executor rejects is run on the calling thread too. If a chunk fails, chunks
+ * which have not yet started are cancelled.
+ *
+ * As each chunk covers its own range of indexes, implementations can write
+ * their results into a shared array without further synchronisation and so
+ * preserve the order of the batch.
+ *
+ * @author Andrew Elmore
+ */
+abstract class ChunkedBatch {
+
+	/**
+	 * Processes the elements from (inclusive) to (exclusive)
+	 */
+	protected abstract void process(int from, int to) throws Exception;
+
+	/**
+	 * @param size The number of elements
+	 * @param executor The executor to run chunks on, or null to process the batch on the calling thread
+	 * @param parallelism The number of chunks to split the batch into if there is an executor
+	 */
+	void run(int size, TaskExecutor executor, int parallelism) throws Exception {
+
+		int chunks = executor != null ? Math.max(Math.min(parallelism, size), 1) : 1;
+		int chunkSize = (size + chunks - 1) / chunks;
+
+		List<FutureTask<Void>> tasks = new ArrayList<FutureTask<Void>>(chunks - 1);
+		for (int start = chunkSize; start < size; start += chunkSize) {
+			final int from = start;
+			final int to = Math.min(start + chunkSize, size);
+			FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+				public Void call() throws Exception {
+					process(from, to);
+					return null;
+				}
+			});
+			tasks.add(task);
+			try {
+				executor.execute(task);
+			} catch (RejectedExecutionException e) {
+				task.run();
+			}
+		}
+
+		boolean completed = false;
+		try {
+			process(0, Math.min(chunkSize, size));
+
+			for (FutureTask<Void> task : tasks) {
+				// Does nothing if a worker has already started it
+				task.run();
+				try {
+					task.get();
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof Exception) {
+						throw (Exception) cause;
+					}
+					throw (Error) cause;
+				}
+			}
+			completed = true;
+		} finally {
+			if (!completed) {
+				// No one will wait for the rest
+				for (FutureTask<Void> task : tasks) {
+					task.cancel(false);
+				}
+			}
+		}
+	}
+
+}
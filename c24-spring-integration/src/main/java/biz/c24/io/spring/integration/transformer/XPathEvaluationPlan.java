@@ -0,0 +1,239 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.integration.transformer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.springframework.messaging.Message;
+
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.data.IOContext;
+import biz.c24.io.api.data.IOXPathException;
+import biz.c24.io.spring.integration.C24LazyPayload;
+import biz.c24.io.spring.util.XPathCache;
+
+/**
+ * Evaluates a set of XPath expressions against a message payload in a single pass.
+ * 
+ * Each expression is split into a prefix and a trailing run of simple child steps, e.g. {@code //Employee[1]} and
+ * {@code FirstName}. Each distinct prefix is evaluated once per message using XPath (an empty prefix is the payload
+ * itself) and the child steps of all the expressions sharing it are then resolved together by walking down from the
+ * first node it matches using {@link ComplexDataObject#getElement(String)}.
+ * 
+ * A value is only resolved directly where every step along its path occurs exactly once; otherwise it is left
+ * {@link #UNRESOLVED} and the caller must evaluate the full expression with XPath.
+ * 
+ * @author Andrew Elmore
+ */
+class XPathEvaluationPlan {
+
+	/**
+	 * Marks a value which must be evaluated with XPath
+	 */
+	static final Object UNRESOLVED = new Object();
+
+	private static final Pattern SIMPLE_STEP = Pattern.compile("[A-Za-z_][A-Za-z0-9_.\\-]*");
+
+	/**
+	 * A child step shared by one or more expressions
+	 */
+	private static class Step {
+		private final String name;
+		private final Map<String, Step> children = new LinkedHashMap<String, Step>();
+		private final List<Integer> slots = new ArrayList<Integer>();
+
+		Step(String name) {
+			this.name = name;
+		}
+
+		Step getChild(String name) {
+			Step child = children.get(name);
+			if (child == null) {
+				child = new Step(name);
+				children.put(name, child);
+			}
+			return child;
+		}
+	}
+
+	/**
+	 * The values resolved for the message currently being processed by a thread
+	 */
+	private static class Evaluation {
+		private final Message<?> message;
+		private final Object[] values;
+
+		Evaluation(Message<?> message, Object[] values) {
+			this.message = message;
+			this.values = values;
+		}
+	}
+
+	private final Map<String, Step> prefixes = new LinkedHashMap<String, Step>();
+	private final ThreadLocal<Evaluation> evaluation = new ThreadLocal<Evaluation>();
+	private final XPathCache xpathCache = XPathCache.getSharedInstance();
+	private int slotCount = 0;
+
+	/**
+	 * Adds an expression to the plan
+	 * 
+	 * @param expression The XPath expression
+	 * @return The slot its value will be resolved into, or -1 if the expression has no simple child steps and must
+	 *         always be evaluated with XPath
+	 */
+	int add(String expression) {
+		int start = getSimpleStepsStart(expression);
+		if (start < 0) {
+			return -1;
+		}
+
+		String prefix = start == 0 ? "" : expression.substring(0, start - 1);
+		Step step = prefixes.get(prefix);
+		if (step == null) {
+			step = new Step(null);
+			prefixes.put(prefix, step);
+		}
+		for (String name : expression.substring(start).split("/")) {
+			step = step.getChild(name);
+		}
+		step.slots.add(slotCount);
+		return slotCount++;
+	}
+
+	/**
+	 * Finds where the trailing run of simple child steps in an expression starts
+	 * 
+	 * @return The index of the first simple step, or -1 if the expression doesn't end in one
+	 */
+	static int getSimpleStepsStart(String expression) {
+		int end = expression.length();
+		int start = -1;
+		while (end > 0) {
+			int slash = expression.lastIndexOf('/', end - 1);
+			if (!SIMPLE_STEP.matcher(expression.substring(slash + 1, end)).matches()) {
+				break;
+			}
+			if (slash < 0) {
+				// Relative to the payload
+				start = 0;
+				break;
+			}
+			if (slash == 0 || expression.charAt(slash - 1) == '/') {
+				// An absolute or descendant step, which getElement can't resolve
+				break;
+			}
+			start = slash + 1;
+			end = slash;
+		}
+		return start;
+	}
+
+	/**
+	 * @return Whether any expressions can be resolved directly
+	 */
+	boolean isEmpty() {
+		return slotCount == 0;
+	}
+
+	/**
+	 * Resolves the values of all the expressions in the plan for the given message. They remain available to the
+	 * calling thread until {@link #clear()} is called.
+	 */
+	void evaluate(Message<?> message) {
+		Object[] values = new Object[slotCount];
+		Object payload = C24LazyPayload.unwrap(message.getPayload());
+		for (Map.Entry<String, Step> entry : prefixes.entrySet()) {
+			Object base = payload instanceof ComplexDataObject ? getBase(entry.getKey(), (ComplexDataObject) payload)
+					: null;
+			if (base instanceof ComplexDataObject) {
+				walk(entry.getValue(), (ComplexDataObject) base, values);
+			} else {
+				unresolve(entry.getValue(), values);
+			}
+		}
+		evaluation.set(new Evaluation(message, values));
+	}
+
+	/**
+	 * Finds the first node matching a prefix
+	 */
+	@SuppressWarnings("unchecked")
+	private Object getBase(String prefix, ComplexDataObject payload) {
+		if (prefix.length() == 0) {
+			return payload;
+		}
+		try {
+			List<IOContext> nodes = xpathCache.getXPath(prefix).getList(payload);
+			return nodes != null && !nodes.isEmpty() ? nodes.get(0).getInstance() : null;
+		} catch (IOXPathException e) {
+			// Leave it to the full expression to report
+			return null;
+		}
+	}
+
+	private void walk(Step step, ComplexDataObject cdo, Object[] values) {
+		for (Step child : step.children.values()) {
+			Object value;
+			try {
+				value = cdo.getElementCount(child.name) == 1 ? cdo.getElement(child.name) : UNRESOLVED;
+			} catch (RuntimeException e) {
+				// Not an element of this type; leave it to XPath
+				value = UNRESOLVED;
+			}
+			for (Integer slot : child.slots) {
+				values[slot] = value;
+			}
+			if (value instanceof ComplexDataObject) {
+				walk(child, (ComplexDataObject) value, values);
+			} else {
+				unresolve(child, values);
+			}
+		}
+	}
+
+	private void unresolve(Step step, Object[] values) {
+		for (Step child : step.children.values()) {
+			for (Integer slot : child.slots) {
+				values[slot] = UNRESOLVED;
+			}
+			unresolve(child, values);
+		}
+	}
+
+	/**
+	 * Gets the value resolved for a slot
+	 * 
+	 * @param message The message being processed
+	 * @param slot The slot
+	 * @return The value, or {@link #UNRESOLVED} if it wasn't resolved for this message
+	 */
+	Object getValue(Message<?> message, int slot) {
+		Evaluation evaluation = this.evaluation.get();
+		return evaluation != null && evaluation.message == message ? evaluation.values[slot] : UNRESOLVED;
+	}
+
+	/**
+	 * Discards the values resolved for the calling thread
+	 */
+	void clear() {
+		evaluation.remove();
+	}
+
+}
@@ -30,6 +30,7 @@ import biz.c24.io.api.data.ComplexDataObject;
 import biz.c24.io.api.data.ValidationEvent;
 import biz.c24.io.api.data.ValidationEventCollector;
 import biz.c24.io.api.data.ValidationManager;
+import biz.c24.io.spring.integration.C24LazyPayload;
 
 /**
  * @author askogman
@@ -47,7 +48,7 @@ AbstractMessageProcessor<Map<String, ?>> {
 
 		Map<String, Object> result = new HashMap<String, Object>();
 
-		Object payload = message.getPayload();
+		Object payload = C24LazyPayload.unwrap(message.getPayload());
 
 		ComplexDataObject cdo;
 		try {
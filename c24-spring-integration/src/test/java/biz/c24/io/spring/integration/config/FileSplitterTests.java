@@ -16,15 +16,25 @@
 package biz.c24.io.spring.integration.config;
 
 import biz.c24.io.spring.integration.transformer.C24FileSplittingTransformer;
+import biz.c24.io.spring.sink.OutputType;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.integration.channel.ExecutorChannel;
+import org.springframework.integration.core.MessagingTemplate;
 import org.springframework.messaging.Message;
 import org.springframework.integration.channel.QueueChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.PollableChannel;
 import org.springframework.integration.support.MessageBuilder;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertThat;
@@ -92,4 +102,89 @@ public class FileSplitterTests {
         assertThat(messageCount, is(5));
     }
 
+    @Test
+    public void splitsAcrossBufferBoundaries() throws Exception {
+        transformer.setBufferSize(1);
+        transformer.setBatchSize(10);
+        transformer.doTransform(MessageBuilder.withPayload((resource.getFile())).build());
+        Message<List<String>> message = (Message<List<String>>) feedChannel.receive();
+        assertThat(message.getPayload().size(), is(10));
+        assertThat(message.getPayload().get(9), is("10"));
+        assertThat(transformer.getRecordsSent(), is(10L));
+        assertThat(transformer.getBatchesSent(), is(1L));
+        assertThat(transformer.getBytesRead(), is(resource.getFile().length()));
+    }
+
+    @Test
+    public void sendsRawBytes() throws Exception {
+        transformer.setInitiator("^-?\\d*[02468]$");
+        transformer.setOutputType(OutputType.BYTE_ARRAY);
+        transformer.setKeepLineTerminators(true);
+        transformer.setEncoding("UTF-8");
+        transformer.doTransform(MessageBuilder.withPayload((resource.getFile())).build());
+        Message<List<byte[]>> message = (Message<List<byte[]>>) feedChannel.receive();
+        assertThat(new String(message.getPayload().get(0), "UTF-8"), is("2\n3\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMultiByteLineTerminators() {
+        transformer.setEncoding("UTF-16");
+    }
+
+    @Test
+    public void limitsBatchesInFlight() throws Exception {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final AtomicInteger handled = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ExecutorChannel channel = new ExecutorChannel(executor);
+        channel.subscribe(new MessageHandler() {
+            public void handleMessage(Message<?> message) {
+                int current = inFlight.incrementAndGet();
+                synchronized (maxInFlight) {
+                    maxInFlight.set(Math.max(maxInFlight.get(), current));
+                }
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                inFlight.decrementAndGet();
+                handled.incrementAndGet();
+            }
+        });
+
+        try {
+            transformer = new C24FileSplittingTransformer(channel);
+            transformer.setMaxInFlight(2);
+            transformer.doTransform(MessageBuilder.withPayload((resource.getFile())).build());
+
+        } finally {
+            executor.shutdown();
+        }
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertThat(handled.get(), is(10));
+        assertThat(maxInFlight.get() <= 2, is(true));
+    }
+
+    @Test
+    public void canConfigureFromNamespace() throws Exception {
+        ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext("file-splitter.xml", getClass());
+        try {
+            MessagingTemplate template = new MessagingTemplate(context.getBean("fileInputChannel", MessageChannel.class));
+            template.convertAndSend(resource.getFile());
+
+            PollableChannel recordChannel = context.getBean("recordChannel", PollableChannel.class);
+            Message<List<byte[]>> message = (Message<List<byte[]>>) recordChannel.receive(1000);
+            assertThat(message.getPayload().size(), is(5));
+            assertThat(new String(message.getPayload().get(4), "UTF-8"), is("5\n"));
+
+            PollableChannel doneChannel = context.getBean("doneChannel", PollableChannel.class);
+            assertThat((Boolean) doneChannel.receive(1000).getPayload(), is(true));
+        } finally {
+            context.close();
+        }
+    }
+
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.integration.config;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.integration.core.MessagingTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.PollableChannel;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import biz.c24.io.examples.models.basic.Employees;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration("raw-router.xml")
+public class RawRouterTests extends BaseIntegrationTest {
+
+	@Autowired
+	MessageChannel textInputChannel;
+
+	private MessagingTemplate template;
+
+	@Autowired
+	@Qualifier("rightChannel")
+	PollableChannel rightChannel;
+
+	@Autowired
+	@Qualifier("discardChannel")
+	PollableChannel discardChannel;
+
+	@Before
+	public void before() {
+		template = new MessagingTemplate(textInputChannel);
+	}
+
+	@Test
+	public void canRouteBeforeUnmarshalling() throws Exception {
+
+		template.convertAndSend(loadCsvBytes());
+
+		Message<?> message = rightChannel.receive(1);
+
+		assertThat(message.getPayload(), notNullValue());
+		assertThat(message.getPayload(), instanceOf(Employees.class));
+		assertThat(discardChannel.receive(0), nullValue());
+	}
+
+	@Test
+	public void discardsWithoutUnmarshalling() throws Exception {
+
+		template.convertAndSend("Mr,Joe,Bloggs,Security Guard,45000\n");
+
+		Message<?> message = discardChannel.receive(1);
+
+		assertThat(message.getPayload(), instanceOf(String.class));
+		assertThat(rightChannel.receive(0), nullValue());
+	}
+
+	@Test
+	public void routesUnmappedValuesToTheDefaultChannel() throws Exception {
+
+		template.convertAndSend("Mrs,Jane,Acheson,Architect,65000\n");
+
+		Message<?> message = discardChannel.receive(1);
+
+		assertThat(message.getPayload(), instanceOf(String.class));
+		assertThat(rightChannel.receive(0), nullValue());
+	}
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.integration.config;
+
+import static biz.c24.io.spring.integration.test.TestUtils.loadXmlBytes;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.core.MessagingTemplate;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.PollableChannel;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.web.multipart.MultipartFile;
+
+import biz.c24.io.examples.models.basic.Employee;
+import biz.c24.io.examples.models.basic.EmployeeElement;
+import biz.c24.io.spring.core.C24Model;
+import biz.c24.io.spring.integration.splitter.C24UnmarshallingSplitter;
+import biz.c24.io.spring.source.XmlSourceFactory;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration("unmarshalling-splitter.xml")
+public class UnmarshallingSplitterTests extends BaseIntegrationTest {
+
+	@Autowired
+	MessageChannel fileInputChannel;
+
+	private MessagingTemplate template;
+
+	@Autowired
+	@Qualifier("employeeChannel")
+	PollableChannel employeeChannel;
+
+	@Before
+	public void before() {
+		template = new MessagingTemplate(fileInputChannel);
+	}
+
+	@Test
+	public void canSplitBytes() throws Exception {
+
+		template.convertAndSend(loadCsvBytes());
+
+		assertEmployees("Andy", "Joe", "Greg");
+	}
+
+	@Test
+	public void canSplitFile() throws Exception {
+
+		template.convertAndSend(new ClassPathResource("valid-1.txt").getFile());
+
+		assertEmployees("Andy", "Joe", "Greg");
+	}
+
+	@Test
+	public void closesFileWhenParsingFails() throws Exception {
+
+		// The second record's salary isn't a number
+		final boolean[] closed = new boolean[1];
+		InputStream stream = new ByteArrayInputStream(("Mr,Andy,Acheson,Software Developer,55000\n"
+				+ "Mr,Joe,Bloggs,Security Guard,lots\n"
+				+ "Mr,Greg,Gatsby,Managing Director,65000\n").getBytes("UTF-8")) {
+			@Override
+			public void close() throws IOException {
+				closed[0] = true;
+				super.close();
+			}
+		};
+		MultipartFile file = mock(MultipartFile.class);
+		when(file.getInputStream()).thenReturn(stream);
+
+		try {
+			template.convertAndSend(file);
+			fail("Splitter failed to report the unparseable record");
+		} catch (MessagingException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("Failed to parse record 2"));
+		}
+
+		// The rest of the file is abandoned
+		assertThat(closed[0], is(true));
+		assertEmployees("Andy");
+	}
+
+	@Test
+	public void rejectsXmlSource() throws Exception {
+
+		C24UnmarshallingSplitter splitter = new C24UnmarshallingSplitter(new C24Model(EmployeeElement.getInstance()),
+				new XmlSourceFactory());
+		QueueChannel output = new QueueChannel();
+		splitter.setOutputChannel(output);
+
+		// Only the first record could be read, so the whole payload is refused
+		try {
+			splitter.handleMessage(MessageBuilder.withPayload(loadXmlBytes()).build());
+			fail("Splitter accepted a payload read with an XMLSource");
+		} catch (MessagingException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("XMLSource"));
+		}
+		assertThat(output.receive(0), is(nullValue()));
+	}
+
+	private void assertEmployees(String... firstNames) {
+		for (int i = 0; i < firstNames.length; i++) {
+			Message<?> message = employeeChannel.receive(0);
+			assertThat(message, is(not(nullValue())));
+			assertThat(message.getPayload(), is(Employee.class));
+			assertThat(((Employee) message.getPayload()).getFirstName(), is(firstNames[i]));
+			assertThat(message.getHeaders().getSequenceNumber(), is(i + 1));
+		}
+
+		// Make sure there are no other messages floating around
+		assertThat(employeeChannel.receive(0), is(nullValue()));
+	}
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.integration.extractor;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class RawValueExtractorTests {
+
+	private static final String FIX = "8=FIX.4.4\u00019=12\u000135=D\u000149=SENDER\u0001";
+
+	private static final String SWIFT = "{1:F01BANKBEBBAXXX0000000000}{2:I103BANKDEFFXXXXN}{4:\r\n:20:REF123\r\n:23B:CRED\r\n-}";
+
+	private static final String XML = "<?xml version=\"1.0\"?><e:Envelope xmlns:e=\"urn:test\"><e:Header>"
+			+ "<e:MsgType version=\"2\">NewOrder</e:MsgType></e:Header></e:Envelope>";
+
+	@Test
+	public void canExtractFixTag() throws Exception {
+		assertThat(new FixTagValueExtractor(35).extractValue(FIX), is("D"));
+		assertThat(new FixTagValueExtractor(49).extractValue(FIX.getBytes("UTF-8")), is("SENDER"));
+		assertThat(new FixTagValueExtractor(56).extractValue(FIX), nullValue());
+
+		FixTagValueExtractor extractor = new FixTagValueExtractor(35);
+		extractor.setDelimiter('|');
+		assertThat(extractor.extractValue("8=FIX.4.4|135=X|35=8|"), is("8"));
+	}
+
+	@Test
+	public void canExtractDelimitedField() throws Exception {
+		DelimitedValueExtractor extractor = new DelimitedValueExtractor(2);
+		assertThat(extractor.extractValue("Mr,Andy,Acheson,Dev\r\nMr,Joe,Bloggs,Guard\n"), is("Acheson"));
+
+		extractor.setRecord(1);
+		assertThat(extractor.extractValue("Mr,Andy,Acheson,Dev\r\nMr,Joe,Bloggs,Guard\n"), is("Bloggs"));
+
+		extractor.setRecord(2);
+		assertThat(extractor.extractValue("Mr,Andy,Acheson,Dev\r\nMr,Joe,Bloggs,Guard\n"), nullValue());
+	}
+
+	@Test
+	public void canExtractSwiftMessageTypeAndField() throws Exception {
+		SwiftValueExtractor extractor = new SwiftValueExtractor();
+		extractor.setMessageType(true);
+		assertThat(extractor.extractValue(SWIFT), is("103"));
+
+		extractor = new SwiftValueExtractor();
+		extractor.setField("23B");
+		assertThat(extractor.extractValue(SWIFT), is("CRED"));
+	}
+
+	@Test
+	public void canExtractXmlElementAndAttribute() throws Exception {
+		assertThat(new XmlValueExtractor("//Header/MsgType").extractValue(XML), is("NewOrder"));
+		assertThat(new XmlValueExtractor("/Envelope/Header/MsgType").extractValue(XML), is("NewOrder"));
+		assertThat(new XmlValueExtractor("/Header/MsgType").extractValue(XML), nullValue());
+
+		XmlValueExtractor extractor = new XmlValueExtractor("//MsgType");
+		extractor.setAttribute("version");
+		assertThat(extractor.extractValue(XML), is("2"));
+	}
+
+	@Test
+	public void resetsReaderPayloads() throws Exception {
+		BufferedReader reader = new BufferedReader(new StringReader(FIX));
+		assertThat(new FixTagValueExtractor(35).extractValue(reader), is("D"));
+		assertThat(reader.readLine(), is(FIX));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnsupportedPayloads() throws Exception {
+		new FixTagValueExtractor(35).extractValue(new Object());
+	}
+
+}
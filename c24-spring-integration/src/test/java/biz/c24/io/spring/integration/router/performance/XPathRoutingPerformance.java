@@ -0,0 +1,93 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.integration.router.performance;
+
+import java.text.DecimalFormat;
+
+import biz.c24.io.api.data.ComplexDataObject;
+import biz.c24.io.api.data.IOXPathFactory;
+import biz.c24.io.api.data.XPathStatement;
+import biz.c24.io.spring.integration.test.TestUtils;
+import biz.c24.io.spring.util.XPathCache;
+
+/**
+ * Compare the per-message cost of evaluating a routing key when the XPath is compiled for every message and when
+ * the compiled XPath is taken from an XPathCache
+ * 
+ * @author Andrew Elmore
+ */
+public class XPathRoutingPerformance {
+
+    private static long WARMUP_SECS = 5;
+    private static long RUN_SECS = 5;
+
+    /**
+     * Something which evaluates a routing key
+     */
+    private interface Evaluation {
+        String evaluate(ComplexDataObject cdo) throws Exception;
+    }
+
+    /**
+     * Repeatedly run the evaluation for the specified time
+     * 
+     * @return The number of evaluations performed
+     */
+    private static long run(Evaluation evaluation, ComplexDataObject cdo, long secs) throws Exception {
+        long count = 0;
+        long stopTime = System.currentTimeMillis() + (secs * 1000);
+        while(System.currentTimeMillis() < stopTime) {
+            // Check the time every so often
+            for(int i = 0; i < 1000; i++) {
+                evaluation.evaluate(cdo);
+            }
+            count += 1000;
+        }
+        return count;
+    }
+
+    private static void measure(String name, Evaluation evaluation, ComplexDataObject cdo) throws Exception {
+        run(evaluation, cdo, WARMUP_SECS);
+
+        long start = System.nanoTime();
+        long count = run(evaluation, cdo, RUN_SECS);
+        long elapsed = System.nanoTime() - start;
+
+        DecimalFormat df = new DecimalFormat("#0.00");
+        System.out.println(name + " throughput (messages/sec): " + df.format(count / (elapsed / (double)1000000000)));
+        System.out.println(name + " mean latency (ns): " + df.format(elapsed / (double)count));
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        ComplexDataObject cdo = TestUtils.loadObject();
+        final XPathStatement statement = new XPathStatement("//Employee[1]/FirstName");
+
+        measure("Compile per message", new Evaluation() {
+            public String evaluate(ComplexDataObject cdo) throws Exception {
+                return IOXPathFactory.getInstance(statement).getString(cdo);
+            }
+        }, cdo);
+
+        final XPathCache cache = new XPathCache();
+        measure("XPathCache", new Evaluation() {
+            public String evaluate(ComplexDataObject cdo) throws Exception {
+                return cache.getXPath(statement).getString(cdo);
+            }
+        }, cdo);
+    }
+
+}
@@ -15,6 +15,9 @@
  */
 package biz.c24.io.spring.integration.transformer;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 import biz.c24.io.examples.models.basic.InputDocumentRootElement;
 import biz.c24.io.spring.core.C24Model;
 import biz.c24.io.spring.sink.JsonSinkFactory;
@@ -28,7 +31,9 @@ import org.springframework.integration.support.MessageBuilder;
 import static biz.c24.io.spring.integration.test.TestUtils.*;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 
 public class IoMarshallingTransformerIUTests {
@@ -119,4 +124,60 @@ public class IoMarshallingTransformerIUTests {
 		assertThat(result, is(expected));
 	}
 
+	@Test
+	public void canMarshalTextToByteBuffer() throws Exception {
+
+		C24MarshallingTransformer ioMarshallingTransformer = new C24MarshallingTransformer();
+		ioMarshallingTransformer.setOutputType(OutputType.BYTE_BUFFER);
+		ioMarshallingTransformer.setSinkFactory(new TextualSinkFactory());
+
+		Message message = MessageBuilder.withPayload(loadObject()).build();
+
+		Message<?> outputMessage = ioMarshallingTransformer.transform(message);
+
+		assertThat(outputMessage.getPayload(), instanceOf(ByteBuffer.class));
+		assertThat(toBytes((ByteBuffer) outputMessage.getPayload()), is(loadCsvBytes()));
+
+	}
+
+	@Test
+	public void reusesSinkAcrossMessages() throws Exception {
+
+		C24MarshallingTransformer ioMarshallingTransformer = new C24MarshallingTransformer();
+		ioMarshallingTransformer.setOutputType(OutputType.BYTE_ARRAY);
+		ioMarshallingTransformer.setSinkFactory(new TextualSinkFactory());
+
+		Message message = MessageBuilder.withPayload(loadObject()).build();
+
+		byte[] first = (byte[]) ioMarshallingTransformer.transform(message).getPayload();
+		byte[] second = (byte[]) ioMarshallingTransformer.transform(message).getPayload();
+
+		assertThat(first, is(loadCsvBytes()));
+		assertThat(second, is(loadCsvBytes()));
+		assertThat(second, not(sameInstance(first)));
+
+	}
+
+	@Test
+	public void byteBufferOutputSurvivesNextMessage() throws Exception {
+
+		C24MarshallingTransformer ioMarshallingTransformer = new C24MarshallingTransformer();
+		ioMarshallingTransformer.setOutputType(OutputType.BYTE_BUFFER);
+		ioMarshallingTransformer.setSinkFactory(new TextualSinkFactory());
+
+		Message message = MessageBuilder.withPayload(loadObject()).build();
+
+		ByteBuffer first = (ByteBuffer) ioMarshallingTransformer.transform(message).getPayload();
+		ByteBuffer second = (ByteBuffer) ioMarshallingTransformer.transform(message).getPayload();
+
+		assertThat(first.array(), not(sameInstance(second.array())));
+		assertThat(toBytes(first), is(loadCsvBytes()));
+		assertThat(toBytes(second), is(loadCsvBytes()));
+
+	}
+
+	private static byte[] toBytes(ByteBuffer buffer) {
+		return Arrays.copyOfRange(buffer.array(), buffer.position(), buffer.limit());
+	}
+
 }
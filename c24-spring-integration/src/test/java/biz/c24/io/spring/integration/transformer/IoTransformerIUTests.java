@@ -19,7 +19,17 @@ import static biz.c24.io.spring.integration.test.TestUtils.*;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.messaging.Message;
 import org.springframework.integration.support.MessageBuilder;
 
@@ -109,4 +119,108 @@ public class IoTransformerIUTests {
 		
 	}
 
+	private List<Employee> loadEmployees(int count) {
+		List<Employee> employees = new ArrayList<Employee>();
+		for (int i = 0; i < count; i++) {
+			Employee employee = new Employee();
+			employee.setFirstName("Tom");
+			employee.setLastName("Smith" + i);
+			employee.setJobTitle("Porter");
+			employees.add(employee);
+		}
+		return employees;
+	}
+
+	@Test
+	public void canTransformList() throws Exception {
+
+		C24Transformer transformer = new C24Transformer();
+		transformer.setTransformClass(EmployeeToEmailTransform.class);
+		transformer.setTargetClass(MyEmail.class);
+
+		Message<?> message = MessageBuilder.withPayload(loadEmployees(10)).build();
+
+		List<?> result = (List<?>) transformer.transform(message).getPayload();
+
+		assertThat(result.size(), is(10));
+		for (int i = 0; i < 10; i++) {
+			assertThat(((MyEmail) result.get(i)).getSurname(), is("Smith" + i));
+		}
+	}
+
+	@Test
+	public void returnsArrayPerElementIfAlwaysReturnArray() throws Exception {
+
+		C24Transformer transformer = new C24Transformer();
+		transformer.setTransformClass(EmployeeToEmailTransform.class);
+		transformer.setAlwaysReturnArray(true);
+
+		Message<?> message = MessageBuilder.withPayload(loadEmployees(10)).build();
+
+		List<?> result = (List<?>) transformer.transform(message).getPayload();
+
+		// One entry per element, each holding that element's outputs
+		assertThat(result.size(), is(10));
+		for (int i = 0; i < 10; i++) {
+			Object[] outputs = (Object[]) result.get(i);
+			assertThat(outputs.length, is(1));
+			assertThat(((Email) outputs[0]).getSurname(), is("Smith" + i));
+		}
+	}
+
+	@Test
+	public void canTransformListInParallel() throws Exception {
+
+		C24Transformer transformer = new C24Transformer();
+		transformer.setTransformClass(EmployeeToEmailTransform.class);
+		transformer.setExecutor(new SimpleAsyncTaskExecutor());
+		transformer.setParallelThreshold(10);
+		transformer.setParallelism(4);
+
+		Message<?> message = MessageBuilder.withPayload(loadEmployees(1000).toArray()).build();
+
+		List<?> result = (List<?>) transformer.transform(message).getPayload();
+
+		// Order is preserved across the chunks
+		assertThat(result.size(), is(1000));
+		for (int i = 0; i < 1000; i++) {
+			assertThat(((Email) result.get(i)).getSurname(), is("Smith" + i));
+		}
+	}
+
+	@Test
+	public void canTransformListOnItsOwnExecutor() throws Exception {
+
+		// A single worker, which the transformer itself runs on
+		final ExecutorService pool = Executors.newSingleThreadExecutor();
+		try {
+			final C24Transformer transformer = new C24Transformer();
+			transformer.setTransformClass(EmployeeToEmailTransform.class);
+			transformer.setExecutor(new TaskExecutor() {
+				public void execute(Runnable task) {
+					pool.execute(task);
+				}
+			});
+			transformer.setParallelThreshold(10);
+			transformer.setParallelism(4);
+
+			final Message<?> message = MessageBuilder.withPayload(loadEmployees(1000)).build();
+
+			Future<Message<?>> future = pool.submit(new Callable<Message<?>>() {
+				public Message<?> call() throws Exception {
+					return transformer.transform(message);
+				}
+			});
+
+			// The chunks queued behind the transformer are run by it rather than waited for
+			List<?> result = (List<?>) future.get(30, TimeUnit.SECONDS).getPayload();
+			assertThat(result.size(), is(1000));
+			for (int i = 0; i < 1000; i++) {
+				assertThat(((Email) result.get(i)).getSurname(), is("Smith" + i));
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
 }
@@ -18,15 +18,21 @@ package biz.c24.io.spring.integration.transformer;
 import biz.c24.io.examples.models.basic.Employees;
 import biz.c24.io.examples.models.basic.InputDocumentRootElement;
 import biz.c24.io.spring.core.C24Model;
+import biz.c24.io.spring.integration.C24Headers;
 import biz.c24.io.spring.source.JsonSourceFactory;
 import biz.c24.io.spring.source.TextualSourceFactory;
 import biz.c24.io.spring.source.XmlSourceFactory;
 import org.junit.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import static biz.c24.io.spring.integration.test.TestUtils.*;
 import static org.hamcrest.CoreMatchers.*;
@@ -150,4 +156,49 @@ public class IoUnmarshallingTransformerIUTests {
         Employees employees = (Employees) outputMessage.getPayload();
     }
 
+	@Test
+	public void canUnmarshalListInParallel() throws Exception {
+
+		List<Object> batch = new ArrayList<Object>();
+		for (int i = 0; i < 50; i++) {
+			batch.add(i % 2 == 0 ? loadCsvString() : loadCsvBytes());
+		}
+
+		C24UnmarshallingTransformer transformer = new C24UnmarshallingTransformer(
+				model, new TextualSourceFactory());
+		transformer.setExecutor(new SimpleAsyncTaskExecutor());
+		transformer.setParallelThreshold(10);
+		transformer.setParallelism(4);
+
+		Message<?> outputMessage = transformer.transform(MessageBuilder.withPayload(batch).build());
+
+		List<?> result = (List<?>) outputMessage.getPayload();
+		assertThat(result.size(), is(50));
+		for (Object employees : result) {
+			assertThat(employees, instanceOf(Employees.class));
+		}
+	}
+
+	@Test
+	public void reportsFailedElementsWithoutFailingBatch() throws Exception {
+
+		QueueChannel errorChannel = new QueueChannel();
+		C24UnmarshallingTransformer transformer = new C24UnmarshallingTransformer(
+				model, new TextualSourceFactory());
+		transformer.setErrorChannel(errorChannel);
+
+		Object[] batch = new Object[] { loadCsvString(), Integer.valueOf(42), loadCsvBytes() };
+		Message<?> outputMessage = transformer.transform(MessageBuilder.withPayload(batch).build());
+
+		List<?> result = (List<?>) outputMessage.getPayload();
+		assertThat(result.size(), is(2));
+
+		Message<?> error = errorChannel.receive(0);
+		assertThat(error, notNullValue());
+		Message<?> failed = ((MessagingException) error.getPayload()).getFailedMessage();
+		assertThat((Integer) failed.getPayload(), is(42));
+		assertThat((Integer) failed.getHeaders().get(C24Headers.BATCH_INDEX), is(1));
+		assertThat(errorChannel.receive(0), nullValue());
+	}
+
 }
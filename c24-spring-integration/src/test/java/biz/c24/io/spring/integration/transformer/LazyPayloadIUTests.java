@@ -0,0 +1,120 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.integration.transformer;
+
+import biz.c24.io.examples.models.basic.Employees;
+import biz.c24.io.examples.models.basic.InputDocumentRootElement;
+import biz.c24.io.spring.core.C24Model;
+import biz.c24.io.spring.integration.C24LazyPayload;
+import biz.c24.io.spring.integration.xpath.XPathEvaluationType;
+import biz.c24.io.spring.sink.OutputType;
+import biz.c24.io.spring.sink.TextualSinkFactory;
+import biz.c24.io.spring.source.TextualSourceFactory;
+import org.junit.Test;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+import static biz.c24.io.spring.integration.test.TestUtils.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+public class LazyPayloadIUTests {
+
+	C24Model model = new C24Model(InputDocumentRootElement.getInstance());
+
+	private C24LazyPayload unmarshalLazily(Object raw) throws Exception {
+		C24UnmarshallingTransformer transformer = new C24UnmarshallingTransformer(
+				model, new TextualSourceFactory());
+		transformer.setLazy(true);
+
+		Message<?> outputMessage = transformer.transform(MessageBuilder.withPayload(raw).build());
+
+		assertThat(outputMessage.getPayload(), instanceOf(C24LazyPayload.class));
+		return (C24LazyPayload) outputMessage.getPayload();
+	}
+
+	private C24MarshallingTransformer passThroughMarshaller(OutputType outputType) {
+		C24MarshallingTransformer transformer = new C24MarshallingTransformer();
+		transformer.setOutputType(outputType);
+		transformer.setSinkFactory(new TextualSinkFactory());
+		transformer.setRawPassThrough(true);
+		return transformer;
+	}
+
+	@Test
+	public void parsesOnFirstAccess() throws Exception {
+
+		C24LazyPayload payload = unmarshalLazily(loadCsvBytes());
+
+		assertThat(payload.isUnmarshalled(), is(false));
+		assertThat(payload.getObject(), instanceOf(Employees.class));
+		assertThat(payload.isUnmarshalled(), is(true));
+		assertThat(payload.isModified(), is(false));
+		assertThat(payload.getObject(), sameInstance(payload.getObject()));
+	}
+
+	@Test
+	public void xpathTransformerReadsLazyPayload() throws Exception {
+
+		C24LazyPayload payload = unmarshalLazily(loadCsvString());
+
+		C24XPathTransformer transformer = new C24XPathTransformer("//Employee[1]/FirstName");
+		transformer.setEvaluationType(XPathEvaluationType.STRING_RESULT);
+		Message<?> outputMessage = transformer.transform(MessageBuilder.withPayload(payload).build());
+
+		assertThat((String) outputMessage.getPayload(), is("Andy"));
+	}
+
+	@Test
+	public void passesUnmodifiedBytesThrough() throws Exception {
+
+		byte[] raw = loadCsvBytes();
+		C24LazyPayload payload = unmarshalLazily(raw);
+
+		Message<?> outputMessage = passThroughMarshaller(OutputType.BYTE_ARRAY).transform(
+				MessageBuilder.withPayload(payload).build());
+
+		assertThat(outputMessage.getPayload(), sameInstance((Object) raw));
+		assertThat(payload.isUnmarshalled(), is(false));
+	}
+
+	@Test
+	public void marshalsWhenTypeDiffers() throws Exception {
+
+		C24LazyPayload payload = unmarshalLazily(loadCsvBytes());
+
+		Message<?> outputMessage = passThroughMarshaller(OutputType.STRING).transform(
+				MessageBuilder.withPayload(payload).build());
+
+		assertThat((String) outputMessage.getPayload(), is(loadCsvString()));
+		assertThat(payload.isUnmarshalled(), is(true));
+	}
+
+	@Test
+	public void marshalsModifiedPayload() throws Exception {
+
+		byte[] raw = loadCsvBytes();
+		C24LazyPayload payload = unmarshalLazily(raw);
+		payload.getModifiableObject();
+
+		Message<?> outputMessage = passThroughMarshaller(OutputType.BYTE_ARRAY).transform(
+				MessageBuilder.withPayload(payload).build());
+
+		assertThat(outputMessage.getPayload(), not(sameInstance((Object) raw)));
+		assertThat((byte[]) outputMessage.getPayload(), is(raw));
+	}
+
+}
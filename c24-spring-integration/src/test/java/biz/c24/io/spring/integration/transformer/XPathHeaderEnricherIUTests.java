@@ -0,0 +1,83 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *			http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package biz.c24.io.spring.integration.transformer;
+
+import static biz.c24.io.spring.integration.test.TestUtils.loadObject;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+import biz.c24.io.api.data.XPathStatement;
+import biz.c24.io.spring.integration.transformer.C24XPathHeaderEnricher.XPathExpressionEvaluatingHeaderValueMessageProcessor;
+import biz.c24.io.spring.integration.xpath.XPathEvaluationType;
+
+public class XPathHeaderEnricherIUTests {
+
+	@Test
+	public void canEnrichInOnePass() throws Exception {
+
+		Map<String, XPathExpressionEvaluatingHeaderValueMessageProcessor> headers = new LinkedHashMap<String, XPathExpressionEvaluatingHeaderValueMessageProcessor>();
+		headers.put("first", new XPathExpressionEvaluatingHeaderValueMessageProcessor("//Employee[1]/FirstName"));
+		headers.put("last", new XPathExpressionEvaluatingHeaderValueMessageProcessor("//Employee[1]/LastName"));
+		headers.put("second", new XPathExpressionEvaluatingHeaderValueMessageProcessor("//Employee[2]/FirstName"));
+		// Always evaluated with XPath
+		headers.put("ref", new XPathExpressionEvaluatingHeaderValueMessageProcessor(new XPathStatement("//Employee[3]/FirstName")));
+		XPathExpressionEvaluatingHeaderValueMessageProcessor andy = new XPathExpressionEvaluatingHeaderValueMessageProcessor("//Employee[1]/FirstName/text()='Andy'");
+		andy.setEvaluationType(XPathEvaluationType.BOOLEAN_RESULT);
+		headers.put("andy", andy);
+
+		C24XPathHeaderEnricher enricher = new C24XPathHeaderEnricher(headers);
+
+		Message<?> message = enricher.transform(MessageBuilder.withPayload(loadObject()).build());
+
+		assertThat(message.getHeaders().get("first", String.class), is("Andy"));
+		assertThat(message.getHeaders().get("last", String.class), is("Acheson"));
+		assertThat(message.getHeaders().get("second", String.class), is("Joe"));
+		assertThat(message.getHeaders().get("ref", String.class), is("Greg"));
+		assertThat(message.getHeaders().get("andy", Boolean.class), is(true));
+	}
+
+	@Test
+	public void leavesMissingValuesUnset() throws Exception {
+
+		Map<String, XPathExpressionEvaluatingHeaderValueMessageProcessor> headers = new LinkedHashMap<String, XPathExpressionEvaluatingHeaderValueMessageProcessor>();
+		headers.put("first", new XPathExpressionEvaluatingHeaderValueMessageProcessor("//Employee[1]/FirstName"));
+		headers.put("missing", new XPathExpressionEvaluatingHeaderValueMessageProcessor("//Employee[4]/FirstName"));
+
+		C24XPathHeaderEnricher enricher = new C24XPathHeaderEnricher(headers);
+
+		Message<?> message = enricher.transform(MessageBuilder.withPayload(loadObject()).build());
+
+		assertThat(message.getHeaders().get("first", String.class), is("Andy"));
+		assertThat(message.getHeaders().containsKey("missing"), is(false));
+	}
+
+	@Test
+	public void splitsExpressionsAtTrailingChildSteps() {
+
+		assertThat(XPathEvaluationPlan.getSimpleStepsStart("//Employee[1]/FirstName"), is(14));
+		assertThat(XPathEvaluationPlan.getSimpleStepsStart("Employee/FirstName"), is(0));
+		assertThat(XPathEvaluationPlan.getSimpleStepsStart("//Employee"), is(-1));
+		assertThat(XPathEvaluationPlan.getSimpleStepsStart("//Employee/@Id"), is(-1));
+		assertThat(XPathEvaluationPlan.getSimpleStepsStart("//Employee/FirstName/text()"), is(-1));
+	}
+}